@@ -0,0 +1,92 @@
+package com.skipper.expensetracker.benchmarks;
+
+import com.skipper.expensetracker.ExpenseTrackerApplication;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+import com.skipper.expensetracker.services.ExpenseService;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Boots the application once per benchmark fork against the embedded H2 database from the test
+// resources and seeds it with a fixed data set, so every benchmark measures the same volume
+@State(Scope.Benchmark)
+public class BenchmarkApplication {
+
+    public static final int USERS = 20;
+    public static final int CATEGORIES = 12;
+    public static final int EXPENSES = 10_000;
+
+    // Seeded expenses are spread one per hour backwards from this instant
+    public static final Date LATEST = new Date(1_704_067_200_000L); // 2024-01-01T00:00:00Z
+
+    public ConfigurableApplicationContext context;
+    public List<User> users;
+    public List<Category> categories;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(ExpenseTrackerApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run();
+
+        TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+        EntityManager entityManager = context.getBean(EntityManager.class);
+        users = new ArrayList<>();
+        categories = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < USERS; i++) {
+                User user = User.builder().username("bench-user-" + i).email("bench" + i + "@example.com").build();
+                entityManager.persist(user);
+                users.add(user);
+            }
+            for (int i = 0; i < CATEGORIES; i++) {
+                Category category = Category.builder().categoryName("bench-category-" + i).build();
+                entityManager.persist(category);
+                categories.add(category);
+            }
+        });
+
+        List<Expense> expenses = new ArrayList<>(EXPENSES);
+        for (int i = 0; i < EXPENSES; i++) {
+            expenses.add(newExpense(i));
+        }
+        context.getBean(ExpenseService.class).addExpenses(expenses);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public Expense newExpense(int i) {
+        return Expense.builder()
+                .user(users.get(i % USERS))
+                .category(categories.get(i % CATEGORIES))
+                .amount(Money.ofMinor(100 + (i % 500) * 25L, "USD"))
+                .description("bench expense " + i)
+                .date(new Date(LATEST.getTime() - TimeUnit.HOURS.toMillis(i)))
+                .build();
+    }
+
+}
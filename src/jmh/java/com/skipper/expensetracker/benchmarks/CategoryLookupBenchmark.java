@@ -0,0 +1,57 @@
+package com.skipper.expensetracker.benchmarks;
+
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.repositories.CategoryRepository;
+import com.skipper.expensetracker.services.CategoryService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Cached service lookups next to the uncached repository call they replace
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CategoryLookupBenchmark {
+
+    private CategoryService categoryService;
+    private CategoryRepository categoryRepository;
+    private Long categoryId;
+
+    @Setup
+    public void setup(BenchmarkApplication application) {
+        categoryService = application.bean(CategoryService.class);
+        categoryRepository = application.bean(CategoryRepository.class);
+        categoryId = application.categories.get(0).getCategoryId();
+    }
+
+    @Benchmark
+    public Category getCategoryById() {
+        return categoryService.getCategoryById(categoryId);
+    }
+
+    @Benchmark
+    public List<Category> getAllCategories() {
+        return categoryService.getAllCategories();
+    }
+
+    @Benchmark
+    public Optional<Category> repositoryFindById() {
+        return categoryRepository.findById(categoryId);
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.skipper.expensetracker.benchmarks;
+
+import com.skipper.expensetracker.dto.CategoryExpenseTotal;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Repository queries over one user's last 30 days of the seeded data set
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpenseRepositoryBenchmark {
+
+    private ExpenseRepository expenseRepository;
+    private Long userId;
+    private Date from;
+    private Date to;
+
+    @Setup
+    public void setup(BenchmarkApplication application) {
+        expenseRepository = application.bean(ExpenseRepository.class);
+        userId = application.users.get(0).getUserId();
+        to = BenchmarkApplication.LATEST;
+        from = new Date(to.getTime() - TimeUnit.DAYS.toMillis(30));
+    }
+
+    @Benchmark
+    public List<Expense> findByUserUserIdAndDateBetween() {
+        return expenseRepository.findByUserUserIdAndDateBetween(userId, from, to);
+    }
+
+    @Benchmark
+    public List<ExpenseView> findViewsByUserIdAndDateBetween() {
+        return expenseRepository.findViewsByUserIdAndDateBetween(userId, from, to);
+    }
+
+    @Benchmark
+    public List<CategoryExpenseTotal> sumByCategory() {
+        return expenseRepository.sumByCategory(userId, null, from, to);
+    }
+
+}
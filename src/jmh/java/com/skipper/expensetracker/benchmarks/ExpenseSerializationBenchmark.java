@@ -0,0 +1,67 @@
+package com.skipper.expensetracker.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// JSON encoding of expense lists as the controllers return them; needs no application context
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpenseSerializationBenchmark {
+
+    @Param({"100", "1000"})
+    private int size;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<Expense> expenses;
+    private List<ExpenseView> views;
+
+    @Setup
+    public void setup() {
+        Category category = new Category(1L, "Groceries");
+        User user = User.builder().userId(1L).username("bench").build();
+        expenses = new ArrayList<>(size);
+        views = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Date date = new Date(BenchmarkApplication.LATEST.getTime() - TimeUnit.HOURS.toMillis(i));
+            expenses.add(new Expense((long) i, category, user, Money.ofMinor(1250 + i * 100L, "USD"), "expense " + i, date));
+            views.add(new ExpenseView((long) i, 1L, 1L, "Groceries", 1250 + i * 100L, "USD", "expense " + i, date));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeExpenses() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(expenses);
+    }
+
+    @Benchmark
+    public byte[] serializeExpenseViews() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(views);
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.skipper.expensetracker.benchmarks;
+
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.services.ExpenseService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpenseServiceBenchmark {
+
+    private ExpenseService expenseService;
+    private BenchmarkApplication application;
+    private int next;
+
+    @Setup
+    public void setup(BenchmarkApplication application) {
+        this.application = application;
+        this.expenseService = application.bean(ExpenseService.class);
+    }
+
+    @Benchmark
+    public Expense addExpense() {
+        return expenseService.addExpense(application.newExpense(next++));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Expense> getAllExpenses() {
+        return expenseService.getAllExpenses();
+    }
+
+    @Benchmark
+    public List<Expense> getExpensePage() {
+        return expenseService.getExpensePage(5_000L, 100);
+    }
+
+}
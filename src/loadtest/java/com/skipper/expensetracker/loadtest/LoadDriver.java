@@ -0,0 +1,186 @@
+package com.skipper.expensetracker.loadtest;
+
+import com.skipper.expensetracker.loadtest.SyntheticDataGenerator.Dataset;
+import com.skipper.expensetracker.loadtest.SyntheticDataGenerator.ZipfSampler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Closed-loop HTTP load driver: each thread sends the next request as soon as the previous one
+// completes, picking operations by the configured weights and users with the generator's skew.
+// Latencies after the warmup go into one HdrHistogram per operation.
+@Slf4j
+public class LoadDriver {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final URI baseUri;
+    private final LoadTestSettings settings;
+    private final Dataset dataset;
+    private final String serverThreads;
+    private final LoadOperation[] operations;
+    private final double[] cumulativeWeights;
+    private final Map<LoadOperation, Histogram> latencies = new EnumMap<>(LoadOperation.class);
+    private final Map<LoadOperation, LongAdder> errors = new EnumMap<>(LoadOperation.class);
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    public LoadDriver(URI baseUri, LoadTestSettings settings, Dataset dataset, String serverThreads) {
+        this.baseUri = baseUri;
+        this.settings = settings;
+        this.dataset = dataset;
+        this.serverThreads = serverThreads;
+
+        List<LoadOperation> parsedOperations = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        for (String entry : settings.mix().split(",")) {
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Mix entries must look like operation=weight: " + entry);
+            }
+            parsedOperations.add(LoadOperation.fromLabel(parts[0]));
+            weights.add(Double.parseDouble(parts[1].trim()));
+        }
+        operations = parsedOperations.toArray(LoadOperation[]::new);
+        cumulativeWeights = new double[operations.length];
+        double total = weights.stream().mapToDouble(Double::doubleValue).sum();
+        double running = 0;
+        for (int i = 0; i < operations.length; i++) {
+            running += weights.get(i) / total;
+            cumulativeWeights[i] = running;
+            latencies.put(operations[i], new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3));
+            errors.put(operations[i], new LongAdder());
+        }
+    }
+
+    public void run() throws InterruptedException, IOException {
+        long warmupEnd = System.nanoTime() + settings.warmup().toNanos();
+        long end = warmupEnd + settings.duration().toNanos();
+        log.info("Driving {} threads against {} for {} after {} warmup", settings.threads(), baseUri,
+                settings.duration(), settings.warmup());
+
+        ExecutorService workers = Executors.newFixedThreadPool(settings.threads());
+        for (int t = 0; t < settings.threads(); t++) {
+            SplittableRandom random = new SplittableRandom(settings.seed() + t);
+            workers.execute(() -> drive(random, warmupEnd, end));
+        }
+        workers.shutdown();
+        workers.awaitTermination(settings.warmup().plus(settings.duration()).toMillis() + 60_000, TimeUnit.MILLISECONDS);
+        report(settings.duration().toNanos());
+    }
+
+    private void drive(SplittableRandom random, long warmupEnd, long end) {
+        ZipfSampler users = new ZipfSampler(dataset.userIds().size(), SyntheticDataGenerator.USER_SKEW);
+        ZipfSampler categories = new ZipfSampler(dataset.categoryIds().size(), SyntheticDataGenerator.CATEGORY_SKEW);
+        LoadOperation.RequestContext context = new LoadOperation.RequestContext() {
+            public URI baseUri() {
+                return baseUri;
+            }
+
+            public SplittableRandom random() {
+                return random;
+            }
+
+            public int expenses() {
+                return settings.expenses();
+            }
+
+            public long userId() {
+                return dataset.userIds().get(users.sample(random));
+            }
+
+            public long categoryId() {
+                return dataset.categoryIds().get(categories.sample(random));
+            }
+        };
+
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            LoadOperation operation = pick(random.nextDouble());
+            HttpRequest request = operation.request(context);
+            boolean failed;
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                failed = response.statusCode() >= 400;
+            } catch (IOException e) {
+                failed = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long elapsed = System.nanoTime() - now;
+            if (now >= warmupEnd) {
+                latencies.get(operation).recordValue(Math.min(elapsed, HIGHEST_TRACKABLE_NANOS));
+                if (failed) {
+                    errors.get(operation).increment();
+                }
+            }
+        }
+    }
+
+    private LoadOperation pick(double value) {
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private void report(long measuredNanos) throws IOException {
+        Path directory = Path.of(settings.reportDirectory());
+        Files.createDirectories(directory);
+        double seconds = measuredNanos / 1e9;
+        Histogram total = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+        long totalErrors = 0;
+
+        StringBuilder table = new StringBuilder(String.format("%nserver: %s, client threads: %d%n", serverThreads,
+                settings.threads()));
+        table.append(String.format("%-16s %10s %8s %10s %9s %9s %9s %9s %9s%n",
+                "operation", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (LoadOperation operation : operations) {
+            Histogram histogram = latencies.get(operation);
+            total.add(histogram);
+            long operationErrors = errors.get(operation).sum();
+            totalErrors += operationErrors;
+            table.append(row(operation.label(), histogram, operationErrors, seconds));
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(operation.label() + ".hgrm")))) {
+                histogram.outputPercentileDistribution(out, NANOS_PER_MILLI);
+            }
+        }
+        table.append(row("total", total, totalErrors, seconds));
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve("total.hgrm")))) {
+            total.outputPercentileDistribution(out, NANOS_PER_MILLI);
+        }
+        Files.writeString(directory.resolve("summary.txt"), table);
+        log.info("Load test results (percentile distributions in {}):{}", directory.toAbsolutePath(), table);
+    }
+
+    private static String row(String label, Histogram histogram, long errors, double seconds) {
+        return String.format("%-16s %10d %8d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f%n", label, histogram.getTotalCount(),
+                errors, histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / NANOS_PER_MILLI, histogram.getValueAtPercentile(90) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(99) / NANOS_PER_MILLI, histogram.getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                histogram.getMaxValue() / NANOS_PER_MILLI);
+    }
+
+}
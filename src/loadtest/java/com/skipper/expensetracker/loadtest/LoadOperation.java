@@ -0,0 +1,64 @@
+package com.skipper.expensetracker.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+// The requests the load driver can replay; names are what loadtest.mix weights refer to
+public enum LoadOperation {
+
+    EXPENSE_PAGE(context -> get(context, "/api/expenses?size=100&afterId=" + context.random().nextInt(Math.max(context.expenses(), 1)))),
+    USER_CURRENT(context -> get(context, "/api/expenses/users/" + context.userId() + "/current")),
+    USER_RANGE(context -> get(context, "/api/expenses/users/" + context.userId()
+            + "?from=" + LocalDate.now().minusDays(30) + "&to=" + LocalDate.now())),
+    SUMMARY(context -> get(context, "/api/expenses/summary?groupBy=category&userId=" + context.userId())),
+    CATEGORY(context -> get(context, "/api/categories/" + context.categoryId())),
+    CATEGORIES(context -> get(context, "/api/categories")),
+    USER(context -> get(context, "/api/users/" + context.userId())),
+    CREATE_EXPENSE(context -> HttpRequest.newBuilder(context.baseUri().resolve("/api/expenses"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("{\"user\":{\"userId\":" + context.userId() + "},"
+                    + "\"category\":{\"categoryId\":" + context.categoryId() + "},"
+                    + "\"amount\":" + (1 + context.random().nextInt(20_000)) / 100.0 + ","
+                    + "\"description\":\"load test\",\"date\":" + System.currentTimeMillis() + "}"))
+            .build());
+
+    // What an operation needs to build its next request
+    public interface RequestContext {
+        URI baseUri();
+
+        SplittableRandom random();
+
+        int expenses();
+
+        long userId();
+
+        long categoryId();
+    }
+
+    private final Function<RequestContext, HttpRequest> requestFactory;
+
+    LoadOperation(Function<RequestContext, HttpRequest> requestFactory) {
+        this.requestFactory = requestFactory;
+    }
+
+    public HttpRequest request(RequestContext context) {
+        return requestFactory.apply(context);
+    }
+
+    public String label() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    public static LoadOperation fromLabel(String label) {
+        return valueOf(label.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    private static HttpRequest get(RequestContext context, String path) {
+        return HttpRequest.newBuilder(context.baseUri().resolve(path)).GET().build();
+    }
+
+}
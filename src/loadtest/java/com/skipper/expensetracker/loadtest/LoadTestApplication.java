@@ -0,0 +1,51 @@
+package com.skipper.expensetracker.loadtest;
+
+import com.skipper.expensetracker.ExpenseTrackerApplication;
+import com.skipper.expensetracker.repositories.CategoryRepository;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.UserRepository;
+import com.skipper.expensetracker.services.ExpenseRollupService;
+
+import jakarta.persistence.EntityManager;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+
+// Starts the application on a random port over the embedded H2 database, seeds it with synthetic
+// data and replays the configured request mix against it:
+// mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--loadtest.expenses=500000 --loadtest.threads=32"
+// Any application property can be passed the same way, e.g. --spring.profiles.active=virtual-threads
+public class LoadTestApplication {
+
+    public static void main(String[] args) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ExpenseTrackerApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off")
+                .run(args);
+        try {
+            LoadTestSettings settings = Binder.get(context.getEnvironment())
+                    .bindOrCreate("loadtest", LoadTestSettings.class);
+            SyntheticDataGenerator generator = new SyntheticDataGenerator(context.getBean(UserRepository.class),
+                    context.getBean(CategoryRepository.class), context.getBean(ExpenseRepository.class),
+                    context.getBean(ExpenseRollupService.class), context.getBean(TransactionTemplate.class),
+                    context.getBean(EntityManager.class));
+            SyntheticDataGenerator.Dataset dataset = generator.generate(settings);
+
+            // Spring Boot only switches to virtual threads on Java 21+, so report what actually ran
+            boolean virtualThreads = context.getEnvironment().getProperty("spring.threads.virtual.enabled", Boolean.class, false)
+                    && Runtime.version().feature() >= 21;
+            String serverThreads = "Java " + Runtime.version().feature() + ", "
+                    + (virtualThreads ? "virtual threads" : "platform threads") + ", pool size "
+                    + context.getEnvironment().getProperty("spring.datasource.hikari.maximum-pool-size", "10");
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            new LoadDriver(URI.create("http://localhost:" + port), settings, dataset, serverThreads).run();
+        } finally {
+            context.close();
+        }
+    }
+
+}
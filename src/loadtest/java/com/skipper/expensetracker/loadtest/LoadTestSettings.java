@@ -0,0 +1,20 @@
+package com.skipper.expensetracker.loadtest;
+
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+// Bound from loadtest.* arguments, e.g. --loadtest.expenses=500000 --loadtest.threads=32
+public record LoadTestSettings(
+        @DefaultValue("1000") int users,
+        @DefaultValue("40") int categories,
+        @DefaultValue("100000") int expenses,
+        @DefaultValue("730") int historyDays,
+        @DefaultValue("42") long seed,
+        @DefaultValue("16") int threads,
+        @DefaultValue("10s") Duration warmup,
+        @DefaultValue("60s") Duration duration,
+        @DefaultValue("expense-page=30,user-current=25,user-range=15,summary=10,category=8,categories=5,user=4,create-expense=3")
+        String mix,
+        @DefaultValue("target/loadtest") String reportDirectory) {
+}
@@ -0,0 +1,145 @@
+package com.skipper.expensetracker.loadtest;
+
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+import com.skipper.expensetracker.repositories.CategoryRepository;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.UserRepository;
+import com.skipper.expensetracker.services.ExpenseRollupService;
+
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Seeds users, categories and expenses through the repositories with production-like skew:
+// a few users and categories account for most expenses, amounts are log-normal and dates
+// cluster around the present with a long tail into the past
+@Slf4j
+public class SyntheticDataGenerator {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    // Zipf exponents for how expenses (and the load driver's requests) spread across users and categories
+    static final double USER_SKEW = 1.1;
+    static final double CATEGORY_SKEW = 0.9;
+
+    // ln-space mean and deviation of expense amounts, giving a median of about 20
+    private static final double AMOUNT_MU = 3.0;
+    private static final double AMOUNT_SIGMA = 1.0;
+
+    private final UserRepository userRepository;
+    private final CategoryRepository categoryRepository;
+    private final ExpenseRepository expenseRepository;
+    private final ExpenseRollupService expenseRollupService;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+
+    public SyntheticDataGenerator(UserRepository userRepository, CategoryRepository categoryRepository,
+                                  ExpenseRepository expenseRepository, ExpenseRollupService expenseRollupService,
+                                  TransactionTemplate transactionTemplate, EntityManager entityManager) {
+        this.userRepository = userRepository;
+        this.categoryRepository = categoryRepository;
+        this.expenseRepository = expenseRepository;
+        this.expenseRollupService = expenseRollupService;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+    }
+
+    public record Dataset(List<Long> userIds, List<Long> categoryIds) {
+    }
+
+    public Dataset generate(LoadTestSettings settings) {
+        SplittableRandom random = new SplittableRandom(settings.seed());
+        long started = System.nanoTime();
+
+        List<Long> userIds = new ArrayList<>(settings.users());
+        for (int from = 0; from < settings.users(); from += CHUNK_SIZE) {
+            List<User> users = new ArrayList<>();
+            for (int i = from; i < Math.min(from + CHUNK_SIZE, settings.users()); i++) {
+                users.add(User.builder().username("load-user-" + i).email("load-user-" + i + "@example.com")
+                        .firstName("Load").lastName("User " + i).password("load-password").build());
+            }
+            userRepository.saveAll(users).forEach(user -> userIds.add(user.getUserId()));
+        }
+
+        List<Long> categoryIds = new ArrayList<>(settings.categories());
+        for (int i = 0; i < settings.categories(); i++) {
+            categoryIds.add(categoryRepository.save(Category.builder().categoryName("category-" + i).build()).getCategoryId());
+        }
+
+        ZipfSampler users = new ZipfSampler(userIds.size(), USER_SKEW);
+        ZipfSampler categories = new ZipfSampler(categoryIds.size(), CATEGORY_SKEW);
+        long now = System.currentTimeMillis();
+        long historyMillis = TimeUnit.DAYS.toMillis(settings.historyDays());
+        for (int chunkStart = 0; chunkStart < settings.expenses(); chunkStart += CHUNK_SIZE) {
+            int from = chunkStart;
+            int to = Math.min(from + CHUNK_SIZE, settings.expenses());
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Expense> expenses = new ArrayList<>(CHUNK_SIZE);
+                for (int i = from; i < to; i++) {
+                    expenses.add(Expense.builder()
+                            .user(entityManager.getReference(User.class, userIds.get(users.sample(random))))
+                            .category(entityManager.getReference(Category.class, categoryIds.get(categories.sample(random))))
+                            .amount(Money.ofMinor(Math.round(Math.exp(AMOUNT_MU + AMOUNT_SIGMA * gaussian(random)) * 100), "USD"))
+                            .description("expense " + i)
+                            .date(new Date(now - recentBiasedOffset(random, historyMillis)))
+                            .build());
+                }
+                expenseRepository.saveAll(expenses);
+                entityManager.flush();
+                entityManager.clear();
+            });
+        }
+
+        // The repositories bypass the service-level rollup bookkeeping, so rebuild it once at the end
+        expenseRollupService.rebuild();
+        log.info("Seeded {} users, {} categories and {} expenses in {} ms", userIds.size(), categoryIds.size(),
+                settings.expenses(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return new Dataset(userIds, categoryIds);
+    }
+
+    // Half of all expenses fall in the most recent eighth of the history
+    private static long recentBiasedOffset(SplittableRandom random, long historyMillis) {
+        double fraction = Math.pow(random.nextDouble(), 3);
+        return (long) (fraction * historyMillis);
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Box-Muller; SplittableRandom has no nextGaussian on Java 17
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    // Samples ranks 0..n-1 with probability proportional to 1 / (rank + 1)^skew
+    static final class ZipfSampler {
+
+        private final double[] cumulative;
+
+        ZipfSampler(int n, double skew) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1 / Math.pow(i + 1, skew);
+                cumulative[i] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cumulative[i] /= sum;
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+
+    }
+
+}
@@ -2,8 +2,17 @@ package com.skipper.expensetracker;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.core.Ordered;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+// Cache hits return before a transaction (and its connection) is opened
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+@EnableScheduling
+// R2DBC is used only by the reactive read API, which builds its own pool; an auto-configured
+// ConnectionFactory bean would make Spring Boot skip the JDBC DataSource that JPA runs on
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 public class ExpenseTrackerApplication {
 
 	public static void main(String[] args) {
@@ -5,6 +5,8 @@ import com.skipper.expensetracker.services.CategoryService;
 import lombok.RequiredArgsConstructor;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -37,23 +39,29 @@ public class CategoryController {
         }
     }
 
-    // Endpoint to retrieve all categories
+    // Endpoint to retrieve all categories; the list is cached, so a matching If-None-Match is answered 304
+    // without touching the database or serializing anything
     @GetMapping
-    public ResponseEntity<List<Category>> getAllCategories() {
+    public ResponseEntity<List<Category>> getAllCategories(@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             List<Category> categories = categoryService.getAllCategories();
             if (categories == null) {
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
             }
-            return ResponseEntity.ok(categories);
+            String etag = ETags.ofCategories(categories);
+            if (ETags.matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(categories);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
-    // Endpoint to retrieve a category by ID
+    // Endpoint to retrieve a category by ID, answering 304 while its version matches If-None-Match
     @GetMapping("/{categoryId}")
-    public ResponseEntity<Category> getCategoryById(@PathVariable Long categoryId) {
+    public ResponseEntity<Category> getCategoryById(@PathVariable Long categoryId,
+                                                    @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         if (categoryId == null) {
             return ResponseEntity.badRequest().build();
         }
@@ -63,25 +71,42 @@ public class CategoryController {
             if (category == null) {
                 return ResponseEntity.notFound().build();
             }
-            return ResponseEntity.ok(category);
+            if (category.getVersion() == null) {
+                return ResponseEntity.ok(category);
+            }
+            String etag = ETags.of(category.getVersion());
+            if (ETags.matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(category);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
-    // Endpoint to update an existing category
+    // Endpoint to update an existing category; with If-Match the update only applies to that version
     @PutMapping("/{categoryId}")
-    public ResponseEntity<Category> updateCategory(@PathVariable Long categoryId, @RequestBody Category updatedCategory) {
+    public ResponseEntity<Category> updateCategory(@PathVariable Long categoryId, @RequestBody Category updatedCategory,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         if (categoryId == null || updatedCategory == null) {
             return ResponseEntity.badRequest().build();
         }
 
         try {
-            Category category = categoryService.updateCategory(categoryId, updatedCategory);
+            Long expectedVersion = ETags.ifMatchVersion(ifMatch);
+            Category category = expectedVersion == null
+                    ? categoryService.updateCategory(categoryId, updatedCategory)
+                    : categoryService.updateCategory(categoryId, updatedCategory, expectedVersion);
             if (category == null) {
                 return ResponseEntity.notFound().build();
             }
-            return ResponseEntity.ok(category);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (category.getVersion() != null) {
+                response.eTag(ETags.of(category.getVersion()));
+            }
+            return response.body(category);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(ifMatch == null ? HttpStatus.CONFLICT : HttpStatus.PRECONDITION_FAILED).build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -0,0 +1,66 @@
+package com.skipper.expensetracker.controllers;
+
+import com.skipper.expensetracker.entities.Category;
+
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Strong entity tags for versioned resources, If-None-Match matching and If-Match parsing
+final class ETags {
+
+    // Version no entity has, standing in for an If-Match tag that cannot match
+    static final long UNMATCHED_VERSION = -1;
+
+    private ETags() {
+    }
+
+    static String of(Object version) {
+        return "\"" + version + "\"";
+    }
+
+    // Tag of a category list, derived from the ID and version of every category in it
+    static String ofCategories(List<Category> categories) {
+        StringBuilder versions = new StringBuilder(categories.size() * 8);
+        for (Category category : categories) {
+            versions.append(category.getCategoryId()).append(':').append(category.getVersion()).append(',');
+        }
+        return of(DigestUtils.md5DigestAsHex(versions.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Whether an If-None-Match header value lists the tag; weak comparison, as RFC 9110 requires for this header
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Entity version an If-Match header requires: null when the header is absent or "*", and UNMATCHED_VERSION for a
+    // weak, malformed or listed tag, since If-Match uses strong comparison and an update applies to one version only
+    static Long ifMatchVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            return UNMATCHED_VERSION;
+        }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return UNMATCHED_VERSION;
+        }
+    }
+
+}
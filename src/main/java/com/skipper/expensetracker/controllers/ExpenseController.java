@@ -1,16 +1,42 @@
 package com.skipper.expensetracker.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skipper.expensetracker.dto.BatchItemResult;
+import com.skipper.expensetracker.dto.DailySpendSeries;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.dto.SummaryGroup;
+import com.skipper.expensetracker.dto.UserExpenseSnapshot;
+import com.skipper.expensetracker.dto.WriteBehindReceipt;
 import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.ExpenseFileFormat;
+import com.skipper.expensetracker.services.ExpenseExportService;
 import com.skipper.expensetracker.services.ExpenseService;
+import com.skipper.expensetracker.services.ExpenseWriteBehindService;
 import lombok.RequiredArgsConstructor;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeParseException;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 
 @RestController
@@ -18,9 +44,31 @@ import java.util.List;
 @RequestMapping("/api/expenses")
 public class ExpenseController {
 
+    // Response header carrying the keyset cursor for the next page of expenses
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // Request header naming a write so that retries of it are applied once
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private static final String RESPOND_ASYNC = "respond-async";
+
+    private static final MediaType CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
     @Autowired
     private ExpenseService expenseService;    
 
+    @Autowired
+    private ExpenseExportService expenseExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Present only when expenses.write-behind.enabled is set
+    @Autowired(required = false)
+    private ExpenseWriteBehindService expenseWriteBehindService;
+
     // Endpoint to create a new expense
     @PostMapping
     public ResponseEntity<Expense> createExpense(@RequestBody Expense expense) {
@@ -35,47 +83,243 @@ public class ExpenseController {
         }
     }
 
-    // Endpoint to retrieve all expenses
+    // Endpoint to accept a new expense into the write-behind log when the client sends "Prefer: respond-async",
+    // answering 202 before the database insert; without write-behind the preference is ignored
+    @PostMapping(headers = "Prefer=" + RESPOND_ASYNC)
+    public ResponseEntity<?> createExpenseAsync(@RequestBody Expense expense,
+                                                @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        if (expenseWriteBehindService == null) {
+            return createExpense(expense);
+        }
+        if (expense == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            WriteBehindReceipt receipt = expenseWriteBehindService.enqueueExpense(idempotencyKey, expense);
+            return ResponseEntity.accepted().header("Preference-Applied", RESPOND_ASYNC).body(receipt);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            // The write-ahead log is full until the database catches up
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+    }
+
+    // Endpoint to create many expenses at once, reporting the outcome of each item
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchItemResult>> createExpenses(@RequestBody List<Expense> expenses) {
+        if (expenses == null || expenses.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            List<BatchItemResult> results = expenseService.addExpenses(expenses);
+            boolean allCreated = results.stream().allMatch(BatchItemResult::created);
+            return ResponseEntity.status(allCreated ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS).body(results);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Endpoint to retrieve expenses one keyset page at a time, ordered by expense ID
     @GetMapping
-    public ResponseEntity<List<Expense>> getAllExpenses() {
+    public ResponseEntity<List<Expense>> getAllExpenses(@RequestParam(required = false) Long afterId,
+                                                        @RequestParam(required = false) Integer size) {
         try {
-            List<Expense> expenses = expenseService.getAllExpenses();
+            List<Expense> expenses = expenseService.getExpensePage(afterId, size);
             if (expenses.isEmpty()) {
                 return ResponseEntity.noContent().build();
             }
-            return ResponseEntity.ok().body(expenses);
+            Long nextCursor = expenses.get(expenses.size() - 1).getExpenseId();
+            return ResponseEntity.ok().header(NEXT_CURSOR_HEADER, String.valueOf(nextCursor)).body(expenses);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.notFound().build();
         }
     }
 
-    // Endpoint to retrieve expenses for a user
+    // Endpoint to stream all expenses as a single JSON array, written row by row from a database cursor
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllExpenses() {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                expenseService.streamAllExpenses(expense -> {
+                    try {
+                        generator.writeObject(expense);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // Endpoint to export expenses as CSV or NDJSON, optionally for one user and date range, gzip-compressed on request
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportExpenses(@RequestParam(defaultValue = "csv") String format,
+                                                                @RequestParam(required = false) Long userId,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to,
+                                                                @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ExpenseFileFormat fileFormat;
+        try {
+            fileFormat = ExpenseFileFormat.valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (from != null && to != null && from.after(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        // The end date is inclusive, so extend it to the last instant of that day
+        Date endOfDay = to == null ? null : new Date(to.getTime() + TimeUnit.DAYS.toMillis(1) - 1);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+        StreamingResponseBody body = outputStream -> {
+            if (gzip) {
+                GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream, EXPORT_BUFFER_SIZE);
+                expenseExportService.exportExpenses(fileFormat, userId, from, endOfDay, gzipStream);
+                gzipStream.finish();
+            } else {
+                expenseExportService.exportExpenses(fileFormat, userId, from, endOfDay, outputStream);
+            }
+        };
+
+        String extension = fileFormat.name().toLowerCase(Locale.ROOT);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(fileFormat == ExpenseFileFormat.CSV ? CSV : NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"expenses." + extension + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    // Endpoint to retrieve expense totals grouped by user, category, day, month or year, optionally for one user
+    // and one category
+    @GetMapping("/summary")
+    public ResponseEntity<List<?>> getExpenseSummary(@RequestParam(defaultValue = "category") String groupBy,
+                                                     @RequestParam(required = false) Long userId,
+                                                     @RequestParam(required = false) Long categoryId,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to) {
+        try {
+            SummaryGroup group = SummaryGroup.valueOf(groupBy.trim().toUpperCase(Locale.ROOT));
+            // The end date is inclusive, so extend it to the last instant of that day
+            Date endOfDay = to == null ? null : new Date(to.getTime() + TimeUnit.DAYS.toMillis(1) - 1);
+            return ResponseEntity.ok(expenseService.getExpenseSummary(group, userId, categoryId, from, endOfDay));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Endpoint to retrieve a user's expenses within an optional date range; answers 304 while the user's expenses
+    // are unchanged since the tag the client sends in If-None-Match
+    @GetMapping("/users/{userId}")
+    public ResponseEntity<List<ExpenseView>> getExpensesByUserId(@PathVariable Long userId,
+                                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+                                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to,
+                                                                 @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (userId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            String etag = ETags.of(expenseService.getUserExpensesVersion(userId));
+            if (ETags.matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            // The end date is inclusive, so extend it to the last instant of that day
+            Date endOfDay = to == null ? null : new Date(to.getTime() + TimeUnit.DAYS.toMillis(1) - 1);
+            return ResponseEntity.ok().eTag(etag).body(expenseService.getExpensesByUserId(userId, from, endOfDay));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Endpoint to retrieve a user's current-month expenses and running totals, with the same conditional handling
+    @GetMapping("/users/{userId}/current")
+    public ResponseEntity<UserExpenseSnapshot> getCurrentExpensesByUserId(@PathVariable Long userId,
+                                                                          @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (userId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            // The snapshot changes with the month too, so the month is part of the tag
+            String version = expenseService.getUserExpensesVersion(userId);
+            String etag = ETags.of(version + "-" + YearMonth.now());
+            if (ETags.matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(expenseService.getCurrentExpensesByUserId(userId, version));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Endpoint to retrieve a user's spend on each day of an inclusive date range, for spending charts
+    @GetMapping("/users/{userId}/daily")
+    public ResponseEntity<DailySpendSeries> getDailySpendByUserId(@PathVariable Long userId,
+                                                                  @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                  @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(expenseService.getDailySpend(userId, from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Endpoint to retrieve an expense by ID; a matching If-None-Match is answered 304 from the version alone,
+    // without loading the expense
     @GetMapping("/{expenseId}")
-    public ResponseEntity<Expense> getExpensesByExpenseId(@PathVariable Long expenseId) {
+    public ResponseEntity<Expense> getExpensesByExpenseId(@PathVariable Long expenseId,
+                                                          @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         if (expenseId == null) {
             return ResponseEntity.badRequest().build();
         }
 
         try {
+            if (ifNoneMatch != null) {
+                Long version = expenseService.getExpenseVersion(expenseId);
+                if (version != null && ETags.matches(ifNoneMatch, ETags.of(version))) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(ETags.of(version)).build();
+                }
+            }
             Expense expense = expenseService.getExpensesByExpenseId(expenseId);
-            return ResponseEntity.ok(expense);
+            if (expense == null || expense.getVersion() == null) {
+                return ResponseEntity.ok(expense);
+            }
+            return ResponseEntity.ok().eTag(ETags.of(expense.getVersion())).body(expense);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.notFound().build();
         }
     }
 
-    // Endpoint to update an existing expense
+    // Endpoint to update an existing expense; with If-Match the update only applies to that version
     @PutMapping("/{expenseId}")
-    public ResponseEntity<Expense> updateExpense(@PathVariable Long expenseId, @RequestBody Expense updatedExpense) {
+    public ResponseEntity<Expense> updateExpense(@PathVariable Long expenseId, @RequestBody Expense updatedExpense,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         if (expenseId == null || updatedExpense == null) {
             return ResponseEntity.badRequest().build();
         }
 
         try {
-            Expense updated = expenseService.editExpense(expenseId, updatedExpense);
-            return ResponseEntity.ok().body(updated);
+            Long expectedVersion = ETags.ifMatchVersion(ifMatch);
+            Expense updated = expectedVersion == null
+                    ? expenseService.editExpense(expenseId, updatedExpense)
+                    : expenseService.editExpense(expenseId, updatedExpense, expectedVersion);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (updated != null && updated.getVersion() != null) {
+                response.eTag(ETags.of(updated.getVersion()));
+            }
+            return response.body(updated);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
+        } catch (OptimisticLockingFailureException e) {
+            // A stale If-Match fails its precondition; without one, the edit lost a race with another update
+            return ResponseEntity.status(ifMatch == null ? HttpStatus.CONFLICT : HttpStatus.PRECONDITION_FAILED).build();
         }
     }
 
@@ -93,4 +337,19 @@ public class ExpenseController {
             return ResponseEntity.notFound().build();
         }
     }
+
+    // Endpoint to delete many expenses at once, e.g. DELETE /api/expenses?ids=1,2,3
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<Map<String, Integer>> deleteExpenses(@RequestParam List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            int deleted = expenseService.deleteExpenses(ids);
+            return ResponseEntity.ok(Map.of("deleted", deleted));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
@@ -0,0 +1,67 @@
+package com.skipper.expensetracker.controllers;
+
+import com.skipper.expensetracker.entities.ExpenseFileFormat;
+import com.skipper.expensetracker.entities.ExpenseImport;
+import com.skipper.expensetracker.entities.ExpenseImportError;
+import com.skipper.expensetracker.entities.ImportStatus;
+import com.skipper.expensetracker.services.ExpenseImportService;
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/expenses/import")
+public class ExpenseImportController {
+
+    @Autowired
+    private ExpenseImportService expenseImportService;
+
+    // Endpoint to stream a CSV or NDJSON file of expenses into the database; pass the same importId to resume
+    @PostMapping
+    public ResponseEntity<ExpenseImport> importExpenses(@RequestParam String format,
+                                                        @RequestParam(required = false) String importId,
+                                                        InputStream inputStream) {
+        try {
+            ExpenseFileFormat fileFormat = ExpenseFileFormat.valueOf(format.trim().toUpperCase(Locale.ROOT));
+            ExpenseImport expenseImport = expenseImportService.importExpenses(importId, fileFormat, inputStream);
+            if (expenseImport.getStatus() == ImportStatus.FAILED) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(expenseImport);
+            }
+            return ResponseEntity.ok(expenseImport);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    // Endpoint to retrieve the progress of an import
+    @GetMapping("/{importId}")
+    public ResponseEntity<ExpenseImport> getImport(@PathVariable String importId) {
+        ExpenseImport expenseImport = expenseImportService.getImport(importId);
+        if (expenseImport == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(expenseImport);
+    }
+
+    // Endpoint to retrieve the rejected lines of an import
+    @GetMapping("/{importId}/errors")
+    public ResponseEntity<List<ExpenseImportError>> getImportErrors(@PathVariable String importId) {
+        if (expenseImportService.getImport(importId) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(expenseImportService.getImportErrors(importId));
+    }
+}
@@ -0,0 +1,204 @@
+package com.skipper.expensetracker.controllers;
+
+import com.skipper.expensetracker.dto.IdempotentResponse;
+import com.skipper.expensetracker.services.ExpenseWriteBehindService;
+import com.skipper.expensetracker.services.IdempotencyStore;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Answers a retried POST or PUT on /api/expenses that repeats an Idempotency-Key with the response recorded for the
+// first attempt, without reaching the controller. Server errors are not recorded, so such a request can be retried.
+// Reusing a key for a different request body is refused with 422, and a retry arriving while the first attempt is
+// still running gets 409. Requests without an Idempotency-Key, batches included, are passed on untouched, so only
+// keyed requests have their body buffered.
+@Component
+@RequiredArgsConstructor
+public class IdempotencyKeyFilter extends OncePerRequestFilter {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final String PATH_PREFIX = "/api/expenses";
+    // Imports are resumable through their own import ID and may be far too large to buffer
+    private static final String IMPORT_PATH_PREFIX = "/api/expenses/import";
+    private static final Set<String> METHODS = Set.of("POST", "PUT");
+
+    // Headers the container sets for every response, which are not part of the recorded response
+    private static final Set<String> SKIPPED_HEADERS = Set.of(HttpHeaders.CONTENT_LENGTH.toLowerCase(),
+            HttpHeaders.TRANSFER_ENCODING.toLowerCase(), HttpHeaders.DATE.toLowerCase(), HttpHeaders.CONNECTION.toLowerCase());
+
+    private final IdempotencyStore idempotencyStore;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !METHODS.contains(request.getMethod())
+                || request.getHeader(ExpenseController.IDEMPOTENCY_KEY_HEADER) == null
+                || !(path.equals(PATH_PREFIX) || path.startsWith(PATH_PREFIX + "/"))
+                || path.startsWith(IMPORT_PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String key = request.getHeader(ExpenseController.IDEMPOTENCY_KEY_HEADER);
+        if (key.isBlank() || key.length() > ExpenseWriteBehindService.MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid " + ExpenseController.IDEMPOTENCY_KEY_HEADER);
+            return;
+        }
+
+        byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+        String query = request.getQueryString();
+        String scope = request.getMethod() + " " + request.getRequestURI() + (query == null ? "" : "?" + query) + " " + key;
+        IdempotencyStore.Claim claim = idempotencyStore.claim(scope, IdempotencyStore.hash(body));
+        switch (claim.outcome()) {
+            case REPLAY -> {
+                replay(claim.response(), response);
+                return;
+            }
+            case IN_PROGRESS -> {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                response.sendError(HttpStatus.CONFLICT.value(), "A request with this idempotency key is in progress");
+                return;
+            }
+            case MISMATCH -> {
+                response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(), "Idempotency key was used for a different request");
+                return;
+            }
+            case NEW -> {
+                // Handled below
+            }
+        }
+
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        boolean recorded = false;
+        try {
+            filterChain.doFilter(new CachedBodyRequest(request, body), cachingResponse);
+            if (cachingResponse.getStatus() < HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+                idempotencyStore.complete(scope, new IdempotentResponse(IdempotencyStore.hash(body), cachingResponse.getStatus(),
+                        recordedHeaders(cachingResponse), cachingResponse.getContentAsByteArray()));
+                recorded = true;
+            }
+        } finally {
+            if (!recorded) {
+                idempotencyStore.release(scope);
+            }
+            cachingResponse.copyBodyToResponse();
+        }
+    }
+
+    private static Map<String, String> recordedHeaders(ContentCachingResponseWrapper response) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : response.getHeaderNames()) {
+            if (!SKIPPED_HEADERS.contains(name.toLowerCase())) {
+                headers.put(name, response.getHeader(name));
+            }
+        }
+        if (response.getContentType() != null) {
+            headers.put(HttpHeaders.CONTENT_TYPE, response.getContentType());
+        }
+        return headers;
+    }
+
+    private static void replay(IdempotentResponse recorded, HttpServletResponse response) throws IOException {
+        response.setStatus(recorded.status());
+        recorded.headers().forEach(response::setHeader);
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (recorded.body() != null && recorded.body().length > 0) {
+            response.setContentLength(recorded.body().length);
+            response.getOutputStream().write(recorded.body());
+        }
+    }
+
+    // Request whose body was read up front to fingerprint it, replaying those bytes to the controller
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The whole body is already in memory, so it is available to read straight away
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            readListener.onAllDataRead();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.skipper.expensetracker.controllers;
+
+import com.skipper.expensetracker.repositories.StatementCounter;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Records how many SQL statements each request ran as expenses.http.server.queries, tagged like
+// http.server.requests with the method, URI template and status, and warns about requests running more than
+// expenses.jpa.request-statement-warn-threshold statements, which usually means an N+1 query pattern.
+@Slf4j
+@Component
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    private final StatementCounter statementCounter;
+    private final MeterRegistry meterRegistry;
+    private final int warnThreshold;
+
+    public QueryCountFilter(StatementCounter statementCounter, MeterRegistry meterRegistry,
+                            @Value("${expenses.jpa.request-statement-warn-threshold:50}") int warnThreshold) {
+        this.statementCounter = statementCounter;
+        this.meterRegistry = meterRegistry;
+        this.warnThreshold = warnThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        statementCounter.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            int statements = statementCounter.stop();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+            DistributionSummary.builder("expenses.http.server.queries")
+                    .description("SQL statements run by one request")
+                    .baseUnit("statements")
+                    .tags("method", request.getMethod(), "uri", uri, "status", Integer.toString(response.getStatus()))
+                    .register(meterRegistry)
+                    .record(statements);
+            if (statements > warnThreshold) {
+                log.warn("{} {} ran {} SQL statements", request.getMethod(), uri, statements);
+            }
+        }
+    }
+
+}
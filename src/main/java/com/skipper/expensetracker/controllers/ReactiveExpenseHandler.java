@@ -0,0 +1,129 @@
+package com.skipper.expensetracker.controllers;
+
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.dto.SummaryGroup;
+import com.skipper.expensetracker.services.ReactiveExpenseService;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.Locale;
+
+// Non-blocking counterpart of the ExpenseController read endpoints, served by ReactiveExpenseServer.
+// Lists are streamed as they are read: a JSON array by default, or one object per line for
+// Accept: application/x-ndjson, with the client's read rate propagated back to the database.
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "expenses.reactive.enabled", havingValue = "true")
+public class ReactiveExpenseHandler {
+
+    private final ReactiveExpenseService reactiveExpenseService;
+
+    public RouterFunction<ServerResponse> routes() {
+        return RouterFunctions.route()
+                .GET("/api/expenses/summary", this::getExpenseSummary)
+                .GET("/api/expenses/users/{userId}", this::getExpensesByUserId)
+                .GET("/api/expenses/{expenseId}", this::getExpenseById)
+                .GET("/api/expenses", this::getExpenses)
+                .build();
+    }
+
+    // Endpoint to retrieve an expense by ID
+    public Mono<ServerResponse> getExpenseById(ServerRequest request) {
+        Long expenseId;
+        try {
+            expenseId = Long.valueOf(request.pathVariable("expenseId"));
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().build();
+        }
+        return reactiveExpenseService.getExpense(expenseId)
+                .flatMap(expense -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(expense))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    // Endpoint to stream expenses within an optional date range, optionally for one user
+    public Mono<ServerResponse> getExpenses(ServerRequest request) {
+        try {
+            Long userId = request.queryParam("userId").map(Long::valueOf).orElse(null);
+            Date from = from(request);
+            Date to = to(request);
+            validateRange(from, to);
+            return stream(request, reactiveExpenseService.getExpenses(userId, from, to), ExpenseView.class);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ServerResponse.badRequest().build();
+        }
+    }
+
+    // Endpoint to stream a user's expenses within an optional date range
+    public Mono<ServerResponse> getExpensesByUserId(ServerRequest request) {
+        try {
+            Long userId = Long.valueOf(request.pathVariable("userId"));
+            Date from = from(request);
+            Date to = to(request);
+            validateRange(from, to);
+            return stream(request, reactiveExpenseService.getExpenses(userId, from, to), ExpenseView.class);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ServerResponse.badRequest().build();
+        }
+    }
+
+    // Endpoint to stream expense totals grouped by user, category, day, month or year, optionally for one user and
+    // one category
+    public Mono<ServerResponse> getExpenseSummary(ServerRequest request) {
+        try {
+            SummaryGroup group = SummaryGroup.valueOf(request.queryParam("groupBy").orElse("category")
+                    .trim().toUpperCase(Locale.ROOT));
+            Long userId = request.queryParam("userId").map(Long::valueOf).orElse(null);
+            Long categoryId = request.queryParam("categoryId").map(Long::valueOf).orElse(null);
+            Date from = from(request);
+            Date to = to(request);
+            validateRange(from, to);
+            Flux<Object> totals = reactiveExpenseService.getExpenseSummary(group, userId, categoryId, from, to)
+                    .cast(Object.class);
+            return stream(request, totals, Object.class);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ServerResponse.badRequest().build();
+        }
+    }
+
+    private static <T> Mono<ServerResponse> stream(ServerRequest request, Flux<T> body, Class<T> type) {
+        boolean ndjson = request.headers().accept().stream()
+                .anyMatch(mediaType -> !mediaType.isWildcardType() && mediaType.isCompatibleWith(MediaType.APPLICATION_NDJSON));
+        return ServerResponse.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(body, type);
+    }
+
+    private static void validateRange(Date from, Date to) {
+        if (from != null && to != null && from.after(to)) {
+            throw new IllegalArgumentException("Start date must not be after end date");
+        }
+    }
+
+    private static Date from(ServerRequest request) {
+        return request.queryParam("from")
+                .map(value -> Date.from(LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault()).toInstant()))
+                .orElse(null);
+    }
+
+    // The end date is inclusive, so extend it to the last instant of that day
+    private static Date to(ServerRequest request) {
+        return request.queryParam("to")
+                .map(value -> new Date(Date.from(LocalDate.parse(value).plusDays(1).atStartOfDay(ZoneId.systemDefault())
+                        .toInstant()).getTime() - 1))
+                .orElse(null);
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.skipper.expensetracker.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+// Runs the reactive expense read API on its own Reactor Netty port next to the servlet stack, so a
+// handful of event-loop threads serve slow or long-lived clients without holding a Tomcat thread each
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "expenses.reactive.enabled", havingValue = "true")
+public class ReactiveExpenseServer implements SmartLifecycle {
+
+    private final ReactiveExpenseHandler reactiveExpenseHandler;
+    private final ObjectMapper objectMapper;
+    private final int port;
+    private final int eventLoopThreads;
+
+    private LoopResources loopResources;
+    private volatile DisposableServer server;
+
+    public ReactiveExpenseServer(ReactiveExpenseHandler reactiveExpenseHandler, ObjectMapper objectMapper,
+                                 @Value("${expenses.reactive.port:8081}") int port,
+                                 @Value("${expenses.reactive.event-loop-threads:4}") int eventLoopThreads) {
+        this.reactiveExpenseHandler = reactiveExpenseHandler;
+        this.objectMapper = objectMapper;
+        this.port = port;
+        this.eventLoopThreads = eventLoopThreads;
+    }
+
+    @Override
+    public void start() {
+        // Encode with the application's ObjectMapper so both stacks produce the same JSON
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> codecs.defaultCodecs().jackson2JsonEncoder(
+                        new Jackson2JsonEncoder(objectMapper, MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON)))
+                .build();
+        ReactorHttpHandlerAdapter adapter = new ReactorHttpHandlerAdapter(
+                RouterFunctions.toHttpHandler(reactiveExpenseHandler.routes(), strategies));
+
+        loopResources = LoopResources.create("reactive-expenses", eventLoopThreads, true);
+        server = HttpServer.create()
+                .port(port)
+                .runOn(loopResources)
+                .handle(adapter)
+                .bindNow();
+        log.info("Reactive expense API started on port {} with {} event-loop threads", server.port(), eventLoopThreads);
+    }
+
+    @Override
+    public void stop() {
+        if (server != null) {
+            server.disposeNow();
+            server = null;
+        }
+        if (loopResources != null) {
+            loopResources.disposeLater().block();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    public int getPort() {
+        return server == null ? -1 : server.port();
+    }
+
+}
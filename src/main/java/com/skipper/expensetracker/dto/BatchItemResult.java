@@ -0,0 +1,13 @@
+package com.skipper.expensetracker.dto;
+
+// Outcome of one item of a bulk expense request, identified by its position in the request
+public record BatchItemResult(int index, Long expenseId, boolean created, String error) {
+
+    public static BatchItemResult created(int index, Long expenseId) {
+        return new BatchItemResult(index, expenseId, true, null);
+    }
+
+    public static BatchItemResult failed(int index, String error) {
+        return new BatchItemResult(index, null, false, error);
+    }
+}
@@ -0,0 +1,15 @@
+package com.skipper.expensetracker.dto;
+
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.MoneyJson;
+
+import java.math.BigDecimal;
+
+// Total spend in a single category, aggregated in the database, in minor units
+public record CategoryExpenseTotal(Long categoryId, String categoryName, @MoneyJson.MinorUnits Long total, Long count) {
+
+    // Total in currency units, as summed by the queries
+    public CategoryExpenseTotal(Long categoryId, String categoryName, BigDecimal total, Long count) {
+        this(categoryId, categoryName, Money.toMinorUnitsOrNull(total), count);
+    }
+}
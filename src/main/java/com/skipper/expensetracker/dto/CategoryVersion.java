@@ -0,0 +1,5 @@
+package com.skipper.expensetracker.dto;
+
+// ID and version of a category, read without loading the entity
+public record CategoryVersion(Long categoryId, Long version) {
+}
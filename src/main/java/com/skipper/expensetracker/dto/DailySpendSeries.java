@@ -0,0 +1,24 @@
+package com.skipper.expensetracker.dto;
+
+import com.skipper.expensetracker.entities.MoneyJson;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// A user's spend on every day of an inclusive range, days without expenses included, in minor units
+public record DailySpendSeries(Long userId, LocalDate from, LocalDate to, @MoneyJson.MinorUnits long total,
+                               List<Day> days) {
+
+    public record Day(LocalDate date, @MoneyJson.MinorUnits long total) {
+    }
+
+    // Series starting on the given day, with one amount per day
+    public static DailySpendSeries of(Long userId, LocalDate from, long total, long[] daily) {
+        List<Day> days = new ArrayList<>(daily.length);
+        for (int i = 0; i < daily.length; i++) {
+            days.add(new Day(from.plusDays(i), daily[i]));
+        }
+        return new DailySpendSeries(userId, from, from.plusDays(daily.length - 1L), total, List.copyOf(days));
+    }
+}
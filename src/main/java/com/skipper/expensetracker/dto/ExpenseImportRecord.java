@@ -0,0 +1,8 @@
+package com.skipper.expensetracker.dto;
+
+import java.math.BigDecimal;
+
+// One expense line of an import file, before it is resolved into an Expense; the currency may be left out
+public record ExpenseImportRecord(Long userId, Long categoryId, BigDecimal amount, String currency, String description,
+                                  String date) {
+}
@@ -0,0 +1,10 @@
+package com.skipper.expensetracker.dto;
+
+import com.skipper.expensetracker.entities.MoneyJson;
+
+import java.util.Date;
+
+// Flat, unmanaged view of one expense, used by read endpoints and the streaming export; the amount is in minor units
+public record ExpenseView(Long expenseId, Long userId, Long categoryId, String categoryName,
+                          @MoneyJson.MinorUnits Long amount, String currency, String description, Date date) {
+}
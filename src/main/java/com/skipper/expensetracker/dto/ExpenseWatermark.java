@@ -0,0 +1,6 @@
+package com.skipper.expensetracker.dto;
+
+// Cheap fingerprint of the expense table: any insert raises the maximum ID, any delete lowers the count and any
+// versioned update raises the version sum, so two equal watermarks mean no change went through JPA in between
+public record ExpenseWatermark(Long count, Long maxExpenseId, Long versionSum) {
+}
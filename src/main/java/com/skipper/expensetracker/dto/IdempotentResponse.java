@@ -0,0 +1,7 @@
+package com.skipper.expensetracker.dto;
+
+import java.util.Map;
+
+// Response recorded for an idempotent request, with the hash of the request body it answered
+public record IdempotentResponse(String requestHash, int status, Map<String, String> headers, byte[] body) {
+}
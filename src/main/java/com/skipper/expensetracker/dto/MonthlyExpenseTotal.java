@@ -0,0 +1,15 @@
+package com.skipper.expensetracker.dto;
+
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.MoneyJson;
+
+import java.math.BigDecimal;
+
+// Total spend of one user in one category during one calendar month, aggregated in the database, in minor units
+public record MonthlyExpenseTotal(Long userId, Long categoryId, Integer year, Integer month, @MoneyJson.MinorUnits Long total, Long count) {
+
+    // Total in currency units, as summed by the queries
+    public MonthlyExpenseTotal(Long userId, Long categoryId, Integer year, Integer month, BigDecimal total, Long count) {
+        this(userId, categoryId, year, month, Money.toMinorUnitsOrNull(total), count);
+    }
+}
@@ -0,0 +1,31 @@
+package com.skipper.expensetracker.dto;
+
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.MoneyJson;
+
+import java.math.BigDecimal;
+
+// Total spend in minor units in a single day, month or year; finer-grained fields are null for coarser periods
+public record PeriodExpenseTotal(Integer year, Integer month, Integer day, @MoneyJson.MinorUnits Long total, Long count) {
+
+    // Totals in currency units, as summed by the queries
+    public PeriodExpenseTotal(Integer year, Integer month, Integer day, BigDecimal total, Long count) {
+        this(year, month, day, Money.toMinorUnitsOrNull(total), count);
+    }
+
+    public PeriodExpenseTotal(Integer year, Integer month, BigDecimal total, Long count) {
+        this(year, month, null, Money.toMinorUnitsOrNull(total), count);
+    }
+
+    public PeriodExpenseTotal(Integer year, BigDecimal total, Long count) {
+        this(year, null, null, Money.toMinorUnitsOrNull(total), count);
+    }
+
+    public PeriodExpenseTotal(Integer year, Integer month, Long total, Long count) {
+        this(year, month, null, total, count);
+    }
+
+    public PeriodExpenseTotal(Integer year, Long total, Long count) {
+        this(year, null, null, total, count);
+    }
+}
@@ -0,0 +1,6 @@
+package com.skipper.expensetracker.dto;
+
+// Columns of an expense that a monthly statement adds up, read from the user/expense index without the table; the
+// amount is in minor units
+public record StatementExpense(Long expenseId, Long userId, Long categoryId, Long amount) {
+}
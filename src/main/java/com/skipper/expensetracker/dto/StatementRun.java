@@ -0,0 +1,11 @@
+package com.skipper.expensetracker.dto;
+
+import com.skipper.expensetracker.entities.MoneyJson;
+
+import java.util.List;
+
+// Outcome of generating one month's statements: the files written, how many users and expenses they cover and the
+// grand total in minor units
+public record StatementRun(int year, int month, String directory, List<String> files, long users, long expenses,
+                           @MoneyJson.MinorUnits long total, long elapsedMillis) {
+}
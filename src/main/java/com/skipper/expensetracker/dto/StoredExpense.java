@@ -0,0 +1,8 @@
+package com.skipper.expensetracker.dto;
+
+import java.util.Date;
+
+// Columns of a stored expense that an update or delete needs to adjust the rollups and the analytics store, read
+// without loading the entity; the amount is in minor units
+public record StoredExpense(Long expenseId, Long userId, Long categoryId, Long amount, String currency, Date date, Long version) {
+}
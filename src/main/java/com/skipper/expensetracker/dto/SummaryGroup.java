@@ -0,0 +1,10 @@
+package com.skipper.expensetracker.dto;
+
+// Dimension an expense summary is grouped by
+public enum SummaryGroup {
+    USER,
+    CATEGORY,
+    DAY,
+    MONTH,
+    YEAR
+}
@@ -0,0 +1,10 @@
+package com.skipper.expensetracker.dto;
+
+import com.skipper.expensetracker.entities.MoneyJson;
+
+import java.util.List;
+
+// A user's expenses for the current month together with the month and all-time running totals, in minor units
+public record UserExpenseSnapshot(Long userId, int year, int month, List<ExpenseView> expenses,
+                                  @MoneyJson.MinorUnits long monthTotal, @MoneyJson.MinorUnits long total) {
+}
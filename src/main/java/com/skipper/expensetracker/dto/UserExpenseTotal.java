@@ -0,0 +1,15 @@
+package com.skipper.expensetracker.dto;
+
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.MoneyJson;
+
+import java.math.BigDecimal;
+
+// Total spend of a single user, aggregated in the database, in minor units
+public record UserExpenseTotal(Long userId, String username, @MoneyJson.MinorUnits Long total, Long count) {
+
+    // Total in currency units, as summed by the queries
+    public UserExpenseTotal(Long userId, String username, BigDecimal total, Long count) {
+        this(userId, username, Money.toMinorUnitsOrNull(total), count);
+    }
+}
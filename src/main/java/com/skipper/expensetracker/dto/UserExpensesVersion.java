@@ -0,0 +1,12 @@
+package com.skipper.expensetracker.dto;
+
+// Version of a user's expense collection read from the database, so every instance computes the same one: the user's
+// expenses version, bumped by every write to their expenses, and the count, highest ID and version sum of the
+// categories, which change with any category added, renamed or deleted
+public record UserExpensesVersion(Long userId, Long expensesVersion, Long categoryCount, Long maxCategoryId,
+                                  Long categoryVersionSum) {
+
+    public String tag() {
+        return expensesVersion + "." + categoryCount + "." + maxCategoryId + "." + categoryVersionSum;
+    }
+}
@@ -0,0 +1,5 @@
+package com.skipper.expensetracker.dto;
+
+// Acknowledgement of an expense accepted into the write-behind log; resending the same key never creates a duplicate
+public record WriteBehindReceipt(String idempotencyKey, long sequence) {
+}
@@ -3,12 +3,16 @@ package com.skipper.expensetracker.entities;
 import jakarta.persistence.*;
 import lombok.*;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 @Builder
 @Getter
 @Setter
 @Entity
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Category {
     
     @Id
@@ -17,4 +21,13 @@ public class Category {
 
     private String categoryName;
 
+    // Bumped by every update; the ETag of the category resource
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    public Category(Long categoryId, String categoryName) {
+        this(categoryId, categoryName, null);
+    }
+
 }
@@ -5,7 +5,8 @@ import lombok.*;
 
 import java.util.Date;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
 
 @Builder
 @Getter
@@ -13,21 +14,40 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 @Entity
 @AllArgsConstructor
 @NoArgsConstructor
+@Table(indexes = {
+        @Index(name = "idx_expense_user_date", columnList = "user_user_id, date, category_category_id, amount"),
+        @Index(name = "idx_expense_user_category", columnList = "user_user_id, category_category_id"),
+        @Index(name = "idx_expense_date", columnList = "date, user_user_id, category_category_id, amount"),
+        @Index(name = "idx_expense_user_expense", columnList = "user_user_id, expense_id, date, category_category_id, amount")
+})
 public class Expense {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long expenseId;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Category category;
 
-    @ManyToOne
-    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private User user;
 
-    private Double amount;
+    // Written to JSON as the "amount" and "currency" properties of the expense
+    @Embedded
+    @JsonUnwrapped
+    private Money amount;
+
     private String description;
     private Date date;
 
+    // Bumped by every update; the ETag of the expense resource
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    public Expense(Long expenseId, Category category, User user, Money amount, String description, Date date) {
+        this(expenseId, category, user, amount, description, date, null);
+    }
+
 }
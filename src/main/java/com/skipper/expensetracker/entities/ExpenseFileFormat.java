@@ -0,0 +1,7 @@
+package com.skipper.expensetracker.entities;
+
+// File formats of the streaming expense import and export
+public enum ExpenseFileFormat {
+    CSV,
+    NDJSON
+}
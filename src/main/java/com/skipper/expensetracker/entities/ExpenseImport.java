@@ -0,0 +1,35 @@
+package com.skipper.expensetracker.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.Date;
+
+// Progress of a streaming expense import; lastCommittedLine is where a retried upload resumes
+@Builder
+@Getter
+@Setter
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExpenseImport {
+
+    @Id
+    private String importId;
+
+    @Enumerated(EnumType.STRING)
+    private ExpenseFileFormat format;
+
+    @Enumerated(EnumType.STRING)
+    private ImportStatus status;
+
+    private Long lastCommittedLine;
+    private Long importedRows;
+    private Long failedRows;
+    private Date startedAt;
+    private Date updatedAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+}
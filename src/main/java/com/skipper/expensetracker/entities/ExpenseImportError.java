@@ -0,0 +1,26 @@
+package com.skipper.expensetracker.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+// A rejected line of a streaming expense import
+@Builder
+@Getter
+@Setter
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(indexes = @Index(name = "idx_expense_import_error_import_line", columnList = "import_id, line_number"))
+public class ExpenseImportError {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long errorId;
+
+    private String importId;
+    private Long lineNumber;
+
+    @Column(length = 1000)
+    private String message;
+
+}
@@ -0,0 +1,25 @@
+package com.skipper.expensetracker.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+// Running expense total per user, category and calendar month, maintained incrementally on every write
+@Builder
+@Getter
+@Setter
+@Entity
+@Table(name = "expense_rollup")
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExpenseRollup {
+
+    @EmbeddedId
+    private ExpenseRollupId id;
+
+    // Minor units of the expenses' currency
+    @Convert(converter = MinorUnitsConverter.class)
+    @Column(precision = 19, scale = Money.SCALE)
+    private Long total;
+    private Long expenseCount;
+
+}
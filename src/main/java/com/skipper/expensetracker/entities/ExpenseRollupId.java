@@ -0,0 +1,26 @@
+package com.skipper.expensetracker.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.*;
+
+import java.io.Serializable;
+
+@Getter
+@Setter
+@Embeddable
+@EqualsAndHashCode
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExpenseRollupId implements Serializable {
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "category_id")
+    private Long categoryId;
+
+    private Integer expenseYear;
+    private Integer expenseMonth;
+
+}
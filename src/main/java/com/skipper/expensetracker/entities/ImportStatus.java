@@ -0,0 +1,8 @@
+package com.skipper.expensetracker.entities;
+
+// Lifecycle of a streaming expense import
+public enum ImportStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
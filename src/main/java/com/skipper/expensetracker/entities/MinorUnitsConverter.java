@@ -0,0 +1,22 @@
+package com.skipper.expensetracker.entities;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+
+// Maps a count of minor units to the DECIMAL(19,2) column holding the amount in currency units, without rounding
+@Converter
+public class MinorUnitsConverter implements AttributeConverter<Long, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Long minorUnits) {
+        return minorUnits == null ? null : Money.toDecimal(minorUnits);
+    }
+
+    @Override
+    public Long convertToEntityAttribute(BigDecimal amount) {
+        return Money.toMinorUnitsOrNull(amount);
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.skipper.expensetracker.entities;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Embeddable;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+// An exact amount of money: a count of hundredths of the currency unit and an ISO 4217 currency code. Stored as a
+// DECIMAL(19,2) amount column and a currency column, and written to JSON as "amount" and "currency" properties of
+// the embedding object, the amount as an exact decimal number.
+@Getter
+@Embeddable
+@EqualsAndHashCode
+@JsonPropertyOrder({"amount", "currency"})
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class Money {
+
+    // Decimal places of the amount column; minor units are 10^-SCALE of the currency unit
+    public static final int SCALE = 2;
+
+    // Largest magnitude accepted, in minor units: fits the DECIMAL(19,2) column, and SUM_BLOCK such values add up
+    // without overflowing a long
+    public static final long MAX_MINOR_UNITS = 99_999_999_999_999_999L;
+
+    public static final int SUM_BLOCK = 64;
+
+    @Convert(converter = MinorUnitsConverter.class)
+    @Column(name = "amount", precision = 19, scale = SCALE)
+    @JsonProperty("amount")
+    @MoneyJson.MinorUnits
+    private Long minorUnits;
+
+    @Column(name = "currency", length = 3)
+    private String currency;
+
+    private Money(long minorUnits, String currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    public static Money ofMinor(long minorUnits, String currency) {
+        if (Math.abs(minorUnits) > MAX_MINOR_UNITS) {
+            throw new IllegalArgumentException("Amount " + toDecimal(minorUnits).toPlainString() + " is out of range");
+        }
+        return new Money(minorUnits, checkCurrency(currency));
+    }
+
+    // Rejects amounts with more decimal places than SCALE rather than rounding them
+    public static Money of(BigDecimal amount, String currency) {
+        return ofMinor(toMinorUnits(amount), currency);
+    }
+
+    public static long toMinorUnits(BigDecimal amount) {
+        try {
+            return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " is not a whole number of hundredths");
+        }
+    }
+
+    // Minor units of a nullable amount in currency units, such as the SUM of an amount column
+    public static Long toMinorUnitsOrNull(BigDecimal amount) {
+        return amount == null ? null : toMinorUnits(amount);
+    }
+
+    public static BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public BigDecimal toDecimal() {
+        return toDecimal(minorUnits);
+    }
+
+    // Exact sum of the first length values, each at most MAX_MINOR_UNITS in magnitude. The inner loop is plain
+    // additions over a primitive array, which the JIT unrolls and vectorizes; overflow is only checked per block.
+    public static long sum(long[] minorUnits, int length) {
+        long total = 0;
+        for (int from = 0; from < length; from += SUM_BLOCK) {
+            int to = Math.min(from + SUM_BLOCK, length);
+            long block = 0;
+            for (int i = from; i < to; i++) {
+                block += minorUnits[i];
+            }
+            total = Math.addExact(total, block);
+        }
+        return total;
+    }
+
+    // Same amount in the given currency, used to fill in a currency the client left out
+    public Money withCurrency(String currency) {
+        return ofMinor(minorUnits, currency);
+    }
+
+    private static String checkCurrency(String currency) {
+        if (currency == null) {
+            return null;
+        }
+        Currency known;
+        try {
+            known = Currency.getInstance(currency);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown currency " + currency);
+        }
+        if (known.getDefaultFractionDigits() > SCALE) {
+            throw new IllegalArgumentException("Currency " + currency + " needs more than " + SCALE + " decimal places");
+        }
+        return currency;
+    }
+
+    @Override
+    public String toString() {
+        return toDecimal().toPlainString() + (currency == null ? "" : " " + currency);
+    }
+
+}
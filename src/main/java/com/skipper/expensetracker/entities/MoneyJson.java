@@ -0,0 +1,73 @@
+package com.skipper.expensetracker.entities;
+
+import com.fasterxml.jackson.annotation.JacksonAnnotationsInside;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.math.BigDecimal;
+
+// JSON codec for amounts held as minor units: written as an exact decimal number of currency units (12.50), read
+// from a number or numeric string without passing through double
+public final class MoneyJson {
+
+    private MoneyJson() {
+    }
+
+    // Marks a Long or long property holding minor units, to be written and read with this codec
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.FIELD, ElementType.METHOD, ElementType.PARAMETER})
+    @JacksonAnnotationsInside
+    @JsonSerialize(using = MinorUnitsSerializer.class)
+    @JsonDeserialize(using = MinorUnitsDeserializer.class)
+    public @interface MinorUnits {
+    }
+
+    public static class MinorUnitsSerializer extends JsonSerializer<Long> {
+
+        @Override
+        public void serialize(Long minorUnits, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(Money.toDecimal(minorUnits));
+        }
+    }
+
+    public static class MinorUnitsDeserializer extends JsonDeserializer<Long> {
+
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            BigDecimal amount;
+            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                String text = parser.getText().trim();
+                if (text.isEmpty()) {
+                    return null;
+                }
+                try {
+                    amount = new BigDecimal(text);
+                } catch (NumberFormatException e) {
+                    return (Long) context.handleWeirdStringValue(Long.class, text, "not a decimal amount");
+                }
+            } else if (parser.currentToken().isNumeric()) {
+                amount = parser.getDecimalValue();
+            } else {
+                return (Long) context.handleUnexpectedToken(Long.class, parser);
+            }
+            try {
+                return Money.toMinorUnits(amount);
+            } catch (IllegalArgumentException e) {
+                return (Long) context.handleWeirdNumberValue(Long.class, amount, e.getMessage());
+            }
+        }
+    }
+
+}
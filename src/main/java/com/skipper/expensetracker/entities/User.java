@@ -5,12 +5,17 @@ import lombok.*;
 
 import java.util.Set;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 @Builder
 @Getter
 @Setter
 @Entity
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class User {
 
     @Id
@@ -25,7 +30,18 @@ public class User {
     private String firstName;
     private String lastName;
 
+    // Bumped by every update
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    // Bumped by every write to the user's expenses (UserRepository.bumpExpensesVersions), never by the entity itself
+    @Column(insertable = false, updatable = false)
+    @JsonIgnore
+    private Long expensesVersion;
+
     @OneToMany(mappedBy = "user")
+    @JsonIgnore
     private Set<Expense> expenses;
 
 }
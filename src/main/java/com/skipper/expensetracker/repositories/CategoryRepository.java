@@ -1,11 +1,35 @@
 package com.skipper.expensetracker.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.skipper.expensetracker.dto.CategoryVersion;
 import com.skipper.expensetracker.entities.Category;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
 
+    // Custom JPQL query to find which of the given category IDs exist
+    @Query("SELECT c.categoryId FROM Category c WHERE c.categoryId IN :categoryIds")
+    Set<Long> findExistingCategoryIds(@Param("categoryIds") Collection<Long> categoryIds);
+
+    // ID and version of every category
+    @Query("SELECT new com.skipper.expensetracker.dto.CategoryVersion(c.categoryId, c.version) FROM Category c")
+    List<CategoryVersion> findVersions();
+
+    // Renames a category and bumps its version in one statement, only while it still has the expected version;
+    // returns the number of rows updated
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Category c SET c.categoryName = :categoryName, c.version = c.version + 1 "
+            + "WHERE c.categoryId = :categoryId AND c.version = :expectedVersion")
+    int updateCategoryName(@Param("categoryId") Long categoryId, @Param("categoryName") String categoryName,
+                           @Param("expectedVersion") Long expectedVersion);
+
 }
@@ -0,0 +1,13 @@
+package com.skipper.expensetracker.repositories;
+
+import com.skipper.expensetracker.entities.ExpenseImportError;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ExpenseImportErrorRepository extends JpaRepository<ExpenseImportError, Long> {
+    // Custom query method to find the rejected lines of an import in file order
+    List<ExpenseImportError> findByImportIdOrderByLineNumber(String importId);
+}
@@ -0,0 +1,10 @@
+package com.skipper.expensetracker.repositories;
+
+import com.skipper.expensetracker.entities.ExpenseImport;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ExpenseImportRepository extends JpaRepository<ExpenseImport, String> {
+
+}
@@ -0,0 +1,62 @@
+package com.skipper.expensetracker.repositories;
+
+import com.skipper.expensetracker.entities.Expense;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Plain JDBC access to the expense table for bulk writes that Hibernate cannot batch with IDENTITY keys
+@Repository
+@RequiredArgsConstructor
+public class ExpenseJdbcRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO expense (user_user_id, category_category_id, amount, currency, description, date) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Insert the expenses as JDBC batches of the given size and return their generated IDs in input order
+    public List<Long> batchInsert(List<Expense> expenses, int batchSize) {
+        List<Long> ids = new ArrayList<>(expenses.size());
+        for (int from = 0; from < expenses.size(); from += batchSize) {
+            List<Expense> chunk = expenses.subList(from, Math.min(from + batchSize, expenses.size()));
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(
+                    connection -> connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            Expense expense = chunk.get(i);
+                            ps.setLong(1, expense.getUser().getUserId());
+                            ps.setLong(2, expense.getCategory().getCategoryId());
+                            ps.setBigDecimal(3, expense.getAmount().toDecimal());
+                            ps.setString(4, expense.getAmount().getCurrency());
+                            ps.setString(5, expense.getDescription());
+                            ps.setTimestamp(6, new Timestamp(expense.getDate().getTime()));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return chunk.size();
+                        }
+                    },
+                    keyHolder);
+            for (Map<String, Object> keys : keyHolder.getKeyList()) {
+                ids.add(((Number) keys.values().iterator().next()).longValue());
+            }
+        }
+        return ids;
+    }
+
+}
@@ -1,33 +1,207 @@
 package com.skipper.expensetracker.repositories;
 
+import com.skipper.expensetracker.dto.CategoryExpenseTotal;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.dto.ExpenseWatermark;
+import com.skipper.expensetracker.dto.MonthlyExpenseTotal;
+import com.skipper.expensetracker.dto.PeriodExpenseTotal;
+import com.skipper.expensetracker.dto.StatementExpense;
+import com.skipper.expensetracker.dto.StoredExpense;
+import com.skipper.expensetracker.dto.UserExpenseTotal;
 import com.skipper.expensetracker.entities.Category;
 import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ExpenseRepository extends JpaRepository<Expense, Long> {
+    // Entity reads fetch the category in the same query; the user stays lazy since it is never serialized
+    @Override
+    @EntityGraph(attributePaths = "category")
+    List<Expense> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "category")
+    Optional<Expense> findById(Long expenseId);
+
+    // Version of one expense, read without loading the entity
+    @Query("SELECT e.version FROM Expense e WHERE e.expenseId = :expenseId")
+    Optional<Long> findVersionByExpenseId(@Param("expenseId") Long expenseId);
+
+    // Rollup columns and versions of the given expenses, read without loading the entities. The rows stay locked
+    // until the transaction ends, so the update or delete that follows applies to exactly these values.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT new com.skipper.expensetracker.dto.StoredExpense(e.expenseId, e.user.userId, e.category.categoryId, e.amount.minorUnits, e.amount.currency, e.date, e.version) "
+            + "FROM Expense e WHERE e.expenseId IN :expenseIds")
+    List<StoredExpense> findStoredForUpdate(@Param("expenseIds") Collection<Long> expenseIds);
+
+    // Single-statement edit of an expense that is still at the given version, bumping the version;
+    // returns the number of rows updated
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Expense e SET e.user = :user, e.category = :category, e.amount.minorUnits = :amount, "
+            + "e.amount.currency = :currency, e.description = :description, e.date = :date, e.version = e.version + 1 "
+            + "WHERE e.expenseId = :expenseId AND e.version = :version")
+    int updateExpense(@Param("expenseId") Long expenseId, @Param("version") Long version, @Param("user") User user,
+                      @Param("category") Category category, @Param("amount") Long amount,
+                      @Param("currency") String currency, @Param("description") String description,
+                      @Param("date") Date date);
+
+    // Single-statement delete of the given expenses; returns the number of rows deleted
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Expense e WHERE e.expenseId IN :expenseIds")
+    int deleteByExpenseIds(@Param("expenseIds") Collection<Long> expenseIds);
+
     // Custom query method to find expense records by user ID
+    @EntityGraph(attributePaths = "category")
     List<Expense> findByUserUserId(Long userId);
 
     // Custom query method to find expense records by category
+    @EntityGraph(attributePaths = "category")
     List<Expense> findByCategory(Category category);
 
     // Custom query method to find expense records by date range
+    @EntityGraph(attributePaths = "category")
     List<Expense> findByDateBetween(Date startDate, Date endDate);
 
     // Custom JPQL query to find expense records by user ID and category
+    @EntityGraph(attributePaths = "category")
     @Query("SELECT e FROM Expense e WHERE e.user.userId = :userId AND e.category = :category")
     List<Expense> findByUserIdAndCategory(@Param("userId") Long userId, @Param("category") Category category);
 
-    // Custom native SQL query to find total expenses by user ID
-    @Query(value = "SELECT SUM(amount) FROM expenses WHERE user_id = :userId", nativeQuery = true)
-    Double getTotalExpensesByUserId(@Param("userId") Long userId);
+    // Custom JPQL query to find total expenses by user ID. Sums over amounts cast the column back to its DECIMAL
+    // type: the minor-units converter is not applied to aggregates, so they are read as currency units.
+    @Query("SELECT SUM(CAST(e.amount.minorUnits AS BigDecimal(19, 2))) FROM Expense e WHERE e.user.userId = :userId")
+    BigDecimal getTotalExpensesByUserId(@Param("userId") Long userId);
 
+    @EntityGraph(attributePaths = "category")
     List<Expense> findByUserUserIdAndDateBetween(Long userId, Date startDate, Date endDate);
+
+    // Single-query read model of a user's expenses within a date range
+    @Query("SELECT new com.skipper.expensetracker.dto.ExpenseView(e.expenseId, e.user.userId, c.categoryId, c.categoryName, e.amount.minorUnits, e.amount.currency, e.description, e.date) "
+            + "FROM Expense e LEFT JOIN e.category c WHERE e.user.userId = :userId "
+            + "AND e.date BETWEEN :startDate AND :endDate ORDER BY e.date, e.expenseId")
+    List<ExpenseView> findViewsByUserIdAndDateBetween(@Param("userId") Long userId, @Param("startDate") Date startDate,
+                                                      @Param("endDate") Date endDate);
+
+    // Keyset pagination: the next page of expense records strictly after the given expense ID
+    @EntityGraph(attributePaths = "category")
+    List<Expense> findByExpenseIdGreaterThanOrderByExpenseIdAsc(Long expenseId, Limit limit);
+
+    // Forward-only, read-only cursor over all expense records, ordered by expense ID
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT e FROM Expense e LEFT JOIN FETCH e.category ORDER BY e.expenseId")
+    Stream<Expense> streamAllByOrderByExpenseId();
+
+    // Forward-only cursor over the findByDateBetween / findByUserUserIdAndDateBetween rows, as unmanaged projections
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.skipper.expensetracker.dto.ExpenseView(e.expenseId, e.user.userId, c.categoryId, c.categoryName, e.amount.minorUnits, e.amount.currency, e.description, e.date) "
+            + "FROM Expense e LEFT JOIN e.category c WHERE (:userId IS NULL OR e.user.userId = :userId) "
+            + "AND e.date BETWEEN :startDate AND :endDate ORDER BY e.expenseId")
+    Stream<ExpenseView> streamExportRows(@Param("userId") Long userId, @Param("startDate") Date startDate,
+                                              @Param("endDate") Date endDate);
+
+    // Forward-only cursor over the columns the in-memory analytics store keeps, as unmanaged projections
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.skipper.expensetracker.dto.StoredExpense(e.expenseId, e.user.userId, e.category.categoryId, e.amount.minorUnits, e.amount.currency, e.date, e.version) "
+            + "FROM Expense e ORDER BY e.expenseId")
+    Stream<StoredExpense> streamStoredExpenses();
+
+    // The same columns for one user's expenses
+    @Query("SELECT new com.skipper.expensetracker.dto.StoredExpense(e.expenseId, e.user.userId, e.category.categoryId, e.amount.minorUnits, e.amount.currency, e.date, e.version) "
+            + "FROM Expense e WHERE e.user.userId = :userId")
+    List<StoredExpense> findStoredByUserId(@Param("userId") Long userId);
+
+    // Fingerprint of the whole table, compared against the one an off-heap copy was written with
+    @Query("SELECT new com.skipper.expensetracker.dto.ExpenseWatermark(COUNT(e), COALESCE(MAX(e.expenseId), 0L), COALESCE(SUM(e.version), 0L)) "
+            + "FROM Expense e")
+    ExpenseWatermark findWatermark();
+
+    // One keyset page of the expenses of users in (afterUserId, lastUserId] dated within the range, in (user, expense
+    // ID) order starting after the given position
+    @Query("SELECT new com.skipper.expensetracker.dto.StatementExpense(e.expenseId, e.user.userId, e.category.categoryId, e.amount.minorUnits) "
+            + "FROM Expense e WHERE e.user.userId <= :lastUserId "
+            + "AND (e.user.userId > :afterUserId OR (e.user.userId = :afterUserId AND e.expenseId > :afterExpenseId)) "
+            + "AND e.date BETWEEN :startDate AND :endDate "
+            + "ORDER BY e.user.userId, e.expenseId")
+    List<StatementExpense> findStatementPage(@Param("afterUserId") Long afterUserId,
+                                             @Param("afterExpenseId") Long afterExpenseId,
+                                             @Param("lastUserId") Long lastUserId, @Param("startDate") Date startDate,
+                                             @Param("endDate") Date endDate, Limit limit);
+
+    // Aggregate totals per user within a date range, optionally restricted to one user and category
+    @Query("SELECT new com.skipper.expensetracker.dto.UserExpenseTotal(u.userId, u.username, SUM(CAST(e.amount.minorUnits AS BigDecimal(19, 2))), COUNT(e)) "
+            + "FROM Expense e JOIN e.user u WHERE (:userId IS NULL OR u.userId = :userId) "
+            + "AND (:categoryId IS NULL OR e.category.categoryId = :categoryId) "
+            + "AND e.date BETWEEN :startDate AND :endDate "
+            + "GROUP BY u.userId, u.username ORDER BY u.userId")
+    List<UserExpenseTotal> sumByUser(@Param("userId") Long userId, @Param("categoryId") Long categoryId,
+                                     @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+    // Aggregate totals per category within a date range, optionally restricted to one user and category
+    @Query("SELECT new com.skipper.expensetracker.dto.CategoryExpenseTotal(c.categoryId, c.categoryName, SUM(CAST(e.amount.minorUnits AS BigDecimal(19, 2))), COUNT(e)) "
+            + "FROM Expense e JOIN e.category c WHERE (:userId IS NULL OR e.user.userId = :userId) "
+            + "AND (:categoryId IS NULL OR e.category.categoryId = :categoryId) "
+            + "AND e.date BETWEEN :startDate AND :endDate "
+            + "GROUP BY c.categoryId, c.categoryName ORDER BY c.categoryId")
+    List<CategoryExpenseTotal> sumByCategory(@Param("userId") Long userId, @Param("categoryId") Long categoryId,
+                                             @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+    // Aggregate totals per calendar day within a date range, optionally restricted to one user and category
+    @Query("SELECT new com.skipper.expensetracker.dto.PeriodExpenseTotal(year(e.date), month(e.date), day(e.date), SUM(CAST(e.amount.minorUnits AS BigDecimal(19, 2))), COUNT(e)) "
+            + "FROM Expense e WHERE (:userId IS NULL OR e.user.userId = :userId) "
+            + "AND (:categoryId IS NULL OR e.category.categoryId = :categoryId) "
+            + "AND e.date BETWEEN :startDate AND :endDate "
+            + "GROUP BY year(e.date), month(e.date), day(e.date) ORDER BY year(e.date), month(e.date), day(e.date)")
+    List<PeriodExpenseTotal> sumByDay(@Param("userId") Long userId, @Param("categoryId") Long categoryId,
+                                      @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+    // Aggregate totals per calendar month within a date range, optionally restricted to one user and category
+    @Query("SELECT new com.skipper.expensetracker.dto.PeriodExpenseTotal(year(e.date), month(e.date), SUM(CAST(e.amount.minorUnits AS BigDecimal(19, 2))), COUNT(e)) "
+            + "FROM Expense e WHERE (:userId IS NULL OR e.user.userId = :userId) "
+            + "AND (:categoryId IS NULL OR e.category.categoryId = :categoryId) "
+            + "AND e.date BETWEEN :startDate AND :endDate "
+            + "GROUP BY year(e.date), month(e.date) ORDER BY year(e.date), month(e.date)")
+    List<PeriodExpenseTotal> sumByMonth(@Param("userId") Long userId, @Param("categoryId") Long categoryId,
+                                        @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+    // Aggregate totals per calendar year within a date range, optionally restricted to one user and category
+    @Query("SELECT new com.skipper.expensetracker.dto.PeriodExpenseTotal(year(e.date), SUM(CAST(e.amount.minorUnits AS BigDecimal(19, 2))), COUNT(e)) "
+            + "FROM Expense e WHERE (:userId IS NULL OR e.user.userId = :userId) "
+            + "AND (:categoryId IS NULL OR e.category.categoryId = :categoryId) "
+            + "AND e.date BETWEEN :startDate AND :endDate "
+            + "GROUP BY year(e.date) ORDER BY year(e.date)")
+    List<PeriodExpenseTotal> sumByYear(@Param("userId") Long userId, @Param("categoryId") Long categoryId,
+                                       @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+    // Aggregate totals per user, category and calendar month, used to rebuild and verify the rollup table
+    @Query("SELECT new com.skipper.expensetracker.dto.MonthlyExpenseTotal(e.user.userId, e.category.categoryId, year(e.date), month(e.date), SUM(CAST(e.amount.minorUnits AS BigDecimal(19, 2))), COUNT(e)) "
+            + "FROM Expense e GROUP BY e.user.userId, e.category.categoryId, year(e.date), month(e.date)")
+    List<MonthlyExpenseTotal> sumByUserCategoryMonth();
 }
@@ -0,0 +1,72 @@
+package com.skipper.expensetracker.repositories;
+
+import com.skipper.expensetracker.dto.CategoryExpenseTotal;
+import com.skipper.expensetracker.dto.PeriodExpenseTotal;
+import com.skipper.expensetracker.dto.UserExpenseTotal;
+import com.skipper.expensetracker.entities.ExpenseRollup;
+import com.skipper.expensetracker.entities.ExpenseRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface ExpenseRollupRepository extends JpaRepository<ExpenseRollup, ExpenseRollupId> {
+
+    // Atomically add a delta to a rollup row, creating the row on first use; the amount is in currency units
+    @Modifying
+    @Query(value = "INSERT INTO expense_rollup (user_id, category_id, expense_year, expense_month, total, expense_count) "
+            + "VALUES (:userId, :categoryId, :year, :month, :amount, :count) "
+            + "ON DUPLICATE KEY UPDATE total = total + :amount, expense_count = expense_count + :count",
+            nativeQuery = true)
+    int applyDelta(@Param("userId") Long userId, @Param("categoryId") Long categoryId, @Param("year") Integer year,
+                   @Param("month") Integer month, @Param("amount") BigDecimal amount, @Param("count") Long count);
+
+    // Remove rollup rows that no longer cover any expense
+    @Modifying
+    @Query("DELETE FROM ExpenseRollup r WHERE r.expenseCount <= 0")
+    int deleteEmptyRows();
+
+    // Custom JPQL query to find the total expenses of a user across all months. Like the ExpenseRepository sums, the
+    // total column is summed as the DECIMAL it is stored as.
+    @Query("SELECT SUM(CAST(r.total AS BigDecimal(19, 2))) FROM ExpenseRollup r WHERE r.id.userId = :userId")
+    BigDecimal getTotalByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT new com.skipper.expensetracker.dto.UserExpenseTotal(u.userId, u.username, SUM(CAST(r.total AS BigDecimal(19, 2))), SUM(r.expenseCount)) "
+            + "FROM ExpenseRollup r JOIN User u ON u.userId = r.id.userId "
+            + "WHERE (:userId IS NULL OR r.id.userId = :userId) "
+            + "AND (:categoryId IS NULL OR r.id.categoryId = :categoryId) "
+            + "AND r.id.expenseYear * 100 + r.id.expenseMonth BETWEEN :fromPeriod AND :toPeriod "
+            + "GROUP BY u.userId, u.username ORDER BY u.userId")
+    List<UserExpenseTotal> sumByUser(@Param("userId") Long userId, @Param("categoryId") Long categoryId,
+                                     @Param("fromPeriod") Integer fromPeriod, @Param("toPeriod") Integer toPeriod);
+
+    @Query("SELECT new com.skipper.expensetracker.dto.CategoryExpenseTotal(c.categoryId, c.categoryName, SUM(CAST(r.total AS BigDecimal(19, 2))), SUM(r.expenseCount)) "
+            + "FROM ExpenseRollup r JOIN Category c ON c.categoryId = r.id.categoryId "
+            + "WHERE (:userId IS NULL OR r.id.userId = :userId) "
+            + "AND (:categoryId IS NULL OR r.id.categoryId = :categoryId) "
+            + "AND r.id.expenseYear * 100 + r.id.expenseMonth BETWEEN :fromPeriod AND :toPeriod "
+            + "GROUP BY c.categoryId, c.categoryName ORDER BY c.categoryId")
+    List<CategoryExpenseTotal> sumByCategory(@Param("userId") Long userId, @Param("categoryId") Long categoryId,
+                                             @Param("fromPeriod") Integer fromPeriod, @Param("toPeriod") Integer toPeriod);
+
+    @Query("SELECT new com.skipper.expensetracker.dto.PeriodExpenseTotal(r.id.expenseYear, r.id.expenseMonth, SUM(CAST(r.total AS BigDecimal(19, 2))), SUM(r.expenseCount)) "
+            + "FROM ExpenseRollup r WHERE (:userId IS NULL OR r.id.userId = :userId) "
+            + "AND (:categoryId IS NULL OR r.id.categoryId = :categoryId) "
+            + "AND r.id.expenseYear * 100 + r.id.expenseMonth BETWEEN :fromPeriod AND :toPeriod "
+            + "GROUP BY r.id.expenseYear, r.id.expenseMonth ORDER BY r.id.expenseYear, r.id.expenseMonth")
+    List<PeriodExpenseTotal> sumByMonth(@Param("userId") Long userId, @Param("categoryId") Long categoryId,
+                                        @Param("fromPeriod") Integer fromPeriod, @Param("toPeriod") Integer toPeriod);
+
+    @Query("SELECT new com.skipper.expensetracker.dto.PeriodExpenseTotal(r.id.expenseYear, SUM(CAST(r.total AS BigDecimal(19, 2))), SUM(r.expenseCount)) "
+            + "FROM ExpenseRollup r WHERE (:userId IS NULL OR r.id.userId = :userId) "
+            + "AND (:categoryId IS NULL OR r.id.categoryId = :categoryId) "
+            + "AND r.id.expenseYear * 100 + r.id.expenseMonth BETWEEN :fromPeriod AND :toPeriod "
+            + "GROUP BY r.id.expenseYear ORDER BY r.id.expenseYear")
+    List<PeriodExpenseTotal> sumByYear(@Param("userId") Long userId, @Param("categoryId") Long categoryId,
+                                       @Param("fromPeriod") Integer fromPeriod, @Param("toPeriod") Integer toPeriod);
+}
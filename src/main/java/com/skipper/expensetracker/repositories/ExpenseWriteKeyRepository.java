@@ -0,0 +1,50 @@
+package com.skipper.expensetracker.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Plain JDBC access to the idempotency keys of write-behind expenses
+@Repository
+@RequiredArgsConstructor
+public class ExpenseWriteKeyRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO expense_write_key (idempotency_key, expense_id, created_at) "
+            + "VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Returns the subset of the given keys that has already been written
+    public Set<String> findExistingKeys(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return Collections.emptySet();
+        }
+        String placeholders = String.join(", ", Collections.nCopies(keys.size(), "?"));
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT idempotency_key FROM expense_write_key WHERE idempotency_key IN (" + placeholders + ")",
+                String.class, keys.toArray()));
+    }
+
+    // Records the keys with the ID of the expense each produced, or null when the expense was rejected
+    public void insertKeys(Map<String, Long> expenseIdsByKey) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(expenseIdsByKey.size());
+        expenseIdsByKey.forEach((key, expenseId) -> rows.add(new Object[]{key, expenseId, now}));
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    public int deleteKeysCreatedBefore(Instant cutoff) {
+        return jdbcTemplate.update("DELETE FROM expense_write_key WHERE created_at < ?", Timestamp.from(cutoff));
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.skipper.expensetracker.repositories;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skipper.expensetracker.dto.IdempotentResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+// Plain JDBC access to the recorded responses of idempotent requests
+@Repository
+@RequiredArgsConstructor
+public class IdempotentResponseRepository {
+
+    private static final TypeReference<Map<String, String>> HEADERS_TYPE = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    // The response recorded for the scope since the given time, if any
+    public Optional<IdempotentResponse> findByScopeHash(String scopeHash, Instant createdAfter) {
+        return jdbcTemplate.query("SELECT request_hash, status, headers, body FROM idempotent_response "
+                        + "WHERE scope_hash = ? AND created_at > ?",
+                (rs, rowNum) -> new IdempotentResponse(rs.getString("request_hash"), rs.getInt("status"),
+                        readHeaders(rs.getString("headers")), rs.getBytes("body")),
+                scopeHash, Timestamp.from(createdAfter)).stream().findFirst();
+    }
+
+    public void insert(String scopeHash, IdempotentResponse response) {
+        jdbcTemplate.update("INSERT INTO idempotent_response (scope_hash, request_hash, status, headers, body, created_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?)",
+                scopeHash, response.requestHash(), response.status(), writeHeaders(response.headers()), response.body(),
+                Timestamp.from(Instant.now()));
+    }
+
+    public int deleteCreatedBefore(Instant cutoff) {
+        return jdbcTemplate.update("DELETE FROM idempotent_response WHERE created_at < ?", Timestamp.from(cutoff));
+    }
+
+    private Map<String, String> readHeaders(String json) {
+        try {
+            return json == null ? Map.of() : objectMapper.readValue(json, HEADERS_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable recorded response headers", e);
+        }
+    }
+
+    private String writeHeaders(Map<String, String> headers) {
+        try {
+            return objectMapper.writeValueAsString(headers);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Response headers cannot be recorded", e);
+        }
+    }
+
+}
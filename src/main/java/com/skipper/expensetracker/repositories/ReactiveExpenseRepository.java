@@ -0,0 +1,168 @@
+package com.skipper.expensetracker.repositories;
+
+import com.skipper.expensetracker.dto.CategoryExpenseTotal;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.dto.PeriodExpenseTotal;
+import com.skipper.expensetracker.dto.UserExpenseTotal;
+import com.skipper.expensetracker.entities.Money;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.function.Function;
+
+// Non-blocking R2DBC reads of the expense table for the reactive API. The connection pool is owned here
+// rather than exposed as a ConnectionFactory bean; see ExpenseTrackerApplication.
+@Repository
+@ConditionalOnProperty(name = "expenses.reactive.enabled", havingValue = "true")
+public class ReactiveExpenseRepository {
+
+    private static final String VIEW_SELECT = "SELECT e.expense_id, e.user_user_id, c.category_id, c.category_name, "
+            + "e.amount, e.currency, e.description, e.date FROM expense e LEFT JOIN category c ON c.category_id = e.category_category_id ";
+
+    private static final String RANGE_FILTER = "WHERE e.date BETWEEN :startDate AND :endDate ";
+    private static final String USER_FILTER = "AND e.user_user_id = :userId ";
+    private static final String CATEGORY_FILTER = "AND e.category_category_id = :categoryId ";
+
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient databaseClient;
+
+    public ReactiveExpenseRepository(@Value("${expenses.reactive.r2dbc-url}") String url,
+                                     @Value("${spring.datasource.username}") String username,
+                                     @Value("${spring.datasource.password:}") String password,
+                                     @Value("${expenses.reactive.pool-size:20}") int poolSize) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .maxSize(poolSize)
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionPool);
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionPool.dispose();
+    }
+
+    public Mono<ExpenseView> findViewById(Long expenseId) {
+        return databaseClient.sql(VIEW_SELECT + "WHERE e.expense_id = :expenseId")
+                .bind("expenseId", expenseId)
+                .map(ReactiveExpenseRepository::toView)
+                .one();
+    }
+
+    // Expenses within a date range, optionally restricted to one user, in date order
+    public Flux<ExpenseView> findViewsByDateBetween(Long userId, Date startDate, Date endDate) {
+        return query(VIEW_SELECT + RANGE_FILTER + filters(userId, null) + "ORDER BY e.date, e.expense_id",
+                userId, null, startDate, endDate, ReactiveExpenseRepository::toView);
+    }
+
+    // Totals within a date range, each optionally restricted to one user and one category
+    public Flux<UserExpenseTotal> sumByUser(Long userId, Long categoryId, Date startDate, Date endDate) {
+        return query("SELECT u.user_id, u.username, SUM(e.amount) AS total, COUNT(*) AS cnt "
+                        + "FROM expense e JOIN user u ON u.user_id = e.user_user_id " + RANGE_FILTER
+                        + filters(userId, categoryId) + "GROUP BY u.user_id, u.username ORDER BY u.user_id",
+                userId, categoryId, startDate, endDate,
+                row -> new UserExpenseTotal(row.get("user_id", Long.class), row.get("username", String.class),
+                        minorUnits(row, "total"), longValue(row, "cnt")));
+    }
+
+    public Flux<CategoryExpenseTotal> sumByCategory(Long userId, Long categoryId, Date startDate, Date endDate) {
+        return query("SELECT c.category_id, c.category_name, SUM(e.amount) AS total, COUNT(*) AS cnt "
+                        + "FROM expense e JOIN category c ON c.category_id = e.category_category_id " + RANGE_FILTER
+                        + filters(userId, categoryId) + "GROUP BY c.category_id, c.category_name ORDER BY c.category_id",
+                userId, categoryId, startDate, endDate,
+                row -> new CategoryExpenseTotal(row.get("category_id", Long.class), row.get("category_name", String.class),
+                        minorUnits(row, "total"), longValue(row, "cnt")));
+    }
+
+    public Flux<PeriodExpenseTotal> sumByDay(Long userId, Long categoryId, Date startDate, Date endDate) {
+        return sumByPeriod("YEAR(e.date) AS y, MONTH(e.date) AS m, DAY(e.date) AS d",
+                "YEAR(e.date), MONTH(e.date), DAY(e.date)", userId, categoryId, startDate, endDate,
+                row -> new PeriodExpenseTotal(intValue(row, "y"), intValue(row, "m"),
+                        intValue(row, "d"), minorUnits(row, "total"), longValue(row, "cnt")));
+    }
+
+    public Flux<PeriodExpenseTotal> sumByMonth(Long userId, Long categoryId, Date startDate, Date endDate) {
+        return sumByPeriod("YEAR(e.date) AS y, MONTH(e.date) AS m", "YEAR(e.date), MONTH(e.date)", userId, categoryId,
+                startDate, endDate,
+                row -> new PeriodExpenseTotal(intValue(row, "y"), intValue(row, "m"),
+                        minorUnits(row, "total"), longValue(row, "cnt")));
+    }
+
+    public Flux<PeriodExpenseTotal> sumByYear(Long userId, Long categoryId, Date startDate, Date endDate) {
+        return sumByPeriod("YEAR(e.date) AS y", "YEAR(e.date)", userId, categoryId, startDate, endDate,
+                row -> new PeriodExpenseTotal(intValue(row, "y"), minorUnits(row, "total"),
+                        longValue(row, "cnt")));
+    }
+
+    private <T> Flux<T> sumByPeriod(String periodColumns, String period, Long userId, Long categoryId, Date startDate,
+                                    Date endDate, Function<Readable, T> mapper) {
+        return query("SELECT " + periodColumns + ", SUM(e.amount) AS total, COUNT(*) AS cnt FROM expense e " + RANGE_FILTER
+                        + filters(userId, categoryId) + "GROUP BY " + period + " ORDER BY " + period,
+                userId, categoryId, startDate, endDate, mapper);
+    }
+
+    private static String filters(Long userId, Long categoryId) {
+        return (userId == null ? "" : USER_FILTER) + (categoryId == null ? "" : CATEGORY_FILTER);
+    }
+
+    private <T> Flux<T> query(String sql, Long userId, Long categoryId, Date startDate, Date endDate,
+                              Function<Readable, T> mapper) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql)
+                .bind("startDate", toLocalDateTime(startDate))
+                .bind("endDate", toLocalDateTime(endDate));
+        if (userId != null) {
+            spec = spec.bind("userId", userId);
+        }
+        if (categoryId != null) {
+            spec = spec.bind("categoryId", categoryId);
+        }
+        return spec.map(mapper).all();
+    }
+
+    private static ExpenseView toView(Readable row) {
+        LocalDateTime date = row.get("date", LocalDateTime.class);
+        return new ExpenseView(row.get("expense_id", Long.class), row.get("user_user_id", Long.class),
+                row.get("category_id", Long.class), row.get("category_name", String.class), minorUnits(row, "amount"),
+                row.get("currency", String.class), row.get("description", String.class), date == null ? null : Date.from(date.atZone(ZoneId.systemDefault()).toInstant()));
+    }
+
+    // Amounts and their sums are DECIMAL columns, read exactly and turned into minor units
+    private static Long minorUnits(Readable row, String column) {
+        BigDecimal value = row.get(column, BigDecimal.class);
+        return value == null ? null : Money.toMinorUnits(value);
+    }
+
+    // Drivers disagree on the Java type of COUNT/YEAR (Integer vs Long), so read them as Number
+    private static Long longValue(Readable row, String column) {
+        Number value = row.get(column, Number.class);
+        return value == null ? null : value.longValue();
+    }
+
+    private static Integer intValue(Readable row, String column) {
+        Number value = row.get(column, Number.class);
+        return value == null ? null : value.intValue();
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+
+}
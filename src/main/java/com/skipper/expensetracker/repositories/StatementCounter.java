@@ -0,0 +1,43 @@
+package com.skipper.expensetracker.repositories;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// Counts the SQL statements Hibernate prepares on the current thread between start() and stop(), so that a unit of
+// work such as an HTTP request can be tagged with the number of queries it ran. Registered as Hibernate's statement
+// inspector; statements sent through JdbcTemplate or R2DBC are not seen.
+@Component
+public class StatementCounter implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private static final ThreadLocal<int[]> COUNTS = new ThreadLocal<>();
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = COUNTS.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+
+    public void start() {
+        COUNTS.set(new int[1]);
+    }
+
+    // Stops counting on this thread, returning the statements prepared since start()
+    public int stop() {
+        int[] count = COUNTS.get();
+        COUNTS.remove();
+        return count == null ? 0 : count[0];
+    }
+
+}
@@ -1,9 +1,17 @@
 package com.skipper.expensetracker.repositories;
 
+import com.skipper.expensetracker.dto.UserExpensesVersion;
 import com.skipper.expensetracker.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     // Custom query method to find a user by username
@@ -12,4 +20,33 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // Custom query method to find user by email
     User findByEmail(String email);
 
+    // Custom JPQL query to find which of the given user IDs exist
+    @Query("SELECT u.userId FROM User u WHERE u.userId IN :userIds")
+    Set<Long> findExistingUserIds(@Param("userIds") Collection<Long> userIds);
+
+    // Lowest and highest user IDs, bounding the ranges a statement run splits the users into
+    @Query("SELECT MIN(u.userId) FROM User u")
+    Long findMinUserId();
+
+    @Query("SELECT MAX(u.userId) FROM User u")
+    Long findMaxUserId();
+
+    // Marks the users' expenses as changed; run in the transaction making the change, so the new version commits
+    // together with it
+    @Modifying
+    @Query("UPDATE User u SET u.expensesVersion = u.expensesVersion + 1 WHERE u.userId IN :userIds")
+    int bumpExpensesVersions(@Param("userIds") Collection<Long> userIds);
+
+    // Version of one user's expenses by primary key, together with the categories they show; null for no such user
+    @Query("SELECT new com.skipper.expensetracker.dto.UserExpensesVersion(u.userId, u.expensesVersion, "
+            + "(SELECT COUNT(c) FROM Category c), (SELECT COALESCE(MAX(c.categoryId), 0L) FROM Category c), "
+            + "(SELECT COALESCE(SUM(c.version), 0L) FROM Category c)) FROM User u WHERE u.userId = :userId")
+    UserExpensesVersion findUserExpensesVersion(@Param("userId") Long userId);
+
+    // The same versions for several users in one query; users that do not exist have no row
+    @Query("SELECT new com.skipper.expensetracker.dto.UserExpensesVersion(u.userId, u.expensesVersion, "
+            + "(SELECT COUNT(c) FROM Category c), (SELECT COALESCE(MAX(c.categoryId), 0L) FROM Category c), "
+            + "(SELECT COALESCE(SUM(c.version), 0L) FROM Category c)) FROM User u WHERE u.userId IN :userIds")
+    List<UserExpensesVersion> findUserExpensesVersions(@Param("userIds") Collection<Long> userIds);
+
 }
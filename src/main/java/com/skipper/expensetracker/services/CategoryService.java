@@ -12,8 +12,14 @@ public interface CategoryService {
 
     Category getCategoryById(Long categoryId);
 
+    // Updates the category at the version it has now, throwing OptimisticLockingFailureException when another update
+    // gets in first; returns null when it does not exist
     Category updateCategory(Long categoryId, Category updatedCategory);
 
+    // Updates the category only if it is still at the expected version, throwing OptimisticLockingFailureException
+    // otherwise; returns null when it does not exist
+    Category updateCategory(Long categoryId, Category updatedCategory, Long expectedVersion);
+
     void deleteCategory(Long categoryId);
 
 }
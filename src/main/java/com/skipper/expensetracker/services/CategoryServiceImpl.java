@@ -1,8 +1,11 @@
 package com.skipper.expensetracker.services;
 
 import java.util.List;
-import java.util.Optional;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,11 +19,17 @@ import lombok.RequiredArgsConstructor;
 @Transactional
 public class CategoryServiceImpl implements CategoryService {
 
+    // Cache names, bounded and expired by spring.cache.caffeine.spec
+    public static final String CATEGORY_CACHE = "categories";
+    public static final String CATEGORY_LIST_CACHE = "categoryLists";
+
     private final CategoryRepository categoryRepository;
+    private final UserExpenseCache userExpenseCache;
 
     // Endpoint to create a new category
 
     @Override
+    @CacheEvict(cacheNames = CATEGORY_LIST_CACHE, allEntries = true)
     public Category addCategory(Category category) {
         return categoryRepository.save(category);
     }
@@ -28,13 +37,17 @@ public class CategoryServiceImpl implements CategoryService {
     // Endpoint to edit an existing category
 
     @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CATEGORY_LIST_CACHE, key = "'all'")
     public List<Category> getAllCategories() {
-        return categoryRepository.findAll();
+        return List.copyOf(categoryRepository.findAll());
     }
 
     // Endpoint to retrieve a category by ID
 
     @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CATEGORY_CACHE, key = "#categoryId", unless = "#result == null")
     public Category getCategoryById(Long categoryId) {
         return categoryRepository.findById(categoryId).orElse(null);
     }
@@ -42,24 +55,48 @@ public class CategoryServiceImpl implements CategoryService {
     // Endpoint to update an existing category
 
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CATEGORY_CACHE, key = "#categoryId"),
+            @CacheEvict(cacheNames = CATEGORY_LIST_CACHE, allEntries = true)
+    })
     public Category updateCategory(Long categoryId, Category updatedCategory) {
-        // Check if the category exists
-        Optional<Category> existingCategoryOptional = categoryRepository.findById(categoryId);
-        if (existingCategoryOptional.isEmpty()) {
-            throw new IllegalArgumentException("Category not found");
+        // Guarded by the version read here, so an update that lands in between is reported instead of overwritten
+        Category current = categoryRepository.findById(categoryId).orElse(null);
+        if (current == null) {
+            return null;
         }
+        return updateCategory(categoryId, updatedCategory, current.getVersion());
+    }
 
-        // Update existing category with new details
-        Category existingCategory = existingCategoryOptional.get();
-        existingCategory.setCategoryName(updatedCategory.getCategoryName());
-        return categoryRepository.save(existingCategory);
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CATEGORY_CACHE, key = "#categoryId"),
+            @CacheEvict(cacheNames = CATEGORY_LIST_CACHE, allEntries = true)
+    })
+    public Category updateCategory(Long categoryId, Category updatedCategory, Long expectedVersion) {
+        // Update in a single statement guarded by the version, so concurrent updates cannot overwrite each other
+        int updated = categoryRepository.updateCategoryName(categoryId, updatedCategory.getCategoryName(), expectedVersion);
+        if (updated == 0) {
+            if (!categoryRepository.existsById(categoryId)) {
+                return null;
+            }
+            throw new OptimisticLockingFailureException("Category " + categoryId + " is no longer at version " + expectedVersion);
+        }
+        // Expense snapshots carry category names
+        userExpenseCache.invalidateAll();
+        return categoryRepository.findById(categoryId).orElse(null);
     }
 
     // Endpoint to delete an existing category
 
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CATEGORY_CACHE, key = "#categoryId"),
+            @CacheEvict(cacheNames = CATEGORY_LIST_CACHE, allEntries = true)
+    })
     public void deleteCategory(Long categoryId) {
         categoryRepository.deleteById(categoryId);
+        userExpenseCache.invalidateAll();
     }
 
 }
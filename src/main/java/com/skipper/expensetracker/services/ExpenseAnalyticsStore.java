@@ -0,0 +1,782 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.CategoryExpenseTotal;
+import com.skipper.expensetracker.dto.PeriodExpenseTotal;
+import com.skipper.expensetracker.dto.StoredExpense;
+import com.skipper.expensetracker.dto.SummaryGroup;
+import com.skipper.expensetracker.dto.UserExpenseTotal;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.UserRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// In-process columnar copy of every expense, answering summaries over long histories without a database round trip.
+// Each user's expenses are a segment of parallel primitive arrays (expense ID, epoch day, category code and amount in
+// minor units), and a summary is one filtering, summing loop over them. The copy is loaded when the application is
+// ready and again on expenses.analytics.reload-cron, and ExpenseServiceImpl applies each change after it commits.
+// Until the first load completes, and for ranges that do not start and end on day boundaries, summaries come back
+// empty so the caller falls back to the rollups and the database. Enabled with expenses.analytics.enabled; it holds
+// about 24 bytes per expense.
+@Slf4j
+@Component
+public class ExpenseAnalyticsStore {
+
+    // Widest range of days grouped by day, month or year in memory, about a century
+    private static final int MAX_DAY_SPAN = 366 * 100;
+
+    // Category code of expenses without a category, and the filter matching every category
+    private static final int NO_CATEGORY = 0;
+    private static final int ANY_CATEGORY = -1;
+
+    private final ExpenseRepository expenseRepository;
+    private final UserRepository userRepository;
+    private final CategoryService categoryService;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final Timer queryTimer;
+
+    // Same zone JDBC uses when binding java.util.Date, so days line up with day() in SQL
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private volatile ConcurrentMap<Long, Segment> segments = new ConcurrentHashMap<>();
+
+    // Segments hold a dense code per category instead of its ID, so grouping by category indexes an array
+    private final ConcurrentMap<Long, Integer> categoryCodes = new ConcurrentHashMap<>();
+    private volatile long[] categoryIds = new long[16];
+    private volatile int categoryCount = NO_CATEGORY + 1;
+
+    // Users whose expenses changed while a load was reading them, reloaded before the load is published; null when
+    // no load is running
+    private final Object loadLock = new Object();
+    private Set<Long> staleUsers;
+    private volatile boolean loaded;
+
+    // Held shared by each transaction changing expenses from just before it commits until the change is applied, and
+    // exclusively by pauseChanges, so while paused every committed expense change is in the segments
+    private final ReadWriteLock changeLock = new ReentrantReadWriteLock();
+
+    public ExpenseAnalyticsStore(ExpenseRepository expenseRepository, UserRepository userRepository,
+                                 CategoryService categoryService, PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${expenses.analytics.enabled:false}") boolean enabled) {
+        this.expenseRepository = expenseRepository;
+        this.userRepository = userRepository;
+        this.categoryService = categoryService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+
+        Gauge.builder("expenses.analytics.rows", this, ExpenseAnalyticsStore::getRowCount)
+                .description("Expenses held by the in-memory analytics store")
+                .register(meterRegistry);
+        this.queryTimer = Timer.builder("expenses.analytics.query")
+                .description("Time to answer one summary from the in-memory analytics store")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public long getRowCount() {
+        long rows = 0;
+        for (Segment segment : segments.values()) {
+            rows += segment.size();
+        }
+        return rows;
+    }
+
+    // Reads every expense into a new set of segments and swaps it in, leaving the current one in use meanwhile
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${expenses.analytics.reload-cron:0 45 3 * * *}")
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (loadLock) {
+            if (staleUsers != null) {
+                log.info("Analytics store load already running, skipping reload");
+                return;
+            }
+            staleUsers = new HashSet<>();
+        }
+
+        boolean published = false;
+        try {
+            long started = System.nanoTime();
+            ConcurrentMap<Long, Segment> loading = new ConcurrentHashMap<>();
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<StoredExpense> rows = expenseRepository.streamStoredExpenses()) {
+                    rows.forEach(row -> add(loading, row));
+                }
+            });
+
+            // Expenses committed while the cursor was open may be missing from it; re-read those users until none
+            // are left over, each time outside the cursor's transaction so the reads see the latest commits
+            while (true) {
+                Set<Long> stale;
+                synchronized (loadLock) {
+                    if (staleUsers.isEmpty()) {
+                        segments = loading;
+                        loaded = true;
+                        staleUsers = null;
+                        published = true;
+                        break;
+                    }
+                    stale = staleUsers;
+                    staleUsers = new HashSet<>();
+                }
+                for (Long userId : stale) {
+                    loading.remove(userId);
+                    for (StoredExpense row : expenseRepository.findStoredByUserId(userId)) {
+                        add(loading, row);
+                    }
+                }
+            }
+            log.info("Loaded {} expenses of {} users into the analytics store in {} ms", getRowCount(), loading.size(),
+                    (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException e) {
+            // Summaries keep using the previous copy, or the database before the first load
+            log.warn("Loading the analytics store failed", e);
+        } finally {
+            if (!published) {
+                synchronized (loadLock) {
+                    staleUsers = null;
+                }
+            }
+        }
+    }
+
+    // Holds expense changes back from committing until closed, once those already committing are applied, so the
+    // expense table and the segments describe the same expenses meanwhile
+    public Pause pauseChanges() {
+        changeLock.writeLock().lock();
+        return changeLock.writeLock()::unlock;
+    }
+
+    // Writes every segment for the warm-start snapshot: the number of users, then each user's ID, row count and rows
+    // of expense ID, epoch day, category ID (0 for none) and amount
+    public void writeSnapshot(DataOutput out) throws IOException {
+        List<Segment> current = List.copyOf(segments.values());
+        out.writeInt(current.size());
+        for (Segment segment : current) {
+            Segment copy = segment.copy();
+            long[] ids = categoryIds;
+            out.writeLong(copy.userId);
+            out.writeInt(copy.size);
+            for (int i = 0; i < copy.size; i++) {
+                out.writeLong(copy.expenseIds[i]);
+                out.writeInt(copy.days[i]);
+                out.writeLong(copy.categories[i] == NO_CATEGORY ? 0L : ids[copy.categories[i]]);
+                out.writeLong(copy.amounts[i]);
+            }
+        }
+    }
+
+    // Serves summaries from a warm-start snapshot until the next load replaces it; false when a load has already
+    // published or is running, since its copy is newer
+    public boolean restoreSnapshot(ByteBuffer in) {
+        if (!enabled) {
+            return false;
+        }
+        ConcurrentMap<Long, Segment> restored = new ConcurrentHashMap<>();
+        int users = in.getInt();
+        for (int user = 0; user < users; user++) {
+            Segment segment = new Segment(in.getLong());
+            int size = in.getInt();
+            for (int i = 0; i < size; i++) {
+                long expenseId = in.getLong();
+                int day = in.getInt();
+                long categoryId = in.getLong();
+                segment.add(expenseId, day, categoryCode(categoryId == 0L ? null : categoryId), in.getLong());
+            }
+            restored.put(segment.userId, segment);
+        }
+        synchronized (loadLock) {
+            if (loaded || staleUsers != null) {
+                return false;
+            }
+            segments = restored;
+            loaded = true;
+        }
+        log.info("Restored {} expenses of {} users into the analytics store from a snapshot", getRowCount(), users);
+        return true;
+    }
+
+    // Adds the expenses once the surrounding transaction commits, replacing earlier copies of them
+    public void recordExpenses(Collection<Expense> expenses) {
+        if (enabled) {
+            afterCommit(List.of(), rows(expenses));
+        }
+    }
+
+    // Removes the expenses once the surrounding transaction commits
+    public void reverseExpenses(Collection<Expense> expenses) {
+        if (enabled) {
+            afterCommit(rows(expenses), List.of());
+        }
+    }
+
+    // Moves an edited expense from its previous values to its current ones once the surrounding transaction commits
+    public void reviseExpense(Expense previous, Expense updated) {
+        if (enabled) {
+            afterCommit(rows(List.of(previous)), rows(List.of(updated)));
+        }
+    }
+
+    // Totals grouped like the ExpenseRepository summaries, or empty when the store cannot answer the request
+    public Optional<List<?>> getSummary(SummaryGroup groupBy, Long userId, Long categoryId, Date startDate, Date endDate) {
+        if (!loaded || !startsDay(startDate) || !endsDay(endDate)) {
+            return Optional.empty();
+        }
+        int fromDay = startDate == null ? Integer.MIN_VALUE : toEpochDay(startDate);
+        int toDay = endDate == null ? Integer.MAX_VALUE : toEpochDay(endDate);
+        if (fromDay > toDay) {
+            return Optional.empty();
+        }
+        int category = ANY_CATEGORY;
+        if (categoryId != null) {
+            Integer code = categoryCodes.get(categoryId);
+            if (code == null) {
+                return Optional.of(List.of());
+            }
+            category = code;
+        }
+
+        List<Segment> scanned = new ArrayList<>();
+        if (userId == null) {
+            scanned.addAll(segments.values());
+        } else {
+            Optional.ofNullable(segments.get(userId)).ifPresent(scanned::add);
+        }
+
+        int categoryFilter = category;
+        Supplier<List<?>> query = () -> switch (groupBy) {
+            case USER -> sumByUser(scanned, fromDay, toDay, categoryFilter);
+            case CATEGORY -> sumByCategory(scanned, fromDay, toDay, categoryFilter);
+            case DAY, MONTH, YEAR -> sumByPeriod(groupBy, scanned, fromDay, toDay, categoryFilter);
+        };
+        return Optional.ofNullable(queryTimer.record(query));
+    }
+
+    private List<UserExpenseTotal> sumByUser(List<Segment> scanned, int fromDay, int toDay, int category) {
+        Map<Long, long[]> totals = new HashMap<>();
+        for (Segment segment : scanned) {
+            long[] total = new long[2];
+            segment.sum(fromDay, toDay, category, total);
+            if (total[1] > 0) {
+                totals.put(segment.userId, total);
+            }
+        }
+        if (totals.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, String> usernames = new HashMap<>();
+        for (User user : userRepository.findAllById(totals.keySet())) {
+            usernames.put(user.getUserId(), user.getUsername());
+        }
+        return totals.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> new UserExpenseTotal(entry.getKey(), usernames.get(entry.getKey()),
+                        entry.getValue()[0], entry.getValue()[1]))
+                .toList();
+    }
+
+    private List<CategoryExpenseTotal> sumByCategory(List<Segment> scanned, int fromDay, int toDay, int category) {
+        int codes = categoryCount;
+        long[] totals = new long[codes];
+        long[] counts = new long[codes];
+        for (Segment segment : scanned) {
+            segment.sumByCategory(fromDay, toDay, category, totals, counts);
+        }
+
+        Map<Long, String> names = new HashMap<>();
+        for (Category known : categoryService.getAllCategories()) {
+            names.put(known.getCategoryId(), known.getCategoryName());
+        }
+        long[] ids = categoryIds;
+        List<CategoryExpenseTotal> result = new ArrayList<>();
+        for (int code = NO_CATEGORY + 1; code < codes; code++) {
+            if (counts[code] > 0) {
+                result.add(new CategoryExpenseTotal(ids[code], names.get(ids[code]), totals[code], counts[code]));
+            }
+        }
+        result.sort(Comparator.comparing(CategoryExpenseTotal::categoryId));
+        return result;
+    }
+
+    // Sums per day into dense arrays over the days the scanned segments cover, then rolls the days up to months or
+    // years; null when that range of days is too wide to group in memory
+    private List<PeriodExpenseTotal> sumByPeriod(SummaryGroup groupBy, List<Segment> scanned, int fromDay, int toDay,
+                                                 int category) {
+        int firstDay = toDay;
+        int lastDay = fromDay;
+        for (Segment segment : scanned) {
+            int[] span = segment.daySpan();
+            firstDay = Math.min(firstDay, Math.max(fromDay, span[0]));
+            lastDay = Math.max(lastDay, Math.min(toDay, span[1]));
+        }
+        if (firstDay > lastDay) {
+            return List.of();
+        }
+        if ((long) lastDay - firstDay >= MAX_DAY_SPAN) {
+            return null;
+        }
+
+        long[] totals = new long[lastDay - firstDay + 1];
+        long[] counts = new long[totals.length];
+        for (Segment segment : scanned) {
+            segment.sumByDay(Math.max(fromDay, firstDay), Math.min(toDay, lastDay), category, firstDay, totals, counts);
+        }
+
+        List<PeriodExpenseTotal> result = new ArrayList<>();
+        LocalDate period = null;
+        long total = 0;
+        long count = 0;
+        long overflow = 0;
+        for (int i = 0; i < totals.length; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            LocalDate day = LocalDate.ofEpochDay(firstDay + (long) i);
+            LocalDate start = switch (groupBy) {
+                case MONTH -> day.withDayOfMonth(1);
+                case YEAR -> day.withDayOfYear(1);
+                default -> day;
+            };
+            if (!start.equals(period)) {
+                if (period != null) {
+                    result.add(periodTotal(groupBy, period, total, count));
+                }
+                period = start;
+                total = 0;
+                count = 0;
+            }
+            long sum = total + totals[i];
+            overflow |= overflowed(total, totals[i], sum);
+            total = sum;
+            count += counts[i];
+        }
+        checkOverflow(overflow);
+        if (period != null) {
+            result.add(periodTotal(groupBy, period, total, count));
+        }
+        return result;
+    }
+
+    private static PeriodExpenseTotal periodTotal(SummaryGroup groupBy, LocalDate period, long total, long count) {
+        return switch (groupBy) {
+            case MONTH -> new PeriodExpenseTotal(period.getYear(), period.getMonthValue(), total, count);
+            case YEAR -> new PeriodExpenseTotal(period.getYear(), total, count);
+            default -> new PeriodExpenseTotal(period.getYear(), period.getMonthValue(), period.getDayOfMonth(), total, count);
+        };
+    }
+
+    private void afterCommit(List<Row> removed, List<Row> added) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private boolean committing;
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    changeLock.readLock().lock();
+                    committing = true;
+                }
+
+                @Override
+                public void afterCommit() {
+                    apply(removed, added);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (committing) {
+                        committing = false;
+                        changeLock.readLock().unlock();
+                    }
+                }
+            });
+        } else {
+            changeLock.readLock().lock();
+            try {
+                apply(removed, added);
+            } finally {
+                changeLock.readLock().unlock();
+            }
+        }
+    }
+
+    private void apply(List<Row> removed, List<Row> added) {
+        ConcurrentMap<Long, Segment> current;
+        synchronized (loadLock) {
+            if (staleUsers != null) {
+                removed.forEach(row -> staleUsers.add(row.userId()));
+                added.forEach(row -> staleUsers.add(row.userId()));
+            }
+            if (!loaded) {
+                return;
+            }
+            current = segments;
+        }
+        // A load starting from here on reads these changes from the database, so they only need to reach the
+        // segments in use now
+        for (Row row : removed) {
+            Segment segment = current.get(row.userId());
+            if (segment != null) {
+                segment.remove(row.expenseId());
+            }
+        }
+        for (Row row : added) {
+            Segment segment = current.computeIfAbsent(row.userId(), Segment::new);
+            segment.remove(row.expenseId());
+            segment.add(row.expenseId(), row.day(), row.category(), row.amount());
+        }
+    }
+
+    private void add(Map<Long, Segment> target, StoredExpense row) {
+        // Expenses without a user or date are left out of every database summary as well
+        if (row.userId() == null || row.date() == null) {
+            return;
+        }
+        target.computeIfAbsent(row.userId(), Segment::new).add(row.expenseId(), toEpochDay(row.date()),
+                categoryCode(row.categoryId()), row.amount() == null ? 0L : row.amount());
+    }
+
+    private List<Row> rows(Collection<Expense> expenses) {
+        List<Row> rows = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            if (expense.getExpenseId() == null || expense.getUser() == null || expense.getUser().getUserId() == null
+                    || expense.getDate() == null) {
+                continue;
+            }
+            Long categoryId = expense.getCategory() == null ? null : expense.getCategory().getCategoryId();
+            Long amount = expense.getAmount() == null ? null : expense.getAmount().getMinorUnits();
+            rows.add(new Row(expense.getExpenseId(), expense.getUser().getUserId(), toEpochDay(expense.getDate()),
+                    categoryCode(categoryId), amount == null ? 0L : amount));
+        }
+        return rows;
+    }
+
+    private int categoryCode(Long categoryId) {
+        if (categoryId == null) {
+            return NO_CATEGORY;
+        }
+        Integer code = categoryCodes.get(categoryId);
+        return code != null ? code : categoryCodes.computeIfAbsent(categoryId, this::assignCategoryCode);
+    }
+
+    private synchronized int assignCategoryCode(Long categoryId) {
+        int code = categoryCount;
+        long[] ids = code < categoryIds.length ? categoryIds : Arrays.copyOf(categoryIds, code * 2);
+        ids[code] = categoryId;
+        categoryIds = ids;
+        categoryCount = code + 1;
+        return code;
+    }
+
+    private int toEpochDay(Date date) {
+        return Math.toIntExact(LocalDate.ofInstant(date.toInstant(), zone).toEpochDay());
+    }
+
+    private boolean startsDay(Date date) {
+        if (date == null) {
+            return true;
+        }
+        LocalDateTime dateTime = LocalDateTime.ofInstant(date.toInstant(), zone);
+        return dateTime.equals(dateTime.toLocalDate().atStartOfDay());
+    }
+
+    private boolean endsDay(Date date) {
+        // An inclusive end bound covers a whole day when the next millisecond starts a new day
+        return date == null || startsDay(new Date(date.getTime() + 1));
+    }
+
+    // Sign bit set when total + addend overflowed to sum. ORing these into one flag and checking it once keeps
+    // the hot loops free of the per-element branch Math.addExact would add.
+    private static long overflowed(long total, long addend, long sum) {
+        return (total ^ sum) & (addend ^ sum);
+    }
+
+    private static void checkOverflow(long overflow) {
+        if (overflow < 0) {
+            throw new ArithmeticException("long overflow");
+        }
+    }
+
+    // Releases the lock taken by pauseChanges
+    @FunctionalInterface
+    public interface Pause extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    // An expense reduced to the columns the segments hold
+    private record Row(long expenseId, long userId, int day, int category, long amount) {
+    }
+
+    // One user's expenses as parallel columns. Rows are in no particular order; a removed row is replaced by the
+    // last one, so the columns stay dense and every scan is a plain loop over the first size entries. An
+    // open-addressing index from expense ID to row, at most half full, finds the row to remove without a scan.
+    private static final class Segment {
+
+        private static final int INITIAL_CAPACITY = 16;
+        private static final long NO_EXPENSE = Long.MIN_VALUE;
+
+        private final long userId;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private long[] expenseIds = new long[INITIAL_CAPACITY];
+        private int[] days = new int[INITIAL_CAPACITY];
+        private int[] categories = new int[INITIAL_CAPACITY];
+        private long[] amounts = new long[INITIAL_CAPACITY];
+        private int size;
+        private long[] indexKeys = emptyIndex(2 * INITIAL_CAPACITY);
+        private int[] indexRows = new int[2 * INITIAL_CAPACITY];
+
+        Segment(Long userId) {
+            this.userId = userId;
+        }
+
+        // Copy of the rows as they are now, for writing out without holding the lock; it has no index and is only read
+        Segment copy() {
+            lock.readLock().lock();
+            try {
+                Segment copy = new Segment(userId);
+                copy.expenseIds = Arrays.copyOf(expenseIds, size);
+                copy.days = Arrays.copyOf(days, size);
+                copy.categories = Arrays.copyOf(categories, size);
+                copy.amounts = Arrays.copyOf(amounts, size);
+                copy.size = size;
+                return copy;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return size;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void add(long expenseId, int day, int category, long amount) {
+            lock.writeLock().lock();
+            try {
+                if (size == expenseIds.length) {
+                    int capacity = size * 2;
+                    expenseIds = Arrays.copyOf(expenseIds, capacity);
+                    days = Arrays.copyOf(days, capacity);
+                    categories = Arrays.copyOf(categories, capacity);
+                    amounts = Arrays.copyOf(amounts, capacity);
+                    indexKeys = emptyIndex(2 * capacity);
+                    indexRows = new int[2 * capacity];
+                    for (int i = 0; i < size; i++) {
+                        index(expenseIds[i], i);
+                    }
+                }
+                expenseIds[size] = expenseId;
+                days[size] = day;
+                categories[size] = category;
+                amounts[size] = amount;
+                index(expenseId, size);
+                size++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long expenseId) {
+            lock.writeLock().lock();
+            try {
+                int slot = slotOf(expenseId);
+                if (indexKeys[slot] == NO_EXPENSE) {
+                    return;
+                }
+                int i = indexRows[slot];
+                unindex(slot);
+                int last = --size;
+                if (i != last) {
+                    expenseIds[i] = expenseIds[last];
+                    days[i] = days[last];
+                    categories[i] = categories[last];
+                    amounts[i] = amounts[last];
+                    indexRows[slotOf(expenseIds[i])] = i;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private static long[] emptyIndex(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, NO_EXPENSE);
+            return keys;
+        }
+
+        private int home(long expenseId) {
+            return (int) ((expenseId * 0x9E3779B97F4A7C15L) >>> 32) & (indexKeys.length - 1);
+        }
+
+        // Slot holding the expense, or the empty slot where it would go
+        private int slotOf(long expenseId) {
+            int mask = indexKeys.length - 1;
+            int slot = home(expenseId);
+            while (indexKeys[slot] != NO_EXPENSE && indexKeys[slot] != expenseId) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void index(long expenseId, int row) {
+            int slot = slotOf(expenseId);
+            indexKeys[slot] = expenseId;
+            indexRows[slot] = row;
+        }
+
+        // Empties the slot and moves back later entries of the probe run that can no longer reach theirs past it
+        private void unindex(int slot) {
+            int mask = indexKeys.length - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; indexKeys[next] != NO_EXPENSE; next = (next + 1) & mask) {
+                if (((next - home(indexKeys[next])) & mask) >= ((next - hole) & mask)) {
+                    indexKeys[hole] = indexKeys[next];
+                    indexRows[hole] = indexRows[next];
+                    hole = next;
+                }
+            }
+            indexKeys[hole] = NO_EXPENSE;
+        }
+
+        // First and last day holding an expense; an empty segment spans no days
+        int[] daySpan() {
+            lock.readLock().lock();
+            try {
+                int first = Integer.MAX_VALUE;
+                int last = Integer.MIN_VALUE;
+                for (int i = 0; i < size; i++) {
+                    first = Math.min(first, days[i]);
+                    last = Math.max(last, days[i]);
+                }
+                return new int[]{first, last};
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Adds the total and count of the matching rows to result[0] and result[1]. Like Money.sum, each block of
+        // rows is summed with plain additions and overflow is only checked once per block.
+        void sum(int fromDay, int toDay, int category, long[] result) {
+            lock.readLock().lock();
+            try {
+                long total = 0;
+                long count = 0;
+                for (int from = 0; from < size; from += Money.SUM_BLOCK) {
+                    int to = Math.min(from + Money.SUM_BLOCK, size);
+                    long block = 0;
+                    for (int i = from; i < to; i++) {
+                        int day = days[i];
+                        boolean matches = day >= fromDay && day <= toDay
+                                && (category == ANY_CATEGORY || categories[i] == category);
+                        block += matches ? amounts[i] : 0;
+                        count += matches ? 1 : 0;
+                    }
+                    total = Math.addExact(total, block);
+                }
+                result[0] = Math.addExact(result[0], total);
+                result[1] += count;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Adds the matching rows to totals and counts indexed by category code
+        void sumByCategory(int fromDay, int toDay, int category, long[] totals, long[] counts) {
+            lock.readLock().lock();
+            try {
+                long overflow = 0;
+                for (int i = 0; i < size; i++) {
+                    int day = days[i];
+                    int code = categories[i];
+                    // Codes assigned after the caller sized its arrays belong to rows added meanwhile
+                    if (day >= fromDay && day <= toDay && (category == ANY_CATEGORY || code == category)
+                            && code < totals.length) {
+                        long sum = totals[code] + amounts[i];
+                        overflow |= overflowed(totals[code], amounts[i], sum);
+                        totals[code] = sum;
+                        counts[code]++;
+                    }
+                }
+                checkOverflow(overflow);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Adds the matching rows to totals and counts indexed by day - firstDay
+        void sumByDay(int fromDay, int toDay, int category, int firstDay, long[] totals, long[] counts) {
+            lock.readLock().lock();
+            try {
+                long overflow = 0;
+                for (int i = 0; i < size; i++) {
+                    int day = days[i];
+                    if (day >= fromDay && day <= toDay && (category == ANY_CATEGORY || categories[i] == category)) {
+                        int slot = day - firstDay;
+                        long sum = totals[slot] + amounts[i];
+                        overflow |= overflowed(totals[slot], amounts[i], sum);
+                        totals[slot] = sum;
+                        counts[slot]++;
+                    }
+                }
+                checkOverflow(overflow);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,321 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.ExpenseWatermark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Running totals of each user's daily spend in a memory-mapped file, so the spend between any two days is the
+// difference of two entries and a restart maps the file instead of reading the expense table again.
+//
+// The file is a header followed by one fixed-size slot per user ID, found by arithmetic; IDs never used leave holes
+// in a sparse file. A slot is [filled days][total through day 0]...[total through day days - 1] in minor units, days
+// counted from the first day in the header. Entries from "filled days" on are not written yet and equal the last
+// written one, so an expense on the latest day touches one entry and only a back-dated change rewrites the entries
+// from its day to the last filled one. Slots are mapped in regions of USERS_PER_REGION users as users are written.
+// The header also records whether the file was closed cleanly and the watermark of the expense table at that moment:
+// changes made after the last clean close may never have reached the file, and a watermark that no longer matches
+// means the table changed while the file was not open, so in either case the file has to be built again.
+public class ExpenseDailySpendFile implements Closeable {
+
+    private static final int MAGIC = 0x44535046; // "DSPF"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int STATE_OPEN = 0;
+    private static final int STATE_CLOSED = 1;
+
+    // Header fields
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int FIRST_DAY_OFFSET = 8;
+    private static final int DAYS_OFFSET = 16;
+    private static final int STATE_OFFSET = 20;
+    private static final int COUNT_OFFSET = 24;
+    private static final int MAX_EXPENSE_ID_OFFSET = 32;
+    private static final int VERSION_SUM_OFFSET = 40;
+
+    private static final int USERS_PER_REGION = 256;
+
+    // Keeps a region within the 2 GB a single mapping can cover
+    public static final int MAX_DAYS = Integer.MAX_VALUE / (USERS_PER_REGION * Long.BYTES) - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final long firstDay;
+    private final int days;
+    private final int slotSize;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Mapped regions by index; null for regions no user has been written to
+    private MappedByteBuffer[] regions;
+    private boolean closed;
+
+    // Creates the file, or opens one written by an earlier run. A file in a different layout, not closed cleanly or
+    // closed at a different watermark is emptied; isCurrent tells beforehand whether it can be used as is.
+    public ExpenseDailySpendFile(Path path, long firstDay, int days, ExpenseWatermark watermark) throws IOException {
+        if (days < 1 || days > MAX_DAYS) {
+            throw new IllegalArgumentException("Daily spend file must cover between 1 and " + MAX_DAYS + " days");
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.firstDay = firstDay;
+        this.days = days;
+        this.slotSize = (days + 1) * Long.BYTES;
+        boolean current = isCurrent(path, firstDay, days, watermark);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!current) {
+            channel.truncate(0);
+        }
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.putInt(MAGIC_OFFSET, MAGIC);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putLong(FIRST_DAY_OFFSET, firstDay);
+        header.putInt(DAYS_OFFSET, days);
+        // Until the next clean close, the slots may fall behind the database
+        header.putInt(STATE_OFFSET, STATE_OPEN);
+        header.force();
+
+        long regionSize = (long) USERS_PER_REGION * slotSize;
+        int existing = (int) ((channel.size() - HEADER_SIZE + regionSize - 1) / regionSize);
+        this.regions = new MappedByteBuffer[existing];
+        for (int i = 0; i < existing; i++) {
+            regions[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * regionSize, regionSize);
+        }
+    }
+
+    // Whether the file at the path was closed cleanly with the same first day and number of days, while the expense
+    // table was at the given watermark; never for a null watermark
+    public static boolean isCurrent(Path path, long firstDay, int days, ExpenseWatermark watermark) throws IOException {
+        if (watermark == null || !Files.isRegularFile(path) || Files.size(path) < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer read = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel existing = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (read.hasRemaining() && existing.read(read) >= 0) {
+                // Keep reading until the header is complete
+            }
+        }
+        return read.getInt(MAGIC_OFFSET) == MAGIC && read.getInt(VERSION_OFFSET) == VERSION
+                && read.getLong(FIRST_DAY_OFFSET) == firstDay && read.getInt(DAYS_OFFSET) == days
+                && read.getInt(STATE_OFFSET) == STATE_CLOSED
+                && read.getLong(COUNT_OFFSET) == valueOf(watermark.count())
+                && read.getLong(MAX_EXPENSE_ID_OFFSET) == valueOf(watermark.maxExpenseId())
+                && read.getLong(VERSION_SUM_OFFSET) == valueOf(watermark.versionSum());
+    }
+
+    public long getFirstDay() {
+        return firstDay;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    // Adds an amount to the user's spend on a day, counted from the first day
+    public void add(long userId, int day, long amount) {
+        checkDay(day);
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            ByteBuffer region = region(userId, true);
+            int slot = slotOffset(userId);
+            int filled = (int) region.getLong(slot);
+            if (day >= filled) {
+                long last = filled == 0 ? 0 : region.getLong(entry(slot, filled - 1));
+                for (int i = filled; i <= day; i++) {
+                    region.putLong(entry(slot, i), last);
+                }
+                filled = day + 1;
+                region.putLong(slot, filled);
+            }
+            for (int i = day; i < filled; i++) {
+                int entry = entry(slot, i);
+                region.putLong(entry, Math.addExact(region.getLong(entry), amount));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Spend from fromDay through toDay, both counted from the first day; when daily is not null it also receives the
+    // spend of each day in the range
+    public long sum(long userId, int fromDay, int toDay, long[] daily) {
+        checkDay(fromDay);
+        checkDay(toDay);
+        lock.readLock().lock();
+        try {
+            ByteBuffer region = region(userId, false);
+            if (region == null) {
+                return 0;
+            }
+            int slot = slotOffset(userId);
+            int filled = (int) region.getLong(slot);
+            long before = totalThrough(region, slot, filled, fromDay - 1);
+            if (daily != null) {
+                long previous = before;
+                for (int day = fromDay; day <= toDay; day++) {
+                    long total = totalThrough(region, slot, filled, day);
+                    daily[day - fromDay] = total - previous;
+                    previous = total;
+                }
+            }
+            return totalThrough(region, slot, filled, toDay) - before;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Adds an amount to a day of a slot being loaded, which holds plain daily amounts until completeLoad
+    public void loadDay(long userId, int day, long amount) {
+        checkDay(day);
+        lock.writeLock().lock();
+        try {
+            ByteBuffer region = region(userId, true);
+            int entry = entry(slotOffset(userId), day);
+            region.putLong(entry, Math.addExact(region.getLong(entry), amount));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Turns the daily amounts of a loaded slot into running totals, filled up to its last day with any spend
+    public void completeLoad(long userId) {
+        lock.writeLock().lock();
+        try {
+            ByteBuffer region = region(userId, true);
+            int slot = slotOffset(userId);
+            long total = 0;
+            int filled = 0;
+            for (int day = 0; day < days; day++) {
+                int entry = entry(slot, day);
+                long amount = region.getLong(entry);
+                if (amount != 0) {
+                    filled = day + 1;
+                }
+                total = Math.addExact(total, amount);
+                region.putLong(entry, total);
+            }
+            region.putLong(slot, filled);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Empties the user's slot, ready to be loaded again
+    public void clear(long userId) {
+        lock.writeLock().lock();
+        try {
+            ByteBuffer region = region(userId, false);
+            if (region != null) {
+                int slot = slotOffset(userId);
+                for (int offset = 0; offset < slotSize; offset += Long.BYTES) {
+                    region.putLong(slot + offset, 0L);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Writes the slots out and marks the file as matching the expense table at the watermark, so a start that finds
+    // the table still at that watermark can map it as is
+    public void close(ExpenseWatermark watermark) throws IOException {
+        close(true, watermark);
+    }
+
+    // Closes the file without marking it clean, so the next start builds it again
+    @Override
+    public void close() throws IOException {
+        close(false, null);
+    }
+
+    private void close(boolean clean, ExpenseWatermark watermark) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (clean) {
+                for (MappedByteBuffer region : regions) {
+                    if (region != null) {
+                        region.force();
+                    }
+                }
+                header.putLong(COUNT_OFFSET, valueOf(watermark.count()));
+                header.putLong(MAX_EXPENSE_ID_OFFSET, valueOf(watermark.maxExpenseId()));
+                header.putLong(VERSION_SUM_OFFSET, valueOf(watermark.versionSum()));
+                header.putInt(STATE_OFFSET, STATE_CLOSED);
+                header.force();
+            }
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long valueOf(Long value) {
+        return value == null ? 0L : value;
+    }
+
+    private long totalThrough(ByteBuffer region, int slot, int filled, int day) {
+        if (day < 0 || filled == 0) {
+            return 0;
+        }
+        return region.getLong(entry(slot, Math.min(day, filled - 1)));
+    }
+
+    // Region holding the user's slot, mapped on first write; null when it is not mapped and create is false
+    private ByteBuffer region(long userId, boolean create) {
+        if (userId < 0) {
+            throw new IllegalArgumentException("User ID cannot be negative");
+        }
+        long index = userId / USERS_PER_REGION;
+        if (index < regions.length && regions[(int) index] != null) {
+            return regions[(int) index];
+        }
+        if (!create) {
+            return null;
+        }
+        if (index >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("User ID " + userId + " is too large for the daily spend file");
+        }
+        if (index >= regions.length) {
+            regions = Arrays.copyOf(regions, (int) index + 1);
+        }
+        long regionSize = (long) USERS_PER_REGION * slotSize;
+        try {
+            regions[(int) index] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + index * regionSize, regionSize);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map the daily spend file", e);
+        }
+        return regions[(int) index];
+    }
+
+    private int slotOffset(long userId) {
+        return (int) (userId % USERS_PER_REGION) * slotSize;
+    }
+
+    private static int entry(int slot, int day) {
+        return slot + (day + 1) * Long.BYTES;
+    }
+
+    private void checkDay(int day) {
+        if (day < 0 || day >= days) {
+            throw new IllegalArgumentException("Day " + day + " is outside the daily spend file");
+        }
+    }
+
+}
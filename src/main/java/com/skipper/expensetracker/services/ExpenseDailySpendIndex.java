@@ -0,0 +1,334 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.DailySpendSeries;
+import com.skipper.expensetracker.dto.ExpenseWatermark;
+import com.skipper.expensetracker.dto.StoredExpense;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// Daily spend per user for charts, held off-heap in an ExpenseDailySpendFile covering expenses.daily-index.days days
+// from expenses.daily-index.first-day. A file closed cleanly by the previous run is mapped as is at startup when the
+// expense table is still at the watermark it was closed at; any other is built again from the expense table once the
+// application is ready, into a new file that replaces it when complete. ExpenseServiceImpl applies each change made on
+// this instance after it commits; changes other instances make while this one runs are only picked up by the
+// rebuild cron. Until the file is usable, and for ranges outside the days it covers, getDailySpend comes back empty
+// so the caller sums the days in the database instead.
+@Slf4j
+@Component
+public class ExpenseDailySpendIndex {
+
+    private final ExpenseRepository expenseRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final Path path;
+    private final LocalDate firstDay;
+    private final int days;
+    private final Timer queryTimer;
+
+    // Same zone JDBC uses when binding java.util.Date, so days line up with day() in SQL
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Users whose expenses changed while a build was reading them, reloaded before the new file is used; null when no
+    // build is running
+    private final Object loadLock = new Object();
+    private Set<Long> staleUsers;
+    private volatile ExpenseDailySpendFile file;
+
+    public ExpenseDailySpendIndex(ExpenseRepository expenseRepository, PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${expenses.daily-index.enabled:false}") boolean enabled,
+                                  @Value("${expenses.daily-index.path:data/daily-spend.idx}") Path path,
+                                  @Value("${expenses.daily-index.first-day:2020-01-01}") LocalDate firstDay,
+                                  @Value("${expenses.daily-index.days:4096}") int days) throws IOException {
+        this.expenseRepository = expenseRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.path = path;
+        this.firstDay = firstDay;
+        this.days = days;
+        this.queryTimer = Timer.builder("expenses.daily_index.query")
+                .description("Time to read one user's daily spend from the daily spend index")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        if (enabled) {
+            ExpenseWatermark watermark = currentWatermark();
+            if (ExpenseDailySpendFile.isCurrent(path, firstDay.toEpochDay(), days, watermark)) {
+                file = new ExpenseDailySpendFile(path, firstDay.toEpochDay(), days, watermark);
+                log.info("Mapped the daily spend index from {}", path);
+            }
+        }
+    }
+
+    public boolean isLoaded() {
+        return file != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIfMissing() {
+        if (enabled && file == null) {
+            rebuild();
+        }
+    }
+
+    // Builds a new file from the expense table next to the current one and swaps it in, leaving the current one in
+    // use meanwhile; only needed on a schedule when other instances also write expenses
+    @Scheduled(cron = "${expenses.daily-index.rebuild-cron:-}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (loadLock) {
+            if (staleUsers != null) {
+                log.info("Daily spend index build already running, skipping rebuild");
+                return;
+            }
+            staleUsers = new HashSet<>();
+        }
+
+        Path building = path.resolveSibling(path.getFileName() + ".building");
+        ExpenseDailySpendFile loading = null;
+        boolean published = false;
+        try {
+            long started = System.nanoTime();
+            Files.deleteIfExists(building);
+            ExpenseDailySpendFile target = new ExpenseDailySpendFile(building, firstDay.toEpochDay(), days, null);
+            loading = target;
+            Set<Long> users = new HashSet<>();
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<StoredExpense> rows = expenseRepository.streamStoredExpenses()) {
+                    rows.forEach(row -> {
+                        if (load(target, row)) {
+                            users.add(row.userId());
+                        }
+                    });
+                }
+            });
+            users.forEach(target::completeLoad);
+
+            // Expenses committed while the cursor was open may be missing from it; re-read those users until none
+            // are left over, each time outside the cursor's transaction so the reads see the latest commits
+            while (true) {
+                Set<Long> stale;
+                synchronized (loadLock) {
+                    if (staleUsers.isEmpty()) {
+                        Files.move(building, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                        // The replaced file is not marked clean: changes from here on only reach the new one
+                        if (file != null) {
+                            file.close();
+                        }
+                        file = target;
+                        staleUsers = null;
+                        published = true;
+                        break;
+                    }
+                    stale = staleUsers;
+                    staleUsers = new HashSet<>();
+                }
+                for (Long userId : stale) {
+                    target.clear(userId);
+                    for (StoredExpense row : expenseRepository.findStoredByUserId(userId)) {
+                        load(target, row);
+                    }
+                    target.completeLoad(userId);
+                }
+            }
+            log.info("Built the daily spend index of {} users in {} ms", users.size(),
+                    (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            // Daily spend keeps coming from the previous file, or the database before the first build
+            log.warn("Building the daily spend index failed", e);
+        } finally {
+            if (!published) {
+                synchronized (loadLock) {
+                    staleUsers = null;
+                }
+                discard(loading, building);
+            }
+        }
+    }
+
+    // Marks the file clean at the table's current watermark, so the next start maps it unless the table changes
+    // while this instance is down
+    @PreDestroy
+    public void close() throws IOException {
+        synchronized (loadLock) {
+            if (file == null) {
+                return;
+            }
+            ExpenseWatermark watermark = currentWatermark();
+            if (watermark != null) {
+                file.close(watermark);
+            } else {
+                file.close();
+            }
+        }
+    }
+
+    // Adds the expenses once the surrounding transaction commits
+    public void recordExpenses(Collection<Expense> expenses) {
+        if (enabled) {
+            afterCommit(List.of(), rows(expenses));
+        }
+    }
+
+    // Subtracts the expenses once the surrounding transaction commits
+    public void reverseExpenses(Collection<Expense> expenses) {
+        if (enabled) {
+            afterCommit(rows(expenses), List.of());
+        }
+    }
+
+    // Moves an edited expense from its previous values to its current ones once the surrounding transaction commits
+    public void reviseExpense(Expense previous, Expense updated) {
+        if (enabled) {
+            afterCommit(rows(List.of(previous)), rows(List.of(updated)));
+        }
+    }
+
+    // The user's spend on each day from one date to another, both inclusive, or empty when the index cannot answer
+    public Optional<DailySpendSeries> getDailySpend(Long userId, LocalDate from, LocalDate to) {
+        ExpenseDailySpendFile current = file;
+        if (current == null || from.isAfter(to)) {
+            return Optional.empty();
+        }
+        long fromDay = from.toEpochDay() - current.getFirstDay();
+        long toDay = to.toEpochDay() - current.getFirstDay();
+        if (fromDay < 0 || toDay >= current.getDays()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(queryTimer.record(() -> {
+            long[] daily = new long[(int) (toDay - fromDay + 1)];
+            long total = current.sum(userId, (int) fromDay, (int) toDay, daily);
+            return DailySpendSeries.of(userId, from, total, daily);
+        }));
+    }
+
+    // The expense table's watermark, or null when it cannot be read and the file cannot be trusted
+    private ExpenseWatermark currentWatermark() {
+        try {
+            return expenseRepository.findWatermark();
+        } catch (RuntimeException e) {
+            log.warn("Could not read the expense table watermark for the daily spend index", e);
+            return null;
+        }
+    }
+
+    private void afterCommit(List<Row> removed, List<Row> added) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(removed, added);
+                }
+            });
+        } else {
+            apply(removed, added);
+        }
+    }
+
+    private void apply(List<Row> removed, List<Row> added) {
+        ExpenseDailySpendFile current;
+        synchronized (loadLock) {
+            if (staleUsers != null) {
+                removed.forEach(row -> staleUsers.add(row.userId()));
+                added.forEach(row -> staleUsers.add(row.userId()));
+            }
+            current = file;
+        }
+        if (current == null) {
+            return;
+        }
+        // A build starting from here on reads these changes from the database, so they only need to reach the file
+        // in use now
+        for (Row row : removed) {
+            add(current, row.userId(), row.epochDay(), -row.amount());
+        }
+        for (Row row : added) {
+            add(current, row.userId(), row.epochDay(), row.amount());
+        }
+    }
+
+    // Expenses outside the days the file covers are left out, and ranges reaching them are answered by the database
+    private static void add(ExpenseDailySpendFile target, long userId, long epochDay, long amount) {
+        long day = epochDay - target.getFirstDay();
+        if (day >= 0 && day < target.getDays()) {
+            target.add(userId, (int) day, amount);
+        }
+    }
+
+    private boolean load(ExpenseDailySpendFile target, StoredExpense row) {
+        // Expenses without a user or date are left out of every database summary as well
+        if (row.userId() == null || row.date() == null) {
+            return false;
+        }
+        long day = toEpochDay(row.date()) - target.getFirstDay();
+        if (day < 0 || day >= target.getDays()) {
+            return false;
+        }
+        target.loadDay(row.userId(), (int) day, row.amount() == null ? 0L : row.amount());
+        return true;
+    }
+
+    private List<Row> rows(Collection<Expense> expenses) {
+        List<Row> rows = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            if (expense.getUser() == null || expense.getUser().getUserId() == null || expense.getDate() == null) {
+                continue;
+            }
+            Long amount = expense.getAmount() == null ? null : expense.getAmount().getMinorUnits();
+            rows.add(new Row(expense.getUser().getUserId(), toEpochDay(expense.getDate()), amount == null ? 0L : amount));
+        }
+        return rows;
+    }
+
+    private long toEpochDay(Date date) {
+        return LocalDate.ofInstant(date.toInstant(), zone).toEpochDay();
+    }
+
+    private static void discard(ExpenseDailySpendFile loading, Path building) {
+        try {
+            if (loading != null) {
+                loading.close();
+            }
+            Files.deleteIfExists(building);
+        } catch (IOException e) {
+            log.warn("Could not remove the unfinished daily spend index {}", building, e);
+        }
+    }
+
+    // An expense reduced to what the index adds up
+    private record Row(long userId, long epochDay, long amount) {
+    }
+
+}
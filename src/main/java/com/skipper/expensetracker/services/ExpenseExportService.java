@@ -0,0 +1,14 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.entities.ExpenseFileFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+
+public interface ExpenseExportService {
+
+    long exportExpenses(ExpenseFileFormat format, Long userId, Date startDate, Date endDate, OutputStream outputStream)
+            throws IOException;
+
+}
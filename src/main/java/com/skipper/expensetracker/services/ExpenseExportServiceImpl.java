@@ -0,0 +1,124 @@
+package com.skipper.expensetracker.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.entities.ExpenseFileFormat;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ExpenseExportServiceImpl implements ExpenseExportService {
+
+    // Same leading columns the CSV import expects, so an export can be re-imported as is
+    private static final String CSV_HEADER = "userId,categoryId,amount,description,date,expenseId,categoryName,currency";
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    // Bounds used when an export request leaves its date range open
+    private static final Date MIN_DATE = new Date(0L);
+    private static final Date MAX_DATE = new Date(253402300799000L); // 9999-12-31T23:59:59Z
+
+    private final ExpenseRepository expenseRepository;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public long exportExpenses(ExpenseFileFormat format, Long userId, Date startDate, Date endDate,
+                               OutputStream outputStream) throws IOException {
+        if (format == null) {
+            throw new IllegalArgumentException("Export format cannot be null");
+        }
+        Date from = startDate == null ? MIN_DATE : startDate;
+        Date to = endDate == null ? MAX_DATE : endDate;
+        if (from.after(to)) {
+            throw new IllegalArgumentException("Export start date must not be after end date");
+        }
+
+        try (Stream<ExpenseView> rows = expenseRepository.streamExportRows(userId, from, to)) {
+            return format == ExpenseFileFormat.CSV
+                    ? writeCsv(rows.iterator(), outputStream)
+                    : writeNdjson(rows.iterator(), outputStream);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long writeCsv(Iterator<ExpenseView> rows, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        long count = 0;
+        while (rows.hasNext()) {
+            ExpenseView row = rows.next();
+            writer.write(String.valueOf(row.userId()));
+            writer.write(',');
+            writer.write(String.valueOf(row.categoryId()));
+            writer.write(',');
+            writer.write(row.amount() == null ? "" : Money.toDecimal(row.amount()).toPlainString());
+            writer.write(',');
+            writer.write(csvField(row.description()));
+            writer.write(',');
+            writer.write(row.date() == null ? "" : row.date().toInstant().toString());
+            writer.write(',');
+            writer.write(String.valueOf(row.expenseId()));
+            writer.write(',');
+            writer.write(csvField(row.categoryName()));
+            writer.write(',');
+            writer.write(csvField(row.currency()));
+            writer.write('\n');
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    private long writeNdjson(Iterator<ExpenseView> rows, OutputStream outputStream) throws IOException {
+        long count = 0;
+        ObjectWriter rowWriter = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n");
+        try (SequenceWriter writer = rowWriter.writeValues(outputStream)) {
+            while (rows.hasNext()) {
+                writer.write(rows.next());
+                count++;
+            }
+        }
+        if (count > 0) {
+            outputStream.write('\n');
+        }
+        outputStream.flush();
+        return count;
+    }
+
+    // Quote a CSV field when needed; line breaks are flattened because the import reads one record per line
+    static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        String flattened = value.replace('\r', ' ').replace('\n', ' ');
+        if (flattened.indexOf(',') < 0 && flattened.indexOf('"') < 0) {
+            return flattened;
+        }
+        return '"' + flattened.replace("\"", "\"\"") + '"';
+    }
+
+}
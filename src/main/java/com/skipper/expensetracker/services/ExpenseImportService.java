@@ -0,0 +1,18 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.entities.ExpenseFileFormat;
+import com.skipper.expensetracker.entities.ExpenseImport;
+import com.skipper.expensetracker.entities.ExpenseImportError;
+
+import java.io.InputStream;
+import java.util.List;
+
+public interface ExpenseImportService {
+
+    ExpenseImport importExpenses(String importId, ExpenseFileFormat format, InputStream inputStream);
+
+    ExpenseImport getImport(String importId);
+
+    List<ExpenseImportError> getImportErrors(String importId);
+
+}
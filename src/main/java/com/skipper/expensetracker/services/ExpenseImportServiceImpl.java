@@ -0,0 +1,412 @@
+package com.skipper.expensetracker.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skipper.expensetracker.dto.BatchItemResult;
+import com.skipper.expensetracker.dto.ExpenseImportRecord;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.ExpenseFileFormat;
+import com.skipper.expensetracker.entities.ExpenseImport;
+import com.skipper.expensetracker.entities.ExpenseImportError;
+import com.skipper.expensetracker.entities.ImportStatus;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+import com.skipper.expensetracker.repositories.ExpenseImportErrorRepository;
+import com.skipper.expensetracker.repositories.ExpenseImportRepository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Service
+public class ExpenseImportServiceImpl implements ExpenseImportService {
+
+    private static final List<String> CSV_COLUMNS = List.of("userId", "categoryId", "amount", "description", "date");
+
+    // Marks the end of the input on the chunk queue
+    private static final List<ImportLine> END_OF_INPUT = List.of();
+
+    private final ExpenseService expenseService;
+    private final ExpenseImportRepository expenseImportRepository;
+    private final ExpenseImportErrorRepository expenseImportErrorRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService chunkWriters;
+    private final Set<String> runningImports = ConcurrentHashMap.newKeySet();
+
+    @Value("${expenses.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${expenses.import.queued-chunks:4}")
+    private int queuedChunks;
+
+    @Value("${expenses.import.max-stored-errors:1000}")
+    private long maxStoredErrors;
+
+    public ExpenseImportServiceImpl(ExpenseService expenseService, ExpenseImportRepository expenseImportRepository,
+                                    ExpenseImportErrorRepository expenseImportErrorRepository, ObjectMapper objectMapper,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${expenses.import.max-concurrent:4}") int maxConcurrentImports) {
+        this.expenseService = expenseService;
+        this.expenseImportRepository = expenseImportRepository;
+        this.expenseImportErrorRepository = expenseImportErrorRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // One writer thread per running import; a full pool rejects new imports instead of queueing them
+        AtomicInteger threadCount = new AtomicInteger();
+        this.chunkWriters = new ThreadPoolExecutor(maxConcurrentImports, maxConcurrentImports, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> new Thread(runnable, "expense-import-" + threadCount.incrementAndGet()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        chunkWriters.shutdownNow();
+    }
+
+    @Override
+    public ExpenseImport importExpenses(String importId, ExpenseFileFormat format, InputStream inputStream) {
+        if (format == null || inputStream == null) {
+            throw new IllegalArgumentException("Import format and content cannot be null");
+        }
+        String id = importId == null || importId.isBlank() ? UUID.randomUUID().toString() : importId;
+        if (!runningImports.add(id)) {
+            throw new IllegalStateException("Import " + id + " is already running");
+        }
+
+        try {
+            // A file without a usable header is rejected before the import is recorded as running
+            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            List<String> header;
+            try {
+                header = format == ExpenseFileFormat.CSV ? readCsvHeader(reader) : null;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Reading the CSV header of import " + id + " failed", e);
+            }
+
+            ExpenseImport expenseImport = transactionTemplate.execute(status -> startOrResume(id, format));
+            if (expenseImport.getStatus() == ImportStatus.COMPLETED) {
+                return expenseImport;
+            }
+
+            BlockingQueue<List<ImportLine>> queue = new ArrayBlockingQueue<>(queuedChunks);
+            Future<?> writer;
+            try {
+                writer = chunkWriters.submit(() -> writeChunks(id, queue));
+            } catch (RejectedExecutionException e) {
+                transactionTemplate.execute(status -> finish(id, ImportStatus.FAILED, "Too many concurrent imports"));
+                throw e;
+            }
+
+            String failure = null;
+            try {
+                readChunks(format, reader, header, expenseImport.getLastCommittedLine(), queue, writer);
+            } catch (IOException | RuntimeException e) {
+                // Chunks already parsed are still committed, so a retry resumes right after them
+                log.warn("Reading expense import {} failed", id, e);
+                failure = e.getMessage();
+                finishWriter(queue, writer);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                writer.cancel(true);
+                failure = "Import interrupted";
+            }
+
+            try {
+                writer.get();
+            } catch (ExecutionException e) {
+                log.warn("Writing expense import {} failed", id, e.getCause());
+                failure = e.getCause().getMessage();
+            } catch (InterruptedException | CancellationException e) {
+                Thread.currentThread().interrupt();
+                failure = failure == null ? "Import interrupted" : failure;
+            }
+
+            String error = failure;
+            return transactionTemplate.execute(status ->
+                    finish(id, error == null ? ImportStatus.COMPLETED : ImportStatus.FAILED, error));
+        } finally {
+            runningImports.remove(id);
+        }
+    }
+
+    @Override
+    public ExpenseImport getImport(String importId) {
+        return expenseImportRepository.findById(importId).orElse(null);
+    }
+
+    @Override
+    public List<ExpenseImportError> getImportErrors(String importId) {
+        return expenseImportErrorRepository.findByImportIdOrderByLineNumber(importId);
+    }
+
+    private ExpenseImport startOrResume(String importId, ExpenseFileFormat format) {
+        ExpenseImport expenseImport = expenseImportRepository.findById(importId).orElse(null);
+        if (expenseImport == null) {
+            expenseImport = ExpenseImport.builder()
+                    .importId(importId)
+                    .format(format)
+                    .lastCommittedLine(0L)
+                    .importedRows(0L)
+                    .failedRows(0L)
+                    .startedAt(new Date())
+                    .build();
+        } else if (expenseImport.getStatus() == ImportStatus.COMPLETED) {
+            return expenseImport;
+        } else if (expenseImport.getFormat() != format) {
+            throw new IllegalArgumentException("Import " + importId + " was started as " + expenseImport.getFormat());
+        }
+        expenseImport.setStatus(ImportStatus.RUNNING);
+        expenseImport.setLastError(null);
+        expenseImport.setUpdatedAt(new Date());
+        return expenseImportRepository.save(expenseImport);
+    }
+
+    private ExpenseImport finish(String importId, ImportStatus status, String error) {
+        ExpenseImport expenseImport = expenseImportRepository.findById(importId).orElseThrow();
+        expenseImport.setStatus(status);
+        expenseImport.setLastError(error);
+        expenseImport.setUpdatedAt(new Date());
+        return expenseImportRepository.save(expenseImport);
+    }
+
+    // Parse the input line by line on the calling thread, handing fixed-size chunks to the writer
+    private void readChunks(ExpenseFileFormat format, BufferedReader reader, List<String> header, long skipThroughLine,
+                            BlockingQueue<List<ImportLine>> queue, Future<?> writer)
+            throws IOException, InterruptedException {
+        long lineNumber = header == null ? 0 : 1;
+        List<ImportLine> chunk = new ArrayList<>(chunkSize);
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            // Lines up to the last committed chunk were already imported by an earlier attempt
+            if (lineNumber <= skipThroughLine || line.isBlank()) {
+                continue;
+            }
+            chunk.add(parseLine(format, header, line, lineNumber));
+            if (chunk.size() == chunkSize) {
+                enqueue(queue, chunk, writer);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            enqueue(queue, chunk, writer);
+        }
+        enqueue(queue, END_OF_INPUT, writer);
+    }
+
+    private void enqueue(BlockingQueue<List<ImportLine>> queue, List<ImportLine> chunk, Future<?> writer)
+            throws InterruptedException {
+        // Block while the writer is behind, but give up as soon as it has stopped
+        while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone()) {
+                throw new IllegalStateException("Import writer stopped before the input was fully read");
+            }
+        }
+    }
+
+    private void finishWriter(BlockingQueue<List<ImportLine>> queue, Future<?> writer) {
+        try {
+            if (!writer.isDone()) {
+                enqueue(queue, END_OF_INPUT, writer);
+            }
+        } catch (IllegalStateException e) {
+            // The writer has already stopped on its own
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.cancel(true);
+        }
+    }
+
+    private void writeChunks(String importId, BlockingQueue<List<ImportLine>> queue) {
+        try {
+            List<ImportLine> chunk;
+            while ((chunk = queue.take()) != END_OF_INPUT) {
+                List<ImportLine> lines = chunk;
+                transactionTemplate.executeWithoutResult(status -> commitChunk(importId, lines));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import writer interrupted", e);
+        }
+    }
+
+    // Insert a chunk, record its rejected lines and advance the resume point in a single transaction
+    private void commitChunk(String importId, List<ImportLine> lines) {
+        List<Expense> expenses = new ArrayList<>(lines.size());
+        List<Long> expenseLines = new ArrayList<>(lines.size());
+        List<ExpenseImportError> errors = new ArrayList<>();
+        for (ImportLine line : lines) {
+            if (line.error() != null) {
+                errors.add(new ExpenseImportError(null, importId, line.lineNumber(), line.error()));
+            } else {
+                expenses.add(line.expense());
+                expenseLines.add(line.lineNumber());
+            }
+        }
+
+        long imported = 0;
+        if (!expenses.isEmpty()) {
+            for (BatchItemResult result : expenseService.addExpenses(expenses)) {
+                if (result.created()) {
+                    imported++;
+                } else {
+                    errors.add(new ExpenseImportError(null, importId, expenseLines.get(result.index()), result.error()));
+                }
+            }
+        }
+
+        ExpenseImport expenseImport = expenseImportRepository.findById(importId).orElseThrow();
+        long storable = Math.max(0, maxStoredErrors - expenseImport.getFailedRows());
+        if (storable > 0 && !errors.isEmpty()) {
+            errors.sort((a, b) -> Long.compare(a.getLineNumber(), b.getLineNumber()));
+            expenseImportErrorRepository.saveAll(errors.subList(0, (int) Math.min(storable, errors.size())));
+        }
+        expenseImport.setLastCommittedLine(lines.get(lines.size() - 1).lineNumber());
+        expenseImport.setImportedRows(expenseImport.getImportedRows() + imported);
+        expenseImport.setFailedRows(expenseImport.getFailedRows() + errors.size());
+        expenseImport.setUpdatedAt(new Date());
+        expenseImportRepository.save(expenseImport);
+    }
+
+    private List<String> readCsvHeader(BufferedReader reader) throws IOException {
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            throw new IllegalArgumentException("CSV import is missing its header line");
+        }
+        List<String> header = parseCsvLine(headerLine).stream().map(String::trim).toList();
+        if (!header.containsAll(CSV_COLUMNS)) {
+            throw new IllegalArgumentException("CSV header must contain the columns " + CSV_COLUMNS);
+        }
+        return header;
+    }
+
+    private ImportLine parseLine(ExpenseFileFormat format, List<String> header, String line, long lineNumber) {
+        try {
+            ExpenseImportRecord record = format == ExpenseFileFormat.CSV
+                    ? toRecord(header, parseCsvLine(line))
+                    : objectMapper.readValue(line, ExpenseImportRecord.class);
+            return new ImportLine(lineNumber, toExpense(record), null);
+        } catch (IOException | IllegalArgumentException | DateTimeParseException e) {
+            return new ImportLine(lineNumber, null, "Invalid line: " + e.getMessage());
+        }
+    }
+
+    private static ExpenseImportRecord toRecord(List<String> header, List<String> values) {
+        if (values.size() != header.size()) {
+            throw new IllegalArgumentException("expected " + header.size() + " columns but found " + values.size());
+        }
+        return new ExpenseImportRecord(
+                parseLong(values.get(header.indexOf("userId"))),
+                parseLong(values.get(header.indexOf("categoryId"))),
+                parseDecimal(values.get(header.indexOf("amount"))),
+                header.contains("currency") ? emptyToNull(values.get(header.indexOf("currency")).trim()) : null,
+                emptyToNull(values.get(header.indexOf("description"))),
+                emptyToNull(values.get(header.indexOf("date"))));
+    }
+
+    private static Expense toExpense(ExpenseImportRecord record) {
+        return Expense.builder()
+                .user(record.userId() == null ? null : User.builder().userId(record.userId()).build())
+                .category(record.categoryId() == null ? null : Category.builder().categoryId(record.categoryId()).build())
+                .amount(record.amount() == null ? null : Money.of(record.amount(), record.currency()))
+                .description(record.description())
+                .date(parseDate(record.date()))
+                .build();
+    }
+
+    // Accepts either an ISO date, taken as the start of that day, or an ISO instant
+    private static Date parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.length() == 10) {
+            return Date.from(LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        }
+        return Date.from(Instant.parse(value));
+    }
+
+    private static Long parseLong(String value) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : Long.valueOf(trimmed);
+    }
+
+    private static BigDecimal parseDecimal(String value) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : new BigDecimal(trimmed);
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    // Split one CSV record, honouring double-quoted fields with "" escapes; records may not span lines
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    // A parsed input line: either an expense ready for validation or the reason it could not be parsed
+    private record ImportLine(long lineNumber, Expense expense, String error) {
+    }
+
+}
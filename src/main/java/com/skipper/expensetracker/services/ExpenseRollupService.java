@@ -0,0 +1,33 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.SummaryGroup;
+import com.skipper.expensetracker.entities.Expense;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface ExpenseRollupService {
+
+    void recordExpense(Expense expense);
+
+    void recordExpenses(Collection<Expense> expenses);
+
+    void reverseExpense(Expense expense);
+
+    void reverseExpenses(Collection<Expense> expenses);
+
+    // Moves an edited expense from its previous rollup row to its current one
+    void reviseExpense(Expense previous, Expense updated);
+
+    // Total in minor units of the configured currency
+    long getTotalExpensesByUserId(Long userId);
+
+    Optional<List<?>> getSummary(SummaryGroup groupBy, Long userId, Long categoryId, Date startDate, Date endDate);
+
+    int rebuild();
+
+    int verify();
+
+}
@@ -0,0 +1,201 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.MonthlyExpenseTotal;
+import com.skipper.expensetracker.dto.SummaryGroup;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.ExpenseRollup;
+import com.skipper.expensetracker.entities.ExpenseRollupId;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.ExpenseRollupRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class ExpenseRollupServiceImpl implements ExpenseRollupService {
+
+    private static final int MIN_PERIOD = 0;
+    private static final int MAX_PERIOD = 999912;
+
+    private final ExpenseRollupRepository expenseRollupRepository;
+    private final ExpenseRepository expenseRepository;
+
+    @Override
+    public void recordExpense(Expense expense) {
+        applyDelta(expense, expense.getAmount().getMinorUnits(), 1L);
+    }
+
+    @Override
+    public void recordExpenses(Collection<Expense> expenses) {
+        applyDeltas(expenses, 1);
+    }
+
+    @Override
+    public void reverseExpense(Expense expense) {
+        applyDelta(expense, -expense.getAmount().getMinorUnits(), -1L);
+        expenseRollupRepository.deleteEmptyRows();
+    }
+
+    @Override
+    public void reverseExpenses(Collection<Expense> expenses) {
+        applyDeltas(expenses, -1);
+        expenseRollupRepository.deleteEmptyRows();
+    }
+
+    @Override
+    public void reviseExpense(Expense previous, Expense updated) {
+        // An edit that stays in the same user, category and month only changes that row's total
+        if (rollupId(previous).equals(rollupId(updated))) {
+            applyDelta(updated, updated.getAmount().getMinorUnits() - previous.getAmount().getMinorUnits(), 0L);
+            return;
+        }
+        reverseExpense(previous);
+        recordExpense(updated);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long getTotalExpensesByUserId(Long userId) {
+        BigDecimal total = expenseRollupRepository.getTotalByUserId(userId);
+        return total == null ? 0L : Money.toMinorUnits(total);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<List<?>> getSummary(SummaryGroup groupBy, Long userId, Long categoryId, Date startDate, Date endDate) {
+        // Daily totals and ranges that split a month cannot be answered from monthly rows
+        if (groupBy == SummaryGroup.DAY || !startsMonth(startDate) || !endsMonth(endDate)) {
+            return Optional.empty();
+        }
+        int fromPeriod = startDate == null ? MIN_PERIOD : toPeriod(YearMonth.from(toLocalDateTime(startDate)));
+        int toPeriod = endDate == null ? MAX_PERIOD : toPeriod(YearMonth.from(toLocalDateTime(endDate)));
+
+        return Optional.of(switch (groupBy) {
+            case USER -> expenseRollupRepository.sumByUser(userId, categoryId, fromPeriod, toPeriod);
+            case CATEGORY -> expenseRollupRepository.sumByCategory(userId, categoryId, fromPeriod, toPeriod);
+            case MONTH -> expenseRollupRepository.sumByMonth(userId, categoryId, fromPeriod, toPeriod);
+            case YEAR -> expenseRollupRepository.sumByYear(userId, categoryId, fromPeriod, toPeriod);
+            case DAY -> throw new IllegalStateException("Daily totals are not rolled up");
+        });
+    }
+
+    @Override
+    public int rebuild() {
+        expenseRollupRepository.deleteAllInBatch();
+        List<MonthlyExpenseTotal> totals = expenseRepository.sumByUserCategoryMonth();
+        for (MonthlyExpenseTotal total : totals) {
+            expenseRollupRepository.applyDelta(total.userId(), total.categoryId(), total.year(), total.month(),
+                    total.total() == null ? null : Money.toDecimal(total.total()), total.count());
+        }
+        log.info("Rebuilt expense rollup with {} rows", totals.size());
+        return totals.size();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public int verify() {
+        Map<ExpenseRollupId, ExpenseRollup> rollups = new HashMap<>();
+        for (ExpenseRollup rollup : expenseRollupRepository.findAll()) {
+            rollups.put(rollup.getId(), rollup);
+        }
+
+        int mismatches = 0;
+        for (MonthlyExpenseTotal total : expenseRepository.sumByUserCategoryMonth()) {
+            ExpenseRollup rollup = rollups.remove(
+                    new ExpenseRollupId(total.userId(), total.categoryId(), total.year(), total.month()));
+            if (rollup == null || rollup.getExpenseCount() != total.count().longValue()
+                    || !Objects.equals(rollup.getTotal(), total.total())) {
+                mismatches++;
+            }
+        }
+        // Any rollup rows left over have no matching expenses at all
+        return mismatches + rollups.size();
+    }
+
+    // Nightly consistency check; the rollup is recomputed from scratch if it has drifted
+    @Scheduled(cron = "${expenses.rollup.verify-cron:0 30 3 * * *}")
+    public void verifyAndRepair() {
+        int mismatches = verify();
+        if (mismatches > 0) {
+            log.warn("Expense rollup has {} mismatched rows, rebuilding", mismatches);
+            rebuild();
+        }
+    }
+
+    // Populate the rollup on first start against an existing expense table
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        if (expenseRollupRepository.count() == 0 && expenseRepository.count() > 0) {
+            rebuild();
+        }
+    }
+
+    private void applyDelta(Expense expense, long amount, long count) {
+        ExpenseRollupId id = rollupId(expense);
+        expenseRollupRepository.applyDelta(id.getUserId(), id.getCategoryId(), id.getExpenseYear(), id.getExpenseMonth(),
+                Money.toDecimal(amount), count);
+    }
+
+    // Collapses the expenses to one delta per rollup row before touching the database
+    private void applyDeltas(Collection<Expense> expenses, int sign) {
+        // Amount and count in minor units, kept as primitives so the sums are exact and unboxed
+        Map<ExpenseRollupId, long[]> deltas = new HashMap<>();
+        for (Expense expense : expenses) {
+            long[] delta = deltas.computeIfAbsent(rollupId(expense), key -> new long[2]);
+            delta[0] = Math.addExact(delta[0], sign * expense.getAmount().getMinorUnits());
+            delta[1] += sign;
+        }
+        deltas.forEach((id, delta) -> expenseRollupRepository.applyDelta(id.getUserId(), id.getCategoryId(),
+                id.getExpenseYear(), id.getExpenseMonth(), Money.toDecimal(delta[0]), delta[1]));
+    }
+
+    private static ExpenseRollupId rollupId(Expense expense) {
+        YearMonth month = YearMonth.from(toLocalDateTime(expense.getDate()));
+        return new ExpenseRollupId(expense.getUser().getUserId(), expense.getCategory().getCategoryId(),
+                month.getYear(), month.getMonthValue());
+    }
+
+    private static boolean startsMonth(Date date) {
+        if (date == null) {
+            return true;
+        }
+        LocalDateTime dateTime = toLocalDateTime(date);
+        return dateTime.equals(YearMonth.from(dateTime).atDay(1).atStartOfDay());
+    }
+
+    private static boolean endsMonth(Date date) {
+        // An inclusive end bound covers a whole month when the next millisecond starts a new month
+        return date == null || startsMonth(new Date(date.getTime() + 1));
+    }
+
+    private static int toPeriod(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        // Same zone JDBC uses when binding java.util.Date, so months line up with year()/month() in SQL
+        return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+
+}
@@ -1,18 +1,67 @@
 package com.skipper.expensetracker.services;
 
+import com.skipper.expensetracker.dto.BatchItemResult;
+import com.skipper.expensetracker.dto.DailySpendSeries;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.dto.SummaryGroup;
+import com.skipper.expensetracker.dto.UserExpenseSnapshot;
 import com.skipper.expensetracker.entities.Expense;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ExpenseService {
     Expense addExpense(Expense expense);
 
+    List<BatchItemResult> addExpenses(List<Expense> expenses);
+
+    // Applies the checks addExpense and addExpenses make, without writing anything
+    void validateExpense(Expense expense);
+
     Expense editExpense(Long expenseId, Expense updatedExpense);
 
+    // Edits the expense only if it is still at the expected version, throwing OptimisticLockingFailureException
+    // otherwise; a null expected version edits whatever version is current
+    Expense editExpense(Long expenseId, Expense updatedExpense, Long expectedVersion);
+
     Boolean deleteExpense(Long expenseId);
 
+    // Deletes the expenses that exist among the given IDs, returning how many were deleted
+    int deleteExpenses(Collection<Long> expenseIds);
+
     Expense getExpensesByExpenseId(Long expenseId);
 
+    // Version of the expense, or null when it does not exist
+    Long getExpenseVersion(Long expenseId);
+
+    // Version of the user's expense collection, read from the database by primary key so it changes whenever one of
+    // the user's expenses or the categories does, on whichever instance the change is made
+    String getUserExpensesVersion(Long userId);
+
     List<Expense> getAllExpenses();
 
+    List<ExpenseView> getExpensesByUserId(Long userId, Date startDate, Date endDate);
+
+    UserExpenseSnapshot getCurrentExpensesByUserId(Long userId);
+
+    // The same snapshot checked against a version the caller already read with getUserExpensesVersion, so a request
+    // that also needs the version for its ETag reads it only once
+    UserExpenseSnapshot getCurrentExpensesByUserId(Long userId, String version);
+
+    List<Expense> getExpensePage(Long afterExpenseId, Integer pageSize);
+
+    void streamAllExpenses(Consumer<Expense> consumer);
+
+    // Total in minor units of the configured currency
+    long getTotalExpensesByUserId(Long userId);
+
+    // Totals grouped by the given dimension, optionally restricted to one user and one category
+    List<?> getExpenseSummary(SummaryGroup groupBy, Long userId, Long categoryId, Date startDate, Date endDate);
+
+    // The user's spend on every day from one date to another, both inclusive
+    DailySpendSeries getDailySpend(Long userId, LocalDate from, LocalDate to);
+
 }
@@ -1,69 +1,278 @@
 package com.skipper.expensetracker.services;
 
+import com.skipper.expensetracker.dto.BatchItemResult;
+import com.skipper.expensetracker.dto.DailySpendSeries;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.dto.PeriodExpenseTotal;
+import com.skipper.expensetracker.dto.SummaryGroup;
+import com.skipper.expensetracker.dto.StoredExpense;
+import com.skipper.expensetracker.dto.UserExpenseSnapshot;
+import com.skipper.expensetracker.dto.UserExpensesVersion;
+import com.skipper.expensetracker.entities.Category;
 import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+import com.skipper.expensetracker.repositories.CategoryRepository;
+import com.skipper.expensetracker.repositories.ExpenseJdbcRepository;
 import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.UserRepository;
 
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class ExpenseServiceImpl implements ExpenseService {
 
+    // Number of streamed expense records after which the persistence context is cleared
+    private static final int STREAM_CLEAR_INTERVAL = 500;
+
+    // Bounds used when a read or summary request leaves its date range open
+    private static final Date MIN_DATE = new Date(0L);
+    private static final Date MAX_DATE = new Date(253402300799000L); // 9999-12-31T23:59:59Z
+
+    // Version of the expenses of a user that does not exist
+    private static final String NO_USER_VERSION = "0";
+
+    // Longest range of days returned one by one, about ten years
+    private static final int MAX_DAILY_SPAN = 3660;
+
     private final ExpenseRepository expenseRepository;
+    private final ExpenseJdbcRepository expenseJdbcRepository;
+    private final UserRepository userRepository;
+    private final CategoryRepository categoryRepository;
+    private final ExpenseRollupService expenseRollupService;
+    private final EntityManager entityManager;
+    private final UserExpenseCache userExpenseCache;
+    private final ExpenseAnalyticsStore expenseAnalyticsStore;
+    private final ExpenseDailySpendIndex expenseDailySpendIndex;
+
+    @Value("${expenses.page.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${expenses.page.max-size:1000}")
+    private int maxPageSize;
+
+    @Value("${expenses.batch.max-items:10000}")
+    private int maxBatchItems;
+
+    @Value("${expenses.batch.jdbc-batch-size:500}")
+    private int batchSize;
+
+    // The one currency expenses are recorded in; totals add amounts up without converting between currencies
+    @Value("${expenses.currency:USD}")
+    private String currency;
 
     @Override
     public Expense addExpense(Expense expense) {
-        // Validate expense record
-        if (expense.getUser() == null || expense.getAmount() == null || expense.getDescription() == null
-                || expense.getCategory() == null || expense.getDate() == null) {
-            throw new IllegalArgumentException("Expense record fields cannot be null");
+        requireFields(expense);
+        Expense savedExpense = expenseRepository.save(expense);
+        expenseRollupService.recordExpense(savedExpense);
+        expenseAnalyticsStore.recordExpenses(Collections.singletonList(savedExpense));
+        expenseDailySpendIndex.recordExpenses(Collections.singletonList(savedExpense));
+        expensesChanged(Collections.singletonList(savedExpense.getUser().getUserId()));
+        return savedExpense;
+    }
+
+    @Override
+    public List<BatchItemResult> addExpenses(List<Expense> expenses) {
+        if (expenses == null || expenses.isEmpty()) {
+            throw new IllegalArgumentException("Expense batch cannot be empty");
+        }
+        if (expenses.size() > maxBatchItems) {
+            throw new IllegalArgumentException("Expense batch cannot exceed " + maxBatchItems + " records");
+        }
+
+        // Resolve every referenced user and category with one query each
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> categoryIds = new HashSet<>();
+        for (Expense expense : expenses) {
+            if (expense != null && expense.getUser() != null && expense.getUser().getUserId() != null) {
+                userIds.add(expense.getUser().getUserId());
+            }
+            if (expense != null && expense.getCategory() != null && expense.getCategory().getCategoryId() != null) {
+                categoryIds.add(expense.getCategory().getCategoryId());
+            }
+        }
+        Set<Long> existingUserIds = userIds.isEmpty() ? Set.of() : userRepository.findExistingUserIds(userIds);
+        Set<Long> existingCategoryIds = categoryIds.isEmpty() ? Set.of() : categoryRepository.findExistingCategoryIds(categoryIds);
+
+        BatchItemResult[] results = new BatchItemResult[expenses.size()];
+        List<Expense> valid = new ArrayList<>(expenses.size());
+        List<Integer> validIndexes = new ArrayList<>(expenses.size());
+        for (int i = 0; i < expenses.size(); i++) {
+            Expense expense = expenses.get(i);
+            try {
+                requireFields(expense);
+                if (!existingUserIds.contains(expense.getUser().getUserId())) {
+                    throw new IllegalArgumentException("User not found");
+                }
+                if (!existingCategoryIds.contains(expense.getCategory().getCategoryId())) {
+                    throw new IllegalArgumentException("Category not found");
+                }
+                valid.add(expense);
+                validIndexes.add(i);
+            } catch (IllegalArgumentException e) {
+                results[i] = BatchItemResult.failed(i, e.getMessage());
+            }
+        }
+
+        if (!valid.isEmpty()) {
+            List<Long> ids = expenseJdbcRepository.batchInsert(valid, batchSize);
+            for (int i = 0; i < valid.size(); i++) {
+                valid.get(i).setExpenseId(ids.get(i));
+                results[validIndexes.get(i)] = BatchItemResult.created(validIndexes.get(i), ids.get(i));
+            }
+            expenseRollupService.recordExpenses(valid);
+            expenseAnalyticsStore.recordExpenses(valid);
+            expenseDailySpendIndex.recordExpenses(valid);
+            expensesChanged(valid.stream().map(expense -> expense.getUser().getUserId()).toList());
+        }
+        return Arrays.asList(results);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void validateExpense(Expense expense) {
+        requireFields(expense);
+        Long userId = expense.getUser().getUserId();
+        Long categoryId = expense.getCategory().getCategoryId();
+        if (userId == null || !userRepository.existsById(userId)) {
+            throw new IllegalArgumentException("User not found");
+        }
+        if (categoryId == null || !categoryRepository.existsById(categoryId)) {
+            throw new IllegalArgumentException("Category not found");
         }
-        return expenseRepository.save(expense);
     }
 
     @Override
     public Expense editExpense(Long expenseId, Expense updatedExpense) {
+        return editExpense(expenseId, updatedExpense, null);
+    }
+
+    @Override
+    public Expense editExpense(Long expenseId, Expense updatedExpense, Long expectedVersion) {
         // Validate update expense record
         if (updatedExpense == null || updatedExpense.getUser() == null
-                || updatedExpense.getAmount() == null || updatedExpense.getDescription() == null
+                || updatedExpense.getAmount() == null || updatedExpense.getAmount().getMinorUnits() == null
+                || updatedExpense.getDescription() == null
                 || updatedExpense.getCategory() == null || updatedExpense.getDate() == null) {
             throw new IllegalArgumentException("Update Expense record fields cannot be null");
         }
+        requireCurrency(updatedExpense);
 
-        // Check if the expense record exists
-        Optional<Expense> existingExpenseOptional = expenseRepository.findById(expenseId);
-        if (existingExpenseOptional.isEmpty()) {
+        // Read the rollup columns of the stored expense, locking its row until the update below commits
+        List<StoredExpense> stored = expenseRepository.findStoredForUpdate(Collections.singletonList(expenseId));
+        if (stored.isEmpty()) {
             throw new IllegalArgumentException("Expense record not found");
         }
 
-        Expense existingExpense = existingExpenseOptional.get();
+        StoredExpense previous = stored.get(0);
+        if (expectedVersion != null && !expectedVersion.equals(previous.version())) {
+            throw new OptimisticLockingFailureException("Expense " + expenseId + " is no longer at version " + expectedVersion);
+        }
 
-        // Update existing expense with new details
-        existingExpense.setAmount(updatedExpense.getAmount());
-        existingExpense.setDescription(updatedExpense.getDescription());
-        existingExpense.setCategory(updatedExpense.getCategory());
-        existingExpense.setDate(updatedExpense.getDate());
-        existingExpense.setUser(updatedExpense.getUser());
+        // Update the row in one statement; the references only carry the user and category IDs and are never loaded
+        int updated = expenseRepository.updateExpense(expenseId, previous.version(),
+                userRepository.getReferenceById(updatedExpense.getUser().getUserId()),
+                categoryRepository.getReferenceById(updatedExpense.getCategory().getCategoryId()),
+                updatedExpense.getAmount().getMinorUnits(), updatedExpense.getAmount().getCurrency(),
+                updatedExpense.getDescription(), updatedExpense.getDate());
+        if (updated == 0) {
+            throw new OptimisticLockingFailureException("Expense " + expenseId + " is no longer at version " + previous.version());
+        }
 
-        return expenseRepository.save(existingExpense);
+        Expense savedExpense = Expense.builder()
+                .expenseId(expenseId)
+                .user(updatedExpense.getUser())
+                .category(updatedExpense.getCategory())
+                .amount(updatedExpense.getAmount())
+                .description(updatedExpense.getDescription())
+                .date(updatedExpense.getDate())
+                .version(previous.version() + 1)
+                .build();
+        Expense previousExpense = toExpense(previous);
+        expenseRollupService.reviseExpense(previousExpense, savedExpense);
+        expenseAnalyticsStore.reviseExpense(previousExpense, savedExpense);
+        expenseDailySpendIndex.reviseExpense(previousExpense, savedExpense);
+        expensesChanged(Arrays.asList(previous.userId(), savedExpense.getUser().getUserId()));
+        return savedExpense;
     }
 
     @Override
     public Boolean deleteExpense(Long expenseId) {
-        // Check if the expense record exists
-        Optional<Expense> existingExpenseOptional = expenseRepository.findById(expenseId);
-        if (existingExpenseOptional.isEmpty()) {
-            return false;
+        return delete(Collections.singletonList(expenseId)) > 0;
+    }
+
+    @Override
+    public int deleteExpenses(Collection<Long> expenseIds) {
+        if (expenseIds == null || expenseIds.isEmpty() || expenseIds.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Expense IDs cannot be empty or null");
+        }
+        if (expenseIds.size() > maxBatchItems) {
+            throw new IllegalArgumentException("Expense batch cannot exceed " + maxBatchItems + " records");
+        }
+        return delete(expenseIds);
+    }
+
+    // Deletes the expenses with one locking read of their rollup columns and one DELETE, whatever their number
+    private int delete(Collection<Long> expenseIds) {
+        List<StoredExpense> stored = expenseRepository.findStoredForUpdate(expenseIds);
+        if (stored.isEmpty()) {
+            return 0;
         }
 
-        expenseRepository.deleteById(expenseId);
-        return true;
+        int deleted = expenseRepository.deleteByExpenseIds(stored.stream().map(StoredExpense::expenseId).toList());
+        List<Expense> deletedExpenses = stored.stream().map(ExpenseServiceImpl::toExpense).toList();
+        expenseRollupService.reverseExpenses(deletedExpenses);
+        expenseAnalyticsStore.reverseExpenses(deletedExpenses);
+        expenseDailySpendIndex.reverseExpenses(deletedExpenses);
+        expensesChanged(stored.stream().map(StoredExpense::userId).toList());
+        return deleted;
+    }
+
+    // Bumps the users' expenses version in the current transaction, so other instances see the change with the commit,
+    // and drops this instance's snapshots of them
+    private void expensesChanged(Collection<Long> userIds) {
+        List<Long> changed = userIds.stream().filter(Objects::nonNull).distinct().sorted().toList();
+        if (!changed.isEmpty()) {
+            userRepository.bumpExpensesVersions(changed);
+        }
+        userExpenseCache.invalidate(changed);
+    }
+
+    // Expense holding just what the rollups and the analytics store are keyed and summed by
+    private static Expense toExpense(StoredExpense stored) {
+        return Expense.builder()
+                .expenseId(stored.expenseId())
+                .user(User.builder().userId(stored.userId()).build())
+                .category(Category.builder().categoryId(stored.categoryId()).build())
+                .amount(Money.ofMinor(stored.amount(), stored.currency()))
+                .date(stored.date())
+                .build();
     }
 
     @Override
@@ -71,9 +280,190 @@ public class ExpenseServiceImpl implements ExpenseService {
         return expenseRepository.findById(expenseId).orElse(null);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Long getExpenseVersion(Long expenseId) {
+        return expenseRepository.findVersionByExpenseId(expenseId).orElse(null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public String getUserExpensesVersion(Long userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("User ID cannot be null");
+        }
+        UserExpensesVersion version = userRepository.findUserExpensesVersion(userId);
+        return version == null ? NO_USER_VERSION : version.tag();
+    }
+
     @Override
     public List<Expense> getAllExpenses() {
         return expenseRepository.findAll();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<ExpenseView> getExpensesByUserId(Long userId, Date startDate, Date endDate) {
+        if (userId == null) {
+            throw new IllegalArgumentException("User ID cannot be null");
+        }
+        Date from = startDate == null ? MIN_DATE : startDate;
+        Date to = endDate == null ? MAX_DATE : endDate;
+        if (from.after(to)) {
+            throw new IllegalArgumentException("Start date must not be after end date");
+        }
+        return expenseRepository.findViewsByUserIdAndDateBetween(userId, from, to);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UserExpenseSnapshot getCurrentExpensesByUserId(Long userId) {
+        return getCurrentExpensesByUserId(userId, getUserExpensesVersion(userId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UserExpenseSnapshot getCurrentExpensesByUserId(Long userId, String version) {
+        if (userId == null || version == null) {
+            throw new IllegalArgumentException("User ID and version cannot be null");
+        }
+        YearMonth month = YearMonth.now();
+        // The version was read before the expenses it describes, so a concurrent write can only make it older than the
+        // data, and the snapshot is reloaded on the next read
+        return userExpenseCache.get(userId, month, version, id -> loadSnapshot(id, month));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Expense> getExpensePage(Long afterExpenseId, Integer pageSize) {
+        long cursor = afterExpenseId == null ? 0L : afterExpenseId;
+        int size = pageSize == null || pageSize < 1 ? defaultPageSize : Math.min(pageSize, maxPageSize);
+        return expenseRepository.findByExpenseIdGreaterThanOrderByExpenseIdAsc(cursor, Limit.of(size));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllExpenses(Consumer<Expense> consumer) {
+        try (Stream<Expense> expenses = expenseRepository.streamAllByOrderByExpenseId()) {
+            int streamed = 0;
+            for (Expense expense : (Iterable<Expense>) expenses::iterator) {
+                consumer.accept(expense);
+                // Drop already written rows so memory stays flat regardless of table size
+                if (++streamed % STREAM_CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long getTotalExpensesByUserId(Long userId) {
+        // Only a snapshot at the current version, so a write on another instance is never answered with an old total
+        UserExpenseSnapshot snapshot = userExpenseCache.getIfCurrent(userId, YearMonth.now(),
+                getUserExpensesVersion(userId));
+        if (snapshot != null) {
+            return snapshot.total();
+        }
+        return expenseRollupService.getTotalExpensesByUserId(userId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<?> getExpenseSummary(SummaryGroup groupBy, Long userId, Long categoryId, Date startDate, Date endDate) {
+        if (groupBy == null) {
+            throw new IllegalArgumentException("Summary grouping cannot be null");
+        }
+        // Validated before any fast path, so an inverted range is rejected however it would have been answered
+        Date from = startDate == null ? MIN_DATE : startDate;
+        Date to = endDate == null ? MAX_DATE : endDate;
+        if (from.after(to)) {
+            throw new IllegalArgumentException("Summary start date must not be after end date");
+        }
+
+        // In-memory columns first, then the monthly rollup rows, then the expense table itself
+        Optional<List<?>> inMemory = expenseAnalyticsStore.getSummary(groupBy, userId, categoryId, startDate, endDate);
+        if (inMemory.isPresent()) {
+            return inMemory.get();
+        }
+        Optional<List<?>> rolledUp = expenseRollupService.getSummary(groupBy, userId, categoryId, startDate, endDate);
+        if (rolledUp.isPresent()) {
+            return rolledUp.get();
+        }
+
+        return switch (groupBy) {
+            case USER -> expenseRepository.sumByUser(userId, categoryId, from, to);
+            case CATEGORY -> expenseRepository.sumByCategory(userId, categoryId, from, to);
+            case DAY -> expenseRepository.sumByDay(userId, categoryId, from, to);
+            case MONTH -> expenseRepository.sumByMonth(userId, categoryId, from, to);
+            case YEAR -> expenseRepository.sumByYear(userId, categoryId, from, to);
+        };
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public DailySpendSeries getDailySpend(Long userId, LocalDate from, LocalDate to) {
+        if (userId == null || from == null || to == null) {
+            throw new IllegalArgumentException("User ID and dates cannot be null");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Start date must not be after end date");
+        }
+        long span = ChronoUnit.DAYS.between(from, to) + 1;
+        if (span > MAX_DAILY_SPAN) {
+            throw new IllegalArgumentException("Daily spend cannot span more than " + MAX_DAILY_SPAN + " days");
+        }
+        Optional<DailySpendSeries> indexed = expenseDailySpendIndex.getDailySpend(userId, from, to);
+        if (indexed.isPresent()) {
+            return indexed.get();
+        }
+
+        // Otherwise from the day totals, with the days without expenses filled in
+        ZoneId zone = ZoneId.systemDefault();
+        Date start = Date.from(from.atStartOfDay(zone).toInstant());
+        Date end = new Date(Date.from(to.plusDays(1).atStartOfDay(zone).toInstant()).getTime() - 1);
+        long[] daily = new long[(int) span];
+        for (Object row : getExpenseSummary(SummaryGroup.DAY, userId, null, start, end)) {
+            PeriodExpenseTotal day = (PeriodExpenseTotal) row;
+            int index = (int) ChronoUnit.DAYS.between(from, LocalDate.of(day.year(), day.month(), day.day()));
+            daily[index] = day.total() == null ? 0L : day.total();
+        }
+        return DailySpendSeries.of(userId, from, Money.sum(daily, daily.length), daily);
+    }
+
+    private UserExpenseSnapshot loadSnapshot(Long userId, YearMonth month) {
+        ZoneId zone = ZoneId.systemDefault();
+        Date from = Date.from(month.atDay(1).atStartOfDay(zone).toInstant());
+        Date to = new Date(Date.from(month.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant()).getTime() - 1);
+        List<ExpenseView> expenses = expenseRepository.findViewsByUserIdAndDateBetween(userId, from, to);
+        long[] amounts = new long[expenses.size()];
+        for (int i = 0; i < amounts.length; i++) {
+            Long amount = expenses.get(i).amount();
+            amounts[i] = amount == null ? 0L : amount;
+        }
+        long monthTotal = Money.sum(amounts, amounts.length);
+        return new UserExpenseSnapshot(userId, month.getYear(), month.getMonthValue(), List.copyOf(expenses),
+                monthTotal, expenseRollupService.getTotalExpensesByUserId(userId));
+    }
+
+    private void requireFields(Expense expense) {
+        // Validate expense record
+        if (expense == null || expense.getUser() == null || expense.getAmount() == null
+                || expense.getAmount().getMinorUnits() == null || expense.getDescription() == null
+                || expense.getCategory() == null || expense.getDate() == null) {
+            throw new IllegalArgumentException("Expense record fields cannot be null");
+        }
+        requireCurrency(expense);
+    }
+
+    // Fills in the configured currency when the expense names none, and rejects any other currency. The amount is
+    // rebuilt through Money.ofMinor either way, since JSON binds it without the range check
+    private void requireCurrency(Expense expense) {
+        Money amount = expense.getAmount();
+        if (amount.getCurrency() != null && !amount.getCurrency().equals(currency)) {
+            throw new IllegalArgumentException("Expense currency must be " + currency);
+        }
+        expense.setAmount(amount.withCurrency(currency));
+    }
+
 }
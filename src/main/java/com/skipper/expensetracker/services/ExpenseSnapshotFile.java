@@ -0,0 +1,198 @@
+package com.skipper.expensetracker.services;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+
+// Point-in-time copy of in-memory state, read back at startup by mapping the file rather than querying the database.
+//
+// The file is a header of [magic][format version][creation time][payload length][CRC32C of the payload] followed by
+// sections of [section ID][length][content]. Each section's content is written and read by the component owning that
+// state; readers skip sections they do not know. A snapshot is written to a temporary file next to the target and
+// moved over it once complete, so a crash mid-write leaves the previous snapshot in place.
+public final class ExpenseSnapshotFile {
+
+    // A readable snapshot: its creation time and each section's content, read in place from the mapped file
+    public record Snapshot(long createdAt, Map<Integer, ByteBuffer> sections) {
+    }
+
+    public static final int VERSION = 2;
+
+    private static final int MAGIC = 0x45585353; // "EXSS"
+    private static final int HEADER_SIZE = 32;
+    private static final int SECTION_HEADER_SIZE = 8;
+
+    private ExpenseSnapshotFile() {
+    }
+
+    // Maps and verifies the snapshot at the path; empty when there is none, IOException when it cannot be used
+    public static Optional<Snapshot> read(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + path + " has an invalid size of " + size + " bytes");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Snapshot " + path + " is not a snapshot file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Snapshot " + path + " has unsupported format version " + buffer.getInt(4));
+        }
+        long createdAt = buffer.getLong(8);
+        long payloadLength = buffer.getLong(16);
+        if (payloadLength != buffer.capacity() - HEADER_SIZE) {
+            throw new IOException("Snapshot " + path + " is truncated");
+        }
+        ByteBuffer payload = buffer.slice(HEADER_SIZE, (int) payloadLength);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(24)) {
+            throw new IOException("Snapshot " + path + " fails its checksum");
+        }
+
+        Map<Integer, ByteBuffer> sections = new HashMap<>();
+        int position = 0;
+        while (position < payloadLength) {
+            int id = payload.getInt(position);
+            int length = payload.getInt(position + 4);
+            if (length < 0 || length > payloadLength - position - SECTION_HEADER_SIZE) {
+                throw new IOException("Snapshot " + path + " has a malformed section");
+            }
+            sections.put(id, payload.slice(position + SECTION_HEADER_SIZE, length));
+            position += SECTION_HEADER_SIZE + length;
+        }
+        return Optional.of(new Snapshot(createdAt, Map.copyOf(sections)));
+    }
+
+    // Starts a new snapshot for the path, leaving the current one in place until commit
+    public static Writer create(Path path) throws IOException {
+        return new Writer(path);
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void writeNullableLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        out.writeLong(value == null ? 0L : value);
+    }
+
+    public static Long readNullableLong(ByteBuffer in) {
+        boolean present = in.get() != 0;
+        long value = in.getLong();
+        return present ? value : null;
+    }
+
+    // Streams sections into a temporary file; nothing replaces the current snapshot unless commit is reached
+    public static final class Writer implements Closeable {
+
+        private final Path path;
+        private final Path temporary;
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private int sectionStart = -1;
+        private boolean committed;
+
+        private Writer(Path path) throws IOException {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            this.path = path;
+            this.temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(HEADER_SIZE);
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+        }
+
+        // Ends the previous section and returns the stream the next one is written to
+        public DataOutputStream section(int id) throws IOException {
+            endSection();
+            sectionStart = out.size();
+            out.writeInt(id);
+            out.writeInt(0); // length, filled in when the section ends
+            return out;
+        }
+
+        // Fills in the header and moves the file over the previous snapshot
+        public void commit(long createdAt) throws IOException {
+            endSection();
+            out.flush();
+            int payloadLength = out.size();
+            // The stream's count stops at Integer.MAX_VALUE, and a mapping cannot go past 2 GB anyway
+            if (payloadLength >= Integer.MAX_VALUE - HEADER_SIZE) {
+                throw new IOException("Snapshot exceeds 2 GB");
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, payloadLength));
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putLong(8, createdAt);
+            header.putLong(16, payloadLength);
+            header.putInt(24, (int) crc.getValue());
+            channel.write(header, 0);
+            channel.force(true);
+            channel.close();
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        private void endSection() throws IOException {
+            if (sectionStart < 0) {
+                return;
+            }
+            out.flush();
+            int length = out.size() - sectionStart - SECTION_HEADER_SIZE;
+            channel.write(ByteBuffer.allocate(4).putInt(0, length), HEADER_SIZE + sectionStart + 4L);
+            sectionStart = -1;
+        }
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.StatementRun;
+
+import java.io.IOException;
+import java.time.YearMonth;
+
+public interface ExpenseStatementService {
+
+    // Writes every user's per-category totals for the month to CSV files, replacing an earlier run for that month
+    StatementRun generateStatements(YearMonth month) throws IOException;
+
+}
@@ -0,0 +1,343 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.StatementExpense;
+import com.skipper.expensetracker.dto.StatementRun;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.UserRepository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+@Service
+public class ExpenseStatementServiceImpl implements ExpenseStatementService {
+
+    private static final String STATEMENT_HEADER = "userId,categoryId,categoryName,total,count,currency";
+    private static final String SUMMARY_HEADER = "categoryId,categoryName,total,count,currency";
+    private static final String SUMMARY_FILE = "summary.csv";
+
+    // Several user ranges per worker, so a worker that finishes its cheap ranges early steals from a busy one
+    private static final int TASKS_PER_WORKER = 8;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    // Expenses without a category sort first in a statement
+    private static final Comparator<Long> CATEGORY_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    private final ExpenseRepository expenseRepository;
+    private final UserRepository userRepository;
+    private final CategoryService categoryService;
+    private final Path directory;
+    private final int parallelism;
+    private final int pageSize;
+    private final String currency;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ExpenseStatementServiceImpl(ExpenseRepository expenseRepository, UserRepository userRepository,
+                                       CategoryService categoryService, DataSource dataSource,
+                                       @Value("${expenses.reports.directory:data/reports}") Path directory,
+                                       @Value("${expenses.reports.parallelism:0}") int parallelism,
+                                       @Value("${expenses.reports.reserved-connections:2}") int reservedConnections,
+                                       @Value("${expenses.reports.page-size:1000}") int pageSize,
+                                       @Value("${expenses.currency:USD}") String currency) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Statement page size must be positive");
+        }
+        this.expenseRepository = expenseRepository;
+        this.userRepository = userRepository;
+        this.categoryService = categoryService;
+        this.directory = directory;
+        this.parallelism = workerCount(parallelism, maximumPoolSize(dataSource), reservedConnections);
+        this.pageSize = pageSize;
+        this.currency = currency;
+    }
+
+    // Every worker holds a connection while it reads a page, so the workers must leave some of the pool to the API
+    static int workerCount(int configured, int poolSize, int reservedConnections) {
+        int workers = configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(workers, poolSize - reservedConnections));
+    }
+
+    private static int maximumPoolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            log.warn("Could not read the connection pool size, using the configured statement parallelism", e);
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    // Month-end run for the month that just ended
+    @Scheduled(cron = "${expenses.reports.cron:0 0 2 1 * *}")
+    public void generatePreviousMonth() throws IOException {
+        generateStatements(YearMonth.now().minusMonths(1));
+    }
+
+    @Override
+    public StatementRun generateStatements(YearMonth month) throws IOException {
+        if (month == null) {
+            throw new IllegalArgumentException("Statement month cannot be null");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Statements are already being generated");
+        }
+        try {
+            return generate(month);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private StatementRun generate(YearMonth month) throws IOException {
+        long started = System.nanoTime();
+        ZoneId zone = ZoneId.systemDefault();
+        Date from = Date.from(month.atDay(1).atStartOfDay(zone).toInstant());
+        Date to = new Date(Date.from(month.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant()).getTime() - 1);
+
+        Path target = directory.resolve("statements-" + month);
+        Files.createDirectories(target);
+        // A rerun replaces the month's files; the user ranges may have been split differently last time
+        try (DirectoryStream<Path> previous = Files.newDirectoryStream(target, "*.{csv,tmp}")) {
+            for (Path file : previous) {
+                Files.delete(file);
+            }
+        }
+
+        Map<Long, String> categoryNames = new HashMap<>();
+        for (Category category : categoryService.getAllCategories()) {
+            categoryNames.put(category.getCategoryId(), category.getCategoryName());
+        }
+        StatementContext context = new StatementContext(target, from, to, categoryNames);
+
+        StatementPartial result = new StatementPartial();
+        Long firstUserId = userRepository.findMinUserId();
+        Long lastUserId = userRepository.findMaxUserId();
+        if (firstUserId != null) {
+            long users = lastUserId - firstUserId + 1;
+            long usersPerTask = Math.max(1, (users + parallelism * TASKS_PER_WORKER - 1) / (parallelism * TASKS_PER_WORKER));
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                result = pool.invoke(new StatementTask(context, firstUserId, lastUserId, usersPerTask));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                pool.shutdown();
+            }
+        }
+        writeSummary(context, result);
+
+        // Ranges are merged lower half first, so the statement files are already in user order
+        List<String> files = new ArrayList<>(result.files);
+        files.add(SUMMARY_FILE);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        log.info("Generated {} statements for {} ({} expenses) in {} ms with {} workers",
+                result.users, month, result.expenses, elapsedMillis, parallelism);
+        return new StatementRun(month.getYear(), month.getMonthValue(), target.toString(), files,
+                result.users, result.expenses, result.total, elapsedMillis);
+    }
+
+    // Reads one range of users in (user, expense ID) order and writes each user's totals as soon as the next user starts
+    private StatementPartial writeStatements(StatementContext context, long firstUserId, long lastUserId) throws IOException {
+        StatementPartial partial = new StatementPartial();
+        Path file = context.directory().resolve("statement-" + firstUserId + "-" + lastUserId + ".csv");
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Writer writer = null;
+        try {
+            Map<Long, long[]> totals = new HashMap<>();
+            Long currentUserId = null;
+            // Start past every expense of the user before the range, which belongs to another task
+            long afterUserId = firstUserId - 1;
+            long afterExpenseId = Long.MAX_VALUE;
+            while (true) {
+                List<StatementExpense> page = expenseRepository.findStatementPage(afterUserId, afterExpenseId,
+                        lastUserId, context.from(), context.to(), Limit.of(pageSize));
+                for (StatementExpense expense : page) {
+                    if (!expense.userId().equals(currentUserId)) {
+                        if (currentUserId != null) {
+                            writer = writeUser(writer, temporary, context, currentUserId, totals, partial);
+                            totals.clear();
+                        }
+                        currentUserId = expense.userId();
+                    }
+                    long[] total = totals.computeIfAbsent(expense.categoryId(), categoryId -> new long[2]);
+                    total[0] = Math.addExact(total[0], expense.amount() == null ? 0 : expense.amount());
+                    total[1]++;
+                }
+                if (page.size() < pageSize) {
+                    break;
+                }
+                StatementExpense last = page.get(page.size() - 1);
+                afterUserId = last.userId();
+                afterExpenseId = last.expenseId();
+            }
+            if (currentUserId != null) {
+                writer = writeUser(writer, temporary, context, currentUserId, totals, partial);
+            }
+            // Ranges without expenses leave no file behind
+            if (writer != null) {
+                writer.close();
+                writer = null;
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                partial.files.add(file.getFileName().toString());
+            }
+            return partial;
+        } catch (IOException | RuntimeException e) {
+            if (writer != null) {
+                writer.close();
+            }
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    private Writer writeUser(Writer writer, Path temporary, StatementContext context, Long userId,
+                             Map<Long, long[]> totals, StatementPartial partial) throws IOException {
+        if (writer == null) {
+            writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temporary), StandardCharsets.UTF_8),
+                    WRITE_BUFFER_SIZE);
+            writer.write(STATEMENT_HEADER);
+            writer.write('\n');
+        }
+        List<Long> categoryIds = new ArrayList<>(totals.keySet());
+        categoryIds.sort(CATEGORY_ORDER);
+        for (Long categoryId : categoryIds) {
+            long[] total = totals.get(categoryId);
+            writer.write(String.valueOf(userId));
+            writer.write(',');
+            writeCategory(writer, context, categoryId, total);
+            partial.add(categoryId, total);
+        }
+        partial.users++;
+        return writer;
+    }
+
+    private void writeSummary(StatementContext context, StatementPartial result) throws IOException {
+        Path file = context.directory().resolve(SUMMARY_FILE);
+        Path temporary = file.resolveSibling(SUMMARY_FILE + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temporary),
+                StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)) {
+            writer.write(SUMMARY_HEADER);
+            writer.write('\n');
+            List<Long> categoryIds = new ArrayList<>(result.categories.keySet());
+            categoryIds.sort(CATEGORY_ORDER);
+            for (Long categoryId : categoryIds) {
+                writeCategory(writer, context, categoryId, result.categories.get(categoryId));
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void writeCategory(Writer writer, StatementContext context, Long categoryId, long[] total) throws IOException {
+        writer.write(categoryId == null ? "" : String.valueOf(categoryId));
+        writer.write(',');
+        writer.write(ExpenseExportServiceImpl.csvField(context.categoryNames().get(categoryId)));
+        writer.write(',');
+        writer.write(Money.toDecimal(total[0]).toPlainString());
+        writer.write(',');
+        writer.write(String.valueOf(total[1]));
+        writer.write(',');
+        writer.write(ExpenseExportServiceImpl.csvField(currency));
+        writer.write('\n');
+    }
+
+    private record StatementContext(Path directory, Date from, Date to, Map<Long, String> categoryNames) {
+    }
+
+    // Splits a user ID range in halves until it is small enough for one worker to read and write
+    private class StatementTask extends RecursiveTask<StatementPartial> {
+
+        private final StatementContext context;
+        private final long firstUserId;
+        private final long lastUserId;
+        private final long usersPerTask;
+
+        StatementTask(StatementContext context, long firstUserId, long lastUserId, long usersPerTask) {
+            this.context = context;
+            this.firstUserId = firstUserId;
+            this.lastUserId = lastUserId;
+            this.usersPerTask = usersPerTask;
+        }
+
+        @Override
+        protected StatementPartial compute() {
+            if (lastUserId - firstUserId + 1 > usersPerTask) {
+                long middle = firstUserId + (lastUserId - firstUserId) / 2;
+                StatementTask lower = new StatementTask(context, firstUserId, middle, usersPerTask);
+                lower.fork();
+                StatementPartial upper = new StatementTask(context, middle + 1, lastUserId, usersPerTask).compute();
+                return lower.join().merge(upper);
+            }
+            try {
+                return writeStatements(context, firstUserId, lastUserId);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+    // Totals of one user range, merged pairwise as the ranges are joined
+    private static class StatementPartial {
+
+        private long users;
+        private long expenses;
+        private long total;
+        private final Map<Long, long[]> categories = new HashMap<>();
+        private final List<String> files = new ArrayList<>();
+
+        void add(Long categoryId, long[] categoryTotal) {
+            long[] merged = categories.computeIfAbsent(categoryId, key -> new long[2]);
+            merged[0] = Math.addExact(merged[0], categoryTotal[0]);
+            merged[1] += categoryTotal[1];
+            total = Math.addExact(total, categoryTotal[0]);
+            expenses += categoryTotal[1];
+        }
+
+        StatementPartial merge(StatementPartial other) {
+            users += other.users;
+            other.categories.forEach(this::add);
+            files.addAll(other.files);
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,297 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.CategoryVersion;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.dto.ExpenseWatermark;
+import com.skipper.expensetracker.dto.UserExpenseSnapshot;
+import com.skipper.expensetracker.dto.UserExpensesVersion;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.repositories.CategoryRepository;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.UserRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Writes the categories, the hot per-user expense snapshots and the analytics store's columns to an
+// ExpenseSnapshotFile every expenses.snapshot.interval-ms and at shutdown. At startup, before requests are served,
+// a snapshot younger than expenses.snapshot.max-age is mapped and put back into those caches, so the first minutes
+// after a deploy do not all go to MySQL. Each part is written with the database version it was read at and is put back
+// only while one query shows that version is still current, so nothing restored is ever older than the database.
+@Slf4j
+@Component
+public class ExpenseWarmStartSnapshot {
+
+    // Section IDs; new sections get new IDs so older snapshots stay readable
+    private static final int CATEGORIES = 1;
+    private static final int USER_EXPENSES = 2;
+    private static final int ANALYTICS = 3;
+
+    // Users whose versions are read in one grouped query
+    private static final int VERSION_BATCH_SIZE = 1000;
+
+    private final CategoryService categoryService;
+    private final CacheManager cacheManager;
+    private final UserExpenseCache userExpenseCache;
+    private final ExpenseAnalyticsStore expenseAnalyticsStore;
+    private final ExpenseRepository expenseRepository;
+    private final CategoryRepository categoryRepository;
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final Path path;
+    private final Duration maxAge;
+    private final Timer writeTimer;
+
+    public ExpenseWarmStartSnapshot(CategoryService categoryService, CacheManager cacheManager,
+                                    UserExpenseCache userExpenseCache, ExpenseAnalyticsStore expenseAnalyticsStore,
+                                    ExpenseRepository expenseRepository, CategoryRepository categoryRepository,
+                                    UserRepository userRepository, MeterRegistry meterRegistry,
+                                    @Value("${expenses.snapshot.enabled:false}") boolean enabled,
+                                    @Value("${expenses.snapshot.path:data/warm-start.snapshot}") Path path,
+                                    @Value("${expenses.snapshot.max-age:24h}") Duration maxAge) {
+        this.categoryService = categoryService;
+        this.cacheManager = cacheManager;
+        this.userExpenseCache = userExpenseCache;
+        this.expenseAnalyticsStore = expenseAnalyticsStore;
+        this.expenseRepository = expenseRepository;
+        this.categoryRepository = categoryRepository;
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.path = path;
+        this.maxAge = maxAge;
+        this.writeTimer = Timer.builder("expenses.snapshot.write")
+                .description("Time to write the warm-start snapshot")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void restore() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Optional<ExpenseSnapshotFile.Snapshot> read = ExpenseSnapshotFile.read(path);
+            if (read.isEmpty()) {
+                log.info("No warm-start snapshot at {}, starting cold", path);
+                return;
+            }
+            ExpenseSnapshotFile.Snapshot snapshot = read.get();
+            Duration age = Duration.ofMillis(System.currentTimeMillis() - snapshot.createdAt());
+            if (age.compareTo(maxAge) > 0) {
+                log.info("Warm-start snapshot at {} is {} old, starting cold", path, age);
+                return;
+            }
+
+            int categories = 0;
+            ByteBuffer categorySection = snapshot.sections().get(CATEGORIES);
+            if (categorySection != null) {
+                categories = restoreCategories(categorySection.duplicate());
+            }
+            int users = 0;
+            ByteBuffer userSection = snapshot.sections().get(USER_EXPENSES);
+            if (userSection != null) {
+                users = restoreUserExpenses(userSection.duplicate());
+            }
+            ByteBuffer analyticsSection = snapshot.sections().get(ANALYTICS);
+            boolean analytics = analyticsSection != null && restoreAnalytics(analyticsSection.duplicate());
+            log.info("Restored {} categories, {} users' expenses and {}the analytics store from the warm-start snapshot "
+                    + "taken {} ago", categories, users, analytics ? "" : "not ", age);
+        } catch (IOException | RuntimeException e) {
+            // A snapshot that cannot be read or checked is only a slower start
+            log.warn("Ignoring the warm-start snapshot at {}", path, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${expenses.snapshot.interval-ms:300000}",
+            initialDelayString = "${expenses.snapshot.interval-ms:300000}")
+    public void scheduledWrite() {
+        if (enabled) {
+            try {
+                write();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Writing the warm-start snapshot to {} failed", path, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduledWrite();
+    }
+
+    // Replaces the snapshot with the current contents of the caches
+    public synchronized void write() throws IOException {
+        long started = System.nanoTime();
+        try (ExpenseSnapshotFile.Writer writer = ExpenseSnapshotFile.create(path)) {
+            writeCategories(writer.section(CATEGORIES));
+            writeUserExpenses(writer.section(USER_EXPENSES));
+            // An unloaded store would only overwrite a usable copy with an empty one
+            if (expenseAnalyticsStore.isLoaded()) {
+                writeAnalytics(writer.section(ANALYTICS));
+            }
+            writer.commit(System.currentTimeMillis());
+        }
+        writeTimer.record(Duration.ofNanos(System.nanoTime() - started));
+    }
+
+    private void writeCategories(DataOutputStream out) throws IOException {
+        List<Category> categories = categoryService.getAllCategories();
+        out.writeInt(categories.size());
+        for (Category category : categories) {
+            out.writeLong(category.getCategoryId());
+            ExpenseSnapshotFile.writeString(out, category.getCategoryName());
+            ExpenseSnapshotFile.writeNullableLong(out, category.getVersion());
+        }
+    }
+
+    // Puts the categories back only when the table still has exactly the same IDs and versions
+    private int restoreCategories(ByteBuffer in) {
+        int count = in.getInt();
+        List<Category> categories = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            categories.add(new Category(in.getLong(), ExpenseSnapshotFile.readString(in),
+                    ExpenseSnapshotFile.readNullableLong(in)));
+        }
+        // Same entries CategoryServiceImpl caches: the full list, and each category by ID
+        Cache list = cacheManager.getCache(CategoryServiceImpl.CATEGORY_LIST_CACHE);
+        Cache byId = cacheManager.getCache(CategoryServiceImpl.CATEGORY_CACHE);
+        if (list == null || byId == null) {
+            return 0;
+        }
+        List<CategoryVersion> restored = categories.stream()
+                .map(category -> new CategoryVersion(category.getCategoryId(), category.getVersion()))
+                .toList();
+        if (!new HashSet<>(restored).equals(new HashSet<>(categoryRepository.findVersions()))) {
+            log.info("Categories changed since the warm-start snapshot, not restoring them");
+            return 0;
+        }
+        list.putIfAbsent("all", List.copyOf(categories));
+        for (Category category : categories) {
+            byId.putIfAbsent(category.getCategoryId(), category);
+        }
+        return categories.size();
+    }
+
+    private void writeUserExpenses(DataOutputStream out) throws IOException {
+        List<UserExpenseCache.Entry> entries = userExpenseCache.getEntries();
+        out.writeInt(entries.size());
+        for (UserExpenseCache.Entry entry : entries) {
+            UserExpenseSnapshot snapshot = entry.snapshot();
+            out.writeLong(snapshot.userId());
+            ExpenseSnapshotFile.writeString(out, entry.version());
+            out.writeInt(snapshot.year());
+            out.writeInt(snapshot.month());
+            out.writeLong(snapshot.monthTotal());
+            out.writeLong(snapshot.total());
+            out.writeInt(snapshot.expenses().size());
+            for (ExpenseView expense : snapshot.expenses()) {
+                ExpenseSnapshotFile.writeNullableLong(out, expense.expenseId());
+                ExpenseSnapshotFile.writeNullableLong(out, expense.userId());
+                ExpenseSnapshotFile.writeNullableLong(out, expense.categoryId());
+                ExpenseSnapshotFile.writeString(out, expense.categoryName());
+                ExpenseSnapshotFile.writeNullableLong(out, expense.amount());
+                ExpenseSnapshotFile.writeString(out, expense.currency());
+                ExpenseSnapshotFile.writeString(out, expense.description());
+                ExpenseSnapshotFile.writeNullableLong(out, expense.date() == null ? null : expense.date().getTime());
+            }
+        }
+    }
+
+    // Puts back the snapshots whose users' expenses are still at the version they were loaded at
+    private int restoreUserExpenses(ByteBuffer in) {
+        YearMonth month = YearMonth.now();
+        int count = in.getInt();
+        List<UserExpenseCache.Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long userId = in.getLong();
+            String version = ExpenseSnapshotFile.readString(in);
+            int year = in.getInt();
+            int monthValue = in.getInt();
+            long monthTotal = in.getLong();
+            long total = in.getLong();
+            int expenseCount = in.getInt();
+            List<ExpenseView> expenses = new ArrayList<>(expenseCount);
+            for (int j = 0; j < expenseCount; j++) {
+                Long expenseId = ExpenseSnapshotFile.readNullableLong(in);
+                Long expenseUserId = ExpenseSnapshotFile.readNullableLong(in);
+                Long categoryId = ExpenseSnapshotFile.readNullableLong(in);
+                String categoryName = ExpenseSnapshotFile.readString(in);
+                Long amount = ExpenseSnapshotFile.readNullableLong(in);
+                String currency = ExpenseSnapshotFile.readString(in);
+                String description = ExpenseSnapshotFile.readString(in);
+                Long date = ExpenseSnapshotFile.readNullableLong(in);
+                expenses.add(new ExpenseView(expenseId, expenseUserId, categoryId, categoryName, amount, currency,
+                        description, date == null ? null : new Date(date)));
+            }
+            // A snapshot of last month would be replaced on its first read anyway
+            if (year == month.getYear() && monthValue == month.getMonthValue() && version != null) {
+                entries.add(new UserExpenseCache.Entry(
+                        new UserExpenseSnapshot(userId, year, monthValue, List.copyOf(expenses), monthTotal, total), version));
+            }
+        }
+
+        Map<Long, String> current = new HashMap<>();
+        for (int from = 0; from < entries.size(); from += VERSION_BATCH_SIZE) {
+            List<Long> userIds = entries.subList(from, Math.min(from + VERSION_BATCH_SIZE, entries.size())).stream()
+                    .map(entry -> entry.snapshot().userId())
+                    .toList();
+            for (UserExpensesVersion version : userRepository.findUserExpensesVersions(userIds)) {
+                current.put(version.userId(), version.tag());
+            }
+        }
+        // Users deleted since the snapshot have no row, so their entries are dropped
+        List<UserExpenseCache.Entry> valid = entries.stream()
+                .filter(entry -> entry.version().equals(current.get(entry.snapshot().userId())))
+                .toList();
+        userExpenseCache.restore(valid);
+        if (valid.size() < entries.size()) {
+            log.info("Skipped {} users' expenses that changed since the warm-start snapshot", entries.size() - valid.size());
+        }
+        return valid.size();
+    }
+
+    // The table's watermark goes first. The store applies changes only after they commit, so both are read with
+    // commits held back until every committed change is in the columns; the watermark then describes them exactly
+    private void writeAnalytics(DataOutputStream out) throws IOException {
+        try (ExpenseAnalyticsStore.Pause paused = expenseAnalyticsStore.pauseChanges()) {
+            ExpenseWatermark watermark = expenseRepository.findWatermark();
+            out.writeLong(watermark.count());
+            out.writeLong(watermark.maxExpenseId());
+            out.writeLong(watermark.versionSum());
+            expenseAnalyticsStore.writeSnapshot(out);
+        }
+    }
+
+    // Puts the columns back only when the expense table is unchanged since they were written
+    private boolean restoreAnalytics(ByteBuffer in) {
+        ExpenseWatermark written = new ExpenseWatermark(in.getLong(), in.getLong(), in.getLong());
+        if (!written.equals(expenseRepository.findWatermark())) {
+            log.info("Expenses changed since the warm-start snapshot, not restoring the analytics store");
+            return false;
+        }
+        return expenseAnalyticsStore.restoreSnapshot(in);
+    }
+
+}
@@ -0,0 +1,266 @@
+package com.skipper.expensetracker.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// Append-only log of pending writes in a fixed-size memory-mapped file, used as a ring buffer.
+//
+// The file starts with two header slots that are written alternately, each holding a generation counter, the
+// sequence number of the last record flushed to the database, the offset of the first unflushed record, a checksum
+// and the format version; a torn header write therefore always leaves the previous slot intact. Records follow as
+// [payload length][sequence][CRC32C of sequence and payload][payload]. A record that does not fit before the end of
+// the file is written at the start of the data area instead, behind a wrap marker. Recovery reads forward from the
+// checkpointed offset while sequence numbers stay consecutive and checksums match, so stale records from an earlier
+// pass over the ring and a record torn by a crash are both ignored.
+public class ExpenseWriteAheadLog implements Closeable {
+
+    // One log entry that has been appended but not yet checkpointed
+    public record Entry(long sequence, byte[] payload) {
+    }
+
+    // Format of the file and of the payloads ExpenseWriteBehindServiceImpl writes into it; bumped whenever either
+    // changes, and a log of another version is refused rather than misread
+    public static final int FORMAT_VERSION = 2;
+
+    private static final int HEADER_SLOT_SIZE = 32;
+    private static final int DATA_START = 2 * HEADER_SLOT_SIZE;
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int WRAP_MARKER = -1;
+    private static final int MIN_CAPACITY = DATA_START + 4 * RECORD_HEADER_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final boolean forceOnAppend;
+    private final List<Entry> recovered;
+
+    // Sequence number and end offset of every record appended but not yet checkpointed, oldest first
+    private final Deque<long[]> unflushed = new ArrayDeque<>();
+
+    private long generation;
+    private long flushedSequence;
+    private long nextSequence;
+    private int readOffset;
+    private int writeOffset;
+
+    // Opens or creates the log. An existing file keeps its own size so that changing the configured size never
+    // truncates pending records.
+    public ExpenseWriteAheadLog(Path path, int capacity, boolean forceOnAppend) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long existingSize = channel.size();
+        this.capacity = existingSize > 0 ? (int) Math.min(existingSize, Integer.MAX_VALUE) : capacity;
+        if (this.capacity < MIN_CAPACITY) {
+            channel.close();
+            throw new IllegalArgumentException("Write-ahead log must be at least " + MIN_CAPACITY + " bytes");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+        this.forceOnAppend = forceOnAppend;
+        if (!readHeader()) {
+            channel.close();
+            throw new IOException("Write-ahead log " + path + " is not in format version " + FORMAT_VERSION
+                    + "; flush it with the release that wrote it or move it away");
+        }
+        this.recovered = Collections.unmodifiableList(recover());
+    }
+
+    // Entries found in the file when it was opened, in append order
+    public List<Entry> getRecoveredEntries() {
+        return recovered;
+    }
+
+    // Appends a record and returns its sequence number; once this returns the record survives a process crash, and
+    // with forceOnAppend also a power loss. Throws IllegalStateException when the unflushed records fill the log.
+    public synchronized long append(byte[] payload) {
+        int size = RECORD_HEADER_SIZE + payload.length;
+        if (size > capacity - DATA_START - 1) {
+            throw new IllegalArgumentException("Write-ahead log record of " + payload.length + " bytes is too large");
+        }
+        int position = reserve(size);
+        long sequence = nextSequence;
+        buffer.putInt(position, payload.length);
+        buffer.putLong(position + 4, sequence);
+        buffer.putInt(position + 12, checksum(sequence, payload));
+        buffer.put(position + RECORD_HEADER_SIZE, payload);
+        if (forceOnAppend) {
+            buffer.force(position, size);
+        }
+        nextSequence++;
+        writeOffset = position + size;
+        unflushed.addLast(new long[]{sequence, writeOffset});
+        return sequence;
+    }
+
+    // Marks every record up to and including the sequence number as flushed, releasing its space
+    public synchronized void checkpoint(long sequence) {
+        if (sequence <= flushedSequence) {
+            return;
+        }
+        long[] last = null;
+        while (!unflushed.isEmpty() && unflushed.peekFirst()[0] <= sequence) {
+            last = unflushed.pollFirst();
+        }
+        if (last == null) {
+            return;
+        }
+        flushedSequence = last[0];
+        readOffset = (int) last[1];
+        writeHeader();
+    }
+
+    public synchronized int getUnflushedCount() {
+        return unflushed.size();
+    }
+
+    // Bytes held by unflushed records
+    public synchronized long getUsedBytes() {
+        if (unflushed.isEmpty()) {
+            return 0;
+        }
+        return writeOffset >= readOffset ? writeOffset - readOffset : (capacity - readOffset) + (writeOffset - DATA_START);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    // Finds room for a record of the given size, writing a wrap marker when it has to go back to the start. The
+    // write offset never catches up with the read offset, so equal offsets always mean an empty log.
+    private int reserve(int size) {
+        if (writeOffset >= readOffset) {
+            if (capacity - writeOffset >= size) {
+                return writeOffset;
+            }
+            if (readOffset - DATA_START > size) {
+                if (capacity - writeOffset >= RECORD_HEADER_SIZE) {
+                    buffer.putInt(writeOffset, WRAP_MARKER);
+                    if (forceOnAppend) {
+                        buffer.force(writeOffset, 4);
+                    }
+                }
+                return DATA_START;
+            }
+        } else if (readOffset - writeOffset > size) {
+            return writeOffset;
+        }
+        throw new IllegalStateException("Write-ahead log is full");
+    }
+
+    private List<Entry> recover() {
+        List<Entry> entries = new ArrayList<>();
+        long expected = flushedSequence + 1;
+        int position = readOffset;
+        int end = readOffset;
+        boolean wrapped = false;
+        while (true) {
+            if (capacity - position < RECORD_HEADER_SIZE || buffer.getInt(position) == WRAP_MARKER) {
+                if (wrapped) {
+                    break;
+                }
+                wrapped = true;
+                position = DATA_START;
+                continue;
+            }
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > capacity - position - RECORD_HEADER_SIZE) {
+                break;
+            }
+            long sequence = buffer.getLong(position + 4);
+            if (sequence != expected) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + RECORD_HEADER_SIZE, payload);
+            if (buffer.getInt(position + 12) != checksum(sequence, payload)) {
+                break;
+            }
+            entries.add(new Entry(sequence, payload));
+            position += RECORD_HEADER_SIZE + length;
+            end = position;
+            unflushed.addLast(new long[]{sequence, end});
+            expected++;
+        }
+        nextSequence = expected;
+        writeOffset = end;
+        return entries;
+    }
+
+    // Returns false for a file written in another format
+    private boolean readHeader() {
+        long bestGeneration = -1;
+        for (int slot = 0; slot < 2; slot++) {
+            int base = slot * HEADER_SLOT_SIZE;
+            long slotGeneration = buffer.getLong(base);
+            long slotFlushed = buffer.getLong(base + 8);
+            int slotReadOffset = buffer.getInt(base + 16);
+            if (slotGeneration > bestGeneration && buffer.getInt(base + 24) == FORMAT_VERSION
+                    && buffer.getInt(base + 20) == headerChecksum(slotGeneration, slotFlushed, slotReadOffset)
+                    && slotReadOffset >= DATA_START && slotReadOffset <= capacity) {
+                bestGeneration = slotGeneration;
+                flushedSequence = slotFlushed;
+                readOffset = slotReadOffset;
+            }
+        }
+        if (bestGeneration >= 0) {
+            generation = bestGeneration;
+            return true;
+        }
+        // Only a new, still empty file has no valid header; the first one is written straight away
+        for (int position = 0; position < DATA_START + RECORD_HEADER_SIZE; position += 8) {
+            if (buffer.getLong(position) != 0) {
+                return false;
+            }
+        }
+        generation = 0;
+        flushedSequence = 0;
+        readOffset = DATA_START;
+        writeHeader();
+        return true;
+    }
+
+    private void writeHeader() {
+        generation++;
+        int base = (int) (generation % 2) * HEADER_SLOT_SIZE;
+        buffer.putLong(base, generation);
+        buffer.putLong(base + 8, flushedSequence);
+        buffer.putInt(base + 16, readOffset);
+        buffer.putInt(base + 20, headerChecksum(generation, flushedSequence, readOffset));
+        buffer.putInt(base + 24, FORMAT_VERSION);
+        buffer.force(base, HEADER_SLOT_SIZE);
+    }
+
+    private static int checksum(long sequence, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(8).putLong(0, sequence));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static int headerChecksum(long generation, long flushedSequence, int readOffset) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(24).putLong(0, generation).putLong(8, flushedSequence).putInt(16, readOffset)
+                .putInt(20, FORMAT_VERSION));
+        return (int) crc.getValue();
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.WriteBehindReceipt;
+import com.skipper.expensetracker.entities.Expense;
+
+public interface ExpenseWriteBehindService {
+
+    // Longest idempotency key accepted on any write, the length of the idempotency_key column
+    int MAX_KEY_LENGTH = 100;
+
+    WriteBehindReceipt enqueueExpense(String idempotencyKey, Expense expense);
+
+    int flush();
+
+    int getQueueDepth();
+
+}
@@ -0,0 +1,284 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.BatchItemResult;
+import com.skipper.expensetracker.dto.WriteBehindReceipt;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+import com.skipper.expensetracker.repositories.ExpenseWriteKeyRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// Accepts expenses into a local write-ahead log and inserts them into the database in batches from a background
+// flush. Delivery is at least once: a record stays in the log until the transaction inserting it has committed, so a
+// crash in between replays it on the next start, and the idempotency key stored in that same transaction turns the
+// replay into a no-op.
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "expenses.write-behind.enabled", havingValue = "true")
+public class ExpenseWriteBehindServiceImpl implements ExpenseWriteBehindService {
+
+    private final ExpenseService expenseService;
+    private final ExpenseWriteKeyRepository expenseWriteKeyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ExpenseWriteAheadLog writeAheadLog;
+    private final int batchSize;
+
+    // Accepted expenses in log order; the flush removes them only after their batch has committed
+    private final Deque<QueuedExpense> queue = new ArrayDeque<>();
+    private final Object flushLock = new Object();
+
+    private final Timer flushTimer;
+    private final Counter flushedCounter;
+    private final Counter duplicateCounter;
+    private final Counter rejectedCounter;
+
+    @Value("${expenses.write-behind.key-retention:7d}")
+    private Duration keyRetention;
+
+    public ExpenseWriteBehindServiceImpl(ExpenseService expenseService, ExpenseWriteKeyRepository expenseWriteKeyRepository,
+                                         PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                         @Value("${expenses.write-behind.log-path:data/expense-write-behind.wal}") Path logPath,
+                                         @Value("${expenses.write-behind.log-size:64MB}") DataSize logSize,
+                                         @Value("${expenses.write-behind.force-on-append:true}") boolean forceOnAppend,
+                                         @Value("${expenses.write-behind.batch-size:500}") int batchSize) throws IOException {
+        this.expenseService = expenseService;
+        this.expenseWriteKeyRepository = expenseWriteKeyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.writeAheadLog = new ExpenseWriteAheadLog(logPath, (int) logSize.toBytes(), forceOnAppend);
+        this.batchSize = batchSize;
+
+        for (ExpenseWriteAheadLog.Entry entry : writeAheadLog.getRecoveredEntries()) {
+            queue.addLast(decode(entry.sequence(), entry.payload()));
+        }
+        if (!queue.isEmpty()) {
+            log.info("Recovered {} unflushed write-behind expenses from {}", queue.size(), logPath);
+        }
+
+        Gauge.builder("expenses.write_behind.queue.depth", this, ExpenseWriteBehindServiceImpl::getQueueDepth)
+                .description("Expenses accepted but not yet written to the database")
+                .register(meterRegistry);
+        Gauge.builder("expenses.write_behind.log.used", writeAheadLog, ExpenseWriteAheadLog::getUsedBytes)
+                .description("Bytes of the write-ahead log held by unflushed expenses")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("expenses.write_behind.flush")
+                .description("Time to write one batch of queued expenses to the database")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.flushedCounter = Counter.builder("expenses.write_behind.flushed").register(meterRegistry);
+        this.duplicateCounter = Counter.builder("expenses.write_behind.duplicates").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("expenses.write_behind.rejected").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Whatever is left stays in the log and is replayed on the next start
+            log.warn("Final write-behind flush failed with {} expenses queued", getQueueDepth(), e);
+        }
+        writeAheadLog.close();
+    }
+
+    @Override
+    public WriteBehindReceipt enqueueExpense(String idempotencyKey, Expense expense) {
+        expenseService.validateExpense(expense);
+        String key = idempotencyKey == null || idempotencyKey.isBlank() ? UUID.randomUUID().toString() : idempotencyKey;
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key cannot exceed " + MAX_KEY_LENGTH + " characters");
+        }
+        byte[] payload = encode(key, expense);
+        synchronized (queue) {
+            // Appending under the queue lock keeps the queue in log order, which the checkpoint relies on
+            long sequence = writeAheadLog.append(payload);
+            queue.addLast(new QueuedExpense(sequence, key, expense));
+            return new WriteBehindReceipt(key, sequence);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${expenses.write-behind.flush-interval-ms:100}")
+    public void flushQueued() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Write-behind flush failed with {} expenses queued, retrying", getQueueDepth(), e);
+        }
+    }
+
+    // Writes queued expenses batch by batch until the queue is empty, returning how many left the queue. A failing
+    // batch stops the flush and stays queued for the next attempt.
+    @Override
+    public int flush() {
+        synchronized (flushLock) {
+            int flushed = 0;
+            List<QueuedExpense> batch;
+            while (!(batch = nextBatch()).isEmpty()) {
+                List<QueuedExpense> written = batch;
+                flushTimer.record(() -> writeBatch(written));
+                synchronized (queue) {
+                    for (int i = 0; i < written.size(); i++) {
+                        queue.pollFirst();
+                    }
+                }
+                writeAheadLog.checkpoint(written.get(written.size() - 1).sequence());
+                flushed += written.size();
+            }
+            return flushed;
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    @Scheduled(cron = "${expenses.write-behind.key-purge-cron:0 0 4 * * *}")
+    public void purgeExpiredKeys() {
+        int purged = expenseWriteKeyRepository.deleteKeysCreatedBefore(Instant.now().minus(keyRetention));
+        log.info("Purged {} expired write-behind idempotency keys", purged);
+    }
+
+    private List<QueuedExpense> nextBatch() {
+        synchronized (queue) {
+            List<QueuedExpense> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+            Iterator<QueuedExpense> iterator = queue.iterator();
+            while (batch.size() < batchSize && iterator.hasNext()) {
+                batch.add(iterator.next());
+            }
+            return batch;
+        }
+    }
+
+    // Inserts the batch in one transaction. A constraint violation would fail every retry of the whole batch, so
+    // its expenses are then written one at a time and only the offending one is rejected.
+    private void writeBatch(List<QueuedExpense> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+        } catch (DataIntegrityViolationException e) {
+            if (batch.size() == 1) {
+                reject(batch.get(0), e.getMostSpecificCause().getMessage());
+                return;
+            }
+            for (QueuedExpense queued : batch) {
+                writeBatch(Collections.singletonList(queued));
+            }
+        }
+    }
+
+    private void insert(List<QueuedExpense> batch) {
+        Map<String, QueuedExpense> byKey = new LinkedHashMap<>();
+        for (QueuedExpense queued : batch) {
+            byKey.putIfAbsent(queued.idempotencyKey(), queued);
+        }
+        Set<String> existingKeys = expenseWriteKeyRepository.findExistingKeys(byKey.keySet());
+        List<QueuedExpense> fresh = byKey.values().stream()
+                .filter(queued -> !existingKeys.contains(queued.idempotencyKey()))
+                .toList();
+        duplicateCounter.increment(batch.size() - fresh.size());
+        if (fresh.isEmpty()) {
+            return;
+        }
+
+        List<BatchItemResult> results = expenseService.addExpenses(fresh.stream().map(QueuedExpense::expense).toList());
+        Map<String, Long> expenseIdsByKey = new LinkedHashMap<>();
+        for (int i = 0; i < fresh.size(); i++) {
+            BatchItemResult result = results.get(i);
+            expenseIdsByKey.put(fresh.get(i).idempotencyKey(), result.expenseId());
+            if (result.created()) {
+                flushedCounter.increment();
+            } else {
+                rejectedCounter.increment();
+                log.warn("Dropped write-behind expense {}: {}", fresh.get(i).idempotencyKey(), result.error());
+            }
+        }
+        expenseWriteKeyRepository.insertKeys(expenseIdsByKey);
+    }
+
+    private void reject(QueuedExpense queued, String error) {
+        rejectedCounter.increment();
+        log.warn("Dropped write-behind expense {}: {}", queued.idempotencyKey(), error);
+        transactionTemplate.executeWithoutResult(status ->
+                expenseWriteKeyRepository.insertKeys(Collections.singletonMap(queued.idempotencyKey(), null)));
+    }
+
+    private static byte[] encode(String key, Expense expense) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(key);
+            out.writeLong(expense.getUser().getUserId());
+            out.writeLong(expense.getCategory().getCategoryId());
+            out.writeLong(expense.getAmount().getMinorUnits());
+            out.writeUTF(expense.getAmount().getCurrency());
+            out.writeUTF(expense.getDescription());
+            out.writeLong(expense.getDate().getTime());
+        } catch (UTFDataFormatException e) {
+            throw new IllegalArgumentException("Expense description is too long");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static QueuedExpense decode(long sequence, byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            String key = in.readUTF();
+            User user = User.builder().userId(in.readLong()).build();
+            Category category = Category.builder().categoryId(in.readLong()).build();
+            Money amount = Money.ofMinor(in.readLong(), in.readUTF());
+            Expense expense = Expense.builder()
+                    .user(user)
+                    .category(category)
+                    .amount(amount)
+                    .description(in.readUTF())
+                    .date(new Date(in.readLong()))
+                    .build();
+            return new QueuedExpense(sequence, key, expense);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record QueuedExpense(long sequence, String idempotencyKey, Expense expense) {
+    }
+
+}
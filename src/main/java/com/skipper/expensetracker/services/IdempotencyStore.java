@@ -0,0 +1,156 @@
+package com.skipper.expensetracker.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.skipper.expensetracker.dto.IdempotentResponse;
+import com.skipper.expensetracker.repositories.IdempotentResponseRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Responses of requests that carried an Idempotency-Key, held in a Caffeine cache bounded by response size and
+// expiring after a fixed time. With expenses.idempotency.database.enabled the responses are also written to the
+// idempotent_response table and read back on a cache miss, so a retry reaching another instance, or arriving after
+// a restart, is still answered from the first response.
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    public static final String CACHE_NAME = "idempotentResponses";
+
+    // Rough per-entry cost of the key, headers and bookkeeping on top of the body
+    private static final int ENTRY_OVERHEAD_BYTES = 512;
+
+    public enum Outcome {
+        // First request with this key: the caller handles it and then completes or releases the key
+        NEW,
+        // The same request was answered before: replay the recorded response
+        REPLAY,
+        // The same request is still being handled
+        IN_PROGRESS,
+        // The key was used before for a different request
+        MISMATCH
+    }
+
+    public record Claim(Outcome outcome, IdempotentResponse response) {
+    }
+
+    private final Cache<String, IdempotentResponse> responses;
+    private final ConcurrentMap<String, String> inFlight = new ConcurrentHashMap<>();
+    private final IdempotentResponseRepository idempotentResponseRepository;
+    private final boolean databaseEnabled;
+    private final Duration timeToLive;
+
+    public IdempotencyStore(MeterRegistry meterRegistry, IdempotentResponseRepository idempotentResponseRepository,
+                            @Value("${expenses.idempotency.max-size:64MB}") DataSize maxSize,
+                            @Value("${expenses.idempotency.ttl:24h}") Duration timeToLive,
+                            @Value("${expenses.idempotency.database.enabled:false}") boolean databaseEnabled) {
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String scope, IdempotentResponse response) -> weight(response))
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, CACHE_NAME);
+        this.idempotentResponseRepository = idempotentResponseRepository;
+        this.databaseEnabled = databaseEnabled;
+        this.timeToLive = timeToLive;
+    }
+
+    // Looks the scope up and, when it is unknown, marks it as in progress for the caller
+    public Claim claim(String scope, String requestHash) {
+        IdempotentResponse recorded = find(scope);
+        if (recorded != null) {
+            return answered(recorded, requestHash);
+        }
+        String running = inFlight.putIfAbsent(scope, requestHash);
+        if (running != null) {
+            return new Claim(running.equals(requestHash) ? Outcome.IN_PROGRESS : Outcome.MISMATCH, null);
+        }
+        // Another request may have completed between the lookup and the claim
+        recorded = responses.getIfPresent(scope);
+        if (recorded != null) {
+            inFlight.remove(scope);
+            return answered(recorded, requestHash);
+        }
+        return new Claim(Outcome.NEW, null);
+    }
+
+    // Records the response of a claimed scope and releases the claim
+    public void complete(String scope, IdempotentResponse response) {
+        try {
+            responses.put(scope, response);
+            if (databaseEnabled) {
+                idempotentResponseRepository.insert(hash(scope), response);
+            }
+        } catch (DataAccessException e) {
+            // The in-process copy still answers retries reaching this instance
+            log.warn("Recording idempotent response failed", e);
+        } finally {
+            inFlight.remove(scope);
+        }
+    }
+
+    // Releases a claimed scope without recording a response, so that a retry is handled again
+    public void release(String scope) {
+        inFlight.remove(scope);
+    }
+
+    @Scheduled(cron = "${expenses.idempotency.purge-cron:0 15 4 * * *}")
+    public void purgeExpired() {
+        if (databaseEnabled) {
+            int purged = idempotentResponseRepository.deleteCreatedBefore(Instant.now().minus(timeToLive));
+            log.info("Purged {} expired idempotent responses", purged);
+        }
+    }
+
+    private IdempotentResponse find(String scope) {
+        IdempotentResponse recorded = responses.getIfPresent(scope);
+        if (recorded == null && databaseEnabled) {
+            recorded = idempotentResponseRepository.findByScopeHash(hash(scope), Instant.now().minus(timeToLive)).orElse(null);
+            if (recorded != null) {
+                responses.put(scope, recorded);
+            }
+        }
+        return recorded;
+    }
+
+    private static Claim answered(IdempotentResponse recorded, String requestHash) {
+        return recorded.requestHash().equals(requestHash)
+                ? new Claim(Outcome.REPLAY, recorded)
+                : new Claim(Outcome.MISMATCH, null);
+    }
+
+    private static int weight(IdempotentResponse response) {
+        return ENTRY_OVERHEAD_BYTES + (response.body() == null ? 0 : response.body().length);
+    }
+
+    // Hex SHA-256 of the bytes
+    public static String hash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hash(String value) {
+        return hash(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
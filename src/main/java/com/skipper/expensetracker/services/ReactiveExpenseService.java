@@ -0,0 +1,19 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.dto.SummaryGroup;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+
+public interface ReactiveExpenseService {
+
+    Mono<ExpenseView> getExpense(Long expenseId);
+
+    Flux<ExpenseView> getExpenses(Long userId, Date startDate, Date endDate);
+
+    Flux<?> getExpenseSummary(SummaryGroup groupBy, Long userId, Long categoryId, Date startDate, Date endDate);
+
+}
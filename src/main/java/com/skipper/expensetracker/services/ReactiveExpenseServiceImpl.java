@@ -0,0 +1,64 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.dto.SummaryGroup;
+import com.skipper.expensetracker.repositories.ReactiveExpenseRepository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "expenses.reactive.enabled", havingValue = "true")
+public class ReactiveExpenseServiceImpl implements ReactiveExpenseService {
+
+    // Bounds used when a read or summary request leaves its date range open
+    private static final Date MIN_DATE = new Date(0L);
+    private static final Date MAX_DATE = new Date(253402300799000L); // 9999-12-31T23:59:59Z
+
+    private final ReactiveExpenseRepository reactiveExpenseRepository;
+
+    @Override
+    public Mono<ExpenseView> getExpense(Long expenseId) {
+        if (expenseId == null) {
+            return Mono.error(new IllegalArgumentException("Expense ID cannot be null"));
+        }
+        return reactiveExpenseRepository.findViewById(expenseId);
+    }
+
+    @Override
+    public Flux<ExpenseView> getExpenses(Long userId, Date startDate, Date endDate) {
+        Date from = startDate == null ? MIN_DATE : startDate;
+        Date to = endDate == null ? MAX_DATE : endDate;
+        if (from.after(to)) {
+            return Flux.error(new IllegalArgumentException("Start date must not be after end date"));
+        }
+        return reactiveExpenseRepository.findViewsByDateBetween(userId, from, to);
+    }
+
+    @Override
+    public Flux<?> getExpenseSummary(SummaryGroup groupBy, Long userId, Long categoryId, Date startDate, Date endDate) {
+        if (groupBy == null) {
+            return Flux.error(new IllegalArgumentException("Summary grouping cannot be null"));
+        }
+        Date from = startDate == null ? MIN_DATE : startDate;
+        Date to = endDate == null ? MAX_DATE : endDate;
+        if (from.after(to)) {
+            return Flux.error(new IllegalArgumentException("Summary start date must not be after end date"));
+        }
+
+        return switch (groupBy) {
+            case USER -> reactiveExpenseRepository.sumByUser(userId, categoryId, from, to);
+            case CATEGORY -> reactiveExpenseRepository.sumByCategory(userId, categoryId, from, to);
+            case DAY -> reactiveExpenseRepository.sumByDay(userId, categoryId, from, to);
+            case MONTH -> reactiveExpenseRepository.sumByMonth(userId, categoryId, from, to);
+            case YEAR -> reactiveExpenseRepository.sumByYear(userId, categoryId, from, to);
+        };
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.skipper.expensetracker.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.skipper.expensetracker.dto.UserExpenseSnapshot;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Bounded per-user cache of current-month expense snapshots, each kept with the version of the user's expenses it was
+// loaded at (ExpenseService.getUserExpensesVersion) and served only while that version is current, so a write made on
+// another instance or a renamed category is never answered from a stale snapshot. Caffeine's TinyLFU policy only
+// admits a new user over an eviction victim when the newcomer is accessed more often, so one-off reads by cold users
+// do not push out the users who keep returning to their dashboard.
+@Component
+public class UserExpenseCache {
+
+    public static final String CACHE_NAME = "userExpenses";
+
+    private final Cache<Long, Entry> snapshots;
+
+    public UserExpenseCache(MeterRegistry meterRegistry,
+                            @Value("${expenses.hot-cache.max-users:10000}") long maxUsers,
+                            @Value("${expenses.hot-cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, snapshots, CACHE_NAME);
+    }
+
+    // Returns the user's snapshot for the given month, loading it when absent, left over from an earlier month or
+    // loaded at another version of the user's expenses; read the version before the loader reads the expenses
+    public UserExpenseSnapshot get(Long userId, YearMonth month, String version,
+                                   Function<Long, UserExpenseSnapshot> loader) {
+        Entry entry = snapshots.get(userId, id -> new Entry(loader.apply(id), version));
+        if (!entry.isCurrent(month, version)) {
+            entry = new Entry(loader.apply(userId), version);
+            snapshots.put(userId, entry);
+        }
+        return entry.snapshot();
+    }
+
+    public UserExpenseSnapshot getIfPresent(Long userId) {
+        Entry entry = snapshots.getIfPresent(userId);
+        return entry == null ? null : entry.snapshot();
+    }
+
+    // The user's snapshot when one is held for the month at the given version, without loading it otherwise
+    public UserExpenseSnapshot getIfCurrent(Long userId, YearMonth month, String version) {
+        Entry entry = snapshots.getIfPresent(userId);
+        return entry != null && entry.isCurrent(month, version) ? entry.snapshot() : null;
+    }
+
+    // Drops the users' snapshots now and again once the surrounding transaction completes, so a read that
+    // raced the write cannot leave a snapshot from before the commit behind
+    public void invalidate(Collection<Long> userIds) {
+        Set<Long> keys = userIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        snapshots.invalidateAll(keys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    snapshots.invalidateAll(keys);
+                }
+            });
+        }
+    }
+
+    // Snapshots held now with their versions, for the warm-start snapshot
+    public List<Entry> getEntries() {
+        return List.copyOf(snapshots.asMap().values());
+    }
+
+    // Adds snapshots read back at startup, leaving users loaded meanwhile as they are; get still reloads any whose
+    // version is no longer current
+    public void restore(Collection<Entry> restored) {
+        for (Entry entry : restored) {
+            snapshots.asMap().putIfAbsent(entry.snapshot().userId(), entry);
+        }
+    }
+
+    public void invalidateAll() {
+        snapshots.invalidateAll();
+    }
+
+    // A snapshot and the version of the user's expenses it was loaded at
+    public record Entry(UserExpenseSnapshot snapshot, String version) {
+
+        boolean isCurrent(YearMonth month, String current) {
+            return snapshot.year() == month.getYear() && snapshot.month() == month.getMonthValue()
+                    && version.equals(current);
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+-- Baseline schema, matching what spring.jpa.hibernate.ddl-auto=update used to create.
+-- IF NOT EXISTS lets databases created before migrations were introduced adopt this history unchanged.
+
+CREATE TABLE IF NOT EXISTS category (
+    category_id BIGINT NOT NULL AUTO_INCREMENT,
+    category_name VARCHAR(255),
+    PRIMARY KEY (category_id)
+);
+
+CREATE TABLE IF NOT EXISTS user (
+    user_id BIGINT NOT NULL AUTO_INCREMENT,
+    username VARCHAR(255),
+    password VARCHAR(255),
+    email VARCHAR(255),
+    first_name VARCHAR(255),
+    last_name VARCHAR(255),
+    PRIMARY KEY (user_id),
+    CONSTRAINT uk_user_username UNIQUE (username)
+);
+
+CREATE TABLE IF NOT EXISTS expense (
+    expense_id BIGINT NOT NULL AUTO_INCREMENT,
+    category_category_id BIGINT,
+    user_user_id BIGINT,
+    amount FLOAT(53),
+    description VARCHAR(255),
+    date DATETIME(6),
+    PRIMARY KEY (expense_id),
+    CONSTRAINT fk_expense_category FOREIGN KEY (category_category_id) REFERENCES category (category_id),
+    CONSTRAINT fk_expense_user FOREIGN KEY (user_user_id) REFERENCES user (user_id)
+);
+
+CREATE TABLE IF NOT EXISTS expense_rollup (
+    user_id BIGINT NOT NULL,
+    category_id BIGINT NOT NULL,
+    expense_year INTEGER NOT NULL,
+    expense_month INTEGER NOT NULL,
+    total FLOAT(53),
+    expense_count BIGINT,
+    PRIMARY KEY (user_id, category_id, expense_year, expense_month)
+);
+
+CREATE TABLE IF NOT EXISTS expense_import (
+    import_id VARCHAR(255) NOT NULL,
+    format VARCHAR(255),
+    status VARCHAR(255),
+    last_committed_line BIGINT,
+    imported_rows BIGINT,
+    failed_rows BIGINT,
+    started_at DATETIME(6),
+    updated_at DATETIME(6),
+    last_error VARCHAR(1000),
+    PRIMARY KEY (import_id)
+);
+
+CREATE TABLE IF NOT EXISTS expense_import_error (
+    error_id BIGINT NOT NULL AUTO_INCREMENT,
+    import_id VARCHAR(255),
+    line_number BIGINT,
+    message VARCHAR(1000),
+    PRIMARY KEY (error_id)
+);
@@ -0,0 +1,14 @@
+-- Indexes for the queries ExpenseRepository runs; keep in sync with @Table(indexes = ...) on the entities.
+
+-- Per-user date range reads and summaries. Category and amount are included so the
+-- per-user GROUP BY summaries are answered from the index without touching the table.
+CREATE INDEX idx_expense_user_date ON expense (user_user_id, date, category_category_id, amount);
+
+-- Per-user, per-category reads
+CREATE INDEX idx_expense_user_category ON expense (user_user_id, category_category_id);
+
+-- Date range reads and summaries across all users, covering in the same way
+CREATE INDEX idx_expense_date ON expense (date, user_user_id, category_category_id, amount);
+
+-- Error listing of an import, in line order
+CREATE INDEX idx_expense_import_error_import_line ON expense_import_error (import_id, line_number);
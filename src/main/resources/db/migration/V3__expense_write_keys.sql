@@ -0,0 +1,11 @@
+-- Idempotency keys of expenses written behind through the local write-ahead log. A record replayed after a
+-- crash, or resent by a client, finds its key here and is not inserted twice.
+CREATE TABLE IF NOT EXISTS expense_write_key (
+    idempotency_key VARCHAR(100) NOT NULL,
+    expense_id BIGINT,
+    created_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (idempotency_key)
+);
+
+-- Purge of expired keys
+CREATE INDEX idx_expense_write_key_created_at ON expense_write_key (created_at);
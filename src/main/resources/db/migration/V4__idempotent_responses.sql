@@ -0,0 +1,15 @@
+-- Responses to POST/PUT requests on expenses that carried an Idempotency-Key, replayed when the same request is
+-- retried. Used only with expenses.idempotency.database.enabled, so that retries landing on another instance or
+-- after a restart are still recognised.
+CREATE TABLE IF NOT EXISTS idempotent_response (
+    scope_hash CHAR(64) NOT NULL,
+    request_hash CHAR(64) NOT NULL,
+    status INT NOT NULL,
+    headers VARCHAR(4000),
+    body MEDIUMBLOB,
+    created_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (scope_hash)
+);
+
+-- Purge of expired responses
+CREATE INDEX idx_idempotent_response_created_at ON idempotent_response (created_at);
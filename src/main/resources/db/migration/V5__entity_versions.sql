@@ -0,0 +1,4 @@
+-- Optimistic-locking versions, also used as the ETags of the expense, category and user resources
+ALTER TABLE expense ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE category ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE user ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,6 @@
+-- Exact money: amounts and rollup totals become DECIMAL(19,2), and every expense records its ISO 4217 currency.
+-- Existing FLOAT amounts are rounded to the nearest hundredth by the conversion, and existing expenses take the
+-- configured expenses.currency (bound to the Flyway placeholder in application.properties).
+ALTER TABLE expense MODIFY COLUMN amount DECIMAL(19,2);
+ALTER TABLE expense ADD COLUMN currency VARCHAR(3) NOT NULL DEFAULT '${currency}';
+ALTER TABLE expense_rollup MODIFY COLUMN total DECIMAL(19,2);
@@ -0,0 +1,3 @@
+-- Keyset pages of a user range in (user, expense ID) order, as the monthly statement run reads them. Date, category
+-- and amount are included so the pages are filtered and summed from the index without touching the table.
+CREATE INDEX idx_expense_user_expense ON expense (user_user_id, expense_id, date, category_category_id, amount);
@@ -0,0 +1,3 @@
+-- Version of each user's expense collection, bumped in the transaction of every write to their expenses, so the
+-- dashboard can check its cached snapshot with a primary-key lookup instead of aggregating the user's history
+ALTER TABLE user ADD COLUMN expenses_version BIGINT NOT NULL DEFAULT 0;
@@ -7,6 +7,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -74,12 +75,37 @@ public class CategoryControllerTest {
         assertEquals("Expected InternalServerError response", HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
     }
     
+    @Test
+    void testGetAllCategories_NotModifiedWhileUnchanged() {
+        List<Category> categories = List.of(Category.builder().categoryId(1L).version(0L).build(),
+                Category.builder().categoryId(2L).version(5L).build());
+        when(categoryService.getAllCategories()).thenReturn(categories);
+        String etag = categoryController.getAllCategories(null).getHeaders().getETag();
+
+        ResponseEntity<List<Category>> unchanged = categoryController.getAllCategories(etag);
+        assertEquals(HttpStatus.NOT_MODIFIED, unchanged.getStatusCode());
+
+        when(categoryService.getAllCategories()).thenReturn(List.of(categories.get(0),
+                Category.builder().categoryId(2L).version(6L).build()));
+        ResponseEntity<List<Category>> changed = categoryController.getAllCategories(etag);
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+    }
+
+    @Test
+    void testGetCategoryById_NotModified() {
+        when(categoryService.getCategoryById(1L)).thenReturn(Category.builder().categoryId(1L).version(2L).build());
+
+        ResponseEntity<Category> response = categoryController.getCategoryById(1L, "\"2\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+    }
+
     @Test
     void testGetAllCategories_Success() {
         List<Category> categories = Arrays.asList(new Category(), new Category());
         when(categoryService.getAllCategories()).thenReturn(categories);
 
-        ResponseEntity<List<Category>> response = categoryController.getAllCategories();
+        ResponseEntity<List<Category>> response = categoryController.getAllCategories(null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(categories, response.getBody());
@@ -89,7 +115,7 @@ public class CategoryControllerTest {
     void testGetAllCategories_NullCategories() {
         when(categoryService.getAllCategories()).thenReturn(null);
 
-        ResponseEntity<List<Category>> response = categoryController.getAllCategories();
+        ResponseEntity<List<Category>> response = categoryController.getAllCategories(null);
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
     }
@@ -98,14 +124,14 @@ public class CategoryControllerTest {
     void testGetAllCategories_Exception() {
         when(categoryService.getAllCategories()).thenThrow(new RuntimeException());
 
-        ResponseEntity<List<Category>> response = categoryController.getAllCategories();
+        ResponseEntity<List<Category>> response = categoryController.getAllCategories(null);
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
     }
 
     @Test
     void testGetCategoryById_NullCategoryId() {
-        ResponseEntity<Category> response = categoryController.getCategoryById(null);
+        ResponseEntity<Category> response = categoryController.getCategoryById(null, null);
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
 
@@ -114,7 +140,7 @@ public class CategoryControllerTest {
         Category category = new Category();
         when(categoryService.getCategoryById(anyLong())).thenReturn(category);
 
-        ResponseEntity<Category> response = categoryController.getCategoryById(1L);
+        ResponseEntity<Category> response = categoryController.getCategoryById(1L, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(category, response.getBody());
@@ -124,7 +150,7 @@ public class CategoryControllerTest {
     void testGetCategoryById_ValidCategoryId_NonExistingCategory() {
         when(categoryService.getCategoryById(anyLong())).thenReturn(null);
 
-        ResponseEntity<Category> response = categoryController.getCategoryById(1L);
+        ResponseEntity<Category> response = categoryController.getCategoryById(1L, null);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
@@ -133,7 +159,7 @@ public class CategoryControllerTest {
     void testGetCategoryById_ThrowsException() {
         when(categoryService.getCategoryById(anyLong())).thenThrow(new RuntimeException());
 
-        ResponseEntity<Category> response = categoryController.getCategoryById(1L);
+        ResponseEntity<Category> response = categoryController.getCategoryById(1L, null);
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
     }
@@ -149,7 +175,7 @@ public class CategoryControllerTest {
 
         when(categoryService.updateCategory(categoryId, updatedCategory)).thenReturn(expectedCategory);
 
-        ResponseEntity<Category> response = categoryController.updateCategory(categoryId, updatedCategory);
+        ResponseEntity<Category> response = categoryController.updateCategory(categoryId, updatedCategory, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(expectedCategory, response.getBody());
@@ -160,13 +186,13 @@ public class CategoryControllerTest {
         Long categoryId = null;
         Category updatedCategory = new Category();
 
-        ResponseEntity<Category> response = categoryController.updateCategory(categoryId, updatedCategory);
+        ResponseEntity<Category> response = categoryController.updateCategory(categoryId, updatedCategory, null);
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
 
         categoryId = 1L;
         updatedCategory = null;
-        response = categoryController.updateCategory(categoryId, updatedCategory);
+        response = categoryController.updateCategory(categoryId, updatedCategory, null);
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
@@ -178,7 +204,7 @@ public class CategoryControllerTest {
 
         when(categoryService.updateCategory(categoryId, updatedCategory)).thenReturn(null);
 
-        ResponseEntity<Category> response = categoryController.updateCategory(categoryId, updatedCategory);
+        ResponseEntity<Category> response = categoryController.updateCategory(categoryId, updatedCategory, null);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
@@ -190,11 +216,32 @@ public class CategoryControllerTest {
 
         when(categoryService.updateCategory(categoryId, updatedCategory)).thenThrow(new RuntimeException());
 
-        ResponseEntity<Category> response = categoryController.updateCategory(categoryId, updatedCategory);
+        ResponseEntity<Category> response = categoryController.updateCategory(categoryId, updatedCategory, null);
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
     }
 
+    @Test
+    void testUpdateCategory_IfMatchAppliesToThatVersion() {
+        Category updatedCategory = new Category(null, "Groceries");
+        when(categoryService.updateCategory(1L, updatedCategory, 2L)).thenReturn(Category.builder().categoryId(1L).version(3L).build());
+
+        ResponseEntity<Category> response = categoryController.updateCategory(1L, updatedCategory, "\"2\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"3\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void testUpdateCategory_StaleIfMatchFailsPrecondition() {
+        Category updatedCategory = new Category(null, "Groceries");
+        when(categoryService.updateCategory(1L, updatedCategory, 2L)).thenThrow(new OptimisticLockingFailureException("Stale"));
+
+        ResponseEntity<Category> response = categoryController.updateCategory(1L, updatedCategory, "\"2\"");
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, response.getStatusCode());
+    }
+
     @Test
     void testDeleteCategory_ValidCategoryId() {
         Long categoryId = 1L;
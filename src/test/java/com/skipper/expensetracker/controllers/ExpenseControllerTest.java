@@ -1,24 +1,55 @@
 package com.skipper.expensetracker.controllers;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skipper.expensetracker.dto.BatchItemResult;
+import com.skipper.expensetracker.dto.DailySpendSeries;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.dto.PeriodExpenseTotal;
+import com.skipper.expensetracker.dto.SummaryGroup;
+import com.skipper.expensetracker.dto.UserExpenseSnapshot;
+import com.skipper.expensetracker.dto.WriteBehindReceipt;
 import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.ExpenseFileFormat;
+import com.skipper.expensetracker.services.ExpenseExportService;
 import com.skipper.expensetracker.services.ExpenseService;
+import com.skipper.expensetracker.services.ExpenseWriteBehindService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 @SpringBootTest
 public class ExpenseControllerTest {
@@ -26,6 +57,12 @@ public class ExpenseControllerTest {
     @Mock
     private ExpenseService expenseService;
 
+    @Mock
+    private ExpenseExportService expenseExportService;
+
+    @Mock
+    private ExpenseWriteBehindService expenseWriteBehindService;
+
     @InjectMocks
     private ExpenseController expenseController;
 
@@ -52,11 +89,91 @@ public class ExpenseControllerTest {
         assertEquals(createdExpense, result.getBody());
     }
 
+    @Test
+    void testCreateExpenseAsync_AcceptedIntoWriteBehindLog() {
+        Expense expense = new Expense();
+        WriteBehindReceipt receipt = new WriteBehindReceipt("key-1", 7L);
+        when(expenseWriteBehindService.enqueueExpense("key-1", expense)).thenReturn(receipt);
+
+        ResponseEntity<?> result = expenseController.createExpenseAsync(expense, "key-1");
+
+        assertEquals(HttpStatus.ACCEPTED, result.getStatusCode());
+        assertEquals("respond-async", result.getHeaders().getFirst("Preference-Applied"));
+        assertEquals(receipt, result.getBody());
+        verify(expenseService, times(0)).addExpense(any());
+    }
+
+    @Test
+    void testCreateExpenseAsync_InvalidExpense() {
+        Expense expense = new Expense();
+        when(expenseWriteBehindService.enqueueExpense(null, expense)).thenThrow(new IllegalArgumentException("User not found"));
+
+        ResponseEntity<?> result = expenseController.createExpenseAsync(expense, null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
+    @Test
+    void testCreateExpenseAsync_LogFull() {
+        Expense expense = new Expense();
+        when(expenseWriteBehindService.enqueueExpense("key-1", expense)).thenThrow(new IllegalStateException("Write-ahead log is full"));
+
+        ResponseEntity<?> result = expenseController.createExpenseAsync(expense, "key-1");
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, result.getStatusCode());
+        assertEquals("1", result.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void testCreateExpenseAsync_WriteBehindDisabled() {
+        ReflectionTestUtils.setField(expenseController, "expenseWriteBehindService", null);
+        Expense expense = new Expense();
+        Expense createdExpense = new Expense();
+        when(expenseService.addExpense(expense)).thenReturn(createdExpense);
+
+        ResponseEntity<?> result = expenseController.createExpenseAsync(expense, "key-1");
+
+        assertEquals(HttpStatus.CREATED, result.getStatusCode());
+        assertEquals(createdExpense, result.getBody());
+    }
+
+    @Test
+    void testCreateExpenses_AllCreated() {
+        List<Expense> expenses = List.of(new Expense(), new Expense());
+        List<BatchItemResult> results = List.of(BatchItemResult.created(0, 1L), BatchItemResult.created(1, 2L));
+        when(expenseService.addExpenses(expenses)).thenReturn(results);
+
+        ResponseEntity<List<BatchItemResult>> result = expenseController.createExpenses(expenses);
+
+        assertEquals(HttpStatus.CREATED, result.getStatusCode());
+        assertEquals(results, result.getBody());
+    }
+
+    @Test
+    void testCreateExpenses_PartialFailure() {
+        List<Expense> expenses = List.of(new Expense(), new Expense());
+        List<BatchItemResult> results = List.of(BatchItemResult.created(0, 1L), BatchItemResult.failed(1, "User not found"));
+        when(expenseService.addExpenses(expenses)).thenReturn(results);
+
+        ResponseEntity<List<BatchItemResult>> result = expenseController.createExpenses(expenses);
+
+        assertEquals(HttpStatus.MULTI_STATUS, result.getStatusCode());
+        assertEquals(results, result.getBody());
+    }
+
+    @Test
+    void testCreateExpenses_EmptyBatch() {
+        ResponseEntity<List<BatchItemResult>> result = expenseController.createExpenses(Collections.emptyList());
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+        verifyNoInteractions(expenseService);
+    }
+
     @Test
     void testGetAllExpenses_EmptyList() {
-        when(expenseService.getAllExpenses()).thenReturn(Collections.emptyList());
+        when(expenseService.getExpensePage(null, null)).thenReturn(Collections.emptyList());
 
-        ResponseEntity<List<Expense>> result = expenseController.getAllExpenses();
+        ResponseEntity<List<Expense>> result = expenseController.getAllExpenses(null, null);
 
         assertEquals(HttpStatus.NO_CONTENT, result.getStatusCode());
     }
@@ -64,28 +181,177 @@ public class ExpenseControllerTest {
     @Test
     void testGetAllExpenses_NonEmptyList() {
         List<Expense> expenses = List.of(new Expense(1L, null, null, null, "Expense 1", null));
-        when(expenseService.getAllExpenses()).thenReturn(expenses);
+        when(expenseService.getExpensePage(null, null)).thenReturn(expenses);
+
+        ResponseEntity<List<Expense>> result = expenseController.getAllExpenses(null, null);
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(expenses, result.getBody());
+        assertEquals("1", result.getHeaders().getFirst(ExpenseController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void testGetAllExpenses_WithCursorAndSize() {
+        List<Expense> expenses = List.of(
+                new Expense(11L, null, null, null, "Expense 11", null),
+                new Expense(12L, null, null, null, "Expense 12", null));
+        when(expenseService.getExpensePage(10L, 2)).thenReturn(expenses);
 
-        ResponseEntity<List<Expense>> result = expenseController.getAllExpenses();
+        ResponseEntity<List<Expense>> result = expenseController.getAllExpenses(10L, 2);
 
         assertEquals(HttpStatus.OK, result.getStatusCode());
         assertEquals(expenses, result.getBody());
+        assertEquals("12", result.getHeaders().getFirst(ExpenseController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStreamAllExpenses_WritesJsonArray() throws Exception {
+        ReflectionTestUtils.setField(expenseController, "objectMapper", new ObjectMapper());
+        doAnswer(invocation -> {
+            Consumer<Expense> consumer = invocation.getArgument(0);
+            consumer.accept(new Expense(1L, null, null, null, "Expense 1", null));
+            consumer.accept(new Expense(2L, null, null, null, "Expense 2", null));
+            return null;
+        }).when(expenseService).streamAllExpenses(any(Consumer.class));
+
+        ResponseEntity<StreamingResponseBody> result = expenseController.streamAllExpenses();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        result.getBody().writeTo(outputStream);
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        JsonNode json = new ObjectMapper().readTree(outputStream.toByteArray());
+        assertEquals(2, json.size());
+        assertEquals("Expense 2", json.get(1).get("description").asText());
     }
 
     @Test
     void testGetAllExpenses_IllegalArgumentException() {
-        when(expenseService.getAllExpenses()).thenThrow(new IllegalArgumentException());
+        when(expenseService.getExpensePage(null, null)).thenThrow(new IllegalArgumentException());
 
-        ResponseEntity<List<Expense>> result = expenseController.getAllExpenses();
+        ResponseEntity<List<Expense>> result = expenseController.getAllExpenses(null, null);
 
         assertEquals(HttpStatus.NOT_FOUND, result.getStatusCode());
     }
 
+    @Test
+    void testExportExpenses_GzipCsv() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(4);
+            outputStream.write("userId\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        }).when(expenseExportService).exportExpenses(eq(ExpenseFileFormat.CSV), eq(7L), any(), any(), any());
+
+        ResponseEntity<StreamingResponseBody> result = expenseController.exportExpenses("csv", 7L, null, null, "gzip, deflate");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        result.getBody().writeTo(outputStream);
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals("gzip", result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        byte[] content = new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray())).readAllBytes();
+        assertEquals("userId\n", new String(content, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testExportExpenses_UnknownFormat() {
+        ResponseEntity<StreamingResponseBody> result = expenseController.exportExpenses("xml", null, null, null, null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+        verifyNoInteractions(expenseExportService);
+    }
+
+    @Test
+    void testGetExpenseSummary_ByMonthForUser() {
+        List<PeriodExpenseTotal> totals = List.of(new PeriodExpenseTotal(2024, 5, 12000L, 3L));
+        doReturn(totals).when(expenseService).getExpenseSummary(SummaryGroup.MONTH, 7L, null, null, null);
+
+        ResponseEntity<List<?>> result = expenseController.getExpenseSummary("month", 7L, null, null, null);
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(totals, result.getBody());
+    }
+
+    @Test
+    void testGetExpenseSummary_UnknownGrouping() {
+        ResponseEntity<List<?>> result = expenseController.getExpenseSummary("week", null, null, null, null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+        verifyNoInteractions(expenseService);
+    }
+
+    @Test
+    void testGetExpenseSummary_InvertedRange() {
+        Date from = Date.from(LocalDate.of(2024, 3, 1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Date to = Date.from(LocalDate.of(2024, 1, 31).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        when(expenseService.getExpenseSummary(eq(SummaryGroup.MONTH), isNull(), isNull(), eq(from), any(Date.class)))
+                .thenThrow(new IllegalArgumentException("Summary start date must not be after end date"));
+
+        ResponseEntity<List<?>> result = expenseController.getExpenseSummary("month", null, null, from, to);
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
+    @Test
+    void testGetDailySpendByUserId() {
+        DailySpendSeries series = DailySpendSeries.of(7L, LocalDate.of(2024, 1, 1), 1250L, new long[]{1250L});
+        when(expenseService.getDailySpend(7L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 1))).thenReturn(series);
+
+        ResponseEntity<DailySpendSeries> result = expenseController.getDailySpendByUserId(7L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 1));
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(series, result.getBody());
+    }
+
+    @Test
+    void testGetDailySpendByUserId_InvalidRange() {
+        when(expenseService.getDailySpend(eq(7L), any(), any())).thenThrow(new IllegalArgumentException());
+
+        ResponseEntity<DailySpendSeries> result = expenseController.getDailySpendByUserId(7L, LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 1));
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
+    @Test
+    void testGetExpensesByUserId_InclusiveEndDate() {
+        Date from = new Date(0L);
+        Date to = new Date(86_400_000L);
+        List<ExpenseView> views = List.of(new ExpenseView(1L, 7L, 3L, "Food", 1250L, "USD", "Lunch", new Date(0L)));
+        when(expenseService.getExpensesByUserId(7L, from, new Date(2 * 86_400_000L - 1))).thenReturn(views);
+
+        ResponseEntity<List<ExpenseView>> result = expenseController.getExpensesByUserId(7L, from, to, null);
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(views, result.getBody());
+    }
+
+    @Test
+    void testGetExpensesByUserId_InvalidRange() {
+        when(expenseService.getExpensesByUserId(eq(7L), any(), any())).thenThrow(new IllegalArgumentException());
+
+        ResponseEntity<List<ExpenseView>> result = expenseController.getExpensesByUserId(7L, new Date(86_400_000L), new Date(0L), null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
+    @Test
+    void testGetCurrentExpensesByUserId() {
+        UserExpenseSnapshot snapshot = new UserExpenseSnapshot(7L, 2024, 5, List.of(), 0L, 4200L);
+        when(expenseService.getUserExpensesVersion(7L)).thenReturn("3.42.0.0");
+        when(expenseService.getCurrentExpensesByUserId(7L, "3.42.0.0")).thenReturn(snapshot);
+
+        ResponseEntity<UserExpenseSnapshot> result = expenseController.getCurrentExpensesByUserId(7L, null);
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(snapshot, result.getBody());
+        // The version behind the ETag is read once and handed to the service
+        verify(expenseService, times(1)).getUserExpensesVersion(7L);
+    }
+
     @Test
     void testGetExpensesByExpenseId_ExpenseIdIsNull() {
         Long expenseId = null;
 
-        ResponseEntity<Expense> response = expenseController.getExpensesByExpenseId(expenseId);
+        ResponseEntity<Expense> response = expenseController.getExpensesByExpenseId(expenseId, null);
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
@@ -98,7 +364,7 @@ public class ExpenseControllerTest {
 
         when(expenseService.getExpensesByExpenseId(expenseId)).thenReturn(expense);
 
-        ResponseEntity<Expense> response = expenseController.getExpensesByExpenseId(expenseId);
+        ResponseEntity<Expense> response = expenseController.getExpensesByExpenseId(expenseId, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(expense, response.getBody());
@@ -110,17 +376,61 @@ public class ExpenseControllerTest {
 
         when(expenseService.getExpensesByExpenseId(expenseId)).thenThrow(IllegalArgumentException.class);
 
-        ResponseEntity<Expense> response = expenseController.getExpensesByExpenseId(expenseId);
+        ResponseEntity<Expense> response = expenseController.getExpensesByExpenseId(expenseId, null);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
 
+    @Test
+    void testGetExpensesByExpenseId_SetsETag() {
+        Expense expense = Expense.builder().expenseId(1L).version(3L).build();
+        when(expenseService.getExpensesByExpenseId(1L)).thenReturn(expense);
+
+        ResponseEntity<Expense> response = expenseController.getExpensesByExpenseId(1L, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"3\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void testGetExpensesByExpenseId_NotModifiedWithoutLoading() {
+        when(expenseService.getExpenseVersion(1L)).thenReturn(3L);
+
+        ResponseEntity<Expense> response = expenseController.getExpensesByExpenseId(1L, "\"2\", \"3\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"3\"", response.getHeaders().getETag());
+        verify(expenseService, times(0)).getExpensesByExpenseId(any());
+    }
+
+    @Test
+    void testGetExpensesByExpenseId_StaleETagReloads() {
+        Expense expense = Expense.builder().expenseId(1L).version(4L).build();
+        when(expenseService.getExpenseVersion(1L)).thenReturn(4L);
+        when(expenseService.getExpensesByExpenseId(1L)).thenReturn(expense);
+
+        ResponseEntity<Expense> response = expenseController.getExpensesByExpenseId(1L, "\"3\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"4\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void testGetExpensesByUserId_NotModifiedWithoutQuerying() {
+        when(expenseService.getUserExpensesVersion(7L)).thenReturn("3.42.0.0");
+
+        ResponseEntity<List<ExpenseView>> response = expenseController.getExpensesByUserId(7L, null, null, "W/\"3.42.0.0\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        verify(expenseService, times(0)).getExpensesByUserId(any(), any(), any());
+    }
+
     @Test
     void testUpdateExpense_InvalidInput() {
         Long expenseId = 1L;
         Expense updatedExpense = null;
 
-        ResponseEntity<Expense> response = expenseController.updateExpense(expenseId, updatedExpense);
+        ResponseEntity<Expense> response = expenseController.updateExpense(expenseId, updatedExpense, null);
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
@@ -132,7 +442,7 @@ public class ExpenseControllerTest {
         Expense expectedExpense = new Expense();
         when(expenseService.editExpense(expenseId, updatedExpense)).thenReturn(expectedExpense);
 
-        ResponseEntity<Expense> response = expenseController.updateExpense(expenseId, updatedExpense);
+        ResponseEntity<Expense> response = expenseController.updateExpense(expenseId, updatedExpense, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(expectedExpense, response.getBody());
@@ -144,11 +454,54 @@ public class ExpenseControllerTest {
         Expense updatedExpense = new Expense();
         when(expenseService.editExpense(expenseId, updatedExpense)).thenThrow(new IllegalArgumentException("Expense not found"));
 
-        ResponseEntity<Expense> response = expenseController.updateExpense(expenseId, updatedExpense);
+        ResponseEntity<Expense> response = expenseController.updateExpense(expenseId, updatedExpense, null);
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
 
+    @Test
+    void testUpdateExpense_IfMatchAppliesToThatVersion() {
+        Expense updatedExpense = new Expense();
+        Expense savedExpense = Expense.builder().expenseId(1L).version(4L).build();
+        when(expenseService.editExpense(1L, updatedExpense, 3L)).thenReturn(savedExpense);
+
+        ResponseEntity<Expense> response = expenseController.updateExpense(1L, updatedExpense, "\"3\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"4\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void testUpdateExpense_StaleIfMatchFailsPrecondition() {
+        Expense updatedExpense = new Expense();
+        when(expenseService.editExpense(1L, updatedExpense, 3L)).thenThrow(new OptimisticLockingFailureException("Stale"));
+
+        ResponseEntity<Expense> response = expenseController.updateExpense(1L, updatedExpense, "\"3\"");
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, response.getStatusCode());
+    }
+
+    @Test
+    void testUpdateExpense_WeakIfMatchNeverMatches() {
+        Expense updatedExpense = new Expense();
+        when(expenseService.editExpense(1L, updatedExpense, ETags.UNMATCHED_VERSION))
+                .thenThrow(new OptimisticLockingFailureException("Stale"));
+
+        ResponseEntity<Expense> response = expenseController.updateExpense(1L, updatedExpense, "W/\"3\"");
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, response.getStatusCode());
+    }
+
+    @Test
+    void testUpdateExpense_ConcurrentUpdateConflicts() {
+        Expense updatedExpense = new Expense();
+        when(expenseService.editExpense(1L, updatedExpense)).thenThrow(new OptimisticLockingFailureException("Stale"));
+
+        ResponseEntity<Expense> response = expenseController.updateExpense(1L, updatedExpense, null);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+
     @Test
     void testDeleteExpense_ValidExpenseId() {
         Long expenseId = 1L;
@@ -179,5 +532,21 @@ public class ExpenseControllerTest {
         verify(expenseService, times(1)).deleteExpense(expenseId);
     }
 
-    
+    @Test
+    void testDeleteExpenses_ReportsDeletedCount() {
+        when(expenseService.deleteExpenses(List.of(1L, 2L, 3L))).thenReturn(2);
+
+        ResponseEntity<Map<String, Integer>> result = expenseController.deleteExpenses(List.of(1L, 2L, 3L));
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(2, result.getBody().get("deleted"));
+    }
+
+    @Test
+    void testDeleteExpenses_InvalidIds() {
+        when(expenseService.deleteExpenses(any())).thenThrow(new IllegalArgumentException("Too many"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, expenseController.deleteExpenses(List.of()).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, expenseController.deleteExpenses(List.of(1L)).getStatusCode());
+    }
 }
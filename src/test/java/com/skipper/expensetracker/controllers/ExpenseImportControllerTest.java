@@ -0,0 +1,101 @@
+package com.skipper.expensetracker.controllers;
+
+import com.skipper.expensetracker.entities.ExpenseFileFormat;
+import com.skipper.expensetracker.entities.ExpenseImport;
+import com.skipper.expensetracker.entities.ImportStatus;
+import com.skipper.expensetracker.services.ExpenseImportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+public class ExpenseImportControllerTest {
+
+    @Mock
+    private ExpenseImportService expenseImportService;
+
+    @InjectMocks
+    private ExpenseImportController expenseImportController;
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testImportExpenses_Completed() {
+        InputStream content = new ByteArrayInputStream(new byte[0]);
+        ExpenseImport expenseImport = ExpenseImport.builder().importId("job").status(ImportStatus.COMPLETED).build();
+        when(expenseImportService.importExpenses("job", ExpenseFileFormat.CSV, content)).thenReturn(expenseImport);
+
+        ResponseEntity<ExpenseImport> response = expenseImportController.importExpenses("csv", "job", content);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(expenseImport, response.getBody());
+    }
+
+    @Test
+    void testImportExpenses_FailedReturnsResumePoint() {
+        InputStream content = new ByteArrayInputStream(new byte[0]);
+        ExpenseImport expenseImport = ExpenseImport.builder().importId("job").status(ImportStatus.FAILED)
+                .lastCommittedLine(1000L).build();
+        when(expenseImportService.importExpenses("job", ExpenseFileFormat.NDJSON, content)).thenReturn(expenseImport);
+
+        ResponseEntity<ExpenseImport> response = expenseImportController.importExpenses("ndjson", "job", content);
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        assertEquals(1000L, response.getBody().getLastCommittedLine());
+    }
+
+    @Test
+    void testImportExpenses_UnknownFormat() {
+        ResponseEntity<ExpenseImport> response = expenseImportController.importExpenses("xml", null,
+                new ByteArrayInputStream(new byte[0]));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(expenseImportService);
+    }
+
+    @Test
+    void testImportExpenses_BadCsvHeader() {
+        InputStream content = new ByteArrayInputStream(new byte[0]);
+        when(expenseImportService.importExpenses("job", ExpenseFileFormat.CSV, content))
+                .thenThrow(new IllegalArgumentException("CSV import is missing its header line"));
+
+        ResponseEntity<ExpenseImport> response = expenseImportController.importExpenses("csv", "job", content);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void testImportExpenses_AlreadyRunning() {
+        InputStream content = new ByteArrayInputStream(new byte[0]);
+        when(expenseImportService.importExpenses("job", ExpenseFileFormat.CSV, content))
+                .thenThrow(new IllegalStateException("Import job is already running"));
+
+        ResponseEntity<ExpenseImport> response = expenseImportController.importExpenses("csv", "job", content);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+
+    @Test
+    void testGetImport_NotFound() {
+        when(expenseImportService.getImport("missing")).thenReturn(null);
+
+        ResponseEntity<ExpenseImport> response = expenseImportController.getImport("missing");
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+}
@@ -0,0 +1,168 @@
+package com.skipper.expensetracker.controllers;
+
+import com.skipper.expensetracker.repositories.IdempotentResponseRepository;
+import com.skipper.expensetracker.services.ExpenseWriteBehindService;
+import com.skipper.expensetracker.services.IdempotencyStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class IdempotencyKeyFilterTest {
+
+    private final IdempotencyKeyFilter filter = new IdempotencyKeyFilter(new IdempotencyStore(new SimpleMeterRegistry(),
+            mock(IdempotentResponseRepository.class), DataSize.ofMegabytes(1), Duration.ofHours(1), false));
+    private final AtomicInteger handled = new AtomicInteger();
+
+    // Stands in for the controller: echoes the request body back with the given status
+    private FilterChain controller(int status) {
+        return (request, response) -> {
+            handled.incrementAndGet();
+            byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+            ((HttpServletResponse) response).setStatus(status);
+            response.setContentType("application/json");
+            response.getOutputStream().write(body);
+        };
+    }
+
+    private static MockHttpServletRequest post(String path, String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        if (key != null) {
+            request.addHeader(ExpenseController.IDEMPOTENCY_KEY_HEADER, key);
+        }
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request, int status) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, controller(status));
+        return response;
+    }
+
+    @Test
+    void testRetry_ReplaysFirstResponseWithoutHandlingAgain() throws Exception {
+        MockHttpServletResponse first = send(post("/api/expenses", "key-1", "{\"amount\":5}"), 201);
+        MockHttpServletResponse retry = send(post("/api/expenses", "key-1", "{\"amount\":5}"), 201);
+
+        assertEquals(1, handled.get());
+        assertEquals(201, first.getStatus());
+        assertEquals(201, retry.getStatus());
+        assertEquals("{\"amount\":5}", retry.getContentAsString());
+        assertEquals("application/json", retry.getContentType());
+        assertEquals("true", retry.getHeader(IdempotencyKeyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void testReusedKeyWithDifferentBody_Rejected() throws Exception {
+        send(post("/api/expenses", "key-1", "{\"amount\":5}"), 201);
+        MockHttpServletResponse reused = send(post("/api/expenses", "key-1", "{\"amount\":6}"), 201);
+
+        assertEquals(1, handled.get());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY.value(), reused.getStatus());
+    }
+
+    @Test
+    void testServerError_NotRecorded() throws Exception {
+        send(post("/api/expenses", "key-1", "{\"amount\":5}"), 500);
+        MockHttpServletResponse retry = send(post("/api/expenses", "key-1", "{\"amount\":5}"), 201);
+
+        assertEquals(2, handled.get());
+        assertEquals(201, retry.getStatus());
+    }
+
+    @Test
+    void testKeyLongerThanWriteKeyColumn_Rejected() throws Exception {
+        String longest = "k".repeat(ExpenseWriteBehindService.MAX_KEY_LENGTH);
+
+        assertEquals(201, send(post("/api/expenses", longest, "{}"), 201).getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST.value(), send(post("/api/expenses", longest + "k", "{}"), 201).getStatus());
+        assertEquals(1, handled.get());
+    }
+
+    @Test
+    void testKeyIsScopedToMethodAndPath() throws Exception {
+        send(post("/api/expenses", "key-1", "{}"), 201);
+        send(post("/api/expenses/batch", "key-1", "{}"), 201);
+        MockHttpServletRequest put = post("/api/expenses/1", "key-1", "{}");
+        put.setMethod("PUT");
+        send(put, 200);
+
+        assertEquals(3, handled.get());
+    }
+
+    @Test
+    void testRequestsWithoutKeyOrOutsideScope_PassThrough() throws Exception {
+        send(post("/api/expenses", null, "{}"), 201);
+        send(post("/api/expenses", null, "{}"), 201);
+        send(post("/api/expenses/import", "key-1", "{}"), 202);
+        send(post("/api/expenses/import", "key-1", "{}"), 202);
+        send(post("/api/categories", "key-1", "{}"), 201);
+        send(post("/api/categories", "key-1", "{}"), 201);
+
+        assertEquals(6, handled.get());
+    }
+
+    @Test
+    void testRequestWithoutKey_BodyNotBuffered() throws Exception {
+        MockHttpServletRequest request = post("/api/expenses/batch", null, "[{}]");
+        AtomicReference<ServletRequest> seen = new AtomicReference<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> seen.set(req));
+
+        assertSame(request, seen.get());
+    }
+
+    @Test
+    void testBufferedBody_NotifiesReadListener() throws Exception {
+        List<String> events = new ArrayList<>();
+        FilterChain asyncReader = (request, response) -> {
+            ServletInputStream input = request.getInputStream();
+            input.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    byte[] buffer = new byte[16];
+                    while (input.isReady() && !input.isFinished()) {
+                        events.add(new String(buffer, 0, input.read(buffer), StandardCharsets.UTF_8));
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    events.add("done");
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    events.add("error");
+                }
+            });
+        };
+
+        filter.doFilter(post("/api/expenses", "key-1", "{}"), new MockHttpServletResponse(), asyncReader);
+
+        assertEquals(List.of("{}", "done"), events);
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.skipper.expensetracker.controllers;
+
+import com.skipper.expensetracker.repositories.StatementCounter;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCountFilterTest {
+
+    private final StatementCounter statementCounter = new StatementCounter();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final QueryCountFilter filter = new QueryCountFilter(statementCounter, meterRegistry, 50);
+
+    // Stands in for the controller: matches the URI template and runs the given number of statements
+    private FilterChain controller(int statements) {
+        return (request, response) -> {
+            request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/expenses/user/{userId}");
+            for (int i = 0; i < statements; i++) {
+                statementCounter.inspect("select 1");
+            }
+            ((HttpServletResponse) response).setStatus(200);
+        };
+    }
+
+    @Test
+    void testRequest_RecordsStatementsByUriTemplate() throws Exception {
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/expenses/user/7"), new MockHttpServletResponse(), controller(3));
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/expenses/user/8"), new MockHttpServletResponse(), controller(1));
+
+        DistributionSummary queries = meterRegistry.get("expenses.http.server.queries")
+                .tags("method", "GET", "uri", "/api/expenses/user/{userId}", "status", "200")
+                .summary();
+        assertEquals(2, queries.count());
+        assertEquals(4.0, queries.totalAmount());
+        assertEquals(3.0, queries.max());
+    }
+
+    @Test
+    void testStatementsOutsideRequest_NotCounted() throws Exception {
+        statementCounter.inspect("select 1");
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/expenses/user/7"), new MockHttpServletResponse(), controller(0));
+        statementCounter.inspect("select 1");
+
+        assertEquals(0.0, meterRegistry.get("expenses.http.server.queries").summary().totalAmount());
+        assertEquals(0, statementCounter.stop());
+    }
+
+}
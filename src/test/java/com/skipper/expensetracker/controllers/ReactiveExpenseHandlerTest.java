@@ -0,0 +1,139 @@
+package com.skipper.expensetracker.controllers;
+
+import com.skipper.expensetracker.dto.CategoryExpenseTotal;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.dto.PeriodExpenseTotal;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+import com.skipper.expensetracker.repositories.CategoryRepository;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.UserRepository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ReactiveExpenseHandlerTest {
+
+    @Autowired
+    private ReactiveExpenseServer reactiveExpenseServer;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    private WebTestClient client;
+    private User user;
+    private Category food;
+    private Category rent;
+    private List<Expense> expenses;
+
+    private static Date day(int dayOfMonth) {
+        return Date.from(LocalDate.of(2024, 3, dayOfMonth).atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    @BeforeEach
+    void setup() {
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:" + reactiveExpenseServer.getPort()).build();
+        user = userRepository.save(User.builder().username("reactive-" + UUID.randomUUID()).build());
+        food = categoryRepository.save(new Category(null, "Food"));
+        rent = categoryRepository.save(new Category(null, "Rent"));
+        expenses = expenseRepository.saveAll(List.of(
+                new Expense(null, food, user, Money.ofMinor(1250, "USD"), "Lunch", day(1)),
+                new Expense(null, food, user, Money.ofMinor(750, "USD"), "Coffee", day(2)),
+                new Expense(null, rent, user, Money.ofMinor(80000, "USD"), "March rent", day(3))));
+    }
+
+    @AfterEach
+    void cleanup() {
+        expenseRepository.deleteAll(expenses);
+        categoryRepository.deleteAll(List.of(food, rent));
+        userRepository.delete(user);
+    }
+
+    @Test
+    void testGetExpenseById() {
+        Expense lunch = expenses.get(0);
+
+        ExpenseView view = client.get().uri("/api/expenses/{id}", lunch.getExpenseId()).exchange()
+                .expectStatus().isOk()
+                .expectBody(ExpenseView.class).returnResult().getResponseBody();
+
+        assertEquals(lunch.getExpenseId(), view.expenseId());
+        assertEquals(user.getUserId(), view.userId());
+        assertEquals("Food", view.categoryName());
+        assertEquals(day(1), view.date());
+    }
+
+    @Test
+    void testGetExpenseById_NotFound() {
+        client.get().uri("/api/expenses/{id}", Long.MAX_VALUE).exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    void testGetExpensesByUserId_InclusiveRangeAsNdjson() {
+        List<ExpenseView> views = client.get().uri("/api/expenses/users/{id}?from=2024-03-02&to=2024-03-03", user.getUserId())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(ExpenseView.class).getResponseBody().collectList().block();
+
+        assertEquals(List.of("Coffee", "March rent"), views.stream().map(ExpenseView::description).toList());
+    }
+
+    @Test
+    void testGetExpenses_InvalidRange() {
+        client.get().uri("/api/expenses?from=2024-03-05&to=2024-03-01").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testGetExpenseSummary_ByCategoryForUser() {
+        List<CategoryExpenseTotal> totals = client.get().uri("/api/expenses/summary?groupBy=category&userId={id}", user.getUserId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(CategoryExpenseTotal.class).returnResult().getResponseBody();
+
+        assertEquals(List.of(new CategoryExpenseTotal(food.getCategoryId(), "Food", 2000L, 2L),
+                new CategoryExpenseTotal(rent.getCategoryId(), "Rent", 80000L, 1L)), totals);
+    }
+
+    @Test
+    void testGetExpenseSummary_ByDayForUserAndCategory() {
+        List<PeriodExpenseTotal> totals = client.get()
+                .uri("/api/expenses/summary?groupBy=day&userId={userId}&categoryId={categoryId}",
+                        user.getUserId(), food.getCategoryId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(PeriodExpenseTotal.class).returnResult().getResponseBody();
+
+        assertEquals(List.of(new PeriodExpenseTotal(2024, 3, 1, 1250L, 1L), new PeriodExpenseTotal(2024, 3, 2, 750L, 1L)),
+                totals);
+    }
+
+    @Test
+    void testGetExpenseSummary_UnknownGrouping() {
+        client.get().uri("/api/expenses/summary?groupBy=week").exchange().expectStatus().isBadRequest();
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.skipper.expensetracker.entities;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testOf_ExactMinorUnits() {
+        assertEquals(1250L, Money.of(new BigDecimal("12.5"), "USD").getMinorUnits());
+        assertEquals(-3L, Money.of(new BigDecimal("-0.03"), "USD").getMinorUnits());
+        assertEquals(new BigDecimal("12.50"), Money.ofMinor(1250, "USD").toDecimal());
+    }
+
+    @Test
+    void testOf_RejectsFractionsOfMinorUnitsAndBadCurrencies() {
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("0.125"), "USD"));
+        assertThrows(IllegalArgumentException.class, () -> Money.ofMinor(Money.MAX_MINOR_UNITS + 1, "USD"));
+        assertThrows(IllegalArgumentException.class, () -> Money.ofMinor(100, "XYZ"));
+        // Three decimal places do not fit the amount column
+        assertThrows(IllegalArgumentException.class, () -> Money.ofMinor(100, "BHD"));
+    }
+
+    @Test
+    void testSum_ExactAcrossBlocks() {
+        long[] amounts = new long[1000];
+        Arrays.fill(amounts, 10);
+        amounts[999] = 7;
+
+        assertEquals(9997L, Money.sum(amounts, amounts.length));
+        assertEquals(50L, Money.sum(amounts, 5));
+        // Large values cancel exactly, where a double sum would lose the small one
+        assertEquals(10000L, Money.sum(new long[]{Money.MAX_MINOR_UNITS, -Money.MAX_MINOR_UNITS, 10000L}, 3));
+    }
+
+    @Test
+    void testSum_Overflow() {
+        long[] amounts = new long[200];
+        Arrays.fill(amounts, Money.MAX_MINOR_UNITS);
+
+        assertThrows(ArithmeticException.class, () -> Money.sum(amounts, amounts.length));
+    }
+
+    @Test
+    void testJson_ExpenseAmountAndCurrency() throws Exception {
+        Expense expense = Expense.builder()
+                .amount(Money.ofMinor(1250, "USD"))
+                .description("Lunch")
+                .date(new Date(0L))
+                .build();
+
+        String json = objectMapper.writeValueAsString(expense);
+
+        assertTrue(json.contains("\"amount\":12.50,\"currency\":\"USD\""), json);
+        Expense read = objectMapper.readValue("{\"amount\":0.1,\"currency\":\"EUR\",\"description\":\"Tea\"}", Expense.class);
+        assertEquals(Money.ofMinor(10, "EUR"), read.getAmount());
+        assertEquals(Money.ofMinor(1999, null), objectMapper.readValue("{\"amount\":\"19.99\"}", Expense.class).getAmount());
+    }
+
+    @Test
+    void testJson_RejectsFractionsOfMinorUnits() {
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("{\"amount\":0.001}", Expense.class));
+    }
+
+}
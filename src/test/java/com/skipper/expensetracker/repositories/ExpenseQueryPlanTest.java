@@ -0,0 +1,118 @@
+package com.skipper.expensetracker.repositories;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Checks the EXPLAIN plans of the hot expense queries against the migrated schema,
+// so dropping or reordering an index shows up as a failing test rather than a table scan
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ExpenseQueryPlanTest {
+
+    private static final String RANGE = "TIMESTAMP '2023-01-01 00:00:00' AND TIMESTAMP '2023-12-31 23:59:59'";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Gives the optimizer realistic, committed row counts; on empty tables every index costs the same
+    @BeforeAll
+    void setup() {
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            users.add(new Object[]{"plan-user-" + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO user (username) VALUES (?)", users);
+        List<Object[]> categories = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            categories.add(new Object[]{"plan-category-" + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO category (category_name) VALUES (?)", categories);
+        Long firstUserId = jdbcTemplate.queryForObject("SELECT MIN(user_id) FROM user", Long.class);
+        Long firstCategoryId = jdbcTemplate.queryForObject("SELECT MIN(category_id) FROM category", Long.class);
+
+        List<Object[]> expenses = new ArrayList<>();
+        LocalDate start = LocalDate.of(2022, 1, 1);
+        for (int i = 0; i < 5000; i++) {
+            expenses.add(new Object[]{firstUserId + i % 50, firstCategoryId + i % 10, 1.0 + i % 100, "expense " + i,
+                    Date.valueOf(start.plusDays(i % 1000))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO expense (user_user_id, category_category_id, amount, description, date) "
+                + "VALUES (?, ?, ?, ?, ?)", expenses);
+        List<Object[]> errors = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            errors.add(new Object[]{"import-" + i % 20, (long) i, "error " + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO expense_import_error (import_id, line_number, message) VALUES (?, ?, ?)", errors);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @AfterAll
+    void cleanup() {
+        jdbcTemplate.update("DELETE FROM expense_import_error WHERE import_id LIKE 'import-%'");
+        jdbcTemplate.update("DELETE FROM expense WHERE description LIKE 'expense %'");
+        jdbcTemplate.update("DELETE FROM category WHERE category_name LIKE 'plan-category-%'");
+        jdbcTemplate.update("DELETE FROM user WHERE username LIKE 'plan-user-%'");
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+    }
+
+    private void assertUsesIndex(String index, String sql) {
+        String plan = explain(sql);
+        assertTrue(plan.contains(index), () -> "Expected " + index + " in plan:\n" + plan);
+        assertFalse(plan.contains("tableScan"), () -> "Unexpected table scan in plan:\n" + plan);
+    }
+
+    @Test
+    void testUserDateRange_UsesUserDateIndex() {
+        assertUsesIndex("idx_expense_user_date",
+                "SELECT e.expense_id, e.amount, e.description, e.date FROM expense e "
+                        + "WHERE e.user_user_id = 1 AND e.date BETWEEN " + RANGE);
+    }
+
+    @Test
+    void testUserCategorySummary_CoveredByUserDateIndex() {
+        String sql = "SELECT e.category_category_id, SUM(e.amount), COUNT(*) FROM expense e "
+                + "WHERE e.user_user_id = 1 AND e.date BETWEEN " + RANGE + " GROUP BY e.category_category_id";
+        assertUsesIndex("idx_expense_user_date", sql);
+    }
+
+    @Test
+    void testUserCategory_UsesUserCategoryIndex() {
+        assertUsesIndex("idx_expense_user_category",
+                "SELECT e.expense_id FROM expense e WHERE e.user_user_id = 1 AND e.category_category_id = 2");
+    }
+
+    @Test
+    void testDateRangeSummary_UsesDateIndex() {
+        assertUsesIndex("idx_expense_date",
+                "SELECT YEAR(e.date), MONTH(e.date), SUM(e.amount), COUNT(*) FROM expense e "
+                        + "WHERE e.date BETWEEN " + RANGE + " GROUP BY YEAR(e.date), MONTH(e.date)");
+    }
+
+    @Test
+    void testImportErrors_UsesImportLineIndex() {
+        assertUsesIndex("idx_expense_import_error_import_line",
+                "SELECT r.line_number, r.message FROM expense_import_error r "
+                        + "WHERE r.import_id = 'import-1' ORDER BY r.line_number");
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.skipper.expensetracker.repositories;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.dto.ExpenseWatermark;
+import com.skipper.expensetracker.dto.UserExpenseTotal;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ExpenseRepositoryTest {
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long userId;
+
+    @BeforeEach
+    void setup() {
+        User[] users = new User[3];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = User.builder().username("user" + i).build();
+            entityManager.persist(users[i]);
+        }
+        Category[] categories = new Category[4];
+        for (int i = 0; i < categories.length; i++) {
+            categories[i] = Category.builder().categoryName("category" + i).build();
+            entityManager.persist(categories[i]);
+        }
+        for (int i = 0; i < 24; i++) {
+            entityManager.persist(Expense.builder()
+                    .user(users[i % users.length])
+                    .category(categories[i % categories.length])
+                    .amount(Money.ofMinor(1005 + i * 100L, "USD"))
+                    .description("expense" + i)
+                    .date(new Date(1_700_000_000_000L + i * 86_400_000L))
+                    .build());
+        }
+        userId = users[0].getUserId();
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    // Touch every association a read endpoint serializes, then detach so nothing can load later
+    private void assertSingleQuery(List<Expense> expenses, int expectedSize) throws Exception {
+        for (Expense expense : expenses) {
+            assertNotNull(expense.getCategory().getCategoryName());
+        }
+        entityManager.clear();
+        new ObjectMapper().writeValueAsString(expenses);
+        assertEquals(expectedSize, expenses.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testFindAll_SingleQuery() throws Exception {
+        assertSingleQuery(expenseRepository.findAll(), 24);
+    }
+
+    @Test
+    void testFindByUserUserId_SingleQuery() throws Exception {
+        assertSingleQuery(expenseRepository.findByUserUserId(userId), 8);
+    }
+
+    @Test
+    void testFindByDateBetween_SingleQuery() throws Exception {
+        assertSingleQuery(expenseRepository.findByDateBetween(new Date(0L), new Date(Long.MAX_VALUE / 2)), 24);
+    }
+
+    @Test
+    void testFindByUserUserIdAndDateBetween_SingleQuery() throws Exception {
+        assertSingleQuery(expenseRepository.findByUserUserIdAndDateBetween(userId, new Date(0L), new Date(Long.MAX_VALUE / 2)), 8);
+    }
+
+    @Test
+    void testKeysetPage_SingleQuery() throws Exception {
+        assertSingleQuery(expenseRepository.findByExpenseIdGreaterThanOrderByExpenseIdAsc(0L, Limit.of(10)), 10);
+    }
+
+    @Test
+    void testFindViewsByUserIdAndDateBetween_SingleQuery() {
+        List<ExpenseView> views = expenseRepository.findViewsByUserIdAndDateBetween(userId, new Date(0L), new Date(Long.MAX_VALUE / 2));
+
+        assertEquals(8, views.size());
+        assertTrue(views.stream().allMatch(view -> userId.equals(view.userId()) && view.categoryName() != null));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void testSums_ExactInMinorUnits() {
+        Date from = new Date(0L);
+        Date to = new Date(Long.MAX_VALUE / 2);
+
+        // user0 has expenses 0, 3, ..., 21: 8 x 10.05 plus 100 cents for every step
+        assertEquals(new BigDecimal("164.40"), expenseRepository.getTotalExpensesByUserId(userId));
+        UserExpenseTotal userTotal = expenseRepository.sumByUser(userId, null, from, to).get(0);
+        assertEquals(16440L, userTotal.total());
+        assertEquals(8L, userTotal.count());
+        // category0 has expenses 0, 4, ..., 20
+        assertEquals(12030L, expenseRepository.sumByCategory(null, null, from, to).get(0).total());
+        assertEquals(1005L, expenseRepository.findViewsByUserIdAndDateBetween(userId, from, to).get(0).amount());
+    }
+
+    @Test
+    void testFindVersionByExpenseId_ReadsVersionWithoutLoadingEntity() {
+        Long expenseId = expenseRepository.findByUserUserId(userId).get(0).getExpenseId();
+        entityManager.clear();
+        statistics.clear();
+
+        assertEquals(0L, expenseRepository.findVersionByExpenseId(expenseId).orElseThrow());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertTrue(expenseRepository.findVersionByExpenseId(-1L).isEmpty());
+
+        Expense expense = expenseRepository.findById(expenseId).orElseThrow();
+        expense.setAmount(Money.ofMinor(9900, "USD"));
+        entityManager.flush();
+        assertEquals(1L, expenseRepository.findVersionByExpenseId(expenseId).orElseThrow());
+    }
+
+    @Test
+    void testFindWatermark_ChangesWithEveryWrite() {
+        ExpenseWatermark initial = expenseRepository.findWatermark();
+        assertEquals(24L, initial.count());
+        assertEquals(0L, initial.versionSum());
+
+        Expense expense = expenseRepository.findByUserUserId(userId).get(0);
+        expense.setAmount(Money.ofMinor(9900, "USD"));
+        entityManager.flush();
+        ExpenseWatermark updated = expenseRepository.findWatermark();
+        assertEquals(1L, updated.versionSum());
+        assertEquals(initial.maxExpenseId(), updated.maxExpenseId());
+
+        expenseRepository.delete(expense);
+        entityManager.flush();
+        assertEquals(23L, expenseRepository.findWatermark().count());
+    }
+
+    @Test
+    void testFindUserExpensesVersion_ChangesWithBumpsAndCategories() {
+        String initial = userRepository.findUserExpensesVersion(userId).tag();
+        assertEquals(initial, userRepository.findUserExpensesVersion(userId).tag());
+
+        Expense expense = expenseRepository.findByUserUserId(userId).get(0);
+        expense.getCategory().setCategoryName("renamed");
+        entityManager.flush();
+        String renamed = userRepository.findUserExpensesVersion(userId).tag();
+        assertNotEquals(initial, renamed);
+
+        assertEquals(1, userRepository.bumpExpensesVersions(List.of(userId, -1L)));
+        assertNotEquals(renamed, userRepository.findUserExpensesVersion(userId).tag());
+        assertEquals(List.of(userRepository.findUserExpensesVersion(userId)),
+                userRepository.findUserExpensesVersions(List.of(userId, -1L)));
+        assertNull(userRepository.findUserExpensesVersion(-1L));
+    }
+
+}
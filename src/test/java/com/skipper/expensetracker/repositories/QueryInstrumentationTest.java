@@ -0,0 +1,64 @@
+package com.skipper.expensetracker.repositories;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class QueryInstrumentationTest {
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void testStatementCounter_SeesEveryPreparedStatement() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long prepared = statistics.getPrepareStatementCount();
+
+        statementCounter.start();
+        expenseRepository.findByUserUserIdAndDateBetween(1L, new Date(0L), new Date());
+        expenseRepository.findVersionByExpenseId(1L);
+        int counted = statementCounter.stop();
+
+        assertEquals(2, counted);
+        assertEquals(prepared + 2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testRepositoryMethod_Timed() {
+        expenseRepository.findByUserUserIdAndDateBetween(1L, new Date(0L), new Date());
+
+        Timer timer = meterRegistry.get("spring.data.repository.invocations")
+                .tags("repository", "ExpenseRepository", "method", "findByUserUserIdAndDateBetween", "state", "SUCCESS")
+                .timer();
+        assertTrue(timer.count() > 0);
+    }
+
+    @Test
+    void testHibernateStatistics_Published() {
+        expenseRepository.findVersionByExpenseId(1L);
+
+        assertTrue(meterRegistry.get("hibernate.statements").tag("status", "prepared").functionCounter().count() > 0);
+        assertTrue(meterRegistry.get("hibernate.query.executions").functionCounter().count() > 0);
+        assertNotNull(meterRegistry.get("hibernate.cache.query.requests").tag("result", "hit").functionCounter());
+    }
+
+}
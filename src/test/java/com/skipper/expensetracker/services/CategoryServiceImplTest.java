@@ -0,0 +1,163 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.UserExpenseSnapshot;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.repositories.CategoryRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+class CategoryServiceImplTest {
+
+    @MockBean
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserExpenseCache userExpenseCache;
+
+    @BeforeEach
+    void setup() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    void testGetCategoryById_ServedFromCache() {
+        Category food = new Category(1L, "Food");
+        when(categoryRepository.findById(1L)).thenReturn(Optional.of(food));
+
+        assertEquals("Food", categoryService.getCategoryById(1L).getCategoryName());
+        assertEquals("Food", categoryService.getCategoryById(1L).getCategoryName());
+
+        verify(categoryRepository, times(1)).findById(1L);
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", CategoryServiceImpl.CATEGORY_CACHE)
+                .tag("result", "hit").functionCounter().count() >= 1);
+    }
+
+    @Test
+    void testGetCategoryById_MissingCategoryNotCached() {
+        when(categoryRepository.findById(2L)).thenReturn(Optional.empty());
+
+        assertNull(categoryService.getCategoryById(2L));
+        assertNull(categoryService.getCategoryById(2L));
+
+        verify(categoryRepository, times(2)).findById(2L);
+    }
+
+    @Test
+    void testGetAllCategories_ServedFromCache() {
+        when(categoryRepository.findAll()).thenReturn(List.of(new Category(1L, "Food")));
+
+        categoryService.getAllCategories();
+        List<Category> result = categoryService.getAllCategories();
+
+        assertEquals(1, result.size());
+        verify(categoryRepository, times(1)).findAll();
+    }
+
+    @Test
+    void testUpdateCategory_EvictsCachedEntries() {
+        Category food = new Category(1L, "Food", 2L);
+        when(categoryRepository.findById(1L)).thenReturn(Optional.of(food));
+        when(categoryRepository.findAll()).thenReturn(List.of(food));
+        when(categoryRepository.updateCategoryName(1L, "Groceries", 2L)).thenReturn(1);
+        categoryService.getCategoryById(1L);
+        categoryService.getAllCategories();
+
+        categoryService.updateCategory(1L, new Category(null, "Groceries"));
+        categoryService.getCategoryById(1L);
+        categoryService.getAllCategories();
+
+        // One load before the update, two inside it and one after the eviction
+        verify(categoryRepository, times(4)).findById(1L);
+        verify(categoryRepository, times(2)).findAll();
+    }
+
+    @Test
+    void testUpdateCategory_DropsUserExpenseSnapshots() {
+        when(categoryRepository.findById(1L)).thenReturn(Optional.of(new Category(1L, "Groceries", 2L)));
+        when(categoryRepository.updateCategoryName(1L, "Groceries", 2L)).thenReturn(1);
+        userExpenseCache.restore(List.of(new UserExpenseCache.Entry(new UserExpenseSnapshot(7L, 2024, 5, List.of(), 0L, 1000L), "v1")));
+
+        categoryService.updateCategory(1L, new Category(null, "Groceries"));
+
+        // Snapshots show category names
+        assertNull(userExpenseCache.getIfPresent(7L));
+    }
+
+    @Test
+    void testUpdateCategory_StaleVersionConflicts() {
+        when(categoryRepository.updateCategoryName(1L, "Groceries", 3L)).thenReturn(0);
+        when(categoryRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> categoryService.updateCategory(1L, new Category(null, "Groceries"), 3L));
+    }
+
+    @Test
+    void testUpdateCategory_WithoutVersionConflictsWhenRaced() {
+        when(categoryRepository.findById(1L)).thenReturn(Optional.of(new Category(1L, "Food", 2L)));
+        // Another update bumped the version after it was read
+        when(categoryRepository.updateCategoryName(1L, "Groceries", 2L)).thenReturn(0);
+        when(categoryRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> categoryService.updateCategory(1L, new Category(null, "Groceries")));
+    }
+
+    @Test
+    void testUpdateCategory_MissingCategoryNotFound() {
+        when(categoryRepository.updateCategoryName(1L, "Groceries", 3L)).thenReturn(0);
+        when(categoryRepository.existsById(1L)).thenReturn(false);
+
+        assertNull(categoryService.updateCategory(1L, new Category(null, "Groceries"), 3L));
+        assertNull(categoryService.updateCategory(1L, new Category(null, "Groceries")));
+        verify(categoryRepository, never()).updateCategoryName(eq(1L), any(), isNull());
+    }
+
+    @Test
+    void testDeleteCategory_EvictsCachedEntries() {
+        when(categoryRepository.findById(1L)).thenReturn(Optional.of(new Category(1L, "Food")));
+        categoryService.getCategoryById(1L);
+
+        categoryService.deleteCategory(1L);
+        categoryService.getCategoryById(1L);
+
+        verify(categoryRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void testAddCategory_EvictsCategoryList() {
+        when(categoryRepository.findAll()).thenReturn(List.of());
+        when(categoryRepository.save(any(Category.class))).thenReturn(new Category(3L, "Travel"));
+        categoryService.getAllCategories();
+
+        categoryService.addCategory(new Category(null, "Travel"));
+        categoryService.getAllCategories();
+
+        verify(categoryRepository, times(2)).findAll();
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+import com.skipper.expensetracker.repositories.CategoryRepository;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.UserRepository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Many clients doing read-modify-write cycles on the same rows, each sending the version it read and retrying when
+// another client got there first. Every cycle that reports success must be visible in the final row.
+@SpringBootTest
+class ConcurrentUpdateStressTest {
+
+    private static final int CLIENTS = 8;
+    private static final int UPDATES_PER_CLIENT = 25;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ExpenseRollupService expenseRollupService;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    private Category category;
+    private Expense expense;
+
+    @BeforeEach
+    void setup() {
+        user = userRepository.save(User.builder().username("stress-" + System.nanoTime()).build());
+        category = categoryService.addCategory(Category.builder().categoryName("Stress").build());
+        expense = expenseService.addExpense(Expense.builder()
+                .user(user)
+                .category(category)
+                .amount(Money.ofMinor(0, "USD"))
+                .description("Counter")
+                .date(new Date())
+                .build());
+    }
+
+    @AfterEach
+    void cleanup() {
+        expenseService.deleteExpense(expense.getExpenseId());
+        categoryRepository.deleteById(category.getCategoryId());
+        userRepository.deleteById(user.getUserId());
+    }
+
+    @Test
+    void testEditExpense_NoLostUpdates() throws Exception {
+        AtomicInteger conflicts = new AtomicInteger();
+        runClients(() -> {
+            while (true) {
+                Expense current = expenseRepository.findById(expense.getExpenseId()).orElseThrow();
+                Expense incremented = Expense.builder()
+                        .user(user)
+                        .category(category)
+                        .amount(Money.ofMinor(current.getAmount().getMinorUnits() + 1, "USD"))
+                        .description(current.getDescription())
+                        .date(current.getDate())
+                        .build();
+                try {
+                    expenseService.editExpense(expense.getExpenseId(), incremented, current.getVersion());
+                    return null;
+                } catch (OptimisticLockingFailureException e) {
+                    conflicts.incrementAndGet();
+                }
+            }
+        });
+
+        Expense result = expenseRepository.findById(expense.getExpenseId()).orElseThrow();
+        assertEquals(CLIENTS * UPDATES_PER_CLIENT, (long) result.getAmount().getMinorUnits());
+        assertEquals(CLIENTS * UPDATES_PER_CLIENT, result.getVersion());
+        // The rollups only saw the committed edits
+        assertEquals(CLIENTS * UPDATES_PER_CLIENT, expenseRollupService.getTotalExpensesByUserId(user.getUserId()));
+        assertTrue(conflicts.get() > 0, "Expected the clients to collide at least once");
+    }
+
+    @Test
+    void testUpdateCategory_NoLostUpdates() throws Exception {
+        runClients(() -> {
+            while (true) {
+                Category current = categoryRepository.findById(category.getCategoryId()).orElseThrow();
+                Category appended = Category.builder().categoryName(current.getCategoryName() + "+").build();
+                try {
+                    categoryService.updateCategory(category.getCategoryId(), appended, current.getVersion());
+                    return null;
+                } catch (OptimisticLockingFailureException e) {
+                    // Read the winner's name and try again
+                }
+            }
+        });
+
+        Category result = categoryService.getCategoryById(category.getCategoryId());
+        assertEquals("Stress" + "+".repeat(CLIENTS * UPDATES_PER_CLIENT), result.getCategoryName());
+        assertEquals(CLIENTS * UPDATES_PER_CLIENT, result.getVersion());
+    }
+
+    // Runs UPDATES_PER_CLIENT successful updates on each of CLIENTS threads, all released at once
+    private static void runClients(Callable<Void> update) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> clients = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < UPDATES_PER_CLIENT; j++) {
+                        update.call();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<Void> client : clients) {
+                client.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,249 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.CategoryExpenseTotal;
+import com.skipper.expensetracker.dto.PeriodExpenseTotal;
+import com.skipper.expensetracker.dto.StoredExpense;
+import com.skipper.expensetracker.dto.SummaryGroup;
+import com.skipper.expensetracker.dto.UserExpenseTotal;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ExpenseAnalyticsStoreTest {
+
+    private final ExpenseRepository expenseRepository = mock(ExpenseRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final CategoryService categoryService = mock(CategoryService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ExpenseAnalyticsStore store;
+
+    @BeforeEach
+    void setup() {
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        when(categoryService.getAllCategories()).thenReturn(List.of(new Category(1L, "Food"), new Category(2L, "Rent")));
+        when(userRepository.findAllById(any())).thenReturn(List.of(User.builder().userId(7L).username("alice").build(),
+                User.builder().userId(8L).username("bob").build()));
+        when(expenseRepository.streamStoredExpenses()).thenAnswer(invocation -> Stream.of(
+                stored(1L, 7L, 1L, 1250L, day(2024, 1, 5)),
+                stored(2L, 7L, 2L, 90000L, day(2024, 1, 31)),
+                stored(3L, 7L, 1L, 875L, day(2024, 2, 1)),
+                stored(4L, 8L, 1L, 400L, day(2023, 12, 24))));
+        store = new ExpenseAnalyticsStore(expenseRepository, userRepository, categoryService, transactionManager,
+                meterRegistry, true);
+    }
+
+    private static Date day(int year, int month, int dayOfMonth) {
+        return Date.from(LocalDate.of(year, month, dayOfMonth).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static Date endOfDay(int year, int month, int dayOfMonth) {
+        return new Date(day(year, month, dayOfMonth).getTime() + 24 * 60 * 60 * 1000L - 1);
+    }
+
+    private static StoredExpense stored(Long expenseId, Long userId, Long categoryId, Long amount, Date date) {
+        return new StoredExpense(expenseId, userId, categoryId, amount, "USD", date, 0L);
+    }
+
+    private static Expense expense(Long expenseId, Long userId, Long categoryId, long amount, Date date) {
+        return Expense.builder()
+                .expenseId(expenseId)
+                .user(User.builder().userId(userId).build())
+                .category(Category.builder().categoryId(categoryId).build())
+                .amount(Money.ofMinor(amount, "USD"))
+                .date(date)
+                .build();
+    }
+
+    @Test
+    void testGetSummary_EmptyUntilLoaded() {
+        assertTrue(store.getSummary(SummaryGroup.CATEGORY, null, null, null, null).isEmpty());
+
+        store.reload();
+
+        assertTrue(store.isLoaded());
+        assertEquals(4, store.getRowCount());
+        assertEquals(4.0, meterRegistry.get("expenses.analytics.rows").gauge().value());
+    }
+
+    @Test
+    void testGetSummary_GroupsByUserAndCategory() {
+        store.reload();
+
+        assertEquals(List.of(new UserExpenseTotal(7L, "alice", 92125L, 3L), new UserExpenseTotal(8L, "bob", 400L, 1L)),
+                store.getSummary(SummaryGroup.USER, null, null, null, null).orElseThrow());
+        assertEquals(List.of(new CategoryExpenseTotal(1L, "Food", 2125L, 2L), new CategoryExpenseTotal(2L, "Rent", 90000L, 1L)),
+                store.getSummary(SummaryGroup.CATEGORY, 7L, null, null, null).orElseThrow());
+        // Restricted to one category and to January 2024
+        assertEquals(List.of(new UserExpenseTotal(7L, "alice", 1250L, 1L)),
+                store.getSummary(SummaryGroup.USER, null, 1L, day(2024, 1, 1), endOfDay(2024, 1, 31)).orElseThrow());
+        assertEquals(List.of(), store.getSummary(SummaryGroup.CATEGORY, 99L, null, null, null).orElseThrow());
+        assertEquals(List.of(), store.getSummary(SummaryGroup.USER, null, 42L, null, null).orElseThrow());
+    }
+
+    @Test
+    void testGetSummary_GroupsByPeriod() {
+        store.reload();
+
+        assertEquals(List.of(new PeriodExpenseTotal(2023, 12, 24, 400L, 1L), new PeriodExpenseTotal(2024, 1, 5, 1250L, 1L),
+                        new PeriodExpenseTotal(2024, 1, 31, 90000L, 1L), new PeriodExpenseTotal(2024, 2, 1, 875L, 1L)),
+                store.getSummary(SummaryGroup.DAY, null, null, null, null).orElseThrow());
+        assertEquals(List.of(new PeriodExpenseTotal(2024, 1, 91250L, 2L), new PeriodExpenseTotal(2024, 2, 875L, 1L)),
+                store.getSummary(SummaryGroup.MONTH, 7L, null, day(2024, 1, 1), null).orElseThrow());
+        assertEquals(List.of(new PeriodExpenseTotal(2023, 400L, 1L), new PeriodExpenseTotal(2024, 92125L, 3L)),
+                store.getSummary(SummaryGroup.YEAR, null, null, null, null).orElseThrow());
+    }
+
+    @Test
+    void testGetSummary_LeavesPartialDaysToTheDatabase() {
+        store.reload();
+
+        assertTrue(store.getSummary(SummaryGroup.DAY, null, null, new Date(day(2024, 1, 5).getTime() + 1), null).isEmpty());
+        assertTrue(store.getSummary(SummaryGroup.DAY, null, null, null, day(2024, 1, 5)).isEmpty());
+        assertTrue(store.getSummary(SummaryGroup.DAY, null, null, day(2024, 2, 1), endOfDay(2024, 1, 1)).isEmpty());
+    }
+
+    @Test
+    void testChanges_AppliedToLoadedSegments() {
+        store.reload();
+
+        store.recordExpenses(List.of(expense(5L, 8L, 2L, 100000L, day(2024, 1, 2))));
+        store.reviseExpense(expense(1L, 7L, 1L, 1250L, day(2024, 1, 5)), expense(1L, 8L, 1L, 1300L, day(2024, 1, 6)));
+        store.reverseExpenses(List.of(expense(2L, 7L, 2L, 90000L, day(2024, 1, 31))));
+
+        assertEquals(List.of(new UserExpenseTotal(7L, "alice", 875L, 1L), new UserExpenseTotal(8L, "bob", 101700L, 3L)),
+                store.getSummary(SummaryGroup.USER, null, null, null, null).orElseThrow());
+        assertEquals(List.of(new CategoryExpenseTotal(1L, "Food", 2575L, 3L), new CategoryExpenseTotal(2L, "Rent", 100000L, 1L)),
+                store.getSummary(SummaryGroup.CATEGORY, null, null, null, null).orElseThrow());
+        // Recording an expense again replaces it rather than counting it twice
+        store.recordExpenses(List.of(expense(5L, 8L, 2L, 100000L, day(2024, 1, 2))));
+        assertEquals(4, store.getRowCount());
+    }
+
+    @Test
+    void testChanges_ManyRowsOfOneUser() {
+        store.reload();
+        List<Expense> added = LongStream.rangeClosed(100, 399)
+                .mapToObj(id -> expense(id, 8L, 1L, id, day(2024, 3, 1)))
+                .toList();
+        store.recordExpenses(added);
+
+        // Every other one, so rows move into the holes left behind
+        store.reverseExpenses(added.stream().filter(expense -> expense.getExpenseId() % 2 == 0).toList());
+        store.reverseExpenses(List.of(expense(4L, 8L, 1L, 400L, day(2023, 12, 24))));
+        store.recordExpenses(List.of(expense(101L, 8L, 1L, 1L, day(2024, 3, 1))));
+
+        long odd = LongStream.rangeClosed(100, 399).filter(id -> id % 2 == 1).sum();
+        assertEquals(List.of(new UserExpenseTotal(8L, "bob", odd - 101L + 1L, 150L)),
+                store.getSummary(SummaryGroup.USER, null, 1L, day(2024, 3, 1), endOfDay(2024, 3, 1)).orElseThrow());
+        assertEquals(153, store.getRowCount());
+    }
+
+    @Test
+    void testReload_RereadsUsersChangedDuringLoad() {
+        when(expenseRepository.streamStoredExpenses()).thenAnswer(invocation -> {
+            // An expense committed after the cursor passed its position
+            store.recordExpenses(List.of(expense(5L, 8L, 1L, 600L, day(2024, 3, 1))));
+            return Stream.of(stored(4L, 8L, 1L, 400L, day(2023, 12, 24)));
+        });
+        when(expenseRepository.findStoredByUserId(8L)).thenReturn(List.of(
+                stored(4L, 8L, 1L, 400L, day(2023, 12, 24)),
+                stored(5L, 8L, 1L, 600L, day(2024, 3, 1))));
+
+        store.reload();
+
+        assertEquals(Optional.of(List.of(new UserExpenseTotal(8L, "bob", 1000L, 2L))),
+                store.getSummary(SummaryGroup.USER, 8L, null, null, null));
+        verify(expenseRepository).findStoredByUserId(8L);
+    }
+
+    @Test
+    void testRestoreSnapshot_ServesUntilFirstLoad() throws IOException {
+        store.reload();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        store.writeSnapshot(new DataOutputStream(bytes));
+
+        ExpenseAnalyticsStore restarted = new ExpenseAnalyticsStore(expenseRepository, userRepository, categoryService,
+                transactionManager, new SimpleMeterRegistry(), true);
+        assertTrue(restarted.restoreSnapshot(ByteBuffer.wrap(bytes.toByteArray())));
+
+        assertEquals(4, restarted.getRowCount());
+        assertEquals(List.of(new CategoryExpenseTotal(1L, "Food", 2125L, 2L), new CategoryExpenseTotal(2L, "Rent", 90000L, 1L)),
+                restarted.getSummary(SummaryGroup.CATEGORY, 7L, null, null, null).orElseThrow());
+        // A loaded store keeps its own copy
+        assertFalse(store.restoreSnapshot(ByteBuffer.wrap(bytes.toByteArray())));
+        verify(expenseRepository, times(1)).streamStoredExpenses();
+    }
+
+    @Test
+    void testPauseChanges_HoldsCommitUntilClosed() throws Exception {
+        store.reload();
+        TransactionSynchronizationManager.initSynchronization();
+        List<TransactionSynchronization> synchronizations;
+        try {
+            store.recordExpenses(List.of(expense(5L, 8L, 2L, 100000L, day(2024, 1, 2))));
+            synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        CompletableFuture<Void> commit;
+        try (ExpenseAnalyticsStore.Pause paused = store.pauseChanges()) {
+            commit = CompletableFuture.runAsync(() -> {
+                synchronizations.forEach(sync -> sync.beforeCommit(false));
+                synchronizations.forEach(TransactionSynchronization::afterCommit);
+                synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            });
+            assertThrows(TimeoutException.class, () -> commit.get(100, TimeUnit.MILLISECONDS));
+            assertEquals(4, store.getRowCount());
+        }
+        commit.get(5, TimeUnit.SECONDS);
+        assertEquals(5, store.getRowCount());
+        // Released by the completed commit, so the next pause is not held up
+        store.pauseChanges().close();
+    }
+
+    @Test
+    void testReload_DisabledStoreNeverAnswers() {
+        ExpenseAnalyticsStore disabled = new ExpenseAnalyticsStore(expenseRepository, userRepository, categoryService,
+                transactionManager, new SimpleMeterRegistry(), false);
+
+        disabled.reload();
+        disabled.recordExpenses(List.of(expense(5L, 8L, 1L, 600L, day(2024, 3, 1))));
+
+        assertTrue(disabled.getSummary(SummaryGroup.USER, null, null, null, null).isEmpty());
+        verify(expenseRepository, never()).streamStoredExpenses();
+    }
+
+}
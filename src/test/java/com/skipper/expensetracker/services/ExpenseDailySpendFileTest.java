@@ -0,0 +1,115 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.ExpenseWatermark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseDailySpendFileTest {
+
+    private static final long FIRST_DAY = 19723; // 2024-01-01
+    private static final ExpenseWatermark WATERMARK = new ExpenseWatermark(3L, 42L, 5L);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testSum_RangesOfRunningTotals() throws IOException {
+        try (ExpenseDailySpendFile file = new ExpenseDailySpendFile(directory.resolve("daily.idx"), FIRST_DAY, 30, WATERMARK)) {
+            file.add(7L, 2, 1250L);
+            file.add(7L, 5, 400L);
+            // Back-dated: moves every total after it
+            file.add(7L, 1, 100L);
+            file.add(7L, 5, -400L);
+            file.add(7L, 5, 300L);
+
+            long[] daily = new long[6];
+            assertEquals(1650L, file.sum(7L, 0, 5, daily));
+            assertArrayEquals(new long[]{0L, 100L, 1250L, 0L, 0L, 300L}, daily);
+            assertEquals(1550L, file.sum(7L, 2, 29, null));
+            assertEquals(0L, file.sum(7L, 6, 29, null));
+            assertEquals(0L, file.sum(8L, 0, 29, null));
+            // A user in a region never written to
+            assertEquals(0L, file.sum(100_000L, 0, 29, null));
+        }
+    }
+
+    @Test
+    void testLoad_TurnsDailyAmountsIntoTotals() throws IOException {
+        try (ExpenseDailySpendFile file = new ExpenseDailySpendFile(directory.resolve("daily.idx"), FIRST_DAY, 30, WATERMARK)) {
+            file.loadDay(7L, 9, 500L);
+            file.loadDay(7L, 3, 200L);
+            file.loadDay(7L, 9, 50L);
+            file.completeLoad(7L);
+            file.add(7L, 12, 1000L);
+
+            assertEquals(1750L, file.sum(7L, 0, 29, null));
+            assertEquals(550L, file.sum(7L, 4, 9, null));
+
+            file.clear(7L);
+            assertEquals(0L, file.sum(7L, 0, 29, null));
+        }
+    }
+
+    @Test
+    void testReopen_CleanlyClosedFileIsReused() throws IOException {
+        Path path = directory.resolve("daily.idx");
+        assertFalse(ExpenseDailySpendFile.isCurrent(path, FIRST_DAY, 30, WATERMARK));
+        ExpenseDailySpendFile written = new ExpenseDailySpendFile(path, FIRST_DAY, 30, WATERMARK);
+        written.add(7L, 2, 1250L);
+        written.add(300L, 4, 800L);
+        written.close(WATERMARK);
+
+        assertTrue(ExpenseDailySpendFile.isCurrent(path, FIRST_DAY, 30, WATERMARK));
+        assertFalse(ExpenseDailySpendFile.isCurrent(path, FIRST_DAY, 31, WATERMARK));
+        assertFalse(ExpenseDailySpendFile.isCurrent(path, FIRST_DAY, 30, null));
+        ExpenseDailySpendFile reopened = new ExpenseDailySpendFile(path, FIRST_DAY, 30, WATERMARK);
+        assertEquals(1250L, reopened.sum(7L, 0, 29, null));
+        assertEquals(800L, reopened.sum(300L, 0, 29, null));
+        // Open again: not current until closed
+        assertFalse(ExpenseDailySpendFile.isCurrent(path, FIRST_DAY, 30, WATERMARK));
+        reopened.close(WATERMARK);
+    }
+
+    @Test
+    void testReopen_FileNotClosedCleanlyIsEmptied() throws IOException {
+        Path path = directory.resolve("daily.idx");
+        ExpenseDailySpendFile file = new ExpenseDailySpendFile(path, FIRST_DAY, 30, WATERMARK);
+        file.add(7L, 2, 1250L);
+        file.close();
+
+        assertFalse(ExpenseDailySpendFile.isCurrent(path, FIRST_DAY, 30, WATERMARK));
+        try (ExpenseDailySpendFile reopened = new ExpenseDailySpendFile(path, FIRST_DAY, 30, WATERMARK)) {
+            assertEquals(0L, reopened.sum(7L, 0, 29, null));
+        }
+    }
+
+    @Test
+    void testReopen_FileClosedAtOtherWatermarkIsEmptied() throws IOException {
+        Path path = directory.resolve("daily.idx");
+        ExpenseDailySpendFile file = new ExpenseDailySpendFile(path, FIRST_DAY, 30, WATERMARK);
+        file.add(7L, 2, 1250L);
+        file.close(WATERMARK);
+
+        // An expense deleted while the file was closed
+        ExpenseWatermark changed = new ExpenseWatermark(2L, 42L, 5L);
+        assertFalse(ExpenseDailySpendFile.isCurrent(path, FIRST_DAY, 30, changed));
+        try (ExpenseDailySpendFile reopened = new ExpenseDailySpendFile(path, FIRST_DAY, 30, changed)) {
+            assertEquals(0L, reopened.sum(7L, 0, 29, null));
+        }
+    }
+
+    @Test
+    void testAdd_RejectsDaysOutsideFile() throws IOException {
+        try (ExpenseDailySpendFile file = new ExpenseDailySpendFile(directory.resolve("daily.idx"), FIRST_DAY, 30, WATERMARK)) {
+            assertThrows(IllegalArgumentException.class, () -> file.add(7L, 30, 100L));
+            assertThrows(IllegalArgumentException.class, () -> file.sum(7L, -1, 3, null));
+        }
+    }
+
+}
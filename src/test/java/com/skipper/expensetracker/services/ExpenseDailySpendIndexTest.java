@@ -0,0 +1,189 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.DailySpendSeries;
+import com.skipper.expensetracker.dto.ExpenseWatermark;
+import com.skipper.expensetracker.dto.StoredExpense;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ExpenseDailySpendIndexTest {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    @TempDir
+    Path directory;
+
+    private final ExpenseRepository expenseRepository = mock(ExpenseRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private ExpenseDailySpendIndex index;
+
+    @BeforeEach
+    void setup() throws IOException {
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        when(expenseRepository.findWatermark()).thenReturn(new ExpenseWatermark(5L, 5L, 0L));
+        when(expenseRepository.streamStoredExpenses()).thenAnswer(invocation -> Stream.of(
+                stored(1L, 7L, 1250L, day(2024, 1, 5)),
+                stored(2L, 7L, 90000L, day(2024, 1, 31)),
+                stored(3L, 7L, 875L, day(2024, 1, 5)),
+                stored(4L, 8L, 400L, day(2024, 2, 1)),
+                // Before the first day the index covers
+                stored(5L, 8L, 100L, day(2023, 12, 24))));
+        index = newIndex(true);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        index.close();
+    }
+
+    private ExpenseDailySpendIndex newIndex(boolean enabled) throws IOException {
+        return new ExpenseDailySpendIndex(expenseRepository, transactionManager, new SimpleMeterRegistry(), enabled,
+                directory.resolve("daily-spend.idx"), FIRST_DAY, 366);
+    }
+
+    private static Date day(int year, int month, int dayOfMonth) {
+        return Date.from(LocalDate.of(year, month, dayOfMonth).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static StoredExpense stored(Long expenseId, Long userId, Long amount, Date date) {
+        return new StoredExpense(expenseId, userId, 1L, amount, "USD", date, 0L);
+    }
+
+    private static Expense expense(Long expenseId, Long userId, long amount, Date date) {
+        return Expense.builder()
+                .expenseId(expenseId)
+                .user(User.builder().userId(userId).build())
+                .amount(Money.ofMinor(amount, "USD"))
+                .date(date)
+                .build();
+    }
+
+    private long total(Long userId, LocalDate from, LocalDate to) {
+        return index.getDailySpend(userId, from, to).orElseThrow().total();
+    }
+
+    @Test
+    void testGetDailySpend_EmptyUntilBuilt() {
+        assertTrue(index.getDailySpend(7L, FIRST_DAY, FIRST_DAY).isEmpty());
+
+        index.loadIfMissing();
+
+        assertTrue(index.isLoaded());
+        DailySpendSeries series = index.getDailySpend(7L, LocalDate.of(2024, 1, 4), LocalDate.of(2024, 1, 6)).orElseThrow();
+        assertEquals(2125L, series.total());
+        assertEquals(List.of(new DailySpendSeries.Day(LocalDate.of(2024, 1, 4), 0L),
+                new DailySpendSeries.Day(LocalDate.of(2024, 1, 5), 2125L),
+                new DailySpendSeries.Day(LocalDate.of(2024, 1, 6), 0L)), series.days());
+        assertEquals(92125L, total(7L, FIRST_DAY, LocalDate.of(2024, 12, 31)));
+        assertEquals(400L, total(8L, FIRST_DAY, LocalDate.of(2024, 12, 31)));
+        // Outside the days the index covers
+        assertTrue(index.getDailySpend(8L, LocalDate.of(2023, 12, 1), LocalDate.of(2024, 1, 31)).isEmpty());
+        assertTrue(index.getDailySpend(8L, FIRST_DAY, LocalDate.of(2025, 1, 1)).isEmpty());
+    }
+
+    @Test
+    void testChanges_AppliedToBuiltIndex() {
+        index.loadIfMissing();
+
+        index.recordExpenses(List.of(expense(6L, 8L, 1000L, day(2024, 2, 1))));
+        index.reviseExpense(expense(1L, 7L, 1250L, day(2024, 1, 5)), expense(1L, 8L, 1300L, day(2024, 1, 6)));
+        index.reverseExpenses(List.of(expense(2L, 7L, 90000L, day(2024, 1, 31))));
+
+        assertEquals(875L, total(7L, FIRST_DAY, LocalDate.of(2024, 12, 31)));
+        assertEquals(2700L, total(8L, FIRST_DAY, LocalDate.of(2024, 12, 31)));
+        assertEquals(1300L, total(8L, LocalDate.of(2024, 1, 6), LocalDate.of(2024, 1, 6)));
+    }
+
+    @Test
+    void testRestart_MapsCleanlyClosedIndexWithoutReading() throws IOException {
+        index.loadIfMissing();
+        index.recordExpenses(List.of(expense(6L, 8L, 1000L, day(2024, 2, 1))));
+        index.close();
+
+        index = newIndex(true);
+        assertTrue(index.isLoaded());
+        index.loadIfMissing();
+
+        assertEquals(1400L, total(8L, FIRST_DAY, LocalDate.of(2024, 12, 31)));
+        verify(expenseRepository, times(1)).streamStoredExpenses();
+    }
+
+    @Test
+    void testRestart_RebuildsIndexWhenTableChangedWhileDown() throws IOException {
+        index.loadIfMissing();
+        index.close();
+
+        // An expense added by another instance while this one was down
+        when(expenseRepository.findWatermark()).thenReturn(new ExpenseWatermark(6L, 6L, 0L));
+        index = newIndex(true);
+        assertFalse(index.isLoaded());
+        index.loadIfMissing();
+
+        assertTrue(index.isLoaded());
+        verify(expenseRepository, times(2)).streamStoredExpenses();
+    }
+
+    @Test
+    void testRestart_WatermarkUnavailableRebuildsIndex() throws IOException {
+        index.loadIfMissing();
+        when(expenseRepository.findWatermark()).thenThrow(new IllegalStateException("database down"));
+        index.close();
+
+        doReturn(new ExpenseWatermark(5L, 5L, 0L)).when(expenseRepository).findWatermark();
+        index = newIndex(true);
+
+        assertFalse(index.isLoaded());
+    }
+
+    @Test
+    void testRebuild_RereadsUsersChangedDuringBuild() {
+        when(expenseRepository.streamStoredExpenses()).thenAnswer(invocation -> {
+            // An expense committed after the cursor passed its position
+            index.recordExpenses(List.of(expense(6L, 8L, 600L, day(2024, 3, 1))));
+            return Stream.of(stored(4L, 8L, 400L, day(2024, 2, 1)));
+        });
+        when(expenseRepository.findStoredByUserId(8L)).thenReturn(List.of(
+                stored(4L, 8L, 400L, day(2024, 2, 1)),
+                stored(6L, 8L, 600L, day(2024, 3, 1))));
+
+        index.rebuild();
+
+        assertEquals(1000L, total(8L, FIRST_DAY, LocalDate.of(2024, 12, 31)));
+        verify(expenseRepository).findStoredByUserId(8L);
+    }
+
+    @Test
+    void testRebuild_DisabledIndexNeverAnswers() throws IOException {
+        ExpenseDailySpendIndex disabled = newIndex(false);
+
+        disabled.loadIfMissing();
+        disabled.recordExpenses(List.of(expense(6L, 8L, 600L, day(2024, 3, 1))));
+
+        assertTrue(disabled.getDailySpend(8L, FIRST_DAY, FIRST_DAY).isEmpty());
+        verify(expenseRepository, never()).streamStoredExpenses();
+    }
+
+}
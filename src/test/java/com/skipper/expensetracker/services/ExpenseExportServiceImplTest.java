@@ -0,0 +1,76 @@
+package com.skipper.expensetracker.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.entities.ExpenseFileFormat;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+class ExpenseExportServiceImplTest {
+
+    @Mock
+    private ExpenseRepository expenseRepository;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private ExpenseExportServiceImpl expenseExportService;
+
+    private static Stream<ExpenseView> rows() {
+        return Stream.of(
+                new ExpenseView(1L, 7L, 3L, "Food", 1250L, "USD", "Lunch, with \"team\"", new Date(0L)),
+                new ExpenseView(2L, 7L, 3L, "Food", 400L, "USD", "Coffee", new Date(86_400_000L)));
+    }
+
+    @Test
+    void testExportExpenses_Csv() throws Exception {
+        when(expenseRepository.streamExportRows(eq(7L), any(Date.class), any(Date.class))).thenReturn(rows());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        long count = expenseExportService.exportExpenses(ExpenseFileFormat.CSV, 7L, null, null, outputStream);
+
+        assertEquals(2, count);
+        assertEquals("userId,categoryId,amount,description,date,expenseId,categoryName,currency\n"
+                        + "7,3,12.50,\"Lunch, with \"\"team\"\"\",1970-01-01T00:00:00Z,1,Food,USD\n"
+                        + "7,3,4.00,Coffee,1970-01-02T00:00:00Z,2,Food,USD\n",
+                outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testExportExpenses_Ndjson() throws Exception {
+        when(expenseRepository.streamExportRows(eq(null), any(Date.class), any(Date.class))).thenReturn(rows());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        long count = expenseExportService.exportExpenses(ExpenseFileFormat.NDJSON, null, null, null, outputStream);
+
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, count);
+        assertEquals(2, lines.length);
+        assertEquals("Coffee", objectMapper.readTree(lines[1]).get("description").asText());
+    }
+
+    @Test
+    void testExportExpenses_StartAfterEnd() {
+        assertThrows(IllegalArgumentException.class, () -> expenseExportService.exportExpenses(ExpenseFileFormat.CSV,
+                null, new Date(2_000L), new Date(1_000L), new ByteArrayOutputStream()));
+        verifyNoInteractions(expenseRepository);
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.skipper.expensetracker.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skipper.expensetracker.dto.BatchItemResult;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.ExpenseFileFormat;
+import com.skipper.expensetracker.entities.ExpenseImport;
+import com.skipper.expensetracker.entities.ExpenseImportError;
+import com.skipper.expensetracker.entities.ImportStatus;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.repositories.ExpenseImportErrorRepository;
+import com.skipper.expensetracker.repositories.ExpenseImportRepository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ExpenseImportServiceImplTest {
+
+    private ExpenseService expenseService;
+    private ExpenseImportRepository expenseImportRepository;
+    private ExpenseImportErrorRepository expenseImportErrorRepository;
+    private ExpenseImportServiceImpl expenseImportService;
+    private ExpenseImport storedImport;
+
+    @BeforeEach
+    void setup() {
+        expenseService = mock(ExpenseService.class);
+        expenseImportRepository = mock(ExpenseImportRepository.class);
+        expenseImportErrorRepository = mock(ExpenseImportErrorRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        expenseImportService = new ExpenseImportServiceImpl(expenseService, expenseImportRepository,
+                expenseImportErrorRepository, new ObjectMapper(), transactionManager, 1);
+        ReflectionTestUtils.setField(expenseImportService, "chunkSize", 2);
+        ReflectionTestUtils.setField(expenseImportService, "queuedChunks", 1);
+        ReflectionTestUtils.setField(expenseImportService, "maxStoredErrors", 100L);
+
+        when(expenseImportRepository.findById("job")).thenAnswer(invocation -> Optional.ofNullable(storedImport));
+        when(expenseImportRepository.save(any(ExpenseImport.class))).thenAnswer(invocation -> {
+            storedImport = invocation.getArgument(0);
+            return storedImport;
+        });
+        when(expenseService.addExpenses(any())).thenAnswer(invocation -> {
+            List<Expense> expenses = invocation.getArgument(0);
+            List<BatchItemResult> results = new ArrayList<>();
+            for (int i = 0; i < expenses.size(); i++) {
+                results.add(BatchItemResult.created(i, (long) i + 1));
+            }
+            return results;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        expenseImportService.shutdown();
+    }
+
+    private static ByteArrayInputStream content(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testParseCsvLine_QuotedFields() {
+        assertEquals(List.of("1", "Lunch, with \"team\"", ""), ExpenseImportServiceImpl.parseCsvLine("1,\"Lunch, with \"\"team\"\"\","));
+    }
+
+    @Test
+    void testImportExpenses_CsvInChunksWithRowErrors() {
+        String csv = "userId,categoryId,amount,description,date\n"
+                + "1,2,10.5,Lunch,2024-05-01\n"
+                + "1,2,abc,Coffee,2024-05-02\n"
+                + "1,2,3.0,Tea,2024-05-03\n";
+
+        ExpenseImport result = expenseImportService.importExpenses("job", ExpenseFileFormat.CSV, content(csv));
+
+        assertEquals(ImportStatus.COMPLETED, result.getStatus());
+        assertEquals(4L, result.getLastCommittedLine());
+        assertEquals(2L, result.getImportedRows());
+        assertEquals(1L, result.getFailedRows());
+        verify(expenseService, times(2)).addExpenses(any());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ExpenseImportError>> errors = ArgumentCaptor.forClass(List.class);
+        verify(expenseImportErrorRepository).saveAll(errors.capture());
+        assertEquals(3L, errors.getValue().get(0).getLineNumber());
+    }
+
+    @Test
+    void testImportExpenses_ResumesAfterLastCommittedLine() {
+        storedImport = ExpenseImport.builder().importId("job").format(ExpenseFileFormat.NDJSON).status(ImportStatus.FAILED)
+                .lastCommittedLine(2L).importedRows(2L).failedRows(0L).build();
+        String ndjson = "{\"userId\":1,\"categoryId\":2,\"amount\":1.0,\"description\":\"a\",\"date\":\"2024-05-01\"}\n"
+                + "{\"userId\":1,\"categoryId\":2,\"amount\":2.0,\"description\":\"b\",\"date\":\"2024-05-01\"}\n"
+                + "{\"userId\":1,\"categoryId\":2,\"amount\":3.0,\"description\":\"c\",\"date\":\"2024-05-01\"}\n";
+
+        ExpenseImport result = expenseImportService.importExpenses("job", ExpenseFileFormat.NDJSON, content(ndjson));
+
+        assertEquals(ImportStatus.COMPLETED, result.getStatus());
+        assertEquals(3L, result.getImportedRows());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Expense>> expenses = ArgumentCaptor.forClass(List.class);
+        verify(expenseService).addExpenses(expenses.capture());
+        assertEquals(1, expenses.getValue().size());
+        assertEquals(Money.ofMinor(300, null), expenses.getValue().get(0).getAmount());
+    }
+
+    @Test
+    void testImportExpenses_WriterFailureMarksImportFailed() {
+        doThrow(new IllegalStateException("Database unavailable")).when(expenseService).addExpenses(any());
+
+        ExpenseImport result = expenseImportService.importExpenses("job", ExpenseFileFormat.CSV,
+                content("userId,categoryId,amount,description,date\n1,2,10.5,Lunch,2024-05-01\n"));
+
+        assertEquals(ImportStatus.FAILED, result.getStatus());
+        assertEquals("Database unavailable", result.getLastError());
+        assertEquals(0L, result.getLastCommittedLine());
+    }
+
+    @Test
+    void testImportExpenses_BadCsvHeaderRejectedBeforeStarting() {
+        assertThrows(IllegalArgumentException.class, () -> expenseImportService.importExpenses("job",
+                ExpenseFileFormat.CSV, content("userId,amount\n1,10.5\n")));
+        assertThrows(IllegalArgumentException.class, () -> expenseImportService.importExpenses("job",
+                ExpenseFileFormat.CSV, content("")));
+
+        verify(expenseImportRepository, never()).save(any());
+        verifyNoInteractions(expenseService);
+        // The ID is free again for a corrected file
+        assertEquals(ImportStatus.COMPLETED, expenseImportService.importExpenses("job", ExpenseFileFormat.CSV,
+                content("userId,categoryId,amount,description,date\n1,2,10.5,Lunch,2024-05-01\n")).getStatus());
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.MonthlyExpenseTotal;
+import com.skipper.expensetracker.dto.SummaryGroup;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.ExpenseRollup;
+import com.skipper.expensetracker.entities.ExpenseRollupId;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.ExpenseRollupRepository;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+class ExpenseRollupServiceImplTest {
+
+    @Mock
+    private ExpenseRollupRepository expenseRollupRepository;
+
+    @Mock
+    private ExpenseRepository expenseRepository;
+
+    @InjectMocks
+    private ExpenseRollupServiceImpl expenseRollupService;
+
+    private static Date startOf(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    @Test
+    void testRecordExpense_AppliesPositiveDelta() {
+        Expense expense = new Expense(1L, new Category(3L, "Food"), User.builder().userId(7L).build(), Money.ofMinor(1250, "USD"),
+                "Lunch", startOf(LocalDate.of(2024, 5, 17)));
+
+        expenseRollupService.recordExpense(expense);
+
+        verify(expenseRollupRepository).applyDelta(7L, 3L, 2024, 5, new BigDecimal("12.50"), 1L);
+    }
+
+    @Test
+    void testReverseExpense_AppliesNegativeDeltaAndPrunes() {
+        Expense expense = new Expense(1L, new Category(3L, "Food"), User.builder().userId(7L).build(), Money.ofMinor(1250, "USD"),
+                "Lunch", startOf(LocalDate.of(2024, 5, 17)));
+
+        expenseRollupService.reverseExpense(expense);
+
+        verify(expenseRollupRepository).applyDelta(7L, 3L, 2024, 5, new BigDecimal("-12.50"), -1L);
+        verify(expenseRollupRepository).deleteEmptyRows();
+    }
+
+    @Test
+    void testReverseExpenses_CollapsesDeltasPerRow() {
+        Date may = startOf(LocalDate.of(2024, 5, 17));
+        User user = User.builder().userId(7L).build();
+        List<Expense> expenses = List.of(new Expense(1L, new Category(3L, "Food"), user, Money.ofMinor(1250, "USD"), "Lunch", may),
+                new Expense(2L, new Category(3L, "Food"), user, Money.ofMinor(750, "USD"), "Coffee", may),
+                new Expense(3L, new Category(4L, "Rent"), user, Money.ofMinor(50000, "USD"), "Rent", may));
+
+        expenseRollupService.reverseExpenses(expenses);
+
+        verify(expenseRollupRepository).applyDelta(7L, 3L, 2024, 5, new BigDecimal("-20.00"), -2L);
+        verify(expenseRollupRepository).applyDelta(7L, 4L, 2024, 5, new BigDecimal("-500.00"), -1L);
+        verify(expenseRollupRepository).deleteEmptyRows();
+    }
+
+    @Test
+    void testReviseExpense_SameRowAppliesAmountDifference() {
+        User user = User.builder().userId(7L).build();
+        Expense previous = new Expense(1L, new Category(3L, "Food"), user, Money.ofMinor(1250, "USD"), "Lunch", startOf(LocalDate.of(2024, 5, 17)));
+        Expense updated = new Expense(1L, new Category(3L, "Food"), user, Money.ofMinor(2000, "USD"), "Lunch", startOf(LocalDate.of(2024, 5, 20)));
+
+        expenseRollupService.reviseExpense(previous, updated);
+
+        verify(expenseRollupRepository).applyDelta(7L, 3L, 2024, 5, new BigDecimal("7.50"), 0L);
+        verifyNoMoreInteractions(expenseRollupRepository);
+    }
+
+    @Test
+    void testReviseExpense_OtherRowMovesExpense() {
+        User user = User.builder().userId(7L).build();
+        Expense previous = new Expense(1L, new Category(3L, "Food"), user, Money.ofMinor(1250, "USD"), "Lunch", startOf(LocalDate.of(2024, 5, 17)));
+        Expense updated = new Expense(1L, new Category(3L, "Food"), user, Money.ofMinor(1250, "USD"), "Lunch", startOf(LocalDate.of(2024, 6, 1)));
+
+        expenseRollupService.reviseExpense(previous, updated);
+
+        verify(expenseRollupRepository).applyDelta(7L, 3L, 2024, 5, new BigDecimal("-12.50"), -1L);
+        verify(expenseRollupRepository).applyDelta(7L, 3L, 2024, 6, new BigDecimal("12.50"), 1L);
+        verify(expenseRollupRepository).deleteEmptyRows();
+    }
+
+    @Test
+    void testGetSummary_WholeMonthRange() {
+        Date start = startOf(LocalDate.of(2024, 1, 1));
+        Date end = new Date(startOf(LocalDate.of(2024, 4, 1)).getTime() - 1);
+
+        assertTrue(expenseRollupService.getSummary(SummaryGroup.MONTH, 7L, null, start, end).isPresent());
+
+        verify(expenseRollupRepository).sumByMonth(7L, null, 202401, 202403);
+    }
+
+    @Test
+    void testGetSummary_PartialMonthNotRolledUp() {
+        Date start = startOf(LocalDate.of(2024, 1, 15));
+
+        assertTrue(expenseRollupService.getSummary(SummaryGroup.CATEGORY, null, null, start, null).isEmpty());
+        assertTrue(expenseRollupService.getSummary(SummaryGroup.DAY, null, null, null, null).isEmpty());
+        verifyNoInteractions(expenseRollupRepository);
+    }
+
+    @Test
+    void testVerify_CountsDriftedAndOrphanedRows() {
+        when(expenseRollupRepository.findAll()).thenReturn(List.of(
+                new ExpenseRollup(new ExpenseRollupId(1L, 1L, 2024, 1), 1000L, 1L),
+                new ExpenseRollup(new ExpenseRollupId(1L, 1L, 2024, 2), 9900L, 3L),
+                new ExpenseRollup(new ExpenseRollupId(2L, 1L, 2024, 1), 500L, 1L)));
+        when(expenseRepository.sumByUserCategoryMonth()).thenReturn(List.of(
+                new MonthlyExpenseTotal(1L, 1L, 2024, 1, 1000L, 1L),
+                new MonthlyExpenseTotal(1L, 1L, 2024, 2, 2000L, 3L)));
+
+        assertEquals(2, expenseRollupService.verify());
+    }
+
+}
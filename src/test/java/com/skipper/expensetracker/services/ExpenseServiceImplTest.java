@@ -1,21 +1,47 @@
 package com.skipper.expensetracker.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skipper.expensetracker.dto.BatchItemResult;
+import com.skipper.expensetracker.dto.CategoryExpenseTotal;
+import com.skipper.expensetracker.dto.DailySpendSeries;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.dto.PeriodExpenseTotal;
+import com.skipper.expensetracker.dto.StoredExpense;
+import com.skipper.expensetracker.dto.SummaryGroup;
+import com.skipper.expensetracker.dto.UserExpenseSnapshot;
+import com.skipper.expensetracker.dto.UserExpensesVersion;
 import com.skipper.expensetracker.entities.Category;
 import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.Money;
 import com.skipper.expensetracker.entities.User;
+import com.skipper.expensetracker.repositories.CategoryRepository;
+import com.skipper.expensetracker.repositories.ExpenseJdbcRepository;
 import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.UserRepository;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,14 +52,40 @@ class ExpenseServiceImplTest {
     @Mock
     private ExpenseRepository expenseRepository;
 
+    @Mock
+    private ExpenseJdbcRepository expenseJdbcRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @Mock
+    private ExpenseRollupService expenseRollupService;
+
+    @Mock
+    private UserExpenseCache userExpenseCache;
+
+    @Mock
+    private ExpenseAnalyticsStore expenseAnalyticsStore;
+
+    @Mock
+    private ExpenseDailySpendIndex expenseDailySpendIndex;
+
     @InjectMocks
     private ExpenseServiceImpl expenseService;
 
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(expenseService, "currency", "USD");
+    }
+
     @Test
     public void testAddExpense_ValidExpenseRecord() {
         Expense expense = new Expense();
         expense.setUser(new User());
-        expense.setAmount(100.0);
+        expense.setAmount(Money.ofMinor(10000, "USD"));
         expense.setDescription("Test Expense");
         expense.setCategory(new Category());
         expense.setDate(new Date());
@@ -44,6 +96,262 @@ class ExpenseServiceImplTest {
 
         Assertions.assertEquals(expense, result);
         Mockito.verify(expenseRepository, Mockito.times(1)).save(expense);
+        Mockito.verify(expenseRollupService, Mockito.times(1)).recordExpense(expense);
+    }
+
+    @Test
+    void testValidateExpense_RejectsUnknownCategory() {
+        Expense expense = Expense.builder()
+                .user(User.builder().userId(1L).build())
+                .category(Category.builder().categoryId(2L).build())
+                .amount(Money.ofMinor(1000, "USD"))
+                .description("Lunch")
+                .date(new Date())
+                .build();
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(categoryRepository.existsById(2L)).thenReturn(false);
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> expenseService.validateExpense(expense));
+        assertEquals("Category not found", error.getMessage());
+        verifyNoInteractions(expenseRepository);
+    }
+
+    @Test
+    void testValidateExpense_FillsInConfiguredCurrency() {
+        Expense expense = new Expense(null, new Category(2L, "Food"), User.builder().userId(1L).build(),
+                Money.ofMinor(1000, null), "Lunch", new Date());
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(categoryRepository.existsById(2L)).thenReturn(true);
+
+        expenseService.validateExpense(expense);
+
+        assertEquals(Money.ofMinor(1000, "USD"), expense.getAmount());
+    }
+
+    @Test
+    void testAddExpense_RejectsOtherCurrency() {
+        Expense expense = new Expense(null, new Category(2L, "Food"), User.builder().userId(1L).build(),
+                Money.ofMinor(1000, "EUR"), "Lunch", new Date());
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> expenseService.addExpense(expense));
+        assertEquals("Expense currency must be USD", error.getMessage());
+        verifyNoInteractions(expenseRepository, expenseRollupService);
+    }
+
+    @Test
+    void testAddExpense_RejectsOutOfRangeAmountWithCurrency() throws Exception {
+        // Bound from JSON, which does not pass the amount through Money.ofMinor
+        Expense expense = new ObjectMapper().readValue(
+                "{\"amount\": 90000000000000000.00, \"currency\": \"USD\", \"description\": \"Lunch\"}", Expense.class);
+        expense.setUser(User.builder().userId(1L).build());
+        expense.setCategory(new Category(2L, "Food"));
+        expense.setDate(new Date());
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> expenseService.addExpense(expense));
+        assertEquals("Amount 90000000000000000.00 is out of range", error.getMessage());
+        verifyNoInteractions(expenseRepository, expenseRollupService);
+    }
+
+    @Test
+    void testValidateExpense_RejectsMissingFields() {
+        Expense expense = Expense.builder().user(User.builder().userId(1L).build()).build();
+
+        assertThrows(IllegalArgumentException.class, () -> expenseService.validateExpense(expense));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testAddExpenses_ReportsPerItemResults() {
+        ReflectionTestUtils.setField(expenseService, "maxBatchItems", 100);
+        ReflectionTestUtils.setField(expenseService, "batchSize", 50);
+        Expense valid = new Expense(null, new Category(1L, "Food"), User.builder().userId(7L).build(), Money.ofMinor(1000, "USD"), "Lunch", new Date());
+        Expense unknownUser = new Expense(null, new Category(1L, "Food"), User.builder().userId(8L).build(), Money.ofMinor(500, "USD"), "Coffee", new Date());
+        Expense missingAmount = new Expense(null, new Category(1L, "Food"), User.builder().userId(7L).build(), null, "Tea", new Date());
+        when(userRepository.findExistingUserIds(any())).thenReturn(Set.of(7L));
+        when(categoryRepository.findExistingCategoryIds(any())).thenReturn(Set.of(1L));
+        when(expenseJdbcRepository.batchInsert(List.of(valid), 50)).thenReturn(List.of(42L));
+
+        List<BatchItemResult> results = expenseService.addExpenses(List.of(valid, unknownUser, missingAmount));
+
+        assertEquals(BatchItemResult.created(0, 42L), results.get(0));
+        assertEquals(BatchItemResult.failed(1, "User not found"), results.get(1));
+        assertEquals(BatchItemResult.failed(2, "Expense record fields cannot be null"), results.get(2));
+        assertEquals(42L, valid.getExpenseId());
+        verify(expenseRollupService).recordExpenses(List.of(valid));
+        verify(expenseAnalyticsStore).recordExpenses(List.of(valid));
+        verify(expenseDailySpendIndex).recordExpenses(List.of(valid));
+        verify(userRepository).bumpExpensesVersions(List.of(7L));
+        verify(userExpenseCache).invalidate(List.of(7L));
+    }
+
+    @Test
+    void testAddExpenses_TooManyItems() {
+        ReflectionTestUtils.setField(expenseService, "maxBatchItems", 1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> expenseService.addExpenses(List.of(new Expense(), new Expense())));
+        verifyNoInteractions(expenseJdbcRepository);
+    }
+
+    @Test
+    void testEditExpense_MovesRollupDelta() {
+        User user = User.builder().userId(7L).build();
+        Category newCategory = new Category(2L, "Rent");
+        Expense updated = new Expense(null, newCategory, user, Money.ofMinor(2500, "USD"), "Rent share", new Date(0L));
+        when(expenseRepository.findStoredForUpdate(List.of(1L))).thenReturn(List.of(new StoredExpense(1L, 7L, 1L, 1000L, "USD", new Date(0L), 0L)));
+        when(expenseRepository.updateExpense(eq(1L), eq(0L), any(), any(), eq(2500L), eq("USD"), eq("Rent share"), eq(new Date(0L)))).thenReturn(1);
+
+        Expense saved = expenseService.editExpense(1L, updated);
+
+        ArgumentCaptor<Expense> previous = ArgumentCaptor.forClass(Expense.class);
+        verify(expenseRollupService).reviseExpense(previous.capture(), eq(saved));
+        verify(expenseAnalyticsStore).reviseExpense(previous.getValue(), saved);
+        verify(expenseDailySpendIndex).reviseExpense(previous.getValue(), saved);
+        assertEquals(1L, previous.getValue().getCategory().getCategoryId());
+        assertEquals(Money.ofMinor(1000, "USD"), previous.getValue().getAmount());
+        assertEquals(newCategory, saved.getCategory());
+        assertEquals(1L, saved.getVersion());
+        verify(expenseRepository, never()).findById(any());
+        verify(expenseRepository, never()).save(any());
+    }
+
+    @Test
+    void testEditExpense_InvalidatesPreviousAndNewUser() {
+        Expense updated = new Expense(null, new Category(1L, "Food"), User.builder().userId(8L).build(), Money.ofMinor(1000, "USD"), "Lunch", new Date(0L));
+        when(expenseRepository.findStoredForUpdate(List.of(1L))).thenReturn(List.of(new StoredExpense(1L, 7L, 1L, 1000L, "USD", new Date(0L), 0L)));
+        when(expenseRepository.updateExpense(eq(1L), eq(0L), any(), any(), any(), any(), any(), any())).thenReturn(1);
+
+        expenseService.editExpense(1L, updated);
+
+        verify(userRepository).bumpExpensesVersions(List.of(7L, 8L));
+        verify(userExpenseCache).invalidate(List.of(7L, 8L));
+    }
+
+    @Test
+    void testEditExpense_StaleVersionConflicts() {
+        Expense updated = new Expense(null, new Category(1L, "Food"), new User(), Money.ofMinor(1200, "USD"), "Lunch", new Date(0L));
+        when(expenseRepository.findStoredForUpdate(List.of(1L))).thenReturn(List.of(new StoredExpense(1L, 7L, 1L, 1000L, "USD", new Date(0L), 4L)));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> expenseService.editExpense(1L, updated, 3L));
+
+        verify(expenseRepository, never()).updateExpense(any(), any(), any(), any(), any(), any(), any(), any());
+        verifyNoInteractions(expenseRollupService);
+    }
+
+    @Test
+    void testEditExpense_ExpenseNotFound() {
+        Expense updated = new Expense(null, new Category(1L, "Food"), new User(), Money.ofMinor(1200, "USD"), "Lunch", new Date(0L));
+        when(expenseRepository.findStoredForUpdate(List.of(1L))).thenReturn(List.of());
+
+        assertThrows(IllegalArgumentException.class, () -> expenseService.editExpense(1L, updated));
+        verifyNoInteractions(expenseRollupService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDeleteExpense_ReversesRollup() {
+        when(expenseRepository.findStoredForUpdate(List.of(1L))).thenReturn(List.of(new StoredExpense(1L, 7L, 3L, 1000L, "USD", new Date(), 0L)));
+        when(expenseRepository.deleteByExpenseIds(List.of(1L))).thenReturn(1);
+
+        assertTrue(expenseService.deleteExpense(1L));
+
+        ArgumentCaptor<List<Expense>> reversed = ArgumentCaptor.forClass(List.class);
+        verify(expenseRollupService).reverseExpenses(reversed.capture());
+        assertEquals(Money.ofMinor(1000, "USD"), reversed.getValue().get(0).getAmount());
+        assertEquals(3L, reversed.getValue().get(0).getCategory().getCategoryId());
+        verify(expenseAnalyticsStore).reverseExpenses(reversed.getValue());
+        verify(expenseDailySpendIndex).reverseExpenses(reversed.getValue());
+        verify(userExpenseCache).invalidate(List.of(7L));
+        verify(expenseRepository, never()).deleteById(any());
+    }
+
+    @Test
+    void testDeleteExpense_ExpenseNotFound() {
+        when(expenseRepository.findStoredForUpdate(List.of(1L))).thenReturn(List.of());
+
+        assertFalse(expenseService.deleteExpense(1L));
+
+        verify(expenseRepository, never()).deleteByExpenseIds(any());
+        verifyNoInteractions(expenseRollupService, userExpenseCache);
+    }
+
+    @Test
+    void testDeleteExpenses_DeletesOnlyExistingIds() {
+        ReflectionTestUtils.setField(expenseService, "maxBatchItems", 10);
+        when(expenseRepository.findStoredForUpdate(List.of(1L, 2L, 3L))).thenReturn(List.of(
+                new StoredExpense(1L, 7L, 3L, 1000L, "USD", new Date(), 0L), new StoredExpense(3L, 8L, 3L, 500L, "USD", new Date(), 2L)));
+        when(expenseRepository.deleteByExpenseIds(List.of(1L, 3L))).thenReturn(2);
+
+        assertEquals(2, expenseService.deleteExpenses(List.of(1L, 2L, 3L)));
+
+        verify(userRepository).bumpExpensesVersions(List.of(7L, 8L));
+        verify(userExpenseCache).invalidate(List.of(7L, 8L));
+    }
+
+    @Test
+    void testDeleteExpenses_RejectsOversizedBatch() {
+        ReflectionTestUtils.setField(expenseService, "maxBatchItems", 2);
+
+        assertThrows(IllegalArgumentException.class, () -> expenseService.deleteExpenses(List.of(1L, 2L, 3L)));
+        assertThrows(IllegalArgumentException.class, () -> expenseService.deleteExpenses(List.of()));
+        verifyNoInteractions(expenseRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetCurrentExpensesByUserId_LoadsCurrentMonth() {
+        ExpenseView view = new ExpenseView(1L, 5L, 3L, "Food", 1250L, "USD", "Lunch", new Date());
+        when(userRepository.findUserExpensesVersion(5L)).thenReturn(new UserExpensesVersion(5L, 2L, 9L, 1L, 0L));
+        when(userExpenseCache.get(eq(5L), eq(YearMonth.now()), eq("2.9.1.0"), any()))
+                .thenAnswer(invocation -> invocation.getArgument(3, Function.class).apply(5L));
+        when(expenseRepository.findViewsByUserIdAndDateBetween(eq(5L), any(Date.class), any(Date.class))).thenReturn(List.of(view, view));
+        when(expenseRollupService.getTotalExpensesByUserId(5L)).thenReturn(10000L);
+
+        UserExpenseSnapshot snapshot = expenseService.getCurrentExpensesByUserId(5L);
+
+        assertEquals(2, snapshot.expenses().size());
+        assertEquals(2500L, snapshot.monthTotal());
+        assertEquals(10000L, snapshot.total());
+    }
+
+    @Test
+    void testGetUserExpensesVersion_ReadFromDatabase() {
+        when(userRepository.findUserExpensesVersion(5L)).thenReturn(new UserExpensesVersion(5L, 3L, 12L, 4L, 7L));
+
+        assertEquals("3.12.4.7", expenseService.getUserExpensesVersion(5L));
+        assertEquals("0", expenseService.getUserExpensesVersion(6L));
+        assertThrows(IllegalArgumentException.class, () -> expenseService.getUserExpensesVersion(null));
+        verifyNoInteractions(expenseRepository);
+    }
+
+    @Test
+    void testGetCurrentExpensesByUserId_UsesGivenVersion() {
+        UserExpenseSnapshot cached = new UserExpenseSnapshot(5L, 2024, 5, List.of(), 0L, 4200L);
+        when(userExpenseCache.get(eq(5L), eq(YearMonth.now()), eq("3.12.4.7"), any())).thenReturn(cached);
+
+        assertEquals(cached, expenseService.getCurrentExpensesByUserId(5L, "3.12.4.7"));
+        verifyNoInteractions(userRepository, expenseRepository);
+        assertThrows(IllegalArgumentException.class, () -> expenseService.getCurrentExpensesByUserId(5L, null));
+    }
+
+    @Test
+    void testGetTotalExpensesByUserId_ServedFromSnapshot() {
+        when(userRepository.findUserExpensesVersion(5L)).thenReturn(new UserExpensesVersion(5L, 3L, 12L, 4L, 7L));
+        when(userExpenseCache.getIfCurrent(5L, YearMonth.now(), "3.12.4.7"))
+                .thenReturn(new UserExpenseSnapshot(5L, 2024, 5, List.of(), 0L, 4200L));
+
+        assertEquals(4200L, expenseService.getTotalExpensesByUserId(5L));
+        verifyNoInteractions(expenseRollupService);
+    }
+
+    @Test
+    void testGetTotalExpensesByUserId_StaleSnapshotNotServed() {
+        when(userRepository.findUserExpensesVersion(5L)).thenReturn(new UserExpensesVersion(5L, 4L, 12L, 4L, 7L));
+        when(expenseRollupService.getTotalExpensesByUserId(5L)).thenReturn(5200L);
+
+        // The cache holds no snapshot at version 4, as after a write made on another instance
+        assertEquals(5200L, expenseService.getTotalExpensesByUserId(5L));
+        verify(userExpenseCache).getIfCurrent(5L, YearMonth.now(), "4.12.4.7");
     }
 
     @Test
@@ -65,7 +373,7 @@ class ExpenseServiceImplTest {
     @Test
     public void testAddExpense_ExpenseRecordWithNullUser() {
         Expense expense = new Expense();
-        expense.setAmount(100.0);
+        expense.setAmount(Money.ofMinor(10000, "USD"));
         expense.setDescription("Test Expense");
         expense.setCategory(new Category());
         expense.setDate(new Date());
@@ -87,4 +395,129 @@ class ExpenseServiceImplTest {
         assertEquals(2, result.size());
     }
 
-}
\ No newline at end of file
+    @Test
+    void testGetExpensesByUserId_UsesViewProjection() {
+        List<ExpenseView> views = List.of(new ExpenseView(1L, 5L, 3L, "Food", 1250L, "USD", "Lunch", new Date(0L)));
+        when(expenseRepository.findViewsByUserIdAndDateBetween(eq(5L), any(Date.class), any(Date.class))).thenReturn(views);
+
+        List<ExpenseView> result = expenseService.getExpensesByUserId(5L, null, null);
+
+        assertEquals(views, result);
+        verify(expenseRepository, never()).findByUserUserId(any());
+    }
+
+    @Test
+    void testGetExpensesByUserId_NullUserId() {
+        assertThrows(IllegalArgumentException.class, () -> expenseService.getExpensesByUserId(null, null, null));
+    }
+
+    @Test
+    void testGetExpensePage_DefaultsCursorAndSize() {
+        ReflectionTestUtils.setField(expenseService, "defaultPageSize", 100);
+        ReflectionTestUtils.setField(expenseService, "maxPageSize", 1000);
+        when(expenseRepository.findByExpenseIdGreaterThanOrderByExpenseIdAsc(0L, Limit.of(100)))
+                .thenReturn(List.of(new Expense(1L, null, null, null, "Expense 1", null)));
+
+        List<Expense> result = expenseService.getExpensePage(null, null);
+
+        assertEquals(1, result.size());
+    }
+
+    @Test
+    void testGetExpensePage_ClampsSizeToMaximum() {
+        ReflectionTestUtils.setField(expenseService, "defaultPageSize", 100);
+        ReflectionTestUtils.setField(expenseService, "maxPageSize", 1000);
+
+        expenseService.getExpensePage(42L, 50_000);
+
+        verify(expenseRepository).findByExpenseIdGreaterThanOrderByExpenseIdAsc(42L, Limit.of(1000));
+    }
+
+    @Test
+    void testGetExpenseSummary_ServedFromAnalyticsStore() {
+        List<CategoryExpenseTotal> totals = List.of(new CategoryExpenseTotal(1L, "Food", 4250L, 2L));
+        when(expenseAnalyticsStore.getSummary(SummaryGroup.CATEGORY, 5L, 1L, null, null)).thenReturn(Optional.of(totals));
+
+        List<?> result = expenseService.getExpenseSummary(SummaryGroup.CATEGORY, 5L, 1L, null, null);
+
+        assertEquals(totals, result);
+        verifyNoInteractions(expenseRollupService, expenseRepository);
+    }
+
+    @Test
+    void testGetExpenseSummary_ServedFromRollup() {
+        List<CategoryExpenseTotal> totals = List.of(new CategoryExpenseTotal(1L, "Food", 4250L, 2L));
+        when(expenseRollupService.getSummary(SummaryGroup.CATEGORY, 5L, null, null, null)).thenReturn(Optional.of(totals));
+
+        List<?> result = expenseService.getExpenseSummary(SummaryGroup.CATEGORY, 5L, null, null, null);
+
+        assertEquals(totals, result);
+        verifyNoInteractions(expenseRepository);
+    }
+
+    @Test
+    void testGetExpenseSummary_FallsBackToExpenseTable() {
+        List<CategoryExpenseTotal> totals = List.of(new CategoryExpenseTotal(1L, "Food", 4250L, 2L));
+        when(expenseRollupService.getSummary(SummaryGroup.CATEGORY, 5L, null, null, null)).thenReturn(Optional.empty());
+        when(expenseRepository.sumByCategory(eq(5L), isNull(), any(Date.class), any(Date.class))).thenReturn(totals);
+
+        List<?> result = expenseService.getExpenseSummary(SummaryGroup.CATEGORY, 5L, null, null, null);
+
+        assertEquals(totals, result);
+    }
+
+    @Test
+    void testGetExpenseSummary_StartAfterEnd() {
+        Date start = new Date(2_000_000L);
+        Date end = new Date(1_000_000L);
+
+        when(expenseRollupService.getSummary(SummaryGroup.DAY, null, null, start, end)).thenReturn(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> expenseService.getExpenseSummary(SummaryGroup.DAY, null, null, start, end));
+        verifyNoInteractions(expenseRepository);
+    }
+
+    @Test
+    void testGetExpenseSummary_InvertedMonthRangeRejectedBeforeFastPaths() {
+        ZoneId zone = ZoneId.systemDefault();
+        Date start = Date.from(LocalDate.of(2024, 3, 1).atStartOfDay(zone).toInstant());
+        Date end = new Date(Date.from(LocalDate.of(2024, 2, 1).atStartOfDay(zone).toInstant()).getTime() - 1);
+        when(expenseRollupService.getSummary(SummaryGroup.MONTH, null, null, start, end)).thenReturn(Optional.of(List.of()));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> expenseService.getExpenseSummary(SummaryGroup.MONTH, null, null, start, end));
+        verifyNoInteractions(expenseAnalyticsStore, expenseRollupService, expenseRepository);
+    }
+
+    @Test
+    void testGetDailySpend_ServedFromIndex() {
+        DailySpendSeries series = DailySpendSeries.of(7L, LocalDate.of(2024, 1, 1), 1250L, new long[]{0L, 1250L});
+        when(expenseDailySpendIndex.getDailySpend(7L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 2))).thenReturn(Optional.of(series));
+
+        assertEquals(series, expenseService.getDailySpend(7L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 2)));
+        verifyNoInteractions(expenseRollupService, expenseRepository);
+    }
+
+    @Test
+    void testGetDailySpend_FillsDaysWithoutExpenses() {
+        when(expenseRepository.sumByDay(eq(7L), isNull(), any(Date.class), any(Date.class))).thenReturn(List.of(
+                new PeriodExpenseTotal(2024, 1, 1, 1250L, 1L), new PeriodExpenseTotal(2024, 1, 3, 400L, 2L)));
+
+        DailySpendSeries series = expenseService.getDailySpend(7L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 4));
+
+        assertEquals(1650L, series.total());
+        assertEquals(LocalDate.of(2024, 1, 4), series.to());
+        assertEquals(List.of(1250L, 0L, 400L, 0L), series.days().stream().map(DailySpendSeries.Day::total).toList());
+    }
+
+    @Test
+    void testGetDailySpend_RejectsInvalidRange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> expenseService.getDailySpend(7L, LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> expenseService.getDailySpend(7L, LocalDate.of(2000, 1, 1), LocalDate.of(2024, 1, 1)));
+        verifyNoInteractions(expenseDailySpendIndex);
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.skipper.expensetracker.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseSnapshotFileTest {
+
+    @TempDir
+    Path directory;
+
+    private Path writeSnapshot(long createdAt) throws IOException {
+        Path path = directory.resolve("warm.snapshot");
+        try (ExpenseSnapshotFile.Writer writer = ExpenseSnapshotFile.create(path)) {
+            DataOutputStream first = writer.section(1);
+            first.writeInt(42);
+            ExpenseSnapshotFile.writeString(first, "Food");
+            ExpenseSnapshotFile.writeString(first, null);
+            ExpenseSnapshotFile.writeNullableLong(first, 7L);
+            ExpenseSnapshotFile.writeNullableLong(first, null);
+            writer.section(9).writeLong(-1L);
+            writer.commit(createdAt);
+        }
+        return path;
+    }
+
+    @Test
+    void testRead_ReturnsWrittenSections() throws IOException {
+        Path path = writeSnapshot(1_700_000_000_000L);
+
+        ExpenseSnapshotFile.Snapshot snapshot = ExpenseSnapshotFile.read(path).orElseThrow();
+
+        assertEquals(1_700_000_000_000L, snapshot.createdAt());
+        ByteBuffer first = snapshot.sections().get(1);
+        assertEquals(42, first.getInt());
+        assertEquals("Food", ExpenseSnapshotFile.readString(first));
+        assertNull(ExpenseSnapshotFile.readString(first));
+        assertEquals(7L, ExpenseSnapshotFile.readNullableLong(first));
+        assertNull(ExpenseSnapshotFile.readNullableLong(first));
+        assertFalse(first.hasRemaining());
+        assertEquals(-1L, snapshot.sections().get(9).getLong());
+        assertFalse(Files.exists(directory.resolve("warm.snapshot.tmp")));
+    }
+
+    @Test
+    void testRead_MissingFileIsEmpty() throws IOException {
+        assertTrue(ExpenseSnapshotFile.read(directory.resolve("none.snapshot")).isEmpty());
+    }
+
+    @Test
+    void testRead_RejectsCorruptAndTruncatedFiles() throws IOException {
+        Path path = writeSnapshot(1L);
+        byte[] bytes = Files.readAllBytes(path);
+
+        byte[] flipped = bytes.clone();
+        flipped[flipped.length - 1] ^= 1;
+        Files.write(path, flipped);
+        assertThrows(IOException.class, () -> ExpenseSnapshotFile.read(path));
+
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+        assertThrows(IOException.class, () -> ExpenseSnapshotFile.read(path));
+
+        Files.write(path, "not a snapshot at all, just some text".getBytes());
+        assertThrows(IOException.class, () -> ExpenseSnapshotFile.read(path));
+    }
+
+    @Test
+    void testWriter_UncommittedSnapshotLeavesPreviousInPlace() throws IOException {
+        Path path = writeSnapshot(1L);
+
+        try (ExpenseSnapshotFile.Writer writer = ExpenseSnapshotFile.create(path)) {
+            writer.section(1).writeInt(99);
+        }
+
+        assertEquals(1L, ExpenseSnapshotFile.read(path).orElseThrow().createdAt());
+        assertFalse(Files.exists(directory.resolve("warm.snapshot.tmp")));
+    }
+
+}
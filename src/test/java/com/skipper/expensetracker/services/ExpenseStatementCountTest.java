@@ -0,0 +1,132 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+import com.skipper.expensetracker.repositories.CategoryRepository;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.UserRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Statements each write path sends to the database, counted by Hibernate across the whole service transaction
+@SpringBootTest
+class ExpenseStatementCountTest {
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private ExpenseRollupService expenseRollupService;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User user;
+    private Category food;
+    private Category rent;
+    private final List<Long> expenseIds = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        user = userRepository.save(User.builder().username("statements-" + System.nanoTime()).build());
+        food = categoryRepository.save(Category.builder().categoryName("Food").build());
+        rent = categoryRepository.save(Category.builder().categoryName("Rent").build());
+        for (int i = 0; i < 5; i++) {
+            expenseIds.add(expenseService.addExpense(expense(food, 1000 + i * 100L)).getExpenseId());
+        }
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void cleanup() {
+        expenseService.deleteExpenses(expenseIds);
+        categoryRepository.deleteAllById(List.of(food.getCategoryId(), rent.getCategoryId()));
+        userRepository.deleteById(user.getUserId());
+    }
+
+    private Expense expense(Category category, long amount) {
+        return Expense.builder()
+                .user(user)
+                .category(category)
+                .amount(Money.ofMinor(amount, "USD"))
+                .description("Expense " + amount)
+                .date(new Date())
+                .build();
+    }
+
+    @Test
+    void testDeleteExpense_LockingReadAndDelete() {
+        assertTrue(expenseService.deleteExpense(expenseIds.get(0)));
+
+        // Locking read and DELETE, the rollup delta, the pruning of empty rollup rows and the user's version bump
+        assertEquals(5, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertTrue(expenseRepository.findById(expenseIds.get(0)).isEmpty());
+    }
+
+    @Test
+    void testDeleteExpense_MissingExpenseOnlyReads() {
+        assertFalse(expenseService.deleteExpense(-1L));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testDeleteExpenses_StatementsIndependentOfCount() {
+        assertEquals(5, expenseService.deleteExpenses(expenseIds));
+
+        // All five expenses share one rollup row and one user, so the batch costs what a single delete does
+        assertEquals(5, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0L, expenseRollupService.getTotalExpensesByUserId(user.getUserId()));
+    }
+
+    @Test
+    void testEditExpense_SameRollupRow() {
+        Expense edited = expenseService.editExpense(expenseIds.get(0), expense(food, 9900L));
+
+        // Locking read, UPDATE, one rollup delta and the user's version bump; nothing is loaded as an entity
+        assertEquals(4, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(1L, edited.getVersion());
+        assertEquals(Money.ofMinor(9900, "USD"), expenseRepository.findById(expenseIds.get(0)).orElseThrow().getAmount());
+    }
+
+    @Test
+    void testEditExpense_OtherRollupRow() {
+        expenseService.editExpense(expenseIds.get(0), expense(rent, 9900L));
+
+        // Locking read, UPDATE, the delta out of the old row, pruning, the delta into the new row and the version bump
+        assertEquals(6, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(rent.getCategoryId(), expenseRepository.findById(expenseIds.get(0)).orElseThrow().getCategory().getCategoryId());
+    }
+
+}
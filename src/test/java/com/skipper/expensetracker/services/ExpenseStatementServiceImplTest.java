@@ -0,0 +1,147 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.StatementExpense;
+import com.skipper.expensetracker.dto.StatementRun;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.UserRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Limit;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ExpenseStatementServiceImplTest {
+
+    @TempDir
+    Path directory;
+
+    private final ExpenseRepository expenseRepository = mock(ExpenseRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final CategoryService categoryService = mock(CategoryService.class);
+    private final DataSource dataSource = mock(DataSource.class);
+
+    // Held in (user, expense ID) order, as the index returns them
+    private final List<StatementExpense> expenses = new ArrayList<>(List.of(
+            new StatementExpense(1L, 1L, 1L, 1250L),
+            new StatementExpense(4L, 1L, 2L, 90000L),
+            new StatementExpense(9L, 1L, 1L, 875L),
+            new StatementExpense(2L, 3L, null, 300L),
+            new StatementExpense(3L, 6L, 1L, 400L),
+            new StatementExpense(5L, 6L, 1L, 100L),
+            new StatementExpense(6L, 6L, 1L, 50L),
+            new StatementExpense(7L, 9L, 2L, 100000L)));
+
+    @BeforeEach
+    void setup() {
+        when(userRepository.findMinUserId()).thenReturn(1L);
+        when(userRepository.findMaxUserId()).thenReturn(9L);
+        when(categoryService.getAllCategories()).thenReturn(List.of(new Category(1L, "Food"), new Category(2L, "Rent, flat")));
+        when(expenseRepository.findStatementPage(anyLong(), anyLong(), anyLong(), any(Date.class), any(Date.class), any(Limit.class)))
+                .thenAnswer(invocation -> {
+                    long afterUserId = invocation.getArgument(0);
+                    long afterExpenseId = invocation.getArgument(1);
+                    long lastUserId = invocation.getArgument(2);
+                    Limit limit = invocation.getArgument(5);
+                    return expenses.stream()
+                            .filter(expense -> expense.userId() <= lastUserId)
+                            .filter(expense -> expense.userId() > afterUserId
+                                    || (expense.userId() == afterUserId && expense.expenseId() > afterExpenseId))
+                            .limit(limit.max())
+                            .toList();
+                });
+    }
+
+    private ExpenseStatementServiceImpl newService(int parallelism, int pageSize) {
+        return new ExpenseStatementServiceImpl(expenseRepository, userRepository, categoryService, dataSource,
+                directory, parallelism, 2, pageSize, "USD");
+    }
+
+    private String readStatements(StatementRun run) throws IOException {
+        StringBuilder statements = new StringBuilder();
+        for (String file : run.files()) {
+            if (!file.equals("summary.csv")) {
+                List<String> lines = Files.readAllLines(Path.of(run.directory(), file));
+                lines.subList(1, lines.size()).forEach(line -> statements.append(line).append('\n'));
+            }
+        }
+        return statements.toString();
+    }
+
+    @Test
+    void testWorkerCount_CappedByConnectionPool() {
+        assertEquals(4, ExpenseStatementServiceImpl.workerCount(4, 20, 2));
+        assertEquals(8, ExpenseStatementServiceImpl.workerCount(16, 10, 2));
+        assertEquals(1, ExpenseStatementServiceImpl.workerCount(4, 2, 2));
+    }
+
+    @Test
+    void testGenerateStatements_WritesEveryUserOnce() throws IOException {
+        StatementRun run = newService(4, 2).generateStatements(YearMonth.of(2024, 1));
+
+        assertEquals(4, run.users());
+        assertEquals(8, run.expenses());
+        assertEquals(192975L, run.total());
+        assertEquals(directory.resolve("statements-2024-01").toString(), run.directory());
+        assertEquals("summary.csv", run.files().get(run.files().size() - 1));
+        assertEquals("1,1,Food,21.25,2,USD\n"
+                        + "1,2,\"Rent, flat\",900.00,1,USD\n"
+                        + "3,,,3.00,1,USD\n"
+                        + "6,1,Food,5.50,3,USD\n"
+                        + "9,2,\"Rent, flat\",1000.00,1,USD\n",
+                readStatements(run));
+        assertEquals(List.of("categoryId,categoryName,total,count,currency",
+                        ",,3.00,1,USD",
+                        "1,Food,26.75,5,USD",
+                        "2,\"Rent, flat\",1900.00,2,USD"),
+                Files.readAllLines(Path.of(run.directory(), "summary.csv")));
+    }
+
+    @Test
+    void testGenerateStatements_SameResultWithOneWorker() throws IOException {
+        String parallel = readStatements(newService(4, 2).generateStatements(YearMonth.of(2024, 1)));
+
+        StatementRun run = newService(1, 1000).generateStatements(YearMonth.of(2024, 1));
+
+        assertEquals(parallel, readStatements(run));
+        assertEquals(4, run.users());
+    }
+
+    @Test
+    void testGenerateStatements_RerunReplacesMonth() throws IOException {
+        newService(4, 2).generateStatements(YearMonth.of(2024, 1));
+        expenses.removeIf(expense -> expense.userId() > 1L);
+
+        StatementRun run = newService(4, 2).generateStatements(YearMonth.of(2024, 1));
+
+        assertEquals(1, run.users());
+        try (var files = Files.list(Path.of(run.directory()))) {
+            assertEquals(run.files().size(), files.count());
+        }
+    }
+
+    @Test
+    void testGenerateStatements_NoUsers() throws IOException {
+        when(userRepository.findMinUserId()).thenReturn(null);
+
+        StatementRun run = newService(4, 2).generateStatements(YearMonth.of(2024, 1));
+
+        assertEquals(List.of("summary.csv"), run.files());
+        assertEquals(0, run.users());
+        verify(expenseRepository, never()).findStatementPage(any(), any(), any(), any(), any(), any());
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.CategoryVersion;
+import com.skipper.expensetracker.dto.ExpenseView;
+import com.skipper.expensetracker.dto.ExpenseWatermark;
+import com.skipper.expensetracker.dto.UserExpenseSnapshot;
+import com.skipper.expensetracker.dto.UserExpensesVersion;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.repositories.CategoryRepository;
+import com.skipper.expensetracker.repositories.ExpenseRepository;
+import com.skipper.expensetracker.repositories.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class ExpenseWarmStartSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private final CategoryService categoryService = mock(CategoryService.class);
+    private final ExpenseAnalyticsStore expenseAnalyticsStore = mock(ExpenseAnalyticsStore.class);
+    private final ExpenseRepository expenseRepository = mock(ExpenseRepository.class);
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final YearMonth month = YearMonth.now();
+    private final UserExpenseSnapshot alice = new UserExpenseSnapshot(7L, month.getYear(), month.getMonthValue(),
+            List.of(new ExpenseView(1L, 7L, 1L, "Food", 1250L, "USD", "Lunch", new Date(1_700_000_000_000L)),
+                    new ExpenseView(2L, 7L, null, null, 400L, "USD", null, null)),
+            1650L, 91650L);
+    private final UserExpensesVersion aliceVersion = new UserExpensesVersion(7L, 2L, 2L, 0L, 3L);
+
+    private CacheManager cacheManager;
+    private UserExpenseCache userExpenseCache;
+
+    @BeforeEach
+    void setup() {
+        when(categoryService.getAllCategories()).thenReturn(List.of(new Category(1L, "Food", 3L), new Category(2L, "Rent")));
+        cacheManager = new ConcurrentMapCacheManager(CategoryServiceImpl.CATEGORY_CACHE,
+                CategoryServiceImpl.CATEGORY_LIST_CACHE);
+        userExpenseCache = new UserExpenseCache(meterRegistry, 100, Duration.ofMinutes(10));
+        when(categoryRepository.findVersions()).thenReturn(List.of(new CategoryVersion(1L, 3L), new CategoryVersion(2L, null)));
+        when(userRepository.findUserExpensesVersions(anyCollection())).thenReturn(List.of(aliceVersion));
+        when(expenseRepository.findWatermark()).thenReturn(new ExpenseWatermark(2L, 2L, 0L));
+        when(expenseAnalyticsStore.isLoaded()).thenReturn(true);
+    }
+
+    private void cacheAlice() {
+        userExpenseCache.restore(List.of(new UserExpenseCache.Entry(alice, aliceVersion.tag())));
+    }
+
+    private ExpenseWarmStartSnapshot newSnapshot(boolean enabled, Duration maxAge) {
+        return new ExpenseWarmStartSnapshot(categoryService, cacheManager, userExpenseCache, expenseAnalyticsStore,
+                expenseRepository, categoryRepository, userRepository, meterRegistry, enabled, directory.resolve("warm.snapshot"), maxAge);
+    }
+
+    // Simulates a restart: new caches, then the snapshot restored into them
+    private ExpenseWarmStartSnapshot restart(Duration maxAge) {
+        setup();
+        ExpenseWarmStartSnapshot restarted = newSnapshot(true, maxAge);
+        restarted.restore();
+        return restarted;
+    }
+
+    @Test
+    void testRestore_RefillsCachesWrittenByPreviousRun() throws IOException {
+        cacheAlice();
+        newSnapshot(true, Duration.ofHours(24)).write();
+
+        restart(Duration.ofHours(24));
+
+        List<?> categories = cacheManager.getCache(CategoryServiceImpl.CATEGORY_LIST_CACHE).get("all", List.class);
+        assertEquals(2, categories.size());
+        Category food = cacheManager.getCache(CategoryServiceImpl.CATEGORY_CACHE).get(1L, Category.class);
+        assertEquals("Food", food.getCategoryName());
+        assertEquals(3L, food.getVersion());
+        assertEquals(alice, userExpenseCache.get(7L, month, aliceVersion.tag(), id -> fail("Restored snapshot not used")));
+        verify(expenseAnalyticsStore).writeSnapshot(any());
+        verify(expenseAnalyticsStore).restoreSnapshot(any());
+        // One grouped query for all restored users
+        verify(userRepository).findUserExpensesVersions(List.of(7L));
+        assertEquals(1L, meterRegistry.get("expenses.snapshot.write").timer().count());
+    }
+
+    @Test
+    void testRestore_SkipsOldMissingAndCorruptSnapshots() throws IOException {
+        cacheAlice();
+        ExpenseWarmStartSnapshot snapshot = newSnapshot(true, Duration.ofHours(24));
+
+        // Nothing written yet
+        restart(Duration.ofHours(24));
+        assertNull(userExpenseCache.getIfPresent(7L));
+
+        cacheAlice();
+        snapshot.write();
+        restart(Duration.ZERO);
+        assertNull(userExpenseCache.getIfPresent(7L));
+        assertNull(cacheManager.getCache(CategoryServiceImpl.CATEGORY_LIST_CACHE).get("all"));
+
+        Path path = directory.resolve("warm.snapshot");
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(path, bytes);
+        restart(Duration.ofHours(24));
+        assertNull(userExpenseCache.getIfPresent(7L));
+        verify(expenseAnalyticsStore, never()).restoreSnapshot(any());
+    }
+
+    @Test
+    void testRestore_SkipsEntriesChangedInDatabase() throws IOException {
+        cacheAlice();
+        userExpenseCache.restore(List.of(new UserExpenseCache.Entry(
+                new UserExpenseSnapshot(8L, month.getYear(), month.getMonthValue(), List.of(), 0L, 0L), "0.2.2.3")));
+        userExpenseCache.restore(List.of(new UserExpenseCache.Entry(
+                new UserExpenseSnapshot(9L, month.getYear(), month.getMonthValue(), List.of(), 0L, 0L), "0.2.2.3")));
+        newSnapshot(true, Duration.ofHours(24)).write();
+
+        setup();
+        // Alice has a new expense, user 8 is unchanged, user 9 has been deleted
+        when(userRepository.findUserExpensesVersions(anyCollection())).thenReturn(List.of(
+                new UserExpensesVersion(7L, 3L, 2L, 0L, 3L), new UserExpensesVersion(8L, 0L, 2L, 2L, 3L)));
+        when(categoryRepository.findVersions()).thenReturn(List.of(new CategoryVersion(1L, 4L), new CategoryVersion(2L, null)));
+        when(expenseRepository.findWatermark()).thenReturn(new ExpenseWatermark(4L, 5L, 0L));
+        newSnapshot(true, Duration.ofHours(24)).restore();
+
+        assertNull(userExpenseCache.getIfPresent(7L));
+        assertNotNull(userExpenseCache.getIfPresent(8L));
+        assertNull(userExpenseCache.getIfPresent(9L));
+        assertNull(cacheManager.getCache(CategoryServiceImpl.CATEGORY_LIST_CACHE).get("all"));
+        assertNull(cacheManager.getCache(CategoryServiceImpl.CATEGORY_CACHE).get(1L));
+        verify(expenseAnalyticsStore, never()).restoreSnapshot(any());
+    }
+
+    @Test
+    void testDisabled_NeverTouchesFile() {
+        ExpenseWarmStartSnapshot disabled = newSnapshot(false, Duration.ofHours(24));
+
+        disabled.scheduledWrite();
+        disabled.restore();
+
+        assertFalse(Files.exists(directory.resolve("warm.snapshot")));
+        verifyNoInteractions(categoryService, expenseAnalyticsStore, expenseRepository, categoryRepository);
+    }
+
+}
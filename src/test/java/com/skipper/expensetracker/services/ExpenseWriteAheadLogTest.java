@@ -0,0 +1,141 @@
+package com.skipper.expensetracker.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseWriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    private static byte[] payload(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> payloads(ExpenseWriteAheadLog log) {
+        return log.getRecoveredEntries().stream()
+                .map(entry -> new String(entry.payload(), StandardCharsets.UTF_8))
+                .toList();
+    }
+
+    @Test
+    void testReopen_RecoversUnflushedRecordsInOrder() throws IOException {
+        Path path = directory.resolve("expenses.wal");
+        try (ExpenseWriteAheadLog log = new ExpenseWriteAheadLog(path, 4096, true)) {
+            assertEquals(1, log.append(payload("first")));
+            assertEquals(2, log.append(payload("second")));
+            assertEquals(3, log.append(payload("third")));
+        }
+
+        try (ExpenseWriteAheadLog log = new ExpenseWriteAheadLog(path, 4096, true)) {
+            assertEquals(List.of("first", "second", "third"), payloads(log));
+            assertEquals(3, log.getUnflushedCount());
+            assertEquals(4, log.append(payload("fourth")));
+        }
+    }
+
+    @Test
+    void testCheckpoint_ReleasesFlushedRecords() throws IOException {
+        Path path = directory.resolve("expenses.wal");
+        try (ExpenseWriteAheadLog log = new ExpenseWriteAheadLog(path, 4096, false)) {
+            log.append(payload("first"));
+            log.append(payload("second"));
+            log.append(payload("third"));
+            log.checkpoint(2);
+            assertEquals(1, log.getUnflushedCount());
+        }
+
+        try (ExpenseWriteAheadLog log = new ExpenseWriteAheadLog(path, 4096, false)) {
+            assertEquals(List.of("third"), payloads(log));
+            log.checkpoint(3);
+            assertEquals(0, log.getUsedBytes());
+        }
+
+        try (ExpenseWriteAheadLog log = new ExpenseWriteAheadLog(path, 4096, false)) {
+            assertTrue(log.getRecoveredEntries().isEmpty());
+            assertEquals(4, log.append(payload("fourth")));
+        }
+    }
+
+    @Test
+    void testAppend_WrapsAroundAndIgnoresStaleRecords() throws IOException {
+        Path path = directory.resolve("expenses.wal");
+        try (ExpenseWriteAheadLog log = new ExpenseWriteAheadLog(path, 512, true)) {
+            // Many passes over a small ring, keeping a couple of records unflushed across each wrap
+            for (int i = 1; i <= 200; i++) {
+                long sequence = log.append(payload("record-" + i));
+                if (sequence > 2) {
+                    log.checkpoint(sequence - 2);
+                }
+            }
+        }
+
+        try (ExpenseWriteAheadLog log = new ExpenseWriteAheadLog(path, 512, true)) {
+            assertEquals(List.of("record-199", "record-200"), payloads(log));
+        }
+    }
+
+    @Test
+    void testAppend_FullLogRejectsRecord() throws IOException {
+        try (ExpenseWriteAheadLog log = new ExpenseWriteAheadLog(directory.resolve("expenses.wal"), 256, false)) {
+            assertThrows(IllegalStateException.class, () -> {
+                for (int i = 0; i < 100; i++) {
+                    log.append(payload("record-" + i));
+                }
+            });
+            log.checkpoint(log.getUnflushedCount());
+            assertDoesNotThrow(() -> log.append(payload("after checkpoint")));
+        }
+    }
+
+    @Test
+    void testReopen_StopsAtCorruptRecord() throws IOException {
+        Path path = directory.resolve("expenses.wal");
+        try (ExpenseWriteAheadLog log = new ExpenseWriteAheadLog(path, 4096, true)) {
+            log.append(payload("first"));
+            log.append(payload("second"));
+        }
+        // Flip the last payload byte of the second record, as a write torn by a crash would leave it
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            long lastByte = 64 + 16 + "first".length() + 16 + "second".length() - 1;
+            file.seek(lastByte);
+            int value = file.read();
+            file.seek(lastByte);
+            file.write(value ^ 0xFF);
+        }
+
+        try (ExpenseWriteAheadLog log = new ExpenseWriteAheadLog(path, 4096, true)) {
+            assertEquals(List.of("first"), payloads(log));
+            assertEquals(2, log.append(payload("second again")));
+        }
+        try (ExpenseWriteAheadLog log = new ExpenseWriteAheadLog(path, 4096, true)) {
+            assertEquals(List.of("first", "second again"), payloads(log));
+        }
+    }
+
+    @Test
+    void testOpen_RefusesOtherFormatVersion() throws IOException {
+        Path path = directory.resolve("expenses.wal");
+        try (ExpenseWriteAheadLog log = new ExpenseWriteAheadLog(path, 4096, true)) {
+            log.append(payload("first"));
+        }
+        // Both header slots as an older release left them
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            for (int slot = 0; slot < 2; slot++) {
+                file.seek(slot * 32 + 24);
+                file.writeInt(ExpenseWriteAheadLog.FORMAT_VERSION - 1);
+            }
+        }
+
+        assertThrows(IOException.class, () -> new ExpenseWriteAheadLog(path, 4096, true));
+    }
+
+}
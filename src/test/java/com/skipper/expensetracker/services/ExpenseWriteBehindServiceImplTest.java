@@ -0,0 +1,195 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.BatchItemResult;
+import com.skipper.expensetracker.dto.WriteBehindReceipt;
+import com.skipper.expensetracker.entities.Category;
+import com.skipper.expensetracker.entities.Expense;
+import com.skipper.expensetracker.entities.Money;
+import com.skipper.expensetracker.entities.User;
+import com.skipper.expensetracker.repositories.ExpenseWriteKeyRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class ExpenseWriteBehindServiceImplTest {
+
+    @TempDir
+    Path directory;
+
+    private final ExpenseService expenseService = mock(ExpenseService.class);
+    private final ExpenseWriteKeyRepository expenseWriteKeyRepository = mock(ExpenseWriteKeyRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Captor
+    private ArgumentCaptor<List<Expense>> written;
+
+    private ExpenseWriteBehindServiceImpl service;
+
+    @BeforeEach
+    void setup() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        when(expenseWriteKeyRepository.findExistingKeys(any())).thenReturn(Set.of());
+        when(expenseService.addExpenses(anyList())).thenAnswer(invocation -> {
+            List<Expense> expenses = invocation.getArgument(0);
+            return IntStream.range(0, expenses.size())
+                    .mapToObj(i -> BatchItemResult.created(i, 100L + i))
+                    .toList();
+        });
+        service = newService();
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    private ExpenseWriteBehindServiceImpl newService() throws IOException {
+        return new ExpenseWriteBehindServiceImpl(expenseService, expenseWriteKeyRepository, transactionManager, meterRegistry,
+                directory.resolve("expenses.wal"), DataSize.ofKilobytes(64), false, 2);
+    }
+
+    private static Expense expense(String description) {
+        return Expense.builder()
+                .user(User.builder().userId(1L).build())
+                .category(Category.builder().categoryId(2L).build())
+                .amount(Money.ofMinor(1250, "USD"))
+                .description(description)
+                .date(new Date(1700000000000L))
+                .build();
+    }
+
+    @Test
+    void testEnqueueExpense_InvalidExpenseIsNotQueued() {
+        Expense expense = expense("Lunch");
+        doThrow(new IllegalArgumentException("User not found")).when(expenseService).validateExpense(expense);
+
+        assertThrows(IllegalArgumentException.class, () -> service.enqueueExpense("key-1", expense));
+        assertEquals(0, service.getQueueDepth());
+    }
+
+    @Test
+    void testEnqueueExpense_GeneratesKeyWhenMissing() {
+        WriteBehindReceipt receipt = service.enqueueExpense(null, expense("Lunch"));
+
+        assertNotNull(receipt.idempotencyKey());
+        assertEquals(1, receipt.sequence());
+        assertEquals(1, service.getQueueDepth());
+        assertEquals(1.0, meterRegistry.get("expenses.write_behind.queue.depth").gauge().value());
+    }
+
+    @Test
+    void testFlush_WritesBatchesAndRecordsKeys() {
+        service.enqueueExpense("key-1", expense("Lunch"));
+        service.enqueueExpense("key-2", expense("Dinner"));
+        service.enqueueExpense("key-3", expense("Taxi"));
+
+        assertEquals(3, service.flush());
+
+        assertEquals(0, service.getQueueDepth());
+        verify(expenseService, times(2)).addExpenses(anyList());
+        verify(expenseWriteKeyRepository).insertKeys(Map.of("key-1", 100L, "key-2", 101L));
+        verify(expenseWriteKeyRepository).insertKeys(Map.of("key-3", 100L));
+        assertEquals(3.0, meterRegistry.get("expenses.write_behind.flushed").counter().count());
+        assertEquals(2, meterRegistry.get("expenses.write_behind.flush").timer().count());
+    }
+
+    @Test
+    void testFlush_SkipsKeysAlreadyWritten() {
+        when(expenseWriteKeyRepository.findExistingKeys(any())).thenReturn(Set.of("key-1"));
+        service.enqueueExpense("key-1", expense("Lunch"));
+        service.enqueueExpense("key-2", expense("Dinner"));
+
+        service.flush();
+
+        verify(expenseService).addExpenses(written.capture());
+        assertEquals("Dinner", written.getValue().get(0).getDescription());
+        assertEquals(1, written.getValue().size());
+        assertEquals(1.0, meterRegistry.get("expenses.write_behind.duplicates").counter().count());
+    }
+
+    @Test
+    void testFlush_FailedBatchStaysQueued() throws IOException {
+        when(expenseService.addExpenses(anyList())).thenThrow(new QueryTimeoutException("Database unavailable"));
+        service.enqueueExpense("key-1", expense("Lunch"));
+
+        assertThrows(QueryTimeoutException.class, () -> service.flush());
+        assertEquals(1, service.getQueueDepth());
+
+        // Nothing was checkpointed, so a restart replays the expense from the log
+        service.shutdown();
+        service = newService();
+        assertEquals(1, service.getQueueDepth());
+    }
+
+    @Test
+    void testFlush_ConstraintViolationRejectsOnlyOffendingExpense() {
+        when(expenseService.addExpenses(anyList())).thenAnswer(invocation -> {
+            List<Expense> expenses = invocation.getArgument(0);
+            if (expenses.stream().anyMatch(expense -> expense.getDescription().equals("Broken"))) {
+                throw new DataIntegrityViolationException("Value too long");
+            }
+            return List.of(BatchItemResult.created(0, 200L));
+        });
+        service.enqueueExpense("key-1", expense("Lunch"));
+        service.enqueueExpense("key-2", expense("Broken"));
+
+        assertEquals(2, service.flush());
+
+        verify(expenseWriteKeyRepository).insertKeys(Map.of("key-1", 200L));
+        verify(expenseWriteKeyRepository).insertKeys(Collections.singletonMap("key-2", null));
+        assertEquals(1.0, meterRegistry.get("expenses.write_behind.rejected").counter().count());
+        assertEquals(0, service.getQueueDepth());
+    }
+
+    @Test
+    void testRestart_RecoversQueuedExpenses() throws IOException {
+        service.enqueueExpense("key-1", expense("Lunch"));
+        service.enqueueExpense("key-2", expense("Dinner"));
+        // Simulate a crash: close the log without flushing
+        when(expenseService.addExpenses(anyList())).thenThrow(new QueryTimeoutException("Database unavailable"));
+        service.shutdown();
+        reset(expenseService);
+        when(expenseService.addExpenses(anyList())).thenReturn(List.of(BatchItemResult.created(0, 1L), BatchItemResult.created(1, 2L)));
+
+        service = newService();
+        assertEquals(2, service.flush());
+
+        verify(expenseService).addExpenses(written.capture());
+        Expense recovered = written.getValue().get(1);
+        assertEquals("Dinner", recovered.getDescription());
+        assertEquals(1L, recovered.getUser().getUserId());
+        assertEquals(2L, recovered.getCategory().getCategoryId());
+        assertEquals(Money.ofMinor(1250, "USD"), recovered.getAmount());
+        assertEquals(new Date(1700000000000L), recovered.getDate());
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.IdempotentResponse;
+import com.skipper.expensetracker.repositories.IdempotentResponseRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IdempotencyStoreTest {
+
+    private static final String SCOPE = "POST /api/expenses key-1";
+
+    private final IdempotentResponseRepository repository = mock(IdempotentResponseRepository.class);
+
+    private IdempotencyStore store(boolean databaseEnabled) {
+        return new IdempotencyStore(new SimpleMeterRegistry(), repository, DataSize.ofMegabytes(1), Duration.ofHours(1),
+                databaseEnabled);
+    }
+
+    private static IdempotentResponse response(String requestHash) {
+        return new IdempotentResponse(requestHash, 201, Map.of("Content-Type", "application/json"),
+                "{\"expenseId\":1}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testClaim_ReplaysCompletedRequest() {
+        IdempotencyStore store = store(false);
+        assertEquals(IdempotencyStore.Outcome.NEW, store.claim(SCOPE, "hash-1").outcome());
+        store.complete(SCOPE, response("hash-1"));
+
+        IdempotencyStore.Claim claim = store.claim(SCOPE, "hash-1");
+
+        assertEquals(IdempotencyStore.Outcome.REPLAY, claim.outcome());
+        assertEquals(201, claim.response().status());
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void testClaim_InProgressAndMismatch() {
+        IdempotencyStore store = store(false);
+        store.claim(SCOPE, "hash-1");
+
+        assertEquals(IdempotencyStore.Outcome.IN_PROGRESS, store.claim(SCOPE, "hash-1").outcome());
+        assertEquals(IdempotencyStore.Outcome.MISMATCH, store.claim(SCOPE, "hash-2").outcome());
+
+        store.complete(SCOPE, response("hash-1"));
+        assertEquals(IdempotencyStore.Outcome.MISMATCH, store.claim(SCOPE, "hash-2").outcome());
+    }
+
+    @Test
+    void testRelease_AllowsRetry() {
+        IdempotencyStore store = store(false);
+        store.claim(SCOPE, "hash-1");
+        store.release(SCOPE);
+
+        assertEquals(IdempotencyStore.Outcome.NEW, store.claim(SCOPE, "hash-1").outcome());
+    }
+
+    @Test
+    void testClaim_FallsBackToDatabase() {
+        when(repository.findByScopeHash(anyString(), any())).thenReturn(Optional.of(response("hash-1")));
+        IdempotencyStore store = store(true);
+
+        assertEquals(IdempotencyStore.Outcome.REPLAY, store.claim(SCOPE, "hash-1").outcome());
+        // The database copy is cached in process afterwards
+        assertEquals(IdempotencyStore.Outcome.REPLAY, store.claim(SCOPE, "hash-1").outcome());
+        verify(repository, times(1)).findByScopeHash(anyString(), any());
+    }
+
+    @Test
+    void testComplete_WritesThroughToDatabase() {
+        when(repository.findByScopeHash(anyString(), any())).thenReturn(Optional.empty());
+        IdempotencyStore store = store(true);
+        store.claim(SCOPE, "hash-1");
+
+        IdempotentResponse response = response("hash-1");
+        store.complete(SCOPE, response);
+
+        verify(repository).insert(eq(IdempotencyStore.hash(SCOPE.getBytes(StandardCharsets.UTF_8))), eq(response));
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.skipper.expensetracker.services;
+
+import com.skipper.expensetracker.dto.UserExpenseSnapshot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserExpenseCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserExpenseCache cache = new UserExpenseCache(meterRegistry, 100, Duration.ofMinutes(10));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Function<Long, UserExpenseSnapshot> loader(YearMonth month) {
+        return userId -> {
+            loads.incrementAndGet();
+            return new UserExpenseSnapshot(userId, month.getYear(), month.getMonthValue(), List.of(), 0L, 1000L);
+        };
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testGet_LoadsOncePerUser() {
+        YearMonth month = YearMonth.of(2024, 5);
+
+        cache.get(1L, month, "v1", loader(month));
+        cache.get(1L, month, "v1", loader(month));
+
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", UserExpenseCache.CACHE_NAME)
+                .tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void testGet_ReloadsWhenMonthRollsOver() {
+        YearMonth may = YearMonth.of(2024, 5);
+        YearMonth june = YearMonth.of(2024, 6);
+        cache.get(1L, may, "v1", loader(may));
+
+        UserExpenseSnapshot snapshot = cache.get(1L, june, "v1", loader(june));
+
+        assertEquals(6, snapshot.month());
+        assertEquals(2, loads.get());
+        assertEquals(6, cache.getIfPresent(1L).month());
+    }
+
+    @Test
+    void testInvalidate_DropsSnapshotAgainAfterCommit() {
+        YearMonth month = YearMonth.of(2024, 5);
+        TransactionSynchronizationManager.initSynchronization();
+        cache.get(1L, month, "v1", loader(month));
+
+        cache.invalidate(List.of(1L));
+        // A concurrent read repopulates the entry before the writing transaction commits
+        cache.get(1L, month, "v1", loader(month));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertNull(cache.getIfPresent(1L));
+    }
+
+    @Test
+    void testInvalidate_IgnoresNullUserIds() {
+        YearMonth month = YearMonth.of(2024, 5);
+        cache.get(1L, month, "v1", loader(month));
+
+        cache.invalidate(java.util.Arrays.asList(null, 1L));
+
+        assertNull(cache.getIfPresent(1L));
+    }
+
+    @Test
+    void testGet_ReloadsWhenVersionChanges() {
+        YearMonth month = YearMonth.of(2024, 5);
+        cache.get(1L, month, "v1", loader(month));
+        cache.get(1L, month, "v1", loader(month));
+
+        // A write made on another instance, seen only through the version
+        cache.get(1L, month, "v2", loader(month));
+        cache.get(1L, month, "v2", loader(month));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testRestore_ServedWhileVersionCurrent() {
+        YearMonth month = YearMonth.of(2024, 5);
+        cache.restore(List.of(new UserExpenseCache.Entry(new UserExpenseSnapshot(1L, 2024, 5, List.of(), 0L, 500L), "v1")));
+
+        assertEquals(500L, cache.get(1L, month, "v1", loader(month)).total());
+        assertEquals(0, loads.get());
+        assertEquals(1000L, cache.get(1L, month, "v2", loader(month)).total());
+        assertEquals(1, loads.get());
+        assertEquals(List.of("v2"), cache.getEntries().stream().map(UserExpenseCache.Entry::version).toList());
+    }
+
+    @Test
+    void testGetIfCurrent_OnlyAtSameMonthAndVersion() {
+        YearMonth month = YearMonth.of(2024, 5);
+        cache.get(1L, month, "v1", loader(month));
+
+        assertEquals(1000L, cache.getIfCurrent(1L, month, "v1").total());
+        assertNull(cache.getIfCurrent(1L, month, "v2"));
+        assertNull(cache.getIfCurrent(1L, YearMonth.of(2024, 6), "v1"));
+        assertNull(cache.getIfCurrent(2L, month, "v1"));
+        assertEquals(1, loads.get());
+    }
+
+}